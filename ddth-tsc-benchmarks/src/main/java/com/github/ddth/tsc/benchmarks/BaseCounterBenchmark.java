@@ -0,0 +1,187 @@
+package com.github.ddth.tsc.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.LongSeries;
+
+/**
+ * Base class for counter benchmarks: {@code add}/{@code set}/{@code get}/
+ * {@code getSeries}/{@code getLastN} against one backend.
+ *
+ * <p>
+ * Parameters:
+ * </p>
+ * <ul>
+ * <li>{@code counters}: number of counters, each operation picks one at
+ * random.</li>
+ * <li>{@code rangeLength}: length (in seconds) of the populated time range, of
+ * the ranges read by {@code getSeries}/{@code getLongSeries} and of the window
+ * read by {@code getLastN}. Writes land at random seconds of the range.</li>
+ * <li>{@code steps}: {@code steps} of range reads.</li>
+ * </ul>
+ *
+ * <p>
+ * Number of threads is a JMH run option, not a parameter: see
+ * {@link BenchmarkRunner}, which also adds the GC profiler to report allocation
+ * rate.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public abstract class BaseCounterBenchmark {
+
+    @Param({ "1", "100" })
+    public int counters;
+
+    @Param({ "60", "3600" })
+    public int rangeLength;
+
+    @Param({ "1", "60" })
+    public int steps;
+
+    /**
+     * Creates the counter factory in virtual-thread mode (see
+     * {@link AbstractCounterFactory#setVirtualThreads(boolean)}), set by
+     * {@link VirtualThreadWritersBenchmark}.
+     */
+    protected boolean virtualThreads = false;
+
+    protected ICounterFactory counterFactory;
+    protected ICounter[] counterArr;
+    protected long timestampStart, timestampEnd;
+
+    /**
+     * Starts the backend (if any) and creates the counter factory.
+     *
+     * @return
+     * @throws Exception
+     */
+    protected abstract ICounterFactory createCounterFactory() throws Exception;
+
+    /**
+     * Stops the backend (if any), called after the counter factory has been
+     * destroyed.
+     *
+     * @throws Exception
+     */
+    protected void destroyBackend() throws Exception {
+    }
+
+    protected String counterName(int index) {
+        return "counter_" + index;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        counterFactory = createCounterFactory();
+        counterArr = new ICounter[counters];
+        for (int i = 0; i < counters; i++) {
+            counterArr[i] = counterFactory.getCounter(counterName(i));
+        }
+
+        // populate the range ending now, so that getLastN reads populated
+        // data points
+        long now = System.currentTimeMillis();
+        timestampEnd = now - now % ICounter.RESOLUTION_MS;
+        timestampStart = timestampEnd - rangeLength * (long) ICounter.RESOLUTION_MS;
+        Map<String, Long> values = new HashMap<>();
+        for (int t = 0; t < rangeLength; t++) {
+            values.clear();
+            for (int i = 0; i < counters; i++) {
+                values.put(counterName(i), (long) (t + i));
+            }
+            counterFactory.addAll(values, timestampStart + t * (long) ICounter.RESOLUTION_MS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            if (counterFactory instanceof AbstractCounterFactory) {
+                ((AbstractCounterFactory) counterFactory).destroy();
+            }
+        } finally {
+            counterFactory = null;
+            destroyBackend();
+        }
+    }
+
+    /**
+     * Per-thread buffer for {@link BaseCounterBenchmark#getLongSeries(SeriesBuffer)}.
+     */
+    @State(Scope.Thread)
+    public static class SeriesBuffer {
+        public final LongSeries series = new LongSeries();
+    }
+
+    protected ICounter randomCounter() {
+        return counterArr[ThreadLocalRandom.current().nextInt(counterArr.length)];
+    }
+
+    protected long randomTimestamp() {
+        return timestampStart
+                + ThreadLocalRandom.current().nextInt(rangeLength) * (long) ICounter.RESOLUTION_MS;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    @Benchmark
+    public void add() {
+        randomCounter().add(randomTimestamp(), 1);
+    }
+
+    @Benchmark
+    public void set() {
+        randomCounter().set(randomTimestamp(), 1);
+    }
+
+    @Benchmark
+    public DataPoint get() {
+        return randomCounter().get(randomTimestamp());
+    }
+
+    @Benchmark
+    public DataPoint[] getSeries() {
+        return randomCounter().getSeries(timestampStart, timestampEnd - 1, steps, Type.SUM);
+    }
+
+    @Benchmark
+    public LongSeries getLongSeries(SeriesBuffer buffer) {
+        return randomCounter().getLongSeries(timestampStart, timestampEnd - 1, steps, Type.SUM,
+                buffer.series);
+    }
+
+    @Benchmark
+    public DataPoint[] getLastN() {
+        return randomCounter().getLastN(Math.max(1, rangeLength / steps), steps, Type.SUM);
+    }
+}
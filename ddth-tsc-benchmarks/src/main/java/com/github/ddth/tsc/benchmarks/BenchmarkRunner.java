@@ -0,0 +1,87 @@
+package com.github.ddth.tsc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with JMH command line options, sweeping over thread counts.
+ *
+ * <p>
+ * Usage: {@code java [-Dthreads=1,4,16] -jar benchmarks.jar [JMH options]},
+ * e.g. {@code -jar benchmarks.jar Redis -p counters=1,1000 -p steps=60}.
+ * </p>
+ *
+ * <ul>
+ * <li>Unless JMH option {@code -t} is given, each benchmark runs once per
+ * thread count of system property {@code threads} (default
+ * {@value #DEFAULT_THREADS}).</li>
+ * <li>Unless profilers are given ({@code -prof}), the GC profiler is added:
+ * allocation rate is reported as {@code gc.alloc.rate} (MB/s) and
+ * {@code gc.alloc.rate.norm} (bytes per operation).</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class BenchmarkRunner {
+
+    public final static String DEFAULT_THREADS = "1,4,16";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+
+        List<Integer> threadCounts = new ArrayList<>();
+        if (cmdOptions.getThreads().hasValue()) {
+            threadCounts.add(cmdOptions.getThreads().get());
+        } else {
+            for (String threads : System.getProperty("threads", DEFAULT_THREADS).split(",")) {
+                threadCounts.add(Integer.parseInt(threads.trim()));
+            }
+        }
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions)
+                    .threads(threads);
+            if (cmdOptions.getProfilers().isEmpty()) {
+                options.addProfiler(GCProfiler.class);
+            }
+            Collection<RunResult> runResults = new Runner(options.build()).run();
+            results.addAll(runResults);
+        }
+
+        if (threadCounts.size() > 1) {
+            System.out.println();
+            System.out.println("Summary (threads / benchmark / params: score):");
+            for (RunResult result : results) {
+                BenchmarkParams params = result.getParams();
+                StringBuilder sb = new StringBuilder();
+                sb.append(params.getThreads()).append(" / ").append(params.getBenchmark())
+                        .append(" /");
+                for (String key : params.getParamsKeys()) {
+                    sb.append(' ').append(key).append('=').append(params.getParam(key));
+                }
+                sb.append(": ").append(result.getPrimaryResult().getScore()).append(' ')
+                        .append(result.getPrimaryResult().getScoreUnit());
+                System.out.println(sb);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.ddth.tsc.benchmarks;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.openjdk.jmh.annotations.Param;
+
+import com.datastax.driver.core.Session;
+import com.github.ddth.cql.SessionManager;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.cassandra.CassandraCounter;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+import com.github.ddth.tsc.cassandra.internal.CqlTemplate;
+
+/**
+ * Benchmarks for {@link CassandraCounter}, against an in-JVM Cassandra server
+ * (cassandra-unit).
+ *
+ * <p>
+ * Extra parameter {@code writeMode}: {@code counter} for a counter-column table
+ * (the default layout), {@code log} for an accumulation log table (see
+ * {@code ddth-tsc-cassandra/SCHEMA.md}). All counters share the table, through
+ * a pattern entry of the metadata table.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraCounterBenchmark extends BaseCounterBenchmark {
+
+    private final static String KEYSPACE = "tsc_benchmarks";
+
+    @Param({ "counter", "log" })
+    public String writeMode;
+
+    private SessionManager sessionManager;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(30000);
+        Session session = EmbeddedCassandraServerHelper.getSession();
+        session.execute("DROP KEYSPACE IF EXISTS " + KEYSPACE);
+        session.execute("CREATE KEYSPACE " + KEYSPACE
+                + " WITH REPLICATION = {'class':'SimpleStrategy','replication_factor':'1'}");
+        session.execute("CREATE TABLE " + KEYSPACE + "." + CqlTemplate.TABLE_METADATA
+                + " (c varchar, o text, PRIMARY KEY (c)) WITH COMPACT STORAGE");
+
+        String table, options;
+        if ("log".equals(writeMode)) {
+            table = CqlTemplate.TABLE_COUNTER + "_log";
+            options = "\"write_mode\":\"log\"";
+            session.execute("CREATE TABLE " + KEYSPACE + "." + table
+                    + " (c varchar, ym int, d int, t bigint, id timeuuid, s boolean, v bigint, PRIMARY KEY ((c, ym, d), t, id) )");
+        } else {
+            table = CqlTemplate.TABLE_COUNTER;
+            options = "\"counter_column\":true";
+            session.execute("CREATE TABLE " + KEYSPACE + "." + table
+                    + " (c varchar, ym int, d int, t bigint, v counter, PRIMARY KEY ((c, ym, d), t) ) WITH COMPACT STORAGE");
+        }
+        session.execute("UPDATE " + KEYSPACE + "." + CqlTemplate.TABLE_METADATA
+                + " SET o='[{\"pattern\":\"^.*$\",\"table\":\"" + table + "\"," + options
+                + "}]' WHERE c='*'");
+
+        sessionManager = new SessionManager();
+        sessionManager.init();
+        return new CassandraCounterFactory().setSessionManager(sessionManager)
+                .setHostsAndPorts("127.0.0.1:9142").setKeyspace(KEYSPACE)
+                .setVirtualThreads(virtualThreads).init();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void destroyBackend() {
+        try {
+            if (sessionManager != null) {
+                sessionManager.destroy();
+            }
+        } finally {
+            sessionManager = null;
+            EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+        }
+    }
+}
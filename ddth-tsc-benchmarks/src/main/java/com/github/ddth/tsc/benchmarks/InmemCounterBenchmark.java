@@ -0,0 +1,22 @@
+package com.github.ddth.tsc.benchmarks;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.mem.InmemCounter;
+import com.github.ddth.tsc.mem.InmemCounterFactory;
+
+/**
+ * Benchmarks for {@link InmemCounter}.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class InmemCounterBenchmark extends BaseCounterBenchmark {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ICounterFactory createCounterFactory() {
+        return new InmemCounterFactory().setVirtualThreads(virtualThreads).init();
+    }
+}
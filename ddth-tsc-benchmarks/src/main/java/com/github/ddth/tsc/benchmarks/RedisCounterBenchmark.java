@@ -0,0 +1,46 @@
+package com.github.ddth.tsc.benchmarks;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.RedisCounter;
+import com.github.ddth.tsc.redis.RedisCounterFactory;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Benchmarks for {@link RedisCounter}, against an embedded Redis server.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisCounterBenchmark extends BaseCounterBenchmark {
+
+    private final static String REDIS_HOST = "127.0.0.1";
+    private final static int REDIS_PORT = 16379;
+
+    private RedisServer redisServer;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        return new RedisCounterFactory().setRedisHostAndPort(REDIS_HOST + ":" + REDIS_PORT)
+                .setVirtualThreads(virtualThreads).init();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void destroyBackend() {
+        if (redisServer != null) {
+            try {
+                redisServer.stop();
+            } finally {
+                redisServer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.ddth.tsc.benchmarks;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.ShardedRedisCounter;
+import com.github.ddth.tsc.redis.ShardedRedisCounterFactory;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Benchmarks for {@link ShardedRedisCounter}, against two embedded Redis
+ * servers.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class ShardedRedisCounterBenchmark extends BaseCounterBenchmark {
+
+    private final static String REDIS_HOST = "127.0.0.1";
+    private final static int REDIS_PORT1 = 16379;
+    private final static int REDIS_PORT2 = 16380;
+
+    private RedisServer redisServer1, redisServer2;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        redisServer1 = new RedisServer(REDIS_PORT1);
+        redisServer1.start();
+        redisServer2 = new RedisServer(REDIS_PORT2);
+        redisServer2.start();
+        return new ShardedRedisCounterFactory().setRedisHostsAndPorts(
+                REDIS_HOST + ":" + REDIS_PORT1 + "," + REDIS_HOST + ":" + REDIS_PORT2)
+                .setVirtualThreads(virtualThreads).init();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void destroyBackend() {
+        try {
+            if (redisServer1 != null) {
+                redisServer1.stop();
+            }
+        } finally {
+            redisServer1 = null;
+            try {
+                if (redisServer2 != null) {
+                    redisServer2.stop();
+                }
+            } finally {
+                redisServer2 = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.ddth.tsc.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write throughput with many concurrent virtual-thread writers (Java 21+),
+ * against a counter factory in virtual-thread mode.
+ *
+ * <p>
+ * Usage: {@code java [options] -cp benchmarks.jar <this class>}. Options
+ * (system properties):
+ * </p>
+ * <ul>
+ * <li>{@code backend}: {@code Inmem}, {@code Redis} (default),
+ * {@code ShardedRedis} or {@code Cassandra}: the backend of the matching
+ * {@code *CounterBenchmark}.</li>
+ * <li>{@code writers}: number of virtual threads started per round, all
+ * writing concurrently (default {@value #DEFAULT_WRITERS}).</li>
+ * <li>{@code opsPerWriter}: {@code add()}s per virtual thread (default
+ * {@value #DEFAULT_OPS_PER_WRITER}).</li>
+ * <li>{@code counters}, {@code rangeLength}: see
+ * {@link BaseCounterBenchmark}.</li>
+ * <li>{@code rounds}: measured rounds, after one warmup round (default
+ * {@value #DEFAULT_ROUNDS}).</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class VirtualThreadWritersBenchmark {
+
+    public final static int DEFAULT_WRITERS = 100000;
+    public final static int DEFAULT_OPS_PER_WRITER = 10;
+    public final static int DEFAULT_ROUNDS = 3;
+
+    private static Method startVirtualThread() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21+!", e);
+        }
+    }
+
+    /**
+     * Starts {@code writers} virtual threads, each adding
+     * {@code opsPerWriter} times, once all have started.
+     *
+     * @return elapsed time, in nanoseconds
+     */
+    private static long runRound(Method startVirtualThread, final BaseCounterBenchmark benchmark,
+            int writers, final int opsPerWriter, final AtomicLong errors) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(writers);
+        Runnable writer = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerWriter; i++) {
+                        benchmark.add();
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < writers; i++) {
+            startVirtualThread.invoke(null, writer);
+        }
+        long startNs = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - startNs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Method startVirtualThread = startVirtualThread();
+        String backend = System.getProperty("backend", "Redis");
+        int writers = Integer.getInteger("writers", DEFAULT_WRITERS);
+        int opsPerWriter = Integer.getInteger("opsPerWriter", DEFAULT_OPS_PER_WRITER);
+        int rounds = Integer.getInteger("rounds", DEFAULT_ROUNDS);
+
+        BaseCounterBenchmark benchmark = (BaseCounterBenchmark) Class
+                .forName(VirtualThreadWritersBenchmark.class.getPackage().getName() + "."
+                        + backend + "CounterBenchmark")
+                .newInstance();
+        benchmark.counters = Integer.getInteger("counters", 100);
+        benchmark.rangeLength = Integer.getInteger("rangeLength", 60);
+        benchmark.steps = 1;
+        benchmark.virtualThreads = true;
+        benchmark.setup();
+        try {
+            System.out.println("Backend: " + backend + ", writers: " + writers
+                    + ", ops/writer: " + opsPerWriter + ", counters: " + benchmark.counters);
+            AtomicLong errors = new AtomicLong();
+            runRound(startVirtualThread, benchmark, writers, opsPerWriter, errors);
+            long totalOps = 0, totalNs = 0;
+            for (int round = 1; round <= rounds; round++) {
+                long elapsedNs = runRound(startVirtualThread, benchmark, writers, opsPerWriter,
+                        errors);
+                long ops = (long) writers * opsPerWriter;
+                totalOps += ops;
+                totalNs += elapsedNs;
+                System.out.println("Round " + round + ": " + ops + " adds in "
+                        + elapsedNs / 1000000 + " ms, " + (long) (ops * 1E9 / elapsedNs)
+                        + " ops/s");
+            }
+            System.out.println("Average: " + (long) (totalOps * 1E9 / totalNs) + " ops/s, errors: "
+                    + errors.get());
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+}
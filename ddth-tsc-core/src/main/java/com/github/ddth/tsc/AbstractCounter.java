@@ -1,12 +1,14 @@
 package com.github.ddth.tsc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Comparator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Collections;
+import java.util.List;
 
 import com.github.ddth.tsc.DataPoint.Type;
-import com.google.common.primitives.Longs;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
 
 /**
  * Abstract implementation of {@link ICounter}.
@@ -16,8 +18,60 @@ import com.google.common.primitives.Longs;
  */
 public abstract class AbstractCounter implements ICounter {
 
+    /**
+     * Default rollup tiers: 1 minute, 1 hour, 1 day.
+     * 
+     * @since 0.7.1
+     */
+    public final static int[] DEFAULT_ROLLUP_STEPS = { 60, 3600, 86400 };
+
+    /**
+     * Default number of 1-second data points read per chunk when streaming.
+     * 
+     * @since 0.7.1
+     */
+    public final static int DEFAULT_STREAM_CHUNK_SIZE = 3600;
+
+    private final static int[] NO_ROLLUPS = new int[0];
+
+    /**
+     * A range of stored data points to read into a series: 1-second data
+     * points ({@code steps == 1}) or rollup data points of a tier.
+     * 
+     * @since 0.7.1
+     */
+    protected final static class RangeRead {
+        /**
+         * {@code 1} for 1-second data points, the rollup tier otherwise.
+         */
+        public final int steps;
+
+        /**
+         * Timestamps of the first and the last (inclusive) data points, aligned
+         * to {@code steps}.
+         */
+        public final long keyStart, keyEnd;
+
+        RangeRead(int steps, long keyStart, long keyEnd) {
+            this.steps = steps;
+            this.keyStart = keyStart;
+            this.keyEnd = keyEnd;
+        }
+
+        /**
+         * Timestamp of the last 1-second data point covered by the range.
+         * 
+         * @return
+         */
+        public long lastKey() {
+            return keyEnd + (steps - 1) * (long) RESOLUTION_MS;
+        }
+    }
+
     private AbstractCounterFactory counterFactory;
     private String name;
+    private int[] rollupSteps = NO_ROLLUPS;
+    private int streamChunkSize = 0;
 
     public AbstractCounter() {
     }
@@ -48,6 +102,23 @@ public abstract class AbstractCounter implements ICounter {
         return this;
     }
 
+    /**
+     * Metrics hook of the associated counter factory.
+     * 
+     * <p>
+     * {@link #add(long, long)}, {@link #set(long, long)}, {@link #get(long)}
+     * and range reads are timed by this class; sub-classes record backend
+     * commands, when {@link ICounterMetrics#isEnabled()}.
+     * </p>
+     * 
+     * @return {@link ICounterMetrics#NOOP} if not associated with a factory
+     * @since 0.7.1
+     */
+    protected ICounterMetrics getMetrics() {
+        AbstractCounterFactory counterFactory = this.counterFactory;
+        return counterFactory != null ? counterFactory.getMetrics() : ICounterMetrics.NOOP;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -61,6 +132,86 @@ public abstract class AbstractCounter implements ICounter {
         return this;
     }
 
+    /**
+     * Rollup tiers (in number of steps, 1 step = {@link #RESOLUTION_MS}) this
+     * counter maintains, in ascending order. Empty if rollups are disabled.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int[] getRollupSteps() {
+        return rollupSteps.clone();
+    }
+
+    /**
+     * Sets rollup tiers this counter maintains (empty/{@code null} to disable,
+     * which is the default). See {@link #DEFAULT_ROLLUP_STEPS}.
+     * 
+     * <p>
+     * When enabled, {@code add()}/{@code set()} also update one pre-aggregated
+     * {@link Type#SUM} data point per tier, and {@code getSeries()}/
+     * {@code getLastN()} with {@link Type#SUM} read from the coarsest tier that
+     * evenly divides {@code steps} instead of reading every 1-second data point.
+     * Each tier must be a multiple of the previous one. Only data written while
+     * rollups are enabled is rolled up. Must be set before {@link #init()}.
+     * </p>
+     * 
+     * @param rollupSteps
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounter setRollupSteps(int... rollupSteps) {
+        if (rollupSteps == null || rollupSteps.length == 0) {
+            this.rollupSteps = NO_ROLLUPS;
+            return this;
+        }
+        int[] steps = rollupSteps.clone();
+        Arrays.sort(steps);
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i] < 2 || (i > 0 && steps[i] % steps[i - 1] != 0)) {
+                throw new IllegalArgumentException(
+                        "Invalid rollup steps: " + Arrays.toString(rollupSteps));
+            }
+        }
+        this.rollupSteps = steps;
+        return this;
+    }
+
+    /**
+     * Number of 1-second data points read per chunk when streaming (see
+     * {@link #streamSeries(long, long, int, Type, ISeriesConsumer)}).
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getStreamChunkSize() {
+        return streamChunkSize > 0 ? streamChunkSize : getDefaultStreamChunkSize();
+    }
+
+    /**
+     * Sets number of 1-second data points read per chunk when streaming,
+     * {@code 0} (default) to use the backend's default.
+     * 
+     * @param streamChunkSize
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounter setStreamChunkSize(int streamChunkSize) {
+        this.streamChunkSize = streamChunkSize;
+        return this;
+    }
+
+    /**
+     * Backend's default number of 1-second data points read per chunk when
+     * streaming, sub-classes override it to match their storage layout.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    protected int getDefaultStreamChunkSize() {
+        return DEFAULT_STREAM_CHUNK_SIZE;
+    }
+
     /**
      * Initializing method.
      */
@@ -110,9 +261,32 @@ public abstract class AbstractCounter implements ICounter {
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Since 0.7.1, calls {@link #addValue(long, long)}, timed if metrics are
+     * enabled.
+     * </p>
      */
     @Override
-    public abstract void add(long timestampMs, long value);
+    public void add(long timestampMs, long value) {
+        ICounterMetrics metrics = getMetrics();
+        if (!metrics.isEnabled()) {
+            addValue(timestampMs, value);
+            return;
+        }
+        long startNs = System.nanoTime();
+        addValue(timestampMs, value);
+        metrics.recordLatency(Operation.ADD, System.nanoTime() - startNs);
+    }
+
+    /**
+     * Adds a value to a data point (see {@link #add(long, long)}).
+     * 
+     * @param timestampMs
+     * @param value
+     * @since 0.7.1
+     */
+    protected abstract void addValue(long timestampMs, long value);
 
     /**
      * {@inheritDoc}
@@ -124,33 +298,82 @@ public abstract class AbstractCounter implements ICounter {
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Since 0.7.1, calls {@link #setValue(long, long)}, timed if metrics are
+     * enabled.
+     * </p>
      */
     @Override
-    public abstract void set(long timestampMs, long value);
+    public void set(long timestampMs, long value) {
+        ICounterMetrics metrics = getMetrics();
+        if (!metrics.isEnabled()) {
+            setValue(timestampMs, value);
+            return;
+        }
+        long startNs = System.nanoTime();
+        setValue(timestampMs, value);
+        metrics.recordLatency(Operation.SET, System.nanoTime() - startNs);
+    }
+
+    /**
+     * Sets value of a data point (see {@link #set(long, long)}).
+     * 
+     * @param timestampMs
+     * @param value
+     * @since 0.7.1
+     */
+    protected abstract void setValue(long timestampMs, long value);
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Since 0.7.1, calls {@link #readDataPoint(long)}, timed if metrics are
+     * enabled.
+     * </p>
      */
     @Override
-    public abstract DataPoint get(long timestampMs);
+    public DataPoint get(long timestampMs) {
+        ICounterMetrics metrics = getMetrics();
+        if (!metrics.isEnabled()) {
+            return readDataPoint(timestampMs);
+        }
+        long startNs = System.nanoTime();
+        DataPoint result = readDataPoint(timestampMs);
+        metrics.recordLatency(Operation.GET, System.nanoTime() - startNs);
+        return result;
+    }
+
+    /**
+     * Reads a data point (see {@link #get(long)}).
+     * 
+     * @param timestampMs
+     * @return
+     * @since 0.7.1
+     */
+    protected abstract DataPoint readDataPoint(long timestampMs);
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Since 0.7.1, the block is read with one range read (see
+     * {@link #getLongSeries(long, long, int, Type, LongSeries)}) instead of one
+     * {@link #get(long)} per data point.
+     * </p>
      */
     @Override
     public DataPoint get(long timestampMs, DataPoint.Type type, int steps) {
-        int blockSize = steps * RESOLUTION_MS;
-        Long key = toTimeSeriesPoint(timestampMs, steps);
-        DataPoint result = new DataPoint().type(type).blockSize(blockSize)
-                .timestamp(key.longValue());
-
-        long _key = key.longValue();
-        for (int i = 0; i < steps; i++) {
-            DataPoint _temp = get(_key);
-            result.add(_temp);
-            _key += RESOLUTION_MS;
+        if (steps < 1) {
+            steps = 1;
         }
-        return result;
+        long blockSize = steps * (long) RESOLUTION_MS;
+        long key = toTimeSeriesPoint(timestampMs, steps);
+        LongSeries series = getLongSeries(key, key + blockSize - 1, steps, type, null);
+        DataPoint result = series.size() > 0 ? series.toDataPoint(0, type) : null;
+        return result != null && result.type() != Type.NONE ? result
+                : new DataPoint().type(type).blockSize(blockSize).timestamp(key);
     }
 
     /**
@@ -205,28 +428,45 @@ public abstract class AbstractCounter implements ICounter {
      * Gets all data points in range [{@code timestampStartMs},
      * {@code timestampEndMs}).
      * 
+     * <p>
+     * As of 0.7.1, this is an adapter over
+     * {@link #readAllInRange(long, long, LongSeries)}, which is what
+     * sub-classes implement.
+     * </p>
+     * 
      * @param timestampStartMs
      * @param timestampEndMs
      * @return
      * @since 0.3.2
      */
     protected DataPoint[] getAllInRange(long timestampStartMs, long timestampEndMs) {
-        SortedSet<DataPoint> result = new TreeSet<DataPoint>(new Comparator<DataPoint>() {
-            @Override
-            public int compare(DataPoint block1, DataPoint block2) {
-                return Longs.compare(block1.timestamp(), block2.timestamp());
+        return getLongSeries(timestampStartMs, timestampEndMs, 1, Type.SUM, null).toDataPoints();
+    }
+
+    /**
+     * Reads data points in range [{@code keyStart}, {@code keyEnd}] and
+     * aggregates the ones that have a value into a series (see
+     * {@link LongSeries#accumulate(long, long)}).
+     * 
+     * <p>
+     * This default implementation calls {@link #get(long)} for each data point,
+     * sub-classes override it with a native range read.
+     * </p>
+     * 
+     * @param keyStart
+     *            timestamp of the first data point (aligned)
+     * @param keyEnd
+     *            timestamp of the last data point (aligned, inclusive)
+     * @param result
+     * @since 0.7.1
+     */
+    protected void readAllInRange(long keyStart, long keyEnd, LongSeries result) {
+        for (long key = keyStart; key <= keyEnd; key += RESOLUTION_MS) {
+            DataPoint dp = get(key);
+            if (dp.type() != Type.NONE) {
+                result.accumulate(key, dp.value());
             }
-        });
-        long keyStart = toTimeSeriesPoint(timestampStartMs);
-        long keyEnd = toTimeSeriesPoint(timestampEndMs);
-        if (keyEnd == timestampStartMs) {
-            keyEnd = toTimeSeriesPoint(timestampEndMs - 1);
         }
-        for (long timestamp = keyStart, _end = keyEnd; timestamp <= _end; timestamp += RESOLUTION_MS) {
-            DataPoint block = get(timestamp);
-            result.add(block);
-        }
-        return result.toArray(DataPoint.EMPTY_ARR);
     }
 
     /**
@@ -243,43 +483,269 @@ public abstract class AbstractCounter implements ICounter {
     @Override
     public DataPoint[] getSeries(long timestampStartMs, long timestampEndMs, int steps,
             DataPoint.Type type) {
-        DataPoint[] origin = getAllInRange(timestampStartMs, timestampEndMs);
+        return getLongSeries(timestampStartMs, timestampEndMs, steps, type, null).toDataPoints();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public LongSeries getLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type) {
+        return getLongSeries(timestampStartMs, timestampEndMs, steps, type, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * With {@code steps == 1}, data points are of type {@link Type#SUM}
+     * whatever {@code type} is.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public LongSeries getLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type, LongSeries result) {
+        ICounterMetrics metrics = getMetrics();
+        if (!metrics.isEnabled()) {
+            return fillLongSeries(timestampStartMs, timestampEndMs, steps, type, result);
+        }
+        long startNs = System.nanoTime();
+        result = fillLongSeries(timestampStartMs, timestampEndMs, steps, type, result);
+        recordRangeRead(metrics, startNs, result);
+        return result;
+    }
 
+    private static void recordRangeRead(ICounterMetrics metrics, long startNs,
+            LongSeries result) {
+        metrics.recordLatency(Operation.RANGE, System.nanoTime() - startNs);
+        metrics.recordPointsRead(result.totalCount(), result.size());
+    }
+
+    /**
+     * Reads a series, see {@link #getLongSeries(long, long, int, Type, LongSeries)}
+     * (which also records metrics).
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param result
+     * @return
+     * @since 0.7.1
+     */
+    LongSeries fillLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type, LongSeries result) {
+        if (result == null) {
+            result = new LongSeries();
+        }
+        for (RangeRead read : planLongSeries(timestampStartMs, timestampEndMs, steps, type,
+                result)) {
+            if (read.steps > 1
+                    && readRollupsInRange(read.steps, read.keyStart, read.keyEnd, result)) {
+                continue;
+            }
+            readAllInRange(read.keyStart, read.lastKey(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Shapes a series for a time range and plans the reads that fill it.
+     * 
+     * <p>
+     * {@code result} is reset to the data points of the range. Returned reads
+     * are aggregated into it, in any order: a rollup read that cannot be
+     * served from rollups is served by reading 1-second data points of
+     * [{@link RangeRead#keyStart}, {@link RangeRead#lastKey()}] instead.
+     * </p>
+     * 
+     * <p>
+     * Used by {@link #getLongSeries(long, long, int, Type, LongSeries)} and by
+     * factories that read many counters at once (see
+     * {@link AbstractCounterFactory#getLongSeries(java.util.Collection, long, long, int, Type)}).
+     * </p>
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param result
+     * @return
+     * @since 0.7.1
+     */
+    protected List<RangeRead> planLongSeries(long timestampStartMs, long timestampEndMs,
+            int steps, DataPoint.Type type, LongSeries result) {
         if (steps < 1) {
             steps = 1;
         }
-        if (steps == 1) {
-            return origin;
+        long blockSize = steps * (long) RESOLUTION_MS;
+        long keyStart = toTimeSeriesPoint(timestampStartMs);
+        long keyEnd = toTimeSeriesPoint(timestampEndMs);
+        if (keyEnd == timestampStartMs) {
+            keyEnd = toTimeSeriesPoint(timestampEndMs - 1);
+        }
+        if (keyEnd < keyStart) {
+            result.reset(keyStart, blockSize, 0, type);
+            return Collections.emptyList();
         }
 
-        int n = origin.length / steps;
-        if (n * steps < origin.length) {
-            n++;
+        if (steps > 1 && type == Type.SUM && rollupSteps.length > 0) {
+            List<RangeRead> reads = planRollupReads(keyStart, keyEnd, steps, result);
+            if (reads != null) {
+                return reads;
+            }
+        }
+
+        int numPoints = (int) ((keyEnd - keyStart) / RESOLUTION_MS) + 1;
+        result.reset(keyStart, blockSize, (numPoints + steps - 1) / steps,
+                steps == 1 ? Type.SUM : type);
+        return Collections.singletonList(new RangeRead(1, keyStart, keyEnd));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Each chunk is read with
+     * {@link #readStreamChunk(long, long, int, Type, LongSeries)} over
+     * {@link #getStreamChunkSize()} data points (rounded down to whole
+     * {@code steps}, at least one), into the same {@link LongSeries}. Each
+     * chunk is timed as a range read if metrics are enabled.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public void streamSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type, ISeriesConsumer consumer) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long keyStart = toTimeSeriesPoint(timestampStartMs);
+        long keyEnd = toTimeSeriesPoint(timestampEndMs);
+        if (keyEnd == timestampStartMs) {
+            keyEnd = toTimeSeriesPoint(timestampEndMs - 1);
         }
-        DataPoint[] result = new DataPoint[n];
-
-        int orgIndex = 0;
-        int blockSize = steps * RESOLUTION_MS;
-        for (DataPoint org : origin) {
-            int resultIndex = orgIndex / steps;
-            DataPoint block = result[resultIndex];
-            if (block == null) {
-                long t = org.timestamp();
-                /* as of 0.5.0, the two following lines are commented out! */
-                // long delta = t % blockSize;
-                // t -= delta;
-                block = new DataPoint(DataPoint.Type.NONE, t, 0, blockSize);
-                result[resultIndex] = block;
+        int blocksPerChunk = Math.max(1, getStreamChunkSize() / steps);
+        long chunkSpan = blocksPerChunk * (steps * (long) RESOLUTION_MS);
+        long keyEndExclusive = keyEnd + RESOLUTION_MS;
+        LongSeries chunk = new LongSeries(blocksPerChunk);
+        ICounterMetrics metrics = getMetrics();
+        for (long from = keyStart; from < keyEndExclusive; from += chunkSpan) {
+            long to = Math.min(from + chunkSpan, keyEndExclusive);
+            if (metrics.isEnabled()) {
+                long startNs = System.nanoTime();
+                readStreamChunk(from, to - 1, steps, type, chunk);
+                recordRangeRead(metrics, startNs, chunk);
+            } else {
+                readStreamChunk(from, to - 1, steps, type, chunk);
             }
-            if (block.type() == DataPoint.Type.NONE && org.type() != DataPoint.Type.NONE) {
-                block.type(type);
+            if (!consumer.consume(chunk)) {
+                return;
             }
-            block.add(org);
+        }
+    }
 
-            orgIndex++;
+    /**
+     * Reads a chunk of a streamed series (see
+     * {@link #streamSeries(long, long, int, Type, ISeriesConsumer)}).
+     * 
+     * <p>
+     * This implementation reads the chunk the same way as
+     * {@link #getLongSeries(long, long, int, Type, LongSeries)}; sub-classes
+     * that cache reads may override it to bypass their caches.
+     * </p>
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param chunk
+     * @since 0.7.1
+     */
+    protected void readStreamChunk(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type, LongSeries chunk) {
+        fillLongSeries(timestampStartMs, timestampEndMs, steps, type, chunk);
+    }
+
+    /**
+     * Reads rollup data points of a tier and aggregates them into a series.
+     * 
+     * <p>
+     * Sub-classes that maintain rollups override this method, the default
+     * implementation returns {@code false}.
+     * </p>
+     * 
+     * @param steps
+     *            the rollup tier, one of {@link #getRollupSteps()}
+     * @param keyStart
+     *            timestamp of the first rollup data point, aligned to the tier
+     * @param keyEnd
+     *            timestamp of the last rollup data point (inclusive), aligned to
+     *            the tier
+     * @param result
+     *            series the rollup data points that have a value are
+     *            aggregated into (see {@link LongSeries#accumulate(long, long)})
+     * @return {@code false} if rollups are not available
+     * @since 0.7.1
+     */
+    protected boolean readRollupsInRange(int steps, long keyStart, long keyEnd,
+            LongSeries result) {
+        return false;
+    }
+
+    /**
+     * Plans a {@link Type#SUM} series from rollups.
+     * 
+     * <p>
+     * The range is covered by blocks of the coarsest usable tier, the remainder
+     * by blocks of finer tiers, then by 1-second data points.
+     * </p>
+     * 
+     * @param keyStart
+     * @param keyEnd
+     * @param steps
+     * @param result
+     * @return {@code null} if no tier fits {@code steps} and the range
+     * @since 0.7.1
+     */
+    private List<RangeRead> planRollupReads(long keyStart, long keyEnd, int steps,
+            LongSeries result) {
+        // coarsest tier that evenly divides steps and to which the range start
+        // is aligned
+        int tier = rollupSteps.length - 1;
+        while (tier >= 0 && (steps % rollupSteps[tier] != 0
+                || keyStart % (rollupSteps[tier] * (long) RESOLUTION_MS) != 0)) {
+            tier--;
+        }
+        if (tier < 0) {
+            return null;
         }
 
-        return result;
+        long blockSize = steps * (long) RESOLUTION_MS;
+        long keyEndExclusive = keyEnd + RESOLUTION_MS;
+        int n = (int) ((keyEndExclusive - keyStart + blockSize - 1) / blockSize);
+        result.reset(keyStart, blockSize, n, Type.SUM);
+
+        List<RangeRead> reads = new ArrayList<>(tier + 2);
+        long from = keyStart;
+        for (; tier >= 0 && from < keyEndExclusive; tier--) {
+            long tierSize = rollupSteps[tier] * (long) RESOLUTION_MS;
+            long to = from + (keyEndExclusive - from) / tierSize * tierSize;
+            if (to > from) {
+                reads.add(new RangeRead(rollupSteps[tier], from, to - tierSize));
+                from = to;
+            }
+        }
+        if (from < keyEndExclusive) {
+            reads.add(new RangeRead(1, from, keyEnd));
+        }
+        return reads;
     }
 
     /**
@@ -314,6 +780,34 @@ public abstract class AbstractCounter implements ICounter {
         if (steps < 1) {
             steps = 1;
         }
+        long[] range = lastNRange(n, steps);
+        return getSeries(range[0], range[1], steps, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public LongSeries getLastNLongSeries(int n, int steps, DataPoint.Type type,
+            LongSeries result) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long[] range = lastNRange(n, steps);
+        return getLongSeries(range[0], range[1], steps, type, result);
+    }
+
+    /**
+     * Calculates time range [start, end) of the last N data points.
+     * 
+     * @param n
+     * @param steps
+     * @return
+     * @since 0.7.1
+     */
+    static long[] lastNRange(int n, int steps) {
         if (n < 1) {
             n = 1;
         }
@@ -331,11 +825,10 @@ public abstract class AbstractCounter implements ICounter {
             now.set(Calendar.HOUR_OF_DAY, 0);
         }
         long timestampStart = now.getTimeInMillis();
-        return getSeries(timestampStart, currentTimestamp + 1, steps, type);
         /* as of 0.5.0: timestampStart is no longer rounded */
         // int blockSize = RESOLUTION_MS * steps;
         // long delta = currentTimestamp % blockSize;
         // long timestampStart = currentTimestamp - delta - (n - 1) * blockSize;
-        // return getSeries(timestampStart, currentTimestamp + 1, steps, type);
+        return new long[] { timestampStart, currentTimestamp + 1 };
     }
 }
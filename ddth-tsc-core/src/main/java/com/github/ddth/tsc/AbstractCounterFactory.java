@@ -1,13 +1,27 @@
 package com.github.ddth.tsc;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.github.ddth.tsc.internal.NonPinningLoadingCache;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * Abstract implementation of {@link ICounterFactory}.
@@ -17,7 +31,421 @@ import com.google.common.cache.RemovalNotification;
  */
 public abstract class AbstractCounterFactory implements ICounterFactory {
 
-    private LoadingCache<String, ICounter> counterCache;
+    /**
+     * Default max number of asynchronous operations in flight.
+     * 
+     * @since 0.7.1
+     */
+    public final static int DEFAULT_ASYNC_MAX_IN_FLIGHT = 1024;
+
+    /**
+     * Default max time values of distribution counters are accumulated
+     * locally.
+     * 
+     * @since 0.7.1
+     */
+    public final static long DEFAULT_SKETCH_FLUSH_INTERVAL_MS = 1000;
+
+    private NonPinningLoadingCache<ICounter> counterCache;
+    private NonPinningLoadingCache<IDistributionCounter> distributionCounterCache;
+    private NonPinningLoadingCache<IUniqueCounter> uniqueCounterCache;
+    private int[] rollupSteps;
+    private double sketchRelativeAccuracy = DistributionSketch.DEFAULT_RELATIVE_ACCURACY;
+    private int sketchMaxNumBins = DistributionSketch.DEFAULT_MAX_NUM_BINS;
+    private long sketchFlushIntervalMs = DEFAULT_SKETCH_FLUSH_INTERVAL_MS;
+    private ScheduledExecutorService sketchFlushExecutor;
+    private int hllPrecision = HyperLogLog.DEFAULT_PRECISION;
+    private volatile ICounterMetrics metrics = ICounterMetrics.NOOP;
+    private volatile int asyncMaxInFlight = DEFAULT_ASYNC_MAX_IN_FLIGHT;
+    private int asyncNumThreads = Runtime.getRuntime().availableProcessors();
+    private final AtomicInteger asyncInFlight = new AtomicInteger();
+    private volatile Executor asyncExecutor;
+    private boolean myOwnAsyncExecutor = false;
+    private boolean virtualThreads = false;
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     * 
+     * @return {@code null} if the JVM does not support virtual threads (Java
+     *         20 and older)
+     * @since 0.7.1
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Is virtual-thread execution mode enabled?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Enables/Disables virtual-thread execution mode (default {@code false}),
+     * for applications that call counters from (many) virtual threads.
+     * 
+     * <p>
+     * Blocking operations never hold a monitor across backend I/O, so they do
+     * not pin the carrier thread of a virtual thread in either mode. In
+     * virtual-thread mode:
+     * </p>
+     * <ul>
+     * <li>the executor created by {@link #getAsyncExecutor()} starts a virtual
+     * thread per operation instead of running operations on
+     * {@link #getAsyncNumThreads()} platform threads; concurrency stays bounded
+     * by {@link #getAsyncMaxInFlight()}. On JVMs without virtual threads, the
+     * platform thread pool is used.</li>
+     * <li>backends with connection pools size the pools they create for many
+     * concurrent callers, not for the number of processors (e.g.
+     * {@link com.github.ddth.tsc.redis.RedisCounterFactory#setMaxConnections(int)}).</li>
+     * </ul>
+     * 
+     * @param virtualThreads
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Metrics hook of this factory and its counters.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public ICounterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics hook of this factory and its counters (default
+     * {@link ICounterMetrics#NOOP}), e.g. a
+     * {@link com.github.ddth.tsc.metrics.CounterMetrics}.
+     * 
+     * @param metrics
+     *            {@code null} to disable metrics
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setMetrics(ICounterMetrics metrics) {
+        this.metrics = metrics != null ? metrics : ICounterMetrics.NOOP;
+        return this;
+    }
+
+    /**
+     * Max number of asynchronous operations in flight (see
+     * {@link IAsyncCounter}).
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getAsyncMaxInFlight() {
+        return asyncMaxInFlight;
+    }
+
+    /**
+     * Sets max number of asynchronous operations in flight (default
+     * {@link #DEFAULT_ASYNC_MAX_IN_FLIGHT}): operations over the limit fail
+     * immediately instead of queueing.
+     * 
+     * @param asyncMaxInFlight
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setAsyncMaxInFlight(int asyncMaxInFlight) {
+        this.asyncMaxInFlight = asyncMaxInFlight;
+        return this;
+    }
+
+    /**
+     * Number of asynchronous operations currently in flight.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getAsyncInFlight() {
+        return asyncInFlight.get();
+    }
+
+    /**
+     * Number of threads of the executor created to run blocking operations of
+     * {@link IAsyncCounter}s.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getAsyncNumThreads() {
+        return asyncNumThreads;
+    }
+
+    /**
+     * Sets number of threads of the executor created to run blocking
+     * operations of {@link IAsyncCounter}s (default: number of processors),
+     * if no executor is set with {@link #setAsyncExecutor(Executor)}.
+     * 
+     * @param asyncNumThreads
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setAsyncNumThreads(int asyncNumThreads) {
+        this.asyncNumThreads = asyncNumThreads;
+        return this;
+    }
+
+    /**
+     * Executor that runs blocking operations of {@link IAsyncCounter}s, and
+     * completions of non-blocking ones. Created on first use if not set.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public Executor getAsyncExecutor() {
+        Executor executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    executor = virtualThreads ? newVirtualThreadExecutor() : null;
+                    if (executor == null) {
+                        final String threadNamePrefix = getClass().getSimpleName() + "-async-";
+                        final AtomicInteger threadCount = new AtomicInteger();
+                        executor = Executors.newFixedThreadPool(Math.max(1, asyncNumThreads),
+                                new ThreadFactory() {
+                                    @Override
+                                    public Thread newThread(Runnable r) {
+                                        Thread t = new Thread(r, threadNamePrefix
+                                                + threadCount.incrementAndGet());
+                                        t.setDaemon(true);
+                                        return t;
+                                    }
+                                });
+                    }
+                    asyncExecutor = executor;
+                    myOwnAsyncExecutor = true;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Sets executor that runs blocking operations of {@link IAsyncCounter}s
+     * (it is not shut down by {@link #destroy()}).
+     * 
+     * @param asyncExecutor
+     * @return
+     * @since 0.7.1
+     */
+    public synchronized AbstractCounterFactory setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        myOwnAsyncExecutor = false;
+        return this;
+    }
+
+    /**
+     * Takes a slot for an asynchronous operation.
+     * 
+     * @return {@code false} if {@link #getAsyncMaxInFlight()} operations are
+     *         in flight
+     * @since 0.7.1
+     */
+    boolean tryAcquireAsyncSlot() {
+        if (asyncInFlight.incrementAndGet() > asyncMaxInFlight) {
+            asyncInFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a slot taken by {@link #tryAcquireAsyncSlot()}.
+     * 
+     * @since 0.7.1
+     */
+    void releaseAsyncSlot() {
+        asyncInFlight.decrementAndGet();
+    }
+
+    /**
+     * Rollup tiers applied to newly created counters ({@code null} or empty if
+     * rollups are disabled).
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int[] getRollupSteps() {
+        return rollupSteps != null ? rollupSteps.clone() : null;
+    }
+
+    /**
+     * Sets rollup tiers applied to newly created counters (default: disabled).
+     * See {@link AbstractCounter#setRollupSteps(int...)}.
+     * 
+     * @param rollupSteps
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setRollupSteps(int... rollupSteps) {
+        this.rollupSteps = rollupSteps != null ? rollupSteps.clone() : null;
+        return this;
+    }
+
+    /**
+     * Relative accuracy of sketches of newly created distribution counters.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public double getSketchRelativeAccuracy() {
+        return sketchRelativeAccuracy;
+    }
+
+    /**
+     * Sets relative accuracy of sketches of newly created distribution counters
+     * (default {@link DistributionSketch#DEFAULT_RELATIVE_ACCURACY}). Sketches
+     * already stored with another accuracy cannot be merged with new ones.
+     * 
+     * @param sketchRelativeAccuracy
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setSketchRelativeAccuracy(double sketchRelativeAccuracy) {
+        this.sketchRelativeAccuracy = sketchRelativeAccuracy;
+        return this;
+    }
+
+    /**
+     * Max number of bins per sketch of newly created distribution counters.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getSketchMaxNumBins() {
+        return sketchMaxNumBins;
+    }
+
+    /**
+     * Sets max number of bins per sketch of newly created distribution counters
+     * (default {@link DistributionSketch#DEFAULT_MAX_NUM_BINS}), which bounds
+     * memory/storage per data point.
+     * 
+     * @param sketchMaxNumBins
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setSketchMaxNumBins(int sketchMaxNumBins) {
+        this.sketchMaxNumBins = sketchMaxNumBins;
+        return this;
+    }
+
+    /**
+     * Max time values of newly created distribution counters are accumulated
+     * locally before being merged into the backend.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getSketchFlushIntervalMs() {
+        return sketchFlushIntervalMs;
+    }
+
+    /**
+     * Sets max time values of newly created distribution counters are
+     * accumulated locally before being merged into the backend (default
+     * {@link #DEFAULT_SKETCH_FLUSH_INTERVAL_MS}, {@code 0} merges each value
+     * into the backend). See
+     * {@link AbstractDistributionCounter#setFlushIntervalMs(long)}. Ignored by
+     * in-memory counters.
+     * 
+     * @param sketchFlushIntervalMs
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setSketchFlushIntervalMs(long sketchFlushIntervalMs) {
+        this.sketchFlushIntervalMs = sketchFlushIntervalMs;
+        return this;
+    }
+
+    /**
+     * Starts the periodic flush of distribution counters (see
+     * {@link AbstractDistributionCounter#flush()}), if not started yet.
+     * 
+     * @since 0.7.1
+     */
+    synchronized void scheduleSketchFlushes() {
+        if (sketchFlushExecutor != null || sketchFlushIntervalMs <= 0) {
+            return;
+        }
+        sketchFlushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r,
+                        AbstractCounterFactory.class.getSimpleName() + "-sketchflush");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        sketchFlushExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushDistributionCounters();
+            }
+        }, sketchFlushIntervalMs, sketchFlushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes locally accumulated values of all distribution counters.
+     * 
+     * @since 0.7.1
+     */
+    public void flushDistributionCounters() {
+        NonPinningLoadingCache<IDistributionCounter> cache = distributionCounterCache;
+        if (cache == null) {
+            return;
+        }
+        for (IDistributionCounter counter : cache.getCache().asMap().values()) {
+            if (counter instanceof AbstractDistributionCounter) {
+                ((AbstractDistributionCounter) counter).flush();
+            }
+        }
+    }
+
+    /**
+     * Precision of register sets of newly created unique counters.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getHllPrecision() {
+        return hllPrecision;
+    }
+
+    /**
+     * Sets precision of register sets of newly created unique counters
+     * (default {@link HyperLogLog#DEFAULT_PRECISION}), which fixes their
+     * memory/storage per data point ({@code 2^precision} bytes) and accuracy.
+     * Register sets already stored with another precision cannot be united
+     * with new ones. Ignored by backends with native HyperLogLogs (Redis).
+     * 
+     * @param hllPrecision
+     * @return
+     * @since 0.7.1
+     */
+    public AbstractCounterFactory setHllPrecision(int hllPrecision) {
+        this.hllPrecision = hllPrecision;
+        return this;
+    }
 
     /**
      * Initializing method.
@@ -27,20 +455,79 @@ public abstract class AbstractCounterFactory implements ICounterFactory {
      */
     public AbstractCounterFactory init() {
         int numProcessors = Runtime.getRuntime().availableProcessors();
-        counterCache = CacheBuilder.newBuilder().concurrencyLevel(Math.max(numProcessors, 8))
+        Cache<String, ICounter> counters = CacheBuilder.newBuilder()
+                .concurrencyLevel(Math.max(numProcessors, 8))
                 .expireAfterAccess(3600, TimeUnit.SECONDS)
                 .removalListener(new RemovalListener<String, ICounter>() {
                     @Override
                     public void onRemoval(RemovalNotification<String, ICounter> notification) {
+                        if (notification.wasEvicted()) {
+                            metrics.recordCounterEviction(notification.getKey());
+                        }
                         ICounter counter = notification.getValue();
                         destroyCounter(counter);
                     }
-                }).build(new CacheLoader<String, ICounter>() {
+                }).build();
+        counterCache = new NonPinningLoadingCache<ICounter>(counters) {
+            @Override
+            protected ICounter load(String key) {
+                return createCounter(key);
+            }
+
+            @Override
+            protected void discard(ICounter counter) {
+                destroyCounter(counter);
+            }
+        };
+        Cache<String, IDistributionCounter> distributionCounters = CacheBuilder.newBuilder()
+                .concurrencyLevel(Math.max(numProcessors, 8))
+                .expireAfterAccess(3600, TimeUnit.SECONDS)
+                .removalListener(new RemovalListener<String, IDistributionCounter>() {
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<String, IDistributionCounter> notification) {
+                        if (notification.wasEvicted()) {
+                            metrics.recordCounterEviction(notification.getKey());
+                        }
+                        destroyDistributionCounter(notification.getValue());
+                    }
+                }).build();
+        distributionCounterCache = new NonPinningLoadingCache<IDistributionCounter>(
+                distributionCounters) {
+            @Override
+            protected IDistributionCounter load(String key) {
+                return createDistributionCounter(key);
+            }
+
+            @Override
+            protected void discard(IDistributionCounter counter) {
+                destroyDistributionCounter(counter);
+            }
+        };
+        Cache<String, IUniqueCounter> uniqueCounters = CacheBuilder.newBuilder()
+                .concurrencyLevel(Math.max(numProcessors, 8))
+                .expireAfterAccess(3600, TimeUnit.SECONDS)
+                .removalListener(new RemovalListener<String, IUniqueCounter>() {
                     @Override
-                    public ICounter load(String key) throws Exception {
-                        return createCounter(key);
+                    public void onRemoval(
+                            RemovalNotification<String, IUniqueCounter> notification) {
+                        if (notification.wasEvicted()) {
+                            metrics.recordCounterEviction(notification.getKey());
+                        }
+                        destroyUniqueCounter(notification.getValue());
                     }
-                });
+                }).build();
+        uniqueCounterCache = new NonPinningLoadingCache<IUniqueCounter>(uniqueCounters) {
+            @Override
+            protected IUniqueCounter load(String key) {
+                return createUniqueCounter(key);
+            }
+
+            @Override
+            protected void discard(IUniqueCounter counter) {
+                destroyUniqueCounter(counter);
+            }
+        };
         return this;
     }
 
@@ -50,10 +537,36 @@ public abstract class AbstractCounterFactory implements ICounterFactory {
      * @since 0.1.1
      */
     public void destroy() {
+        synchronized (this) {
+            if (sketchFlushExecutor != null) {
+                sketchFlushExecutor.shutdown();
+                try {
+                    sketchFlushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sketchFlushExecutor = null;
+            }
+        }
         if (counterCache != null) {
             counterCache.invalidateAll();
             counterCache = null;
         }
+        if (distributionCounterCache != null) {
+            distributionCounterCache.invalidateAll();
+            distributionCounterCache = null;
+        }
+        if (uniqueCounterCache != null) {
+            uniqueCounterCache.invalidateAll();
+            uniqueCounterCache = null;
+        }
+        synchronized (this) {
+            if (asyncExecutor instanceof ExecutorService && myOwnAsyncExecutor) {
+                ((ExecutorService) asyncExecutor).shutdown();
+            }
+            asyncExecutor = null;
+            myOwnAsyncExecutor = false;
+        }
     }
 
     /**
@@ -68,6 +581,272 @@ public abstract class AbstractCounterFactory implements ICounterFactory {
         }
     }
 
+    /**
+     * Gets a counter instance only if it has already been created.
+     * 
+     * @param name
+     * @return {@code null} if not created yet
+     * @since 0.7.1
+     */
+    ICounter getCounterIfPresent(String name) {
+        NonPinningLoadingCache<ICounter> cache = counterCache;
+        return cache != null ? cache.getCache().getIfPresent(name) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The returned object is a lightweight view: it looks up the counter with
+     * {@link #getCounter(String)} on each operation.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public IAsyncCounter getAsyncCounter(String name) {
+        return createAsyncCounter(name);
+    }
+
+    /**
+     * Creates a non-blocking view of a counter. This implementation returns an
+     * {@link AsyncCounter}, which runs blocking operations on
+     * {@link #getAsyncExecutor()}; sub-classes override it to use their
+     * backend's asynchronous API.
+     * 
+     * @param name
+     * @return
+     * @since 0.7.1
+     */
+    protected IAsyncCounter createAsyncCounter(String name) {
+        return new AsyncCounter(this, name);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public void addAll(Map<String, Long> values) {
+        addAll(values, System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * This implementation adds to counters one after another. Sub-classes
+     * override it to send all writes at once (and time it as
+     * {@link Operation#MULTI_ADD}).
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public void addAll(Map<String, Long> values, long timestampMs) {
+        ICounterMetrics metrics = this.metrics;
+        long startNs = metrics.isEnabled() ? System.nanoTime() : 0;
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            getCounter(entry.getKey()).add(timestampMs, entry.getValue().longValue());
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordLatency(Operation.MULTI_ADD, System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public Map<String, DataPoint[]> getSeries(Collection<String> counterNames,
+            long timestampStartMs, long timestampEndMs, int steps, DataPoint.Type type) {
+        Map<String, DataPoint[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, LongSeries> entry : getLongSeries(counterNames, timestampStartMs,
+                timestampEndMs, steps, type).entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toDataPoints());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public Map<String, LongSeries> getLongSeries(Collection<String> counterNames,
+            long timestampStartMs, long timestampEndMs, int steps, DataPoint.Type type) {
+        Map<String, LongSeries> result = new LinkedHashMap<>();
+        List<ICounter> counters = new ArrayList<>(counterNames.size());
+        List<LongSeries> series = new ArrayList<>(counterNames.size());
+        for (String name : counterNames) {
+            if (!result.containsKey(name)) {
+                LongSeries s = new LongSeries();
+                result.put(name, s);
+                counters.add(getCounter(name));
+                series.add(s);
+            }
+        }
+        ICounterMetrics metrics = this.metrics;
+        if (!metrics.isEnabled()) {
+            readLongSeries(counters, timestampStartMs, timestampEndMs, steps, type, series);
+            return result;
+        }
+        long startNs = System.nanoTime();
+        readLongSeries(counters, timestampStartMs, timestampEndMs, steps, type, series);
+        metrics.recordLatency(Operation.MULTI_RANGE, System.nanoTime() - startNs);
+        for (LongSeries s : series) {
+            metrics.recordPointsRead(s.totalCount(), s.size());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public Map<String, DataPoint[]> getLastN(Collection<String> counterNames, int n, int steps,
+            DataPoint.Type type) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long[] range = AbstractCounter.lastNRange(n, steps);
+        return getSeries(counterNames, range[0], range[1], steps, type);
+    }
+
+    /**
+     * Reads series of many counters.
+     * 
+     * <p>
+     * This implementation reads counters one after another. Sub-classes
+     * override it to plan the reads of all counters together (see
+     * {@link AbstractCounter#planLongSeries(long, long, int, DataPoint.Type, LongSeries)}).
+     * </p>
+     * 
+     * @param counters
+     *            counters created by this factory
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param results
+     *            series of the counters, same order as {@code counters}
+     * @since 0.7.1
+     */
+    protected void readLongSeries(List<ICounter> counters, long timestampStartMs,
+            long timestampEndMs, int steps, DataPoint.Type type, List<LongSeries> results) {
+        for (int i = 0, n = counters.size(); i < n; i++) {
+            ICounter counter = counters.get(i);
+            if (counter instanceof AbstractCounter) {
+                // metrics are recorded for the whole multi-counter read
+                ((AbstractCounter) counter).fillLongSeries(timestampStartMs, timestampEndMs, steps,
+                        type, results.get(i));
+            } else {
+                counter.getLongSeries(timestampStartMs, timestampEndMs, steps, type,
+                        results.get(i));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public IDistributionCounter getDistributionCounter(String name) {
+        try {
+            return distributionCounterCache.get(name);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Creates a new distribution counter instance.
+     * 
+     * <p>
+     * This implementation throws {@link UnsupportedOperationException}.
+     * </p>
+     * 
+     * @param name
+     * @return
+     * @since 0.7.1
+     */
+    protected IDistributionCounter createDistributionCounter(String name) {
+        throw new UnsupportedOperationException(
+                getClass().getName() + " does not support distribution counters!");
+    }
+
+    /**
+     * Destroys a distribution counter removed from the cache.
+     * 
+     * @param counter
+     * @since 0.7.1
+     */
+    protected void destroyDistributionCounter(IDistributionCounter counter) {
+        try {
+            if (counter instanceof AbstractDistributionCounter) {
+                ((AbstractDistributionCounter) counter).destroy();
+            }
+        } catch (Exception e) {
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public IUniqueCounter getUniqueCounter(String name) {
+        try {
+            return uniqueCounterCache.get(name);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Creates a new unique counter instance.
+     * 
+     * <p>
+     * This implementation throws {@link UnsupportedOperationException}.
+     * </p>
+     * 
+     * @param name
+     * @return
+     * @since 0.7.1
+     */
+    protected IUniqueCounter createUniqueCounter(String name) {
+        throw new UnsupportedOperationException(
+                getClass().getName() + " does not support unique counters!");
+    }
+
+    /**
+     * Destroys a unique counter removed from the cache.
+     * 
+     * @param counter
+     * @since 0.7.1
+     */
+    protected void destroyUniqueCounter(IUniqueCounter counter) {
+        try {
+            if (counter instanceof AbstractUniqueCounter) {
+                ((AbstractUniqueCounter) counter).destroy();
+            }
+        } catch (Exception e) {
+        }
+    }
+
     /**
      * Creates a new counter instance.
      * 
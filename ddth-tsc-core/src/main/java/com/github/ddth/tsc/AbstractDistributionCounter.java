@@ -0,0 +1,389 @@
+package com.github.ddth.tsc;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.ddth.tsc.DataPoint.Type;
+
+/**
+ * Abstract implementation of {@link IDistributionCounter}.
+ * 
+ * <p>
+ * Backends cannot merge sketches server-side, a backend merge is a
+ * read-modify-write round trip. If {@link #getFlushIntervalMs()} is positive,
+ * {@code add()}s and {@code merge()}s are accumulated into local per-second
+ * sketches instead, and merged into the backend by {@link #flush()} (called
+ * periodically by the counter factory): one backend merge per data point per
+ * flush, whatever the number of recorded values. Reads of this counter see
+ * the locally pending values; other processes see them once flushed. A data
+ * point being flushed is in neither place until its backend merge returns:
+ * reads wait for it.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class AbstractDistributionCounter implements IDistributionCounter {
+
+    protected final static int RESOLUTION_MS = ICounter.RESOLUTION_MS;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(AbstractDistributionCounter.class);
+
+    private AbstractCounterFactory counterFactory;
+    private String name;
+    private double relativeAccuracy = DistributionSketch.DEFAULT_RELATIVE_ACCURACY;
+    private int maxNumBins = DistributionSketch.DEFAULT_MAX_NUM_BINS;
+    private long flushIntervalMs = 0;
+    /* locally accumulated sketches, by data point */
+    private final ConcurrentMap<Long, DistributionSketch> pending = new ConcurrentHashMap<>();
+    /*
+     * read: reads of this counter; write: the backend merge of one pending
+     * sketch. Not a monitor: merges block, virtual threads must not pin their
+     * carriers.
+     */
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    public AbstractDistributionCounter() {
+    }
+
+    public AbstractDistributionCounter(String name) {
+        setName(name);
+    }
+
+    public AbstractCounterFactory getCounterFactory() {
+        return counterFactory;
+    }
+
+    public AbstractDistributionCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        this.counterFactory = counterFactory;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public AbstractDistributionCounter setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Relative accuracy of the counter's sketches, see
+     * {@link DistributionSketch}.
+     * 
+     * @return
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public AbstractDistributionCounter setRelativeAccuracy(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+        return this;
+    }
+
+    /**
+     * Max number of bins per sketch, see {@link DistributionSketch}.
+     * 
+     * @return
+     */
+    public int getMaxNumBins() {
+        return maxNumBins;
+    }
+
+    public AbstractDistributionCounter setMaxNumBins(int maxNumBins) {
+        this.maxNumBins = maxNumBins;
+        return this;
+    }
+
+    /**
+     * Max time values are accumulated locally before being merged into the
+     * backend.
+     * 
+     * @return
+     */
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /**
+     * Sets max time values are accumulated locally before being merged into
+     * the backend (default {@code 0}: each {@code add()}/{@code merge()} is a
+     * backend merge). Must be set before {@link #init()}.
+     * 
+     * @param flushIntervalMs
+     * @return
+     */
+    public AbstractDistributionCounter setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+        return this;
+    }
+
+    /**
+     * Initializing method.
+     */
+    public void init() {
+        newSketch();
+        if (flushIntervalMs > 0 && counterFactory != null) {
+            counterFactory.scheduleSketchFlushes();
+        }
+    }
+
+    /**
+     * Destroying method. Flushes locally pending values, values that cannot be
+     * flushed are dropped.
+     */
+    public void destroy() {
+        flush();
+        if (!pending.isEmpty()) {
+            LOGGER.error("Counter [" + getName() + "] destroyed, [" + pending.size()
+                    + "] pending data point(s) dropped!");
+            pending.clear();
+        }
+    }
+
+    /**
+     * Creates an empty sketch with the counter's settings.
+     * 
+     * @return
+     */
+    public DistributionSketch newSketch() {
+        return new DistributionSketch(relativeAccuracy, maxNumBins);
+    }
+
+    protected long toTimeSeriesPoint(long timestampMs) {
+        return timestampMs - timestampMs % RESOLUTION_MS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(long value) {
+        add(System.currentTimeMillis(), value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(long timestampMs, long value) {
+        if (flushIntervalMs > 0) {
+            Long key = toTimeSeriesPoint(timestampMs);
+            for (;;) {
+                DistributionSketch sketch = pendingSketch(key);
+                synchronized (sketch) {
+                    if (pending.get(key) == sketch) {
+                        sketch.add(value);
+                        return;
+                    }
+                }
+            }
+        } else {
+            write(toTimeSeriesPoint(timestampMs), newSketch().add(value));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void merge(long timestampMs, DistributionSketch values) {
+        if (flushIntervalMs > 0) {
+            mergePending(toTimeSeriesPoint(timestampMs), values);
+        } else {
+            write(toTimeSeriesPoint(timestampMs), values);
+        }
+    }
+
+    private DistributionSketch pendingSketch(Long key) {
+        DistributionSketch sketch = pending.get(key);
+        if (sketch == null) {
+            DistributionSketch newSketch = newSketch();
+            sketch = pending.putIfAbsent(key, newSketch);
+            if (sketch == null) {
+                sketch = newSketch;
+            }
+        }
+        return sketch;
+    }
+
+    private void mergePending(Long key, DistributionSketch values) {
+        for (;;) {
+            DistributionSketch sketch = pendingSketch(key);
+            synchronized (sketch) {
+                if (pending.get(key) == sketch) {
+                    sketch.merge(values);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges locally accumulated values into the backend, one merge per data
+     * point.
+     * 
+     * <p>
+     * A data point whose merge fails is put back and retried with the next
+     * flush.
+     * </p>
+     */
+    public void flush() {
+        Exception error = null;
+        int numFailed = 0;
+        for (Long key : new ArrayList<Long>(pending.keySet())) {
+            DistributionSketch sketch = pending.get(key);
+            if (sketch == null) {
+                continue;
+            }
+            flushLock.writeLock().lock();
+            try {
+                synchronized (sketch) {
+                    // no more writes to this sketch from now on
+                    if (!pending.remove(key, sketch)) {
+                        continue;
+                    }
+                }
+                try {
+                    write(key.longValue(), sketch);
+                } catch (Exception e) {
+                    error = error != null ? error : e;
+                    numFailed++;
+                    mergePending(key, sketch);
+                }
+            } finally {
+                flushLock.writeLock().unlock();
+            }
+        }
+        if (error != null) {
+            LOGGER.warn("Cannot flush [" + numFailed + "] data point(s) of counter [" + getName()
+                    + "], will retry: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Merges values into the stored sketch of a data point.
+     * 
+     * @param key
+     *            timestamp of the data point (aligned)
+     * @param values
+     *            not modified
+     */
+    protected abstract void write(long key, DistributionSketch values);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataPoint get(long timestampMs) {
+        long key = toTimeSeriesPoint(timestampMs);
+        return getSeries(key, key + RESOLUTION_MS, 1)[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataPoint[] getSeries(long timestampStartMs, long timestampEndMs, int steps) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long blockSize = steps * (long) RESOLUTION_MS;
+        long keyStart = toTimeSeriesPoint(timestampStartMs);
+        long keyEnd = toTimeSeriesPoint(timestampEndMs);
+        if (keyEnd == timestampEndMs) {
+            keyEnd -= RESOLUTION_MS;
+        }
+        if (keyEnd < keyStart) {
+            return DataPoint.EMPTY_ARR;
+        }
+        int numPoints = (int) ((keyEnd - keyStart) / RESOLUTION_MS) + 1;
+        DataPoint[] result = new DataPoint[(numPoints + steps - 1) / steps];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new DataPoint(Type.NONE, keyStart + i * blockSize, 0, blockSize);
+        }
+        // a sketch being flushed is in neither the backend nor pending
+        flushLock.readLock().lock();
+        try {
+            readAllInRange(keyStart, keyEnd, result);
+            for (Map.Entry<Long, DistributionSketch> e : pending.entrySet()) {
+                long key = e.getKey().longValue();
+                if (key >= keyStart && key <= keyEnd) {
+                    DistributionSketch sketch = e.getValue();
+                    synchronized (sketch) {
+                        merge(result, key, sketch);
+                    }
+                }
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataPoint[] getLastN(int n, int steps) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long[] range = AbstractCounter.lastNRange(n, steps);
+        return getSeries(range[0], range[1], steps);
+    }
+
+    /**
+     * Reads sketches of data points in range [{@code keyStart},
+     * {@code keyEnd}] and merges them into a series (see
+     * {@link #merge(DataPoint[], long, DistributionSketch)}).
+     * 
+     * @param keyStart
+     *            timestamp of the first data point (aligned)
+     * @param keyEnd
+     *            timestamp of the last data point (aligned, inclusive)
+     * @param result
+     *            blocks of the series, {@code result[0]} starts at
+     *            {@code keyStart}
+     */
+    protected abstract void readAllInRange(long keyStart, long keyEnd, DataPoint[] result);
+
+    /**
+     * Merges a data point's sketch into the block of a series that covers it.
+     * 
+     * @param result
+     * @param key
+     *            timestamp of the data point
+     * @param sketch
+     *            the data point's sketch, not modified
+     */
+    protected static void merge(DataPoint[] result, long key, DistributionSketch sketch) {
+        if (result.length == 0 || sketch == null || sketch.isEmpty()) {
+            return;
+        }
+        long index = (key - result[0].timestamp()) / result[0].blockSize();
+        if (index < 0 || index >= result.length) {
+            return;
+        }
+        DataPoint block = result[(int) index];
+        if (block.sketch() == null) {
+            block.type(Type.SUM).sketch(sketch.copy());
+        } else {
+            block.sketch().merge(sketch);
+        }
+        block.set(block.sketch().count());
+    }
+}
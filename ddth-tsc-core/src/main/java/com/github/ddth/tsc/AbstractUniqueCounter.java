@@ -0,0 +1,214 @@
+package com.github.ddth.tsc;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import com.github.ddth.tsc.DataPoint.Type;
+
+/**
+ * Abstract implementation of {@link IUniqueCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class AbstractUniqueCounter implements IUniqueCounter {
+
+    protected final static int RESOLUTION_MS = ICounter.RESOLUTION_MS;
+
+    private AbstractCounterFactory counterFactory;
+    private String name;
+    private int precision = HyperLogLog.DEFAULT_PRECISION;
+
+    public AbstractUniqueCounter() {
+    }
+
+    public AbstractUniqueCounter(String name) {
+        setName(name);
+    }
+
+    public AbstractCounterFactory getCounterFactory() {
+        return counterFactory;
+    }
+
+    public AbstractUniqueCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        this.counterFactory = counterFactory;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public AbstractUniqueCounter setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Precision of the counter's register sets, see {@link HyperLogLog}.
+     * 
+     * @return
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    public AbstractUniqueCounter setPrecision(int precision) {
+        this.precision = precision;
+        return this;
+    }
+
+    /**
+     * Initializing method.
+     */
+    public void init() {
+        newHyperLogLog();
+    }
+
+    /**
+     * Destroying method.
+     */
+    public void destroy() {
+        // EMPTY
+    }
+
+    /**
+     * Creates an empty register set with the counter's precision.
+     * 
+     * @return
+     */
+    public HyperLogLog newHyperLogLog() {
+        return new HyperLogLog(precision);
+    }
+
+    protected long toTimeSeriesPoint(long timestampMs) {
+        return timestampMs - timestampMs % RESOLUTION_MS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(String item) {
+        add(System.currentTimeMillis(), item);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(long timestampMs, String item) {
+        addAll(timestampMs, Collections.singletonList(item));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public abstract void addAll(long timestampMs, Collection<String> items);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataPoint get(long timestampMs) {
+        long key = toTimeSeriesPoint(timestampMs);
+        return getSeries(key, key + RESOLUTION_MS, 1)[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataPoint[] getSeries(long timestampStartMs, long timestampEndMs, int steps) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long blockSize = steps * (long) RESOLUTION_MS;
+        long keyStart = toTimeSeriesPoint(timestampStartMs);
+        long keyEnd = toTimeSeriesPoint(timestampEndMs);
+        if (keyEnd == timestampEndMs) {
+            keyEnd -= RESOLUTION_MS;
+        }
+        if (keyEnd < keyStart) {
+            return DataPoint.EMPTY_ARR;
+        }
+        int numPoints = (int) ((keyEnd - keyStart) / RESOLUTION_MS) + 1;
+        DataPoint[] result = new DataPoint[(numPoints + steps - 1) / steps];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new DataPoint(Type.NONE, keyStart + i * blockSize, 0, blockSize);
+        }
+        readAllInRange(keyStart, keyEnd, result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataPoint[] getLastN(int n, int steps) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long[] range = AbstractCounter.lastNRange(n, steps);
+        return getSeries(range[0], range[1], steps);
+    }
+
+    /**
+     * Counts distinct items of data points in range [{@code keyStart},
+     * {@code keyEnd}], per block of a series: a block with items gets type
+     * {@link Type#SUM} and the estimated number of distinct items as value.
+     * 
+     * @param keyStart
+     *            timestamp of the first data point (aligned)
+     * @param keyEnd
+     *            timestamp of the last data point (aligned, inclusive)
+     * @param result
+     *            blocks of the series, {@code result[0]} starts at
+     *            {@code keyStart}
+     */
+    protected abstract void readAllInRange(long keyStart, long keyEnd, DataPoint[] result);
+
+    /**
+     * Unites a data point's register set into the union of the block that
+     * covers it (see {@link #setCardinalities(DataPoint[], HyperLogLog[])}).
+     * 
+     * @param result
+     * @param unions
+     *            one (lazily created) union per block of {@code result}
+     * @param key
+     *            timestamp of the data point
+     * @param registers
+     *            the data point's register set, not modified
+     */
+    protected static void merge(DataPoint[] result, HyperLogLog[] unions, long key,
+            HyperLogLog registers) {
+        if (result.length == 0 || registers == null) {
+            return;
+        }
+        long index = (key - result[0].timestamp()) / result[0].blockSize();
+        if (index < 0 || index >= result.length) {
+            return;
+        }
+        int i = (int) index;
+        unions[i] = unions[i] == null ? registers.copy() : unions[i].merge(registers);
+    }
+
+    /**
+     * Sets values of blocks from their unions.
+     * 
+     * @param result
+     * @param unions
+     */
+    protected static void setCardinalities(DataPoint[] result, HyperLogLog[] unions) {
+        for (int i = 0; i < result.length; i++) {
+            if (unions[i] != null && !unions[i].isEmpty()) {
+                result[i].type(Type.SUM).set(unions[i].cardinality());
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.ddth.tsc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import com.github.ddth.tsc.DataPoint.Type;
+
+/**
+ * {@link IAsyncCounter} that runs the operations of a (blocking)
+ * {@link ICounter} on the factory's async executor (see
+ * {@link AbstractCounterFactory#getAsyncExecutor()}).
+ * 
+ * <p>
+ * Operations in flight are bounded by
+ * {@link AbstractCounterFactory#getAsyncMaxInFlight()}, shared by all async
+ * counters of the factory. Sub-classes override operations their backend can
+ * execute without blocking, using {@link #tryAcquire(CompletableFuture)} and
+ * {@link #release()} to stay within the bound.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class AsyncCounter implements IAsyncCounter {
+
+    private final AbstractCounterFactory counterFactory;
+    private final String name;
+
+    public AsyncCounter(AbstractCounterFactory counterFactory, String name) {
+        this.counterFactory = counterFactory;
+        this.name = name;
+    }
+
+    public AbstractCounterFactory getCounterFactory() {
+        return counterFactory;
+    }
+
+    /**
+     * The (blocking) counter this object is a view of.
+     * 
+     * @return
+     */
+    protected ICounter getCounter() {
+        return counterFactory.getCounter(name);
+    }
+
+    /**
+     * The (blocking) counter this object is a view of, only if the factory
+     * has already created it (creating a counter may block).
+     * 
+     * @return {@code null} if not created yet
+     * @since 0.7.1
+     */
+    protected ICounter getCounterIfPresent() {
+        return counterFactory.getCounterIfPresent(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes a slot for an operation.
+     * 
+     * @param future
+     *            future of the operation, failed with a
+     *            {@link RejectedExecutionException} if no slot is available
+     * @return {@code true} if a slot was taken (to be released with
+     *         {@link #release()} when the operation completes)
+     */
+    protected boolean tryAcquire(CompletableFuture<?> future) {
+        if (counterFactory.tryAcquireAsyncSlot()) {
+            return true;
+        }
+        future.completeExceptionally(new RejectedExecutionException(
+                "Max number of async operations in flight reached ["
+                        + counterFactory.getAsyncMaxInFlight() + "]!"));
+        return false;
+    }
+
+    /**
+     * Releases a slot taken by {@link #tryAcquire(CompletableFuture)}.
+     */
+    protected void release() {
+        counterFactory.releaseAsyncSlot();
+    }
+
+    /**
+     * Runs a blocking operation on the factory's async executor.
+     * 
+     * @param operation
+     * @return
+     */
+    protected <T> CompletableFuture<T> supplyAsync(final Supplier<T> operation) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (!tryAcquire(result)) {
+            return result;
+        }
+        try {
+            counterFactory.getAsyncExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.complete(operation.get());
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    } finally {
+                        release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> add(long value) {
+        return add(System.currentTimeMillis(), value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> add(final long timestampMs, final long value) {
+        return supplyAsync(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                getCounter().add(timestampMs, value);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> set(final long timestampMs, final long value) {
+        return supplyAsync(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                getCounter().set(timestampMs, value);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<DataPoint> get(final long timestampMs) {
+        return supplyAsync(new Supplier<DataPoint>() {
+            @Override
+            public DataPoint get() {
+                return getCounter().get(timestampMs);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<DataPoint[]> getSeries(final long timestampStartMs,
+            final long timestampEndMs, final int steps, final Type type) {
+        return supplyAsync(new Supplier<DataPoint[]>() {
+            @Override
+            public DataPoint[] get() {
+                return getCounter().getSeries(timestampStartMs, timestampEndMs, steps, type);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * This implementation calls
+     * {@link #getSeries(long, long, int, DataPoint.Type)} over the time range
+     * of the last N data points.
+     * </p>
+     */
+    @Override
+    public CompletableFuture<DataPoint[]> getLastN(int n, int steps, Type type) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        long[] range = AbstractCounter.lastNRange(n, steps);
+        return getSeries(range[0], range[1], steps, type);
+    }
+}
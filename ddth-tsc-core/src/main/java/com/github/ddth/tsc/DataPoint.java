@@ -18,6 +18,14 @@ import java.io.Serializable;
  * <li>{@code type}: how the values are aggregated. See {@link Type}.</li>
  * </ul>
  * 
+ * <p>
+ * Since 0.7.1, a data point tracks sum, number, min and max of its aggregated
+ * values together, whatever its type: adding a value does not depend on the
+ * type, which only selects what {@link #value()} returns. All aggregations are
+ * available from one data point with {@link #value(Type)}, and averages are
+ * weighted by the number of aggregated values.
+ * </p>
+ * 
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 0.1.0
  */
@@ -46,9 +54,11 @@ public class DataPoint implements Serializable, Cloneable {
     }
 
     private long timestamp;
-    private long value, numPoints;
+    /* value: sum of aggregated values */
+    private long value, numPoints, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
     private long blockSize;
     private Type type = Type.SUM;
+    private DistributionSketch sketch;
 
     public DataPoint() {
     }
@@ -66,6 +76,30 @@ public class DataPoint implements Serializable, Cloneable {
         blockSize(blockSizeMs);
     }
 
+    /**
+     * Creates a data point with aggregated values.
+     *
+     * @param type
+     * @param timestampMs
+     * @param blockSizeMs
+     * @param sum
+     * @param numPoints
+     *            number of aggregated values
+     * @param min
+     * @param max
+     * @since 0.7.1
+     */
+    DataPoint(Type type, long timestampMs, long blockSizeMs, long sum, long numPoints, long min,
+            long max) {
+        this.type = type;
+        this.timestamp = timestampMs;
+        this.blockSize = blockSizeMs;
+        this.value = sum;
+        this.numPoints = numPoints;
+        this.min = min;
+        this.max = max;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -87,6 +121,10 @@ public class DataPoint implements Serializable, Cloneable {
     /**
      * Setter
      * 
+     * <p>
+     * Changing the type empties the data point.
+     * </p>
+     * 
      * @param type
      * @return
      * @since 0.3.0
@@ -94,22 +132,10 @@ public class DataPoint implements Serializable, Cloneable {
     public DataPoint type(Type type) {
         if (this.type != type) {
             this.type = type;
-            switch (type) {
-            case AVERAGE:
-            case SUM:
-                this.value = 0;
-                break;
-            case MAXIMUM:
-                this.value = Long.MIN_VALUE;
-                break;
-            case MINIMUM:
-                this.value = Long.MAX_VALUE;
-                break;
-            default:
-                this.value = 0;
-                break;
-            }
+            this.value = 0;
             this.numPoints = 0;
+            this.min = Long.MAX_VALUE;
+            this.max = Long.MIN_VALUE;
         }
         return this;
     }
@@ -154,14 +180,58 @@ public class DataPoint implements Serializable, Cloneable {
         return this;
     }
 
+    /**
+     * Distribution of values captured by the data point, if the data point
+     * comes from an {@link IDistributionCounter}.
+     * 
+     * @return {@code null} if the data point does not carry a distribution
+     * @since 0.7.1
+     */
+    public DistributionSketch sketch() {
+        return sketch;
+    }
+
+    /**
+     * Setter
+     * 
+     * @param sketch
+     * @return
+     * @since 0.7.1
+     */
+    public DataPoint sketch(DistributionSketch sketch) {
+        this.sketch = sketch;
+        return this;
+    }
+
+    /**
+     * Estimates the {@code q}-quantile of values captured by the data point,
+     * see {@link DistributionSketch#quantile(double)}.
+     * 
+     * @param q
+     *            in [0, 1], e.g. {@code 0.99} for the 99th percentile
+     * @return {@code 0} if the data point does not carry a distribution
+     * @since 0.7.1
+     */
+    public long quantile(double q) {
+        return sketch != null ? sketch.quantile(q) : 0;
+    }
+
     private void _cloneFrom(DataPoint another) {
         value = another.value;
         numPoints = another.numPoints;
+        min = another.min;
+        max = another.max;
         type = another.type;
     }
 
     /**
-     * Adds value from another data point.
+     * Adds values from another data point.
+     * 
+     * <p>
+     * Since 0.7.1, all aggregated values of the other data point are added (its
+     * sum, number of values, min and max), so that an {@link Type#AVERAGE}
+     * over data points is weighted by their numbers of values.
+     * </p>
      * 
      * @param another
      * @return
@@ -172,7 +242,10 @@ public class DataPoint implements Serializable, Cloneable {
             _cloneFrom(another);
         } else {
             if (another.type != Type.NONE) {
-                add(another.value());
+                value += another.value;
+                numPoints += another.numPoints;
+                min = Math.min(min, another.min);
+                max = Math.max(max, another.max);
             }
         }
 
@@ -183,29 +256,19 @@ public class DataPoint implements Serializable, Cloneable {
      * Adds a value to the data point.
      * 
      * <p>
-     * How the value is actually added depends on type of the data point. See
-     * {@link Type}.
+     * The value is aggregated into sum, number, min and max of the data
+     * point's values; what {@link #value()} returns depends on type of the data
+     * point. See {@link Type}.
      * </p>
      * 
      * @param value
      * @return
      */
     public DataPoint add(long value) {
-        switch (type) {
-        case MINIMUM:
-            this.value = Math.min(this.value, value);
-            break;
-        case MAXIMUM:
-            this.value = Math.max(this.value, value);
-            break;
-        case AVERAGE:
-        case SUM:
-            this.value += value;
-            this.numPoints++;
-            break;
-        default:
-            throw new IllegalStateException("Unknown type [" + type + "]!");
-        }
+        this.value += value;
+        this.numPoints++;
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
         return this;
     }
 
@@ -237,6 +300,8 @@ public class DataPoint implements Serializable, Cloneable {
     public DataPoint set(long value) {
         this.value = value;
         this.numPoints = 1;
+        this.min = value;
+        this.max = value;
         return this;
     }
 
@@ -250,17 +315,53 @@ public class DataPoint implements Serializable, Cloneable {
      * @return
      */
     public long value() {
+        return value(type);
+    }
+
+    /**
+     * Gets the data point value, aggregated as another type.
+     * 
+     * @param type
+     * @return {@code 0} if the data point has no aggregated value
+     * @since 0.7.1
+     */
+    public long value(Type type) {
+        if (numPoints == 0) {
+            return 0;
+        }
         switch (type) {
         case AVERAGE:
-            return numPoints != 0 ? value / numPoints : 0;
-        case NONE:
-            return 0;
+            return value / numPoints;
         case MAXIMUM:
+            return max;
         case MINIMUM:
+            return min;
         case SUM:
             return value;
+        case NONE:
+            return 0;
         default:
             throw new IllegalStateException("Unknown type [" + type + "]!");
         }
     }
+
+    /**
+     * Number of values aggregated into the data point.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long count() {
+        return type != Type.NONE ? numPoints : 0;
+    }
+
+    /**
+     * Exact average of values aggregated into the data point.
+     * 
+     * @return {@code 0} if the data point has no aggregated value
+     * @since 0.7.1
+     */
+    public double average() {
+        return type != Type.NONE && numPoints != 0 ? (double) value / numPoints : 0;
+    }
 }
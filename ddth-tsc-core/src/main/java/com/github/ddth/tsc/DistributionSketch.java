@@ -0,0 +1,379 @@
+package com.github.ddth.tsc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A mergeable sketch of the distribution of {@code long} values, for quantile
+ * queries with a bounded relative error.
+ *
+ * <p>
+ * Values are counted in logarithmic bins (as in DDSketch): bin {@code i} holds
+ * values in ({@code gamma^(i-1)}, {@code gamma^i}] where
+ * {@code gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy)}, so that a
+ * quantile is estimated within {@code relativeAccuracy} of the actual value.
+ * Values below {@code 1} (the sketch is meant for non-negative values, such as
+ * latencies) are counted in a dedicated "zero" bin. Exact count, sum, min and
+ * max are also kept.
+ * </p>
+ *
+ * <p>
+ * Memory is bounded: at most {@code maxNumBins} consecutive bins are kept; when
+ * values spread wider, the lowest bins are collapsed into one (their values
+ * lose accuracy, high quantiles are not affected).
+ * </p>
+ *
+ * <p>
+ * Sketches are merged by adding bin counts, which is exact: merging per-second
+ * sketches gives the same sketch as recording all values into one. Sketches
+ * can only be merged if they have the same relative accuracy.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class DistributionSketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final static double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public final static int DEFAULT_MAX_NUM_BINS = 2048;
+
+    private final static byte ENCODING_VERSION = 1;
+    private final static int INITIAL_NUM_BINS = 32;
+    private final static long[] EMPTY = new long[0];
+
+    private final double relativeAccuracy, gamma, logGamma;
+    private final int maxNumBins;
+
+    /* bins[i] counts values of bin (offset + i); bins [lo, hi] may be non-empty */
+    private long[] bins = EMPTY;
+    private int offset, lo = 0, hi = -1;
+    private long zeroCount, count, sum, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+    public DistributionSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_NUM_BINS);
+    }
+
+    /**
+     * @param relativeAccuracy
+     *            in (0, 1), e.g. {@code 0.01} for 1%
+     * @param maxNumBins
+     *            max number of bins kept
+     */
+    public DistributionSketch(double relativeAccuracy, int maxNumBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1) || maxNumBins < 1) {
+            throw new IllegalArgumentException("Invalid relative accuracy [" + relativeAccuracy
+                    + "] or max number of bins [" + maxNumBins + "]!");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxNumBins = maxNumBins;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public int getMaxNumBins() {
+        return maxNumBins;
+    }
+
+    /**
+     * Number of recorded values.
+     *
+     * @return
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Sum of recorded values.
+     *
+     * @return
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * Smallest recorded value ({@code 0} if empty).
+     *
+     * @return
+     */
+    public long min() {
+        return count > 0 ? min : 0;
+    }
+
+    /**
+     * Largest recorded value ({@code 0} if empty).
+     *
+     * @return
+     */
+    public long max() {
+        return count > 0 ? max : 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     * @return
+     */
+    public DistributionSketch add(long value) {
+        return add(value, 1);
+    }
+
+    /**
+     * Records a value {@code n} times.
+     *
+     * @param value
+     * @param n
+     * @return
+     */
+    public DistributionSketch add(long value, long n) {
+        if (n < 1) {
+            return this;
+        }
+        if (value < 1) {
+            zeroCount += n;
+        } else {
+            addToBin((int) Math.ceil(Math.log(value) / logGamma), n);
+        }
+        count += n;
+        sum += value * n;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        return this;
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param another
+     * @return
+     * @throws IllegalArgumentException
+     *             if the sketches do not have the same relative accuracy
+     */
+    public DistributionSketch merge(DistributionSketch another) {
+        if (another.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketch of relative accuracy ["
+                    + another.relativeAccuracy + "] into one of [" + relativeAccuracy + "]!");
+        }
+        if (another.count == 0) {
+            return this;
+        }
+        for (int i = another.lo; i <= another.hi; i++) {
+            long n = another.bins[i - another.offset];
+            if (n != 0) {
+                addToBin(i, n);
+            }
+        }
+        zeroCount += another.zeroCount;
+        count += another.count;
+        sum += another.sum;
+        min = Math.min(min, another.min);
+        max = Math.max(max, another.max);
+        return this;
+    }
+
+    private void addToBin(int index, long n) {
+        if (lo > hi) {
+            if (bins.length == 0) {
+                bins = new long[Math.min(INITIAL_NUM_BINS, maxNumBins)];
+            }
+            offset = index - bins.length / 2;
+            lo = hi = index;
+            bins[index - offset] += n;
+            return;
+        }
+
+        int newLo = Math.min(lo, index), newHi = Math.max(hi, index);
+        long collapsed = 0;
+        if (newHi - newLo + 1 > maxNumBins) {
+            // keep the highest bins, the lowest ones are collapsed into the
+            // lowest kept one
+            int keepLo = newHi - maxNumBins + 1;
+            for (int i = lo, end = Math.min(hi, keepLo - 1); i <= end; i++) {
+                collapsed += bins[i - offset];
+                bins[i - offset] = 0;
+            }
+            if (index < keepLo) {
+                collapsed += n;
+                n = 0;
+                index = keepLo;
+            }
+            newLo = keepLo;
+        }
+
+        if (newLo < offset || newHi >= offset + bins.length) {
+            int span = newHi - newLo + 1;
+            int newLength = Math.max(span, Math.min(bins.length * 2, maxNumBins));
+            int newOffset = newLo - (newLength - span) / 2;
+            long[] newBins = new long[newLength];
+            for (int i = Math.max(lo, newLo); i <= hi; i++) {
+                newBins[i - newOffset] = bins[i - offset];
+            }
+            bins = newBins;
+            offset = newOffset;
+        }
+        lo = newLo;
+        hi = newHi;
+        bins[newLo - offset] += collapsed;
+        bins[index - offset] += n;
+    }
+
+    /**
+     * Estimates the {@code q}-quantile of recorded values.
+     *
+     * @param q
+     *            in [0, 1], e.g. {@code 0.99} for the 99th percentile
+     * @return {@code 0} if the sketch is empty
+     */
+    public long quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        long rank = (long) (q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return clamp(0);
+        }
+        for (int i = lo; i <= hi; i++) {
+            seen += bins[i - offset];
+            if (rank < seen) {
+                return clamp(Math.round(2 * Math.pow(gamma, i) / (gamma + 1)));
+            }
+        }
+        return max;
+    }
+
+    private long clamp(long value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Creates a copy of this sketch.
+     *
+     * @return
+     */
+    public DistributionSketch copy() {
+        DistributionSketch result = new DistributionSketch(relativeAccuracy, maxNumBins);
+        return result.merge(this);
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Encodes the sketch: a small header followed by one variable-length count
+     * per bin of the non-empty range.
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + Math.max(0, hi - lo + 1));
+        out.write(ENCODING_VERSION);
+        writeVarLong(out, Double.doubleToLongBits(relativeAccuracy));
+        writeVarLong(out, maxNumBins);
+        writeVarLong(out, zigZag(count));
+        writeVarLong(out, zigZag(sum));
+        writeVarLong(out, zigZag(min));
+        writeVarLong(out, zigZag(max));
+        writeVarLong(out, zigZag(zeroCount));
+        int numBins = count > zeroCount ? hi - lo + 1 : 0;
+        writeVarLong(out, numBins);
+        if (numBins > 0) {
+            writeVarLong(out, zigZag(lo));
+            for (int i = lo; i <= hi; i++) {
+                writeVarLong(out, bins[i - offset]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a sketch encoded by {@link #toBytes()}.
+     *
+     * @param data
+     * @return
+     * @throws IllegalArgumentException
+     *             if the data is not a valid encoded sketch
+     */
+    public static DistributionSketch fromBytes(byte[] data) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            byte version = buf.get();
+            if (version != ENCODING_VERSION) {
+                throw new IllegalArgumentException("Unsupported encoding version: " + version);
+            }
+            DistributionSketch result = new DistributionSketch(
+                    Double.longBitsToDouble(readVarLong(buf)), (int) readVarLong(buf));
+            result.count = unZigZag(readVarLong(buf));
+            result.sum = unZigZag(readVarLong(buf));
+            result.min = unZigZag(readVarLong(buf));
+            result.max = unZigZag(readVarLong(buf));
+            result.zeroCount = unZigZag(readVarLong(buf));
+            int numBins = (int) readVarLong(buf);
+            if (numBins > 0) {
+                int lo = (int) unZigZag(readVarLong(buf));
+                result.bins = new long[numBins];
+                result.offset = result.lo = lo;
+                result.hi = lo + numBins - 1;
+                for (int i = 0; i < numBins; i++) {
+                    result.bins[i] = readVarLong(buf);
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Invalid encoded sketch!", e);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buf) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length number!");
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.ddth.tsc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A HyperLogLog register set, estimating the number of distinct items added
+ * to it.
+ *
+ * <p>
+ * Items are hashed to 64 bits (Murmur3); the first {@code precision} bits
+ * select one of {@code 2^precision} registers, which keeps the max rank (number
+ * of leading zeros + 1) of the remaining bits. Memory is fixed (one byte per
+ * register) no matter how many items are added; the standard error of the
+ * estimate is about {@code 1.04 / sqrt(2^precision)}, e.g. 1.6% with the
+ * default precision of 12 (4096 registers).
+ * </p>
+ *
+ * <p>
+ * Register sets are merged by taking the max of each register, which gives
+ * the register set of the union of items. Register sets can only be merged if
+ * they have the same precision.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final static int DEFAULT_PRECISION = 12;
+    public final static int MIN_PRECISION = 4;
+    public final static int MAX_PRECISION = 16;
+
+    private final static byte ENCODING_VERSION = 1;
+    private final static byte ENCODING_DENSE = 0, ENCODING_SPARSE = 1;
+    private final static HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision
+     *            number of bits selecting a register, in [{@link #MIN_PRECISION},
+     *            {@link #MAX_PRECISION}]
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid precision [" + precision + "]!");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Hashes an item.
+     *
+     * @param item
+     * @return
+     */
+    public static long hash(String item) {
+        return HASH_FUNCTION.hashString(item, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Adds an item.
+     *
+     * @param item
+     * @return {@code true} if a register changed
+     */
+    public boolean add(String item) {
+        return addHash(hash(item));
+    }
+
+    /**
+     * Adds an item, given its hash (see {@link #hash(String)}).
+     *
+     * @param hash
+     * @return {@code true} if a register changed
+     */
+    public boolean addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit caps the rank at 64 - precision + 1
+        long w = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merges another register set into this one.
+     *
+     * @param another
+     * @return
+     * @throws IllegalArgumentException
+     *             if the register sets do not have the same precision
+     */
+    public HyperLogLog merge(HyperLogLog another) {
+        if (another.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge register set of precision ["
+                    + another.precision + "] into one of [" + precision + "]!");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (another.registers[i] > registers[i]) {
+                registers[i] = another.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        for (byte r : registers) {
+            if (r != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the number of distinct items added.
+     *
+     * @return
+     */
+    public long cardinality() {
+        int m = registers.length, zeros = 0;
+        double sum = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673
+                : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // small range correction: linear counting
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Creates a copy of this register set.
+     *
+     * @return
+     */
+    public HyperLogLog copy() {
+        HyperLogLog result = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, result.registers, 0, registers.length);
+        return result;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Encodes the register set: all registers, or only the non-zero ones
+     * (index delta + value) if that is shorter.
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        int numNonZero = 0;
+        for (byte r : registers) {
+            if (r != 0) {
+                numNonZero++;
+            }
+        }
+        boolean isSparse = numNonZero * 3 < registers.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                4 + (isSparse ? numNonZero * 3 : registers.length));
+        out.write(ENCODING_VERSION);
+        out.write(precision);
+        if (isSparse) {
+            out.write(ENCODING_SPARSE);
+            writeVarInt(out, numNonZero);
+            for (int i = 0, last = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    writeVarInt(out, i - last);
+                    out.write(registers[i]);
+                    last = i;
+                }
+            }
+        } else {
+            out.write(ENCODING_DENSE);
+            out.write(registers, 0, registers.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a register set encoded by {@link #toBytes()}.
+     *
+     * @param data
+     * @return
+     * @throws IllegalArgumentException
+     *             if the data is not a valid encoded register set
+     */
+    public static HyperLogLog fromBytes(byte[] data) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            byte version = buf.get();
+            if (version != ENCODING_VERSION) {
+                throw new IllegalArgumentException("Unsupported encoding version: " + version);
+            }
+            HyperLogLog result = new HyperLogLog(buf.get());
+            byte encoding = buf.get();
+            if (encoding == ENCODING_SPARSE) {
+                for (int n = readVarInt(buf), i = 0; n > 0; n--) {
+                    i += readVarInt(buf);
+                    result.registers[i] = buf.get();
+                }
+            } else {
+                buf.get(result.registers);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Invalid encoded register set!", e);
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buf) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buf.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length number!");
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.ddth.tsc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking view of a time series counter (see
+ * {@link ICounterFactory#getAsyncCounter(String)}).
+ * 
+ * <p>
+ * Methods never block the calling thread on backend I/O: they return a future
+ * that completes when the operation does. The number of operations in flight
+ * per factory is bounded (see
+ * {@link AbstractCounterFactory#setAsyncMaxInFlight(int)}): when the limit is
+ * reached, the returned future fails immediately with a
+ * {@link RejectedExecutionException}.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public interface IAsyncCounter {
+
+    /**
+     * Gets counter name.
+     * 
+     * @return
+     */
+    public String getName();
+
+    /**
+     * Adds a value to data point at {@code System.currentTimeMillis()}.
+     * 
+     * @param value
+     * @return
+     */
+    public CompletableFuture<Void> add(long value);
+
+    /**
+     * Adds a value to data point at {@code timestampMs}.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @param value
+     * @return
+     */
+    public CompletableFuture<Void> add(long timestampMs, long value);
+
+    /**
+     * Sets a value to data point at {@code timestampMs}.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @param value
+     * @return
+     */
+    public CompletableFuture<Void> set(long timestampMs, long value);
+
+    /**
+     * Gets a single data point (see {@link ICounter#get(long)}).
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @return
+     */
+    public CompletableFuture<DataPoint> get(long timestampMs);
+
+    /**
+     * Gets a series of data points (see
+     * {@link ICounter#getSeries(long, long, int, DataPoint.Type)}).
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @return
+     */
+    public CompletableFuture<DataPoint[]> getSeries(long timestampStartMs, long timestampEndMs,
+            int steps, DataPoint.Type type);
+
+    /**
+     * Gets last N data points (see
+     * {@link ICounter#getLastN(int, int, DataPoint.Type)}).
+     * 
+     * @param n
+     * @param steps
+     * @param type
+     * @return
+     */
+    public CompletableFuture<DataPoint[]> getLastN(int n, int steps, DataPoint.Type type);
+}
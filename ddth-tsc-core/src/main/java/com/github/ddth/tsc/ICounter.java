@@ -199,6 +199,80 @@ public interface ICounter {
     public DataPoint[] getSeries(long timestampStartMs, long timestampEndMs, int steps,
             DataPoint.Type type);
 
+    /**
+     * Gets time series data in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps, as primitive arrays.
+     * 
+     * <p>
+     * Same as {@link #getSeries(long, long, int, DataPoint.Type)}, without
+     * allocating one {@link DataPoint} per data point.
+     * </p>
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @return
+     * @since 0.7.1
+     */
+    public LongSeries getLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type);
+
+    /**
+     * Gets time series data in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps, into a caller-supplied
+     * series.
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param result
+     *            series to be reset and filled (its buffers are reused if large
+     *            enough), {@code null} to allocate a new one
+     * @return the filled series
+     * @since 0.7.1
+     */
+    public LongSeries getLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type, LongSeries result);
+
+    /**
+     * Streams time series data in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps.
+     * 
+     * <p>
+     * The series is read and handed to the consumer chunk by chunk, in
+     * timestamp order; each chunk holds whole data points (of {@code steps}
+     * steps). Chunks are read lazily, one after another, so that memory usage
+     * does not depend on the range length.
+     * </p>
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param consumer
+     * @since 0.7.1
+     */
+    public void streamSeries(long timestampStartMs, long timestampEndMs, int steps,
+            DataPoint.Type type, ISeriesConsumer consumer);
+
+    /**
+     * Gets last N data points with specified steps, into a caller-supplied
+     * series.
+     * 
+     * @param n
+     * @param steps
+     * @param type
+     * @param result
+     *            series to be reset and filled, {@code null} to allocate a new
+     *            one
+     * @return the filled series
+     * @since 0.7.1
+     * @see #getLastN(int, int, DataPoint.Type)
+     */
+    public LongSeries getLastNLongSeries(int n, int steps, DataPoint.Type type, LongSeries result);
+
     /**
      * Gets last N data points with step of 1.
      * 
@@ -1,5 +1,8 @@
 package com.github.ddth.tsc;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Factory to create {@link ICounter} instances.
  * 
@@ -16,4 +19,123 @@ public interface ICounterFactory {
      */
     public ICounter getCounter(String name);
 
+    /**
+     * Gets or Creates a distribution counter instance.
+     * 
+     * @param name
+     * @return
+     * @throws UnsupportedOperationException
+     *             if the factory does not support distribution counters
+     * @since 0.7.1
+     */
+    public IDistributionCounter getDistributionCounter(String name);
+
+    /**
+     * Gets or Creates a unique counter instance.
+     * 
+     * @param name
+     * @return
+     * @throws UnsupportedOperationException
+     *             if the factory does not support unique counters
+     * @since 0.7.1
+     */
+    public IUniqueCounter getUniqueCounter(String name);
+
+    /**
+     * Gets a non-blocking view of a counter (see {@link IAsyncCounter}).
+     * 
+     * @param name
+     * @return
+     * @since 0.7.1
+     */
+    public IAsyncCounter getAsyncCounter(String name);
+
+    /**
+     * Adds values to many counters at {@code System.currentTimeMillis()}.
+     * 
+     * @param values
+     *            map of {counter name: value}
+     * @since 0.7.1
+     */
+    public void addAll(Map<String, Long> values);
+
+    /**
+     * Adds values to many counters at {@code timestampMs}.
+     * 
+     * <p>
+     * Same as calling {@link ICounter#add(long, long)} on each counter, but
+     * all writes are sent at once.
+     * </p>
+     * 
+     * @param values
+     *            map of {counter name: value}
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @since 0.7.1
+     */
+    public void addAll(Map<String, Long> values, long timestampMs);
+
+    /**
+     * Gets time series data of many counters in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps.
+     * 
+     * <p>
+     * Same as calling {@link ICounter#getSeries(long, long, int, DataPoint.Type)}
+     * on each counter, but all counters are read at once.
+     * </p>
+     * 
+     * @param counterNames
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @return map of {counter name: data points}, in the order of
+     *         {@code counterNames}
+     * @since 0.7.1
+     */
+    public Map<String, DataPoint[]> getSeries(Collection<String> counterNames,
+            long timestampStartMs, long timestampEndMs, int steps, DataPoint.Type type);
+
+    /**
+     * Gets time series data of many counters in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps, as primitive series.
+     * 
+     * <p>
+     * Same as calling
+     * {@link ICounter#getLongSeries(long, long, int, DataPoint.Type)} on each
+     * counter, but all counters are read at once.
+     * </p>
+     * 
+     * @param counterNames
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @return map of {counter name: series}, in the order of
+     *         {@code counterNames}
+     * @since 0.7.1
+     */
+    public Map<String, LongSeries> getLongSeries(Collection<String> counterNames,
+            long timestampStartMs, long timestampEndMs, int steps, DataPoint.Type type);
+
+    /**
+     * Gets last N data points of many counters with specified steps.
+     * 
+     * <p>
+     * Same as calling {@link ICounter#getLastN(int, int, DataPoint.Type)} on
+     * each counter, but all counters are read at once (over the same time
+     * range).
+     * </p>
+     * 
+     * @param counterNames
+     * @param n
+     * @param steps
+     * @param type
+     * @return map of {counter name: data points}, in the order of
+     *         {@code counterNames}
+     * @since 0.7.1
+     */
+    public Map<String, DataPoint[]> getLastN(Collection<String> counterNames, int n, int steps,
+            DataPoint.Type type);
+
 }
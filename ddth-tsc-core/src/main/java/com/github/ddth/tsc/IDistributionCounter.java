@@ -0,0 +1,83 @@
+package com.github.ddth.tsc;
+
+/**
+ * A time series counter that captures the distribution of recorded values
+ * (e.g. latencies): each 1-second data point holds a
+ * {@link DistributionSketch} instead of a single {@code long}.
+ * 
+ * <p>
+ * Data points returned by this counter carry their sketch (see
+ * {@link DataPoint#sketch()}, {@link DataPoint#quantile(double)}), their value
+ * is the number of recorded values. Sketches are merged when data points are
+ * aggregated over {@code steps}.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public interface IDistributionCounter {
+
+    /**
+     * Gets counter name.
+     * 
+     * @return
+     */
+    public String getName();
+
+    /**
+     * Records a value at {@code System.currentTimeMillis()}.
+     * 
+     * @param value
+     */
+    public void add(long value);
+
+    /**
+     * Records a value at {@code timestampMs}.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @param value
+     */
+    public void add(long timestampMs, long value);
+
+    /**
+     * Merges (locally pre-aggregated) values into data point at
+     * {@code timestampMs}.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @param values
+     *            must have the same relative accuracy as the counter's sketches
+     */
+    public void merge(long timestampMs, DistributionSketch values);
+
+    /**
+     * Gets a data point.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @return
+     */
+    public DataPoint get(long timestampMs);
+
+    /**
+     * Gets time series data in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps, sketches of the 1-second
+     * data points of a block are merged.
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @return
+     */
+    public DataPoint[] getSeries(long timestampStartMs, long timestampEndMs, int steps);
+
+    /**
+     * Gets last N data points with specified steps.
+     * 
+     * @param n
+     * @param steps
+     * @return
+     */
+    public DataPoint[] getLastN(int n, int steps);
+}
@@ -0,0 +1,23 @@
+package com.github.ddth.tsc;
+
+/**
+ * Receives chunks of a streamed time series, see
+ * {@link ICounter#streamSeries(long, long, int, DataPoint.Type, ISeriesConsumer)}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public interface ISeriesConsumer {
+    /**
+     * Consumes a chunk of the series.
+     * 
+     * <p>
+     * The chunk is only valid during the call: the same {@link LongSeries}
+     * instance is re-filled with the next chunk.
+     * </p>
+     * 
+     * @param chunk
+     * @return {@code false} to stop streaming
+     */
+    public boolean consume(LongSeries chunk);
+}
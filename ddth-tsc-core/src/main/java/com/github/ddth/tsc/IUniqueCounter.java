@@ -0,0 +1,83 @@
+package com.github.ddth.tsc;
+
+import java.util.Collection;
+
+/**
+ * A time series counter that counts distinct items (e.g. unique users): each
+ * 1-second data point holds a HyperLogLog register set (see
+ * {@link HyperLogLog}) instead of a single {@code long}.
+ * 
+ * <p>
+ * The value of a data point returned by this counter is the estimated number
+ * of distinct items added to it. When data points are aggregated over
+ * {@code steps}, their register sets are united: a block's value is the number
+ * of distinct items over the whole block, not the sum of its data points'.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public interface IUniqueCounter {
+
+    /**
+     * Gets counter name.
+     * 
+     * @return
+     */
+    public String getName();
+
+    /**
+     * Adds an item at {@code System.currentTimeMillis()}.
+     * 
+     * @param item
+     */
+    public void add(String item);
+
+    /**
+     * Adds an item at {@code timestampMs}.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @param item
+     */
+    public void add(long timestampMs, String item);
+
+    /**
+     * Adds many items at {@code timestampMs}.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @param items
+     */
+    public void addAll(long timestampMs, Collection<String> items);
+
+    /**
+     * Gets a data point.
+     * 
+     * @param timestampMs
+     *            UNIX timestamp in millisec
+     * @return
+     */
+    public DataPoint get(long timestampMs);
+
+    /**
+     * Gets time series data in range [{@code timestampStartMs},
+     * {@code timestampEndMs}) with specified steps, register sets of the
+     * 1-second data points of a block are united.
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @return
+     */
+    public DataPoint[] getSeries(long timestampStartMs, long timestampEndMs, int steps);
+
+    /**
+     * Gets last N data points with specified steps.
+     * 
+     * @param n
+     * @param steps
+     * @return
+     */
+    public DataPoint[] getLastN(int n, int steps);
+}
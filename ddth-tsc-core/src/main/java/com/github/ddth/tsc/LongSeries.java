@@ -0,0 +1,410 @@
+package com.github.ddth.tsc;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.github.ddth.tsc.DataPoint.Type;
+
+/**
+ * A time series held in primitive arrays.
+ *
+ * <p>
+ * Data points are evenly spaced: point {@code i} covers
+ * [{@code start + i * blockSize}, {@code start + (i + 1) * blockSize}).
+ * Sums, numbers, mins and maxes of aggregated values are held in parallel
+ * {@code long} arrays, all of them updated by each
+ * {@link #accumulateAt(int, long)} whatever the series' type; a bitmap tells
+ * which data points have a value (the others are the equivalent of
+ * {@link Type#NONE} data points).
+ * </p>
+ *
+ * <p>
+ * The series' type only selects what {@link #value(int)} returns: one read
+ * gives all aggregations (see {@link #value(int, Type)},
+ * {@link #toDataPoints(Type)}). Note that a {@link Type#SUM} series with
+ * {@code steps > 1} may be read from rollups (see
+ * {@link AbstractCounter#setRollupSteps(int...)}), whose counts, mins and
+ * maxes are those of rollup data points; read with another type to get
+ * aggregations of 1-second data points.
+ * </p>
+ *
+ * <p>
+ * A series can be reused: {@link #reset(long, long, int, Type)} keeps the
+ * backing arrays if they are large enough, so that filling the same series
+ * over and over does not allocate.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class LongSeries implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final static long[] EMPTY = new long[0];
+
+    private long start, blockSize = ICounter.RESOLUTION_MS;
+    private int size;
+    private Type type = Type.SUM;
+    /* values: sums of aggregated values */
+    private long[] values = EMPTY, counts = EMPTY, mins = EMPTY, maxs = EMPTY, presence = EMPTY;
+
+    public LongSeries() {
+    }
+
+    /**
+     * @param capacity
+     *            initial capacity (number of data points)
+     */
+    public LongSeries(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (values.length < capacity) {
+            values = new long[capacity];
+            counts = new long[capacity];
+            mins = new long[capacity];
+            maxs = new long[capacity];
+        }
+        int numWords = (capacity + 63) >>> 6;
+        if (presence.length < numWords) {
+            presence = new long[numWords];
+        }
+    }
+
+    /**
+     * Empties the series and re-shapes it.
+     *
+     * @param start
+     *            timestamp of the first data point
+     * @param blockSize
+     *            time span of a data point, in milliseconds
+     * @param size
+     *            number of data points
+     * @param type
+     *            how values falling in a data point are aggregated
+     *            ({@link Type#NONE} is treated as {@link Type#SUM})
+     * @return
+     */
+    public LongSeries reset(long start, long blockSize, int size, Type type) {
+        if (size < 0 || blockSize < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid size [" + size + "] or block size [" + blockSize + "]!");
+        }
+        ensureCapacity(size);
+        this.start = start;
+        this.blockSize = blockSize;
+        this.size = size;
+        this.type = type != null && type != Type.NONE ? type : Type.SUM;
+        Arrays.fill(values, 0, size, 0);
+        Arrays.fill(counts, 0, size, 0);
+        Arrays.fill(mins, 0, size, Long.MAX_VALUE);
+        Arrays.fill(maxs, 0, size, Long.MIN_VALUE);
+        Arrays.fill(presence, 0, (size + 63) >>> 6, 0);
+        return this;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long blockSize() {
+        return blockSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Timestamp of the {@code i}-th data point.
+     *
+     * @param i
+     * @return
+     */
+    public long timestamp(int i) {
+        return start + i * blockSize;
+    }
+
+    /**
+     * Index of the data point covering a timestamp.
+     *
+     * @param timestampMs
+     * @return the index, or {@code -1} if the timestamp is out of the series
+     */
+    public int indexOf(long timestampMs) {
+        if (timestampMs < start) {
+            return -1;
+        }
+        long index = (timestampMs - start) / blockSize;
+        return index < size ? (int) index : -1;
+    }
+
+    /**
+     * Does the {@code i}-th data point have a value?
+     *
+     * @param i
+     * @return
+     */
+    public boolean isPresent(int i) {
+        return (presence[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Value of the {@code i}-th data point ({@code 0} if it has no value).
+     *
+     * @param i
+     * @return
+     */
+    public long value(int i) {
+        return value(i, type);
+    }
+
+    /**
+     * Value of the {@code i}-th data point, aggregated as another type.
+     *
+     * @param i
+     * @param type
+     * @return {@code 0} if the data point has no value
+     */
+    public long value(int i, Type type) {
+        if (!isPresent(i)) {
+            return 0;
+        }
+        switch (type) {
+        case AVERAGE:
+            return values[i] / counts[i];
+        case MINIMUM:
+            return mins[i];
+        case MAXIMUM:
+            return maxs[i];
+        case NONE:
+            return 0;
+        default:
+            return values[i];
+        }
+    }
+
+    /**
+     * Sum of values aggregated into the {@code i}-th data point.
+     *
+     * @param i
+     * @return
+     */
+    public long sum(int i) {
+        return values[i];
+    }
+
+    /**
+     * Smallest value aggregated into the {@code i}-th data point.
+     *
+     * @param i
+     * @return {@code 0} if the data point has no value
+     */
+    public long min(int i) {
+        return isPresent(i) ? mins[i] : 0;
+    }
+
+    /**
+     * Largest value aggregated into the {@code i}-th data point.
+     *
+     * @param i
+     * @return {@code 0} if the data point has no value
+     */
+    public long max(int i) {
+        return isPresent(i) ? maxs[i] : 0;
+    }
+
+    /**
+     * Exact average of values aggregated into the {@code i}-th data point.
+     *
+     * @param i
+     * @return {@code 0} if the data point has no value
+     */
+    public double average(int i) {
+        return counts[i] != 0 ? (double) values[i] / counts[i] : 0;
+    }
+
+    /**
+     * Number of values aggregated into the {@code i}-th data point.
+     *
+     * @param i
+     * @return
+     */
+    public long count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Number of values aggregated into all data points.
+     *
+     * @return
+     */
+    public long totalCount() {
+        long result = 0;
+        for (int i = 0; i < size; i++) {
+            result += counts[i];
+        }
+        return result;
+    }
+
+    /**
+     * Aggregates a value into the data point covering a timestamp; ignored if
+     * the timestamp is out of the series.
+     *
+     * @param timestampMs
+     * @param value
+     * @return
+     */
+    public LongSeries accumulate(long timestampMs, long value) {
+        int i = indexOf(timestampMs);
+        if (i >= 0) {
+            accumulateAt(i, value);
+        }
+        return this;
+    }
+
+    /**
+     * Aggregates a value into the {@code i}-th data point.
+     *
+     * @param i
+     * @param value
+     * @return
+     */
+    public LongSeries accumulateAt(int i, long value) {
+        // same work for all types: no branch in aggregation loops
+        values[i] += value;
+        counts[i]++;
+        mins[i] = Math.min(mins[i], value);
+        maxs[i] = Math.max(maxs[i], value);
+        presence[i >>> 6] |= 1L << i;
+        return this;
+    }
+
+    /**
+     * Copies timestamps into a caller-supplied buffer.
+     *
+     * @param dest
+     *            buffer of at least {@link #size()} elements, or {@code null}
+     *            to allocate one
+     * @return
+     */
+    public long[] timestamps(long[] dest) {
+        long[] result = dest != null ? dest : new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = start + i * blockSize;
+        }
+        return result;
+    }
+
+    /**
+     * Copies values (as returned by {@link #value(int)}) into a caller-supplied
+     * buffer.
+     *
+     * @param dest
+     *            buffer of at least {@link #size()} elements, or {@code null}
+     *            to allocate one
+     * @return
+     */
+    public long[] values(long[] dest) {
+        return values(type, dest);
+    }
+
+    /**
+     * Copies values aggregated as a type (as returned by
+     * {@link #value(int, Type)}) into a caller-supplied buffer.
+     *
+     * @param type
+     * @param dest
+     *            buffer of at least {@link #size()} elements, or {@code null}
+     *            to allocate one
+     * @return
+     */
+    public long[] values(Type type, long[] dest) {
+        long[] result = dest != null ? dest : new long[size];
+        long[] source = type == Type.MINIMUM ? mins : type == Type.MAXIMUM ? maxs : values;
+        boolean isAverage = type == Type.AVERAGE, isNone = type == Type.NONE;
+        for (int i = 0; i < size; i++) {
+            long value = isAverage && counts[i] != 0 ? source[i] / counts[i] : source[i];
+            result[i] = isPresent(i) && !isNone ? value : 0;
+        }
+        return result;
+    }
+
+    /**
+     * Copies numbers of aggregated values into a caller-supplied buffer.
+     *
+     * @param dest
+     *            buffer of at least {@link #size()} elements, or {@code null}
+     *            to allocate one
+     * @return
+     */
+    public long[] counts(long[] dest) {
+        long[] result = dest != null ? dest : new long[size];
+        System.arraycopy(counts, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Copies the presence bitmap (bit {@code i % 64} of word {@code i / 64} is
+     * set if the {@code i}-th data point has a value) into a caller-supplied
+     * buffer.
+     *
+     * @param dest
+     *            buffer of at least {@code (size() + 63) / 64} elements, or
+     *            {@code null} to allocate one
+     * @return
+     */
+    public long[] presence(long[] dest) {
+        int numWords = (size + 63) >>> 6;
+        long[] result = dest != null ? dest : new long[numWords];
+        System.arraycopy(presence, 0, result, 0, numWords);
+        return result;
+    }
+
+    /**
+     * Converts to {@link DataPoint}s.
+     *
+     * @return
+     */
+    public DataPoint[] toDataPoints() {
+        return toDataPoints(type);
+    }
+
+    /**
+     * Converts to {@link DataPoint}s of a type. Data points carry all
+     * aggregations (see {@link DataPoint#value(Type)}).
+     *
+     * @param type
+     * @return
+     */
+    public DataPoint[] toDataPoints(Type type) {
+        if (size == 0) {
+            return DataPoint.EMPTY_ARR;
+        }
+        DataPoint[] result = new DataPoint[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = toDataPoint(i, type);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the {@code i}-th data point to a {@link DataPoint} of a type.
+     *
+     * @param i
+     * @param type
+     * @return a {@link Type#NONE} data point if the data point has no value
+     */
+    public DataPoint toDataPoint(int i, Type type) {
+        long timestamp = start + i * blockSize;
+        return isPresent(i)
+                ? new DataPoint(type, timestamp, blockSize, values[i], counts[i], mins[i], maxs[i])
+                : new DataPoint(Type.NONE, timestamp, 0, blockSize);
+    }
+}
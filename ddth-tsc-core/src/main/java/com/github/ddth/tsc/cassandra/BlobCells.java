@@ -0,0 +1,157 @@
+package com.github.ddth.tsc.cassandra;
+
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.cassandra.internal.CqlTemplate;
+import com.github.ddth.tsc.cassandra.internal.SessionHelper;
+
+/**
+ * Reads and writes data points stored as {@code blob}s (encoded sketches,
+ * register sets...) in a table with the same primary key as the counter table
+ * (see {@code SCHEMA.md}).
+ * 
+ * <p>
+ * Cassandra cannot merge blobs server-side: a write reads the current blob and
+ * writes the merged one with a lightweight transaction
+ * ({@code IF NOT EXISTS}/{@code IF v=?}), retried if another writer got in
+ * between.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class BlobCells {
+
+    private final static int RESOLUTION_MS = ICounter.RESOLUTION_MS;
+    private final static int MAX_CAS_ATTEMPTS = 32;
+
+    /**
+     * Merges new values into a data point's blob.
+     */
+    static interface Merger {
+        /**
+         * @param current
+         *            current blob, {@code null} if the data point is empty
+         * @return the merged blob
+         */
+        byte[] merge(byte[] current);
+    }
+
+    /**
+     * Receives data points of a range read.
+     */
+    static interface Visitor {
+        void visit(long key, byte[] value);
+    }
+
+    private final SessionHelper sessionHelper;
+    private final String cqlGet, cqlGetRange, cqlInsert, cqlCas;
+
+    BlobCells(SessionHelper sessionHelper, String tableName) {
+        this.sessionHelper = sessionHelper;
+        cqlGet = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER, tableName);
+        cqlGetRange = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER_RANGE, tableName);
+        cqlInsert = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_INSERT_BLOB, tableName);
+        cqlCas = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_CAS_BLOB, tableName);
+    }
+
+    /**
+     * Prepares all statements.
+     * 
+     * @return
+     */
+    BlobCells prepare() {
+        for (String cql : new String[] { cqlGet, cqlGetRange, cqlInsert, cqlCas }) {
+            sessionHelper.prepare(cql);
+        }
+        return this;
+    }
+
+    private static byte[] toBytes(ByteBuffer buf) {
+        byte[] data = new byte[buf.remaining()];
+        buf.duplicate().get(data);
+        return data;
+    }
+
+    /**
+     * Merges new values into a data point.
+     * 
+     * @param counterName
+     * @param key
+     *            timestamp of the data point (aligned)
+     * @param merger
+     * @param consistencyLevelForRead
+     * @param consistencyLevelForWrite
+     */
+    void merge(String counterName, long key, Merger merger,
+            ConsistencyLevel consistencyLevelForRead, ConsistencyLevel consistencyLevelForWrite) {
+        int[] yyyymm_dd = CassandraCounter.toYYYYMM_DD(key);
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            Row row = sessionHelper.executeOne(cqlGet, consistencyLevelForRead, counterName,
+                    yyyymm_dd[0], yyyymm_dd[1], key);
+            ByteBuffer current = row != null ? row.getBytes(CqlTemplate.COL_COUNTER_VALUE) : null;
+            ResultSet rs;
+            if (current == null) {
+                rs = sessionHelper.execute(cqlInsert, consistencyLevelForWrite, counterName,
+                        yyyymm_dd[0], yyyymm_dd[1], key, ByteBuffer.wrap(merger.merge(null)));
+            } else {
+                rs = sessionHelper.execute(cqlCas, consistencyLevelForWrite,
+                        ByteBuffer.wrap(merger.merge(toBytes(current))), counterName,
+                        yyyymm_dd[0], yyyymm_dd[1], key, current);
+            }
+            if (rs.wasApplied()) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Cannot update [" + counterName + "/" + key + "] after "
+                + MAX_CAS_ATTEMPTS + " attempts, too much contention!");
+    }
+
+    /**
+     * Reads data points in range [{@code keyStart}, {@code keyEnd}]: one
+     * clustering-range query per day partition, all executed asynchronously in
+     * parallel.
+     * 
+     * @param counterName
+     * @param keyStart
+     * @param keyEnd
+     * @param consistencyLevel
+     * @param visitor
+     */
+    void readRange(String counterName, long keyStart, long keyEnd,
+            ConsistencyLevel consistencyLevel, Visitor visitor) {
+        List<ResultSetFuture> futures = new ArrayList<>();
+        Calendar cal = Calendar.getInstance();
+        for (long key = keyStart; key <= keyEnd;) {
+            cal.setTimeInMillis(key);
+            int yyyymm = cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+            int dd = cal.get(Calendar.DAY_OF_MONTH);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            long sliceEnd = Math.min(keyEnd + RESOLUTION_MS, cal.getTimeInMillis());
+            futures.add(sessionHelper.executeAsync(cqlGetRange, consistencyLevel, counterName,
+                    yyyymm, dd, key, sliceEnd));
+            key = sliceEnd;
+        }
+        for (ResultSetFuture future : futures) {
+            for (Row row : future.getUninterruptibly()) {
+                ByteBuffer data = row.getBytes(CqlTemplate.COL_COUNTER_VALUE);
+                if (data != null) {
+                    visitor.visit(row.getLong(CqlTemplate.COL_COUNTER_TIMESTAMP), toBytes(data));
+                }
+            }
+        }
+    }
+}
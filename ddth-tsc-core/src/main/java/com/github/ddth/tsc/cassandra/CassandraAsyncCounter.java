@@ -0,0 +1,206 @@
+package com.github.ddth.tsc.cassandra;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.datastax.driver.core.ResultSet;
+import com.github.ddth.tsc.AsyncCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * {@link AsyncCounter} backed by the driver's asynchronous execution.
+ * 
+ * <p>
+ * Range reads, single data point reads and "add"s to counter-column or
+ * accumulation-log tables submit their statements with
+ * {@code executeAsync} and complete when the driver does; completions run on
+ * the factory's async executor (result pages past the first one are fetched
+ * there). "set"s and "add"s to regular {@code bigint} tables need a read
+ * before writing: they run on the async executor.
+ * </p>
+ * 
+ * <p>
+ * Creating a counter (reading its metadata) and preparing its statements
+ * block: operations on a counter the factory has not created yet, or whose
+ * statements are not prepared for the current session (e.g. after the
+ * session has been re-created), run on the async executor too.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class CassandraAsyncCounter extends AsyncCounter {
+
+    public CassandraAsyncCounter(CassandraCounterFactory counterFactory, String name) {
+        super(counterFactory, name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected CassandraCounter getCounter() {
+        return (CassandraCounter) super.getCounter();
+    }
+
+    /**
+     * The counter, if its operations can be submitted without blocking.
+     * 
+     * @return {@code null} if the counter has not been created yet or its
+     *         statements are not prepared
+     */
+    private CassandraCounter getCounterIfReady() {
+        CassandraCounter counter = (CassandraCounter) getCounterIfPresent();
+        return counter != null && counter.isPrepared() ? counter : null;
+    }
+
+    private void recordLatency(Operation operation, long startNs) {
+        ICounterMetrics metrics = getCounterFactory().getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordLatency(operation, System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> add(long timestampMs, long value) {
+        CassandraCounter counter = getCounterIfReady();
+        if (counter == null || !counter.canSubmitAdd()) {
+            return super.add(timestampMs, value);
+        }
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!tryAcquire(result)) {
+            return result;
+        }
+        final long startNs = System.nanoTime();
+        ListenableFuture<List<ResultSet>> writes;
+        try {
+            writes = counter.submitAdd(timestampMs, value);
+        } catch (RuntimeException e) {
+            release();
+            result.completeExceptionally(e);
+            return result;
+        }
+        Futures.addCallback(writes, new FutureCallback<List<ResultSet>>() {
+            @Override
+            public void onSuccess(List<ResultSet> rs) {
+                release();
+                recordLatency(Operation.ADD, startNs);
+                result.complete(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                release();
+                result.completeExceptionally(t);
+            }
+        }, getCounterFactory().getAsyncExecutor());
+        return result;
+    }
+
+    /**
+     * Submits the queries of a read, then completes it when they are done.
+     * 
+     * @param counter
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param operation
+     *            {@link Operation#GET} for a single data point read
+     * @return
+     */
+    private CompletableFuture<LongSeries> read(final CassandraCounter counter,
+            long timestampStartMs, long timestampEndMs, int steps, Type type,
+            final Operation operation) {
+        final CompletableFuture<LongSeries> result = new CompletableFuture<>();
+        if (!tryAcquire(result)) {
+            return result;
+        }
+        final long startNs = System.nanoTime();
+        final LongSeries series = new LongSeries();
+        final List<CassandraCounter.PendingRead> reads;
+        try {
+            reads = operation == Operation.GET ? counter.submitGet(timestampStartMs, series)
+                    : counter.submitLongSeries(timestampStartMs, timestampEndMs, steps, type,
+                            series);
+        } catch (RuntimeException e) {
+            release();
+            result.completeExceptionally(e);
+            return result;
+        }
+        Futures.addCallback(CassandraCounter.futureOf(reads),
+                new FutureCallback<List<ResultSet>>() {
+                    @Override
+                    public void onSuccess(List<ResultSet> rs) {
+                        try {
+                            counter.completeLongSeries(reads);
+                            recordLatency(operation, startNs);
+                            if (operation == Operation.RANGE) {
+                                getCounterFactory().getMetrics()
+                                        .recordPointsRead(series.totalCount(), series.size());
+                            }
+                            result.complete(series);
+                        } catch (Throwable t) {
+                            result.completeExceptionally(t);
+                        } finally {
+                            release();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        release();
+                        result.completeExceptionally(t);
+                    }
+                }, getCounterFactory().getAsyncExecutor());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<DataPoint> get(long timestampMs) {
+        CassandraCounter counter = getCounterIfReady();
+        if (counter == null) {
+            return super.get(timestampMs);
+        }
+        return read(counter, timestampMs, timestampMs, 1, Type.SUM, Operation.GET)
+                .thenApply(new Function<LongSeries, DataPoint>() {
+                    @Override
+                    public DataPoint apply(LongSeries series) {
+                        return series.toDataPoint(0, Type.SUM);
+                    }
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<DataPoint[]> getSeries(long timestampStartMs, long timestampEndMs,
+            int steps, Type type) {
+        CassandraCounter counter = getCounterIfReady();
+        if (counter == null) {
+            return super.getSeries(timestampStartMs, timestampEndMs, steps, type);
+        }
+        return read(counter, timestampStartMs, timestampEndMs, steps, type, Operation.RANGE)
+                .thenApply(new Function<LongSeries, DataPoint[]>() {
+                    @Override
+                    public DataPoint[] apply(LongSeries series) {
+                        return series.toDataPoints();
+                    }
+                });
+    }
+}
@@ -1,25 +1,41 @@
 package com.github.ddth.tsc.cassandra;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.utils.UUIDs;
 import com.github.ddth.cacheadapter.ICache;
-import com.github.ddth.cacheadapter.ICacheFactory;
-import com.github.ddth.cacheadapter.guava.GuavaCacheFactory;
-import com.github.ddth.cql.CqlUtils;
 import com.github.ddth.tsc.AbstractCounter;
 import com.github.ddth.tsc.AbstractCounterFactory;
 import com.github.ddth.tsc.DataPoint;
 import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.cassandra.internal.CounterBatchWriter;
 import com.github.ddth.tsc.cassandra.internal.CounterMetadata;
 import com.github.ddth.tsc.cassandra.internal.CqlTemplate;
+import com.github.ddth.tsc.cassandra.internal.DayRow;
+import com.github.ddth.tsc.cassandra.internal.DayRowCache;
 import com.github.ddth.tsc.cassandra.internal.SessionHelper;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Cassandra-backed counter.
@@ -29,10 +45,16 @@ import com.github.ddth.tsc.cassandra.internal.SessionHelper;
  */
 public class CassandraCounter extends AbstractCounter {
 
+    private final Logger LOGGER = LoggerFactory.getLogger(CassandraCounter.class);
+
     private CounterMetadata metadata;
     private SessionHelper sessionHelper;
 
-    private String cqlAdd, cqlSet, cqlGet, cqlGetRow;
+    private String cqlAdd, cqlSet, cqlGet, cqlGetRow, cqlGetRange;
+    private String cqlAppendLog, cqlGetLog, cqlGetLogRow, cqlGetLogRange, cqlTrimLog;
+    private int[] rollupTiers;
+    /* CQLs of the statements of this counter */
+    private List<String> cqls = Collections.emptyList();
 
     public CassandraCounter() {
     }
@@ -96,19 +118,75 @@ public class CassandraCounter extends AbstractCounter {
 
     private void _initStatements() {
         String tableName = metadata.getTable();
-        cqlAdd = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_ADD_COUNTER, tableName);
-        cqlSet = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_SET_COUNTER, tableName);
-        cqlGet = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER, tableName);
-        cqlGetRow = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER_ROW, tableName);
+        if (metadata.isLogWrites()) {
+            cqlAppendLog = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_APPEND_LOG, tableName);
+            cqlGetLog = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_LOG, tableName);
+            cqlGetLogRow = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_LOG_ROW, tableName);
+            cqlGetLogRange = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_LOG_RANGE,
+                    tableName);
+            cqlTrimLog = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_TRIM_LOG, tableName);
+        } else {
+            cqlAdd = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_ADD_COUNTER, tableName);
+            cqlSet = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_SET_COUNTER, tableName);
+            cqlGet = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER, tableName);
+            cqlGetRow = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER_ROW, tableName);
+            cqlGetRange = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_COUNTER_RANGE,
+                    tableName);
+        }
     }
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Rollups are disabled (with a warning) for counters whose table is
+     * neither a counter-column nor an accumulation-log table.
+     * </p>
      */
     @Override
     public void init() {
         super.init();
+        if (getRollupSteps().length > 0 && !metadata.isLogWrites() && !metadata.isCounterColumn()) {
+            // rollups would be read-modify-writes, losing concurrent increments
+            LOGGER.warn("Rollups of counter [" + getName()
+                    + "] require a counter-column or an accumulation-log table, disabled.");
+            setRollupSteps();
+        }
         _initStatements();
+        // statements are prepared once and reused by all calls
+        cqls = statements();
+        for (String cql : cqls) {
+            sessionHelper.prepare(cql);
+        }
+        rollupTiers = getRollupSteps();
+    }
+
+    private List<String> statements() {
+        List<String> result = new ArrayList<String>();
+        for (String cql : new String[] { cqlAdd, cqlSet, cqlGet, cqlGetRow, cqlGetRange,
+                cqlAppendLog, cqlGetLog, cqlGetLogRow, cqlGetLogRange, cqlTrimLog }) {
+            if (cql != null) {
+                result.add(cql);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Are all statements of this counter prepared for the current session?
+     * If not (e.g. the session has been re-created), the next operation
+     * prepares them, blocking.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    boolean isPrepared() {
+        for (String cql : cqls) {
+            if (!sessionHelper.isPrepared(cql)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -121,24 +199,57 @@ public class CassandraCounter extends AbstractCounter {
 
     /*----------------------------------------------------------------------*/
     /**
-     * @since 0.5.1
+     * Gets the external cache (see
+     * {@link CassandraCounterFactory#setCacheFactory(com.github.ddth.cacheadapter.ICacheFactory)}),
+     * {@code null} if not configured.
+     * 
+     * @since 0.4.2
+     */
+    private ICache getCache() {
+        return sessionHelper.getCache(getName());
+    }
+
+    /**
+     * Invalidates a cached row that is written: evicts it from the external
+     * cache if one is configured, from the factory's row cache otherwise.
+     * 
+     * @param cacheKey
+     *            key of the cache entry holding the row
+     * @since 0.7.1
      */
-    protected ThreadLocal<ICacheFactory> threadLocalCache = new ThreadLocal<ICacheFactory>() {
-        @SuppressWarnings("resource")
-        @Override
-        protected ICacheFactory initialValue() {
-            return new GuavaCacheFactory().setDefaultCacheCapacity(10000)
-                    .setDefaultExpireAfterAccess(5 * 60).init();
+    private void invalidateCachedRow(String cacheKey) {
+        ICache cache = getCache();
+        if (cache != null) {
+            cache.delete(cacheKey);
+            return;
+        }
+        DayRowCache rowCache = getCounterFactory().getRowCache();
+        if (rowCache != null) {
+            rowCache.invalidate(DayRowCache.key(getName(), cacheKey));
         }
-    };
+    }
 
     /**
-     * @since 0.4.2
+     * Invalidates the cached rows written by a write to a data point: the
+     * data point's row and the rows of its rollups.
+     * 
+     * <p>
+     * Cached rows are invalidated when a write is submitted and again when it
+     * completes, so that a row loaded while the write was in flight is not
+     * kept (see {@link DayRowCache}).
+     * </p>
+     * 
+     * @param timestampMs
+     * @since 0.7.1
      */
-    private ICache getCache() {
-        String cacheName = getName();
-        ICache cache = sessionHelper.getCache(cacheName);
-        return cache != null ? cache : threadLocalCache.get().createCache(cacheName);
+    void invalidateCachedRows(long timestampMs) {
+        long key = toTimeSeriesPoint(timestampMs);
+        int[] yyyymm_dd = toYYYYMM_DD(key);
+        invalidateCachedRow(String.valueOf(yyyymm_dd[0] * 100 + yyyymm_dd[1]));
+        for (int steps : rollupTiers) {
+            yyyymm_dd = toYYYYMM_DD(toTimeSeriesPoint(key, steps));
+            invalidateCachedRow(steps + "@" + (yyyymm_dd[0] * 100 + yyyymm_dd[1]));
+        }
     }
 
     private ConsistencyLevel getConsistencyLevelForRead() {
@@ -170,25 +281,188 @@ public class CassandraCounter extends AbstractCounter {
      * {@inheritDoc}
      */
     @Override
-    public void add(long timestampMs, long value) {
+    protected void addValue(long timestampMs, long value) {
+        add(timestampMs, value, null);
+    }
+
+    /**
+     * Are writes of this counter counter-column updates (as opposed to regular
+     * inserts/updates)?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    boolean isCounterUpdate() {
+        return !metadata.isLogWrites() && metadata.isCounterColumn();
+    }
+
+    /**
+     * Adds a value to a data point.
+     * 
+     * @param timestampMs
+     * @param value
+     * @param statements
+     *            if not {@code null}, write statements are collected into this
+     *            list (to be executed as a batch by the caller, who then calls
+     *            {@link #invalidateCachedRows(long)} once they complete) instead
+     *            of being executed; counter-column updates (see
+     *            {@link #isCounterUpdate()}) and regular ones are never mixed
+     * @since 0.7.1
+     */
+    void add(long timestampMs, long value, List<Statement> statements) {
         long key = toTimeSeriesPoint(timestampMs);
         int[] yyyymm_dd = toYYYYMM_DD(timestampMs);
 
-        if (!metadata.isCounterColumn()) {
-            Row row = CqlUtils.executeOne(sessionHelper.getSession(), cqlGet,
-                    getConsistencyLevelForReadForUpdate(), getName(), yyyymm_dd[0], yyyymm_dd[1],
-                    key);
+        if (!canSubmitAdd()) {
+            Row row = sessionHelper.executeOne(cqlGet, getConsistencyLevelForReadForUpdate(),
+                    getName(), yyyymm_dd[0], yyyymm_dd[1], key);
             long currentValue = row != null ? row.getLong("v") : 0;
             long newValue = value + currentValue;
-            set(timestampMs, newValue);
+            setValue(timestampMs, newValue);
+            return;
+        }
+        List<Statement> writes = statements != null ? statements : new ArrayList<Statement>();
+        if (metadata.isLogWrites()) {
+            appendLog(getName(), yyyymm_dd, key, false, value, writes);
         } else {
-            CqlUtils.executeNonSelectAsync(sessionHelper.getSession(), cqlAdd,
-                    getConsistencyLevelForWrite(), value, getName(), yyyymm_dd[0], yyyymm_dd[1],
-                    key);
+            String cacheKey = String.valueOf(yyyymm_dd[0] * 100 + yyyymm_dd[1]);
+            addToCell(getName(), yyyymm_dd, key, cacheKey, value, writes);
         }
-        ICache cache = getCache();
-        if (cache != null) {
-            cache.delete(String.valueOf(yyyymm_dd[0] * 100 + yyyymm_dd[1]));
+        addRollups(key, value, writes);
+        if (statements != null) {
+            invalidateCachedRows(key);
+        } else {
+            executeWrites(writes, key);
+        }
+    }
+
+    /**
+     * Can "add" be executed without waiting for a read (see
+     * {@link #submitAdd(long, long)})? Not for regular {@code bigint} tables,
+     * whose "add" reads the current value first.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    boolean canSubmitAdd() {
+        return metadata.isLogWrites() || metadata.isCounterColumn();
+    }
+
+    /**
+     * Adds a value to a data point without blocking: write statements are
+     * executed asynchronously (increments buffered by the factory's batching
+     * writer, if enabled, are not waited for).
+     * 
+     * @param timestampMs
+     * @param value
+     * @return future of the writes
+     * @throws IllegalStateException
+     *             if not {@link #canSubmitAdd()}
+     * @since 0.7.1
+     */
+    ListenableFuture<List<ResultSet>> submitAdd(long timestampMs, long value) {
+        if (!canSubmitAdd()) {
+            throw new IllegalStateException(
+                    "Counter [" + getName() + "] does not support non-blocking add!");
+        }
+        List<Statement> statements = new ArrayList<>();
+        add(timestampMs, value, statements);
+        return executeWrites(statements, timestampMs);
+    }
+
+    /**
+     * Executes write statements of a data point asynchronously. Cached rows
+     * written (see {@link #invalidateCachedRows(long)}) are invalidated now
+     * and once all statements complete.
+     * 
+     * @param statements
+     * @param timestampMs
+     * @return future of the writes
+     * @since 0.7.1
+     */
+    private ListenableFuture<List<ResultSet>> executeWrites(List<Statement> statements,
+            final long timestampMs) {
+        invalidateCachedRows(timestampMs);
+        ConsistencyLevel consistencyLevel = getConsistencyLevelForWrite();
+        List<ListenableFuture<ResultSet>> futures = new ArrayList<>(statements.size());
+        for (Statement stm : statements) {
+            stm.setConsistencyLevel(consistencyLevel);
+            futures.add(sessionHelper.executeAsync(stm));
+        }
+        Futures.successfulAsList(futures).addListener(new Runnable() {
+            @Override
+            public void run() {
+                invalidateCachedRows(timestampMs);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return Futures.allAsList(futures);
+    }
+
+    /**
+     * Collects a write statement, to be executed by
+     * {@link #executeWrites(List, long)} or as part of a batch.
+     * 
+     * @param statements
+     * @param cql
+     * @param values
+     * @since 0.7.1
+     */
+    private void write(List<Statement> statements, String cql, Object... values) {
+        statements.add(SessionHelper.bind(sessionHelper.prepare(cql), null, values));
+    }
+
+    /**
+     * Increments a cell of a counter-column table, through the factory's
+     * batching writer if write batching is enabled.
+     * 
+     * @param counterName
+     * @param yyyymm_dd
+     * @param key
+     * @param cacheKey
+     *            key of the cache entry holding the cell's row
+     * @param delta
+     * @param statements
+     *            write statements are collected into this list, see
+     *            {@link #write(List, String, Object...)}
+     * @since 0.7.1
+     */
+    private void addToCell(String counterName, int[] yyyymm_dd, long key, String cacheKey,
+            long delta, List<Statement> statements) {
+        CounterBatchWriter batchWriter = getCounterFactory().getBatchWriter();
+        if (batchWriter != null) {
+            batchWriter.add(metadata.getTable(), counterName, yyyymm_dd[0], yyyymm_dd[1], key,
+                    getName(), cacheKey, delta);
+        } else {
+            write(statements, cqlAdd, delta, counterName, yyyymm_dd[0], yyyymm_dd[1], key);
+        }
+    }
+
+    /**
+     * Adds a delta to rollup data points that cover a data point.
+     * 
+     * <p>
+     * Rollup data points of tier {@code steps} are stored in the same table, as
+     * data points of counter {@code name@steps}. Only counter-column and
+     * accumulation-log tables support rollups (see {@link #init()}).
+     * </p>
+     * 
+     * @param key
+     * @param delta
+     * @param statements
+     *            see {@link #write(List, String, Object...)}
+     * @since 0.7.1
+     */
+    private void addRollups(long key, long delta, List<Statement> statements) {
+        for (int steps : rollupTiers) {
+            long block = toTimeSeriesPoint(key, steps);
+            int[] yyyymm_dd = toYYYYMM_DD(block);
+            String rollupName = getName() + "@" + steps;
+            String cacheKey = steps + "@" + (yyyymm_dd[0] * 100 + yyyymm_dd[1]);
+            if (metadata.isLogWrites()) {
+                appendLog(rollupName, yyyymm_dd, block, false, delta, statements);
+            } else {
+                addToCell(rollupName, yyyymm_dd, block, cacheKey, delta, statements);
+            }
         }
     }
 
@@ -196,35 +470,280 @@ public class CassandraCounter extends AbstractCounter {
      * {@inheritDoc}
      */
     @Override
-    public void set(long timestampMs, long value) {
+    protected void setValue(long timestampMs, long value) {
         long key = toTimeSeriesPoint(timestampMs);
         int[] yyyymm_dd = toYYYYMM_DD(timestampMs);
 
-        if (metadata.isCounterColumn()) {
-            Row row = CqlUtils.executeOne(sessionHelper.getSession(), cqlGet,
-                    getConsistencyLevelForReadForUpdate(), getName(), yyyymm_dd[0], yyyymm_dd[1],
-                    key);
+        if (metadata.isLogWrites()) {
+            // rollups need the delta, which is the only case a read is needed
+            long currentValue = rollupTiers.length > 0
+                    ? _getLogValue(getName(), yyyymm_dd[0], yyyymm_dd[1], key) : 0;
+            List<Statement> writes = new ArrayList<>();
+            appendLog(getName(), yyyymm_dd, key, true, value, writes);
+            if (rollupTiers.length > 0) {
+                addRollups(key, value - currentValue, writes);
+            }
+            executeWrites(writes, key);
+        } else if (metadata.isCounterColumn()) {
+            CounterBatchWriter batchWriter = getCounterFactory().getBatchWriter();
+            if (batchWriter != null) {
+                // the current value must include buffered increments of the cell
+                batchWriter.flush(metadata.getTable(), getName(), yyyymm_dd[0], yyyymm_dd[1],
+                        key, getName(), String.valueOf(yyyymm_dd[0] * 100 + yyyymm_dd[1]));
+            }
+            Row row = sessionHelper.executeOne(cqlGet, getConsistencyLevelForReadForUpdate(),
+                    getName(), yyyymm_dd[0], yyyymm_dd[1], key);
             long currentValue = row != null ? row.getLong("v") : 0;
             long delta = value - currentValue;
-            add(timestampMs, delta);
+            add(timestampMs, delta, null);
         } else {
-            CqlUtils.executeNonSelectAsync(sessionHelper.getSession(), cqlSet,
-                    getConsistencyLevelForWrite(), value, getName(), yyyymm_dd[0], yyyymm_dd[1],
-                    key);
+            List<Statement> writes = new ArrayList<>();
+            write(writes, cqlSet, value, getName(), yyyymm_dd[0], yyyymm_dd[1], key);
+            executeWrites(writes, key);
         }
-        ICache cache = getCache();
-        if (cache != null) {
-            cache.delete(String.valueOf(yyyymm_dd[0] * 100 + yyyymm_dd[1]));
+    }
+
+    /**
+     * Appends an entry to the accumulation log of a data point.
+     * 
+     * <p>
+     * Entries are identified by a client-generated time-based UUID, so that
+     * retrying an append is idempotent.
+     * </p>
+     * 
+     * @param counterName
+     * @param yyyymm_dd
+     * @param key
+     * @param isSet
+     *            {@code true} for a "set" entry, {@code false} for an "add" one
+     * @param value
+     * @param statements
+     *            see {@link #write(List, String, Object...)}
+     * @since 0.7.1
+     */
+    private void appendLog(String counterName, int[] yyyymm_dd, long key, boolean isSet,
+            long value, List<Statement> statements) {
+        write(statements, cqlAppendLog, counterName, yyyymm_dd[0], yyyymm_dd[1], key,
+                UUIDs.timeBased(), isSet, value);
+    }
+
+    /**
+     * Folds the accumulation log of one data point into its current value.
+     * 
+     * @param counterName
+     * @param yyyymm
+     * @param dd
+     * @param key
+     * @return
+     * @since 0.7.1
+     */
+    private long _getLogValue(String counterName, int yyyymm, int dd, long key) {
+        ResultSet rs = sessionHelper.execute(cqlGetLog, getConsistencyLevelForReadForUpdate(),
+                counterName, yyyymm, dd, key);
+        LogFold fold = new LogFold(key, Long.MIN_VALUE);
+        for (Row row : rs) {
+            fold.apply(row);
+        }
+        return fold.value;
+    }
+
+    /**
+     * Fold of a data point's accumulation log: entries are applied in
+     * {@code id} order, a "set" entry replaces the value, an "add" entry adds
+     * to it.
+     * 
+     * <p>
+     * The leading entries older than the compaction cutoff are also folded
+     * separately, so that they can be replaced by a single "set" entry (see
+     * {@link CassandraCounter#compactLog(long)}). Newer entries are left
+     * alone: a replica may not have received them all yet.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    private static class LogFold {
+        final long key, compactBeforeMs;
+        long value;
+        boolean compactable = true;
+        int numCompactable;
+        UUID lastCompactableId;
+        long compactValue;
+
+        LogFold(long key, long compactBeforeMs) {
+            this.key = key;
+            this.compactBeforeMs = compactBeforeMs;
+        }
+
+        void apply(Row row) {
+            UUID id = row.getUUID(CqlTemplate.COL_LOG_ID);
+            long v = row.getLong(CqlTemplate.COL_COUNTER_VALUE);
+            value = row.getBool(CqlTemplate.COL_LOG_IS_SET) ? v : value + v;
+            // entries are ordered by time: compactable ones come first
+            if (compactable && UUIDs.unixTimestamp(id) < compactBeforeMs) {
+                numCompactable++;
+                lastCompactableId = id;
+                compactValue = value;
+            } else {
+                compactable = false;
+            }
+        }
+
+        boolean needsCompaction() {
+            return numCompactable > 1;
+        }
+    }
+
+    /**
+     * Folds the log entries of a day (or a slice of it), one fold per data
+     * point.
+     * 
+     * @param rs
+     *            log entries, in clustering order
+     * @param compactBeforeMs
+     *            see {@link LogFold}
+     * @return
+     * @since 0.7.1
+     */
+    private static List<LogFold> _foldLog(ResultSet rs, long compactBeforeMs) {
+        List<LogFold> folds = new ArrayList<LogFold>();
+        LogFold fold = null;
+        for (Row row : rs) {
+            long key = row.getLong(CqlTemplate.COL_COUNTER_TIMESTAMP);
+            if (fold == null || fold.key != key) {
+                fold = new LogFold(key, compactBeforeMs);
+                folds.add(fold);
+            }
+            fold.apply(row);
+        }
+        return folds;
+    }
+
+    /**
+     * Decodes data points of a day (or a slice of it) from an accumulation log
+     * table. Reads never compact logs (see {@link #compactLog(long)}).
+     * 
+     * @param rs
+     * @param blockSize
+     * @return
+     * @since 0.7.1
+     */
+    private DayRow _foldLogRow(ResultSet rs, long blockSize) {
+        List<LogFold> folds = _foldLog(rs, Long.MIN_VALUE);
+        DayRow result = new DayRow(blockSize, folds.size());
+        for (LogFold f : folds) {
+            result.set(f.key, f.value);
+        }
+        return result;
+    }
+
+    /**
+     * Compacts the accumulation logs of a day, and of the matching days of
+     * rollups: for each data point, the leading log entries older than the
+     * factory's grace period (see
+     * {@link CassandraCounterFactory#setLogCompactionGraceMs(long)}) are
+     * replaced by a single "set" entry holding their folded value.
+     * 
+     * <p>
+     * Compaction replaces the newest of these entries by the "set" entry and
+     * deletes older ones. Both statements of a data point go in the same
+     * batch, which is atomic as it targets a single partition; a day is
+     * compacted with batches of at most
+     * {@link CassandraCounterFactory#getBatchMaxSize()} statements. Failed
+     * batches are logged and skipped: they are retried by the next
+     * compaction.
+     * </p>
+     * 
+     * <p>
+     * Reads fold log entries but never compact them: compaction is run by the
+     * factory's scheduled job (see
+     * {@link CassandraCounterFactory#setLogCompactionIntervalMs(long)}) or
+     * explicitly.
+     * </p>
+     * 
+     * @param timestampMs
+     *            any timestamp of the day to compact
+     * @return number of data points whose log was compacted ({@code 0} if this
+     *         counter is not in {@link CounterMetadata#WRITE_MODE_LOG} write
+     *         mode)
+     * @since 0.7.1
+     */
+    public int compactLog(long timestampMs) {
+        if (!metadata.isLogWrites()) {
+            return 0;
+        }
+        long compactBeforeMs = System.currentTimeMillis()
+                - getCounterFactory().getLogCompactionGraceMs();
+        int[] yyyymm_dd = toYYYYMM_DD(timestampMs);
+        int result = _compactLogRow(getName(), yyyymm_dd[0], yyyymm_dd[1], compactBeforeMs);
+        for (int steps : rollupTiers) {
+            yyyymm_dd = toYYYYMM_DD(toTimeSeriesPoint(timestampMs, steps));
+            result += _compactLogRow(getName() + "@" + steps, yyyymm_dd[0], yyyymm_dd[1],
+                    compactBeforeMs);
+        }
+        return result;
+    }
+
+    /**
+     * Compacts the accumulation logs of a day partition, see
+     * {@link #compactLog(long)}.
+     * 
+     * @param counterName
+     * @param yyyymm
+     * @param dd
+     * @param compactBeforeMs
+     * @return number of data points whose log was compacted
+     * @since 0.7.1
+     */
+    private int _compactLogRow(String counterName, int yyyymm, int dd, long compactBeforeMs) {
+        ResultSet rs = sessionHelper.execute(cqlGetLogRow, getConsistencyLevelForReadForUpdate(),
+                counterName, yyyymm, dd);
+        int maxPointsPerBatch = Math.max(getCounterFactory().getBatchMaxSize() / 2, 1);
+        List<ResultSetFuture> futures = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        BatchStatement batch = null;
+        for (LogFold f : _foldLog(rs, compactBeforeMs)) {
+            if (!f.needsCompaction()) {
+                continue;
+            }
+            if (batch == null || batch.size() / 2 >= maxPointsPerBatch) {
+                if (batch != null) {
+                    futures.add(sessionHelper.executeAsync(batch));
+                    batchSizes.add(batch.size() / 2);
+                }
+                batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                batch.setConsistencyLevel(getConsistencyLevelForWrite());
+            }
+            batch.add(SessionHelper.bind(sessionHelper.prepare(cqlAppendLog), null, counterName,
+                    yyyymm, dd, f.key, f.lastCompactableId, true, f.compactValue));
+            batch.add(SessionHelper.bind(sessionHelper.prepare(cqlTrimLog), null, counterName,
+                    yyyymm, dd, f.key, f.lastCompactableId));
         }
+        if (batch != null) {
+            futures.add(sessionHelper.executeAsync(batch));
+            batchSizes.add(batch.size() / 2);
+        }
+
+        int result = 0;
+        for (int i = 0, n = futures.size(); i < n; i++) {
+            try {
+                futures.get(i).getUninterruptibly();
+                result += batchSizes.get(i);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot compact log of [" + batchSizes.get(i)
+                        + "] data point(s) of counter [" + counterName + "], day ["
+                        + (yyyymm * 100 + dd) + "]: " + e.getMessage(), e);
+            }
+        }
+        return result;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public DataPoint get(long timestampMs) {
+    protected DataPoint readDataPoint(long timestampMs) {
         long _key = toTimeSeriesPoint(timestampMs);
-        Map<Long, DataPoint> row = _getRowWithCache(timestampMs);
+        DayRow row = _getRowWithCache(getName(), "", timestampMs, RESOLUTION_MS);
         DataPoint result = row != null ? row.get(_key) : null;
         return result != null ? result : new DataPoint(Type.NONE, _key, 0, RESOLUTION_MS);
     }
@@ -232,36 +751,434 @@ public class CassandraCounter extends AbstractCounter {
     /**
      * {@inheritDoc}
      * 
-     * @since 0.5.1
+     * <p>
+     * One day of data points per chunk: a streamed range is read one day
+     * partition (or two, if days are not aligned with chunks) at a time, rows
+     * are fetched with the driver's paging.
+     * </p>
+     * 
+     * @since 0.7.1
      */
-    protected DataPoint[] getAllInRange(long timestampStartMs, long timestampEndMs) {
-        try {
-            return super.getAllInRange(timestampStartMs, timestampEndMs);
-        } finally {
-            threadLocalCache.remove();
+    @Override
+    protected int getDefaultStreamChunkSize() {
+        return 24 * 3600;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Streamed chunks bypass the row cache: a stream scans each day once, its
+     * rows would only evict rows of regular reads.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readStreamChunk(long timestampStartMs, long timestampEndMs, int steps,
+            Type type, LongSeries chunk) {
+        completeLongSeries(submitLongSeries(timestampStartMs, timestampEndMs, steps, type, chunk,
+                false, null));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, LongSeries result) {
+        _readRange(getName(), "", keyStart, keyEnd, RESOLUTION_MS, result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected boolean readRollupsInRange(int steps, long keyStart, long keyEnd,
+            LongSeries result) {
+        if (Arrays.binarySearch(rollupTiers, steps) < 0) {
+            return false;
+        }
+        _readRange(getName() + "@" + steps, steps + "@", keyStart, keyEnd,
+                steps * (long) RESOLUTION_MS, result);
+        return true;
+    }
+
+    /**
+     * The part of a range read that falls in one day partition.
+     * 
+     * @since 0.7.1
+     */
+    private static class DaySlice {
+        final int yyyymm, dd;
+        final long keyStart, keyEnd;
+        final boolean isFullDay;
+        DayRow row;
+        ResultSetFuture future;
+        /* version of the cached row, taken before the query (see DayRowCache) */
+        long rowVersion;
+
+        DaySlice(int yyyymm, int dd, long keyStart, long keyEnd, boolean isFullDay) {
+            this.yyyymm = yyyymm;
+            this.dd = dd;
+            this.keyStart = keyStart;
+            this.keyEnd = keyEnd;
+            this.isFullDay = isFullDay;
+        }
+
+        String cacheKey(String cacheKeyPrefix) {
+            return cacheKeyPrefix + (yyyymm * 100 + dd);
+        }
+    }
+
+    /**
+     * Splits range {@code [keyStart, keyEnd]} into day slices.
+     * 
+     * @param keyStart
+     * @param keyEnd
+     * @param blockSize
+     * @return
+     * @since 0.7.1
+     */
+    private static List<DaySlice> _sliceByDay(long keyStart, long keyEnd, long blockSize) {
+        List<DaySlice> slices = new ArrayList<DaySlice>();
+        Calendar cal = Calendar.getInstance();
+        for (long key = keyStart; key <= keyEnd;) {
+            cal.setTimeInMillis(key);
+            int yyyymm = cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+            int dd = cal.get(Calendar.DAY_OF_MONTH);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            long dayStart = cal.getTimeInMillis();
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            long dayEnd = cal.getTimeInMillis();
+
+            long sliceEnd = Math.min(keyEnd, key + (dayEnd - 1 - key) / blockSize * blockSize);
+            boolean isFullDay = key - blockSize < dayStart && sliceEnd + blockSize >= dayEnd;
+            slices.add(new DaySlice(yyyymm, dd, key, sliceEnd, isFullDay));
+            key = sliceEnd + blockSize;
+        }
+        return slices;
+    }
+
+    /**
+     * A range read whose queries have been submitted.
+     * 
+     * @since 0.7.1
+     */
+    static class PendingRead {
+        private final String counterName, cacheKeyPrefix;
+        private final long blockSize;
+        private final List<DaySlice> slices;
+        private final LongSeries result;
+        private final boolean useCache;
+
+        PendingRead(String counterName, String cacheKeyPrefix, long blockSize,
+                List<DaySlice> slices, LongSeries result, boolean useCache) {
+            this.counterName = counterName;
+            this.cacheKeyPrefix = cacheKeyPrefix;
+            this.blockSize = blockSize;
+            this.slices = slices;
+            this.result = result;
+            this.useCache = useCache;
+        }
+    }
+
+    /**
+     * Reads data points in range {@code [keyStart, keyEnd]} and aggregates
+     * them into a series.
+     * 
+     * <p>
+     * Cached day rows are used as-is. Other days are read with one query per
+     * day partition, all executed asynchronously in parallel: a
+     * clustering-range query ({@code t >= ? AND t < ?}) for a partially
+     * covered day, a whole-row query (whose result is then cached) for a fully
+     * covered one. Result pages are fetched as the results are iterated.
+     * </p>
+     * 
+     * @param counterName
+     * @param cacheKeyPrefix
+     * @param keyStart
+     * @param keyEnd
+     * @param blockSize
+     * @param result
+     * @since 0.7.1
+     */
+    private void _readRange(String counterName, String cacheKeyPrefix, long keyStart,
+            long keyEnd, long blockSize, LongSeries result) {
+        _completeRead(_submitRead(counterName, cacheKeyPrefix, keyStart, keyEnd, blockSize,
+                result, true, null));
+    }
+
+    /**
+     * Submits the queries of a range read (see
+     * {@link #_readRange(String, String, long, long, long, LongSeries)}),
+     * without waiting for them.
+     * 
+     * @param counterName
+     * @param cacheKeyPrefix
+     * @param keyStart
+     * @param keyEnd
+     * @param blockSize
+     * @param result
+     * @param useCache
+     *            {@code false} to neither use nor populate the row cache
+     * @param inFlight
+     *            if not {@code null}, a permit is acquired before submitting
+     *            each query (blocking until one is available) and released
+     *            once the query completes
+     * @return
+     * @since 0.7.1
+     */
+    private PendingRead _submitRead(String counterName, String cacheKeyPrefix, long keyStart,
+            long keyEnd, long blockSize, LongSeries result, boolean useCache,
+            final Semaphore inFlight) {
+        List<DaySlice> slices = keyEnd < keyStart ? Collections.<DaySlice> emptyList()
+                : _sliceByDay(keyStart, keyEnd, blockSize);
+        ConsistencyLevel consistencyLevel = getConsistencyLevelForRead();
+        boolean isLog = metadata.isLogWrites();
+        for (DaySlice slice : slices) {
+            slice.row = useCache ? _getCachedRow(slice.cacheKey(cacheKeyPrefix)) : null;
+            if (slice.row == null) {
+                slice.rowVersion = _getCachedRowVersion(slice.cacheKey(cacheKeyPrefix));
+                if (inFlight != null) {
+                    inFlight.acquireUninterruptibly();
+                }
+                try {
+                    slice.future = slice.isFullDay
+                            ? sessionHelper.executeAsync(isLog ? cqlGetLogRow : cqlGetRow,
+                                    consistencyLevel, counterName, slice.yyyymm, slice.dd)
+                            : sessionHelper.executeAsync(isLog ? cqlGetLogRange : cqlGetRange,
+                                    consistencyLevel, counterName, slice.yyyymm, slice.dd,
+                                    slice.keyStart, slice.keyEnd + blockSize);
+                } catch (RuntimeException e) {
+                    if (inFlight != null) {
+                        inFlight.release();
+                    }
+                    throw e;
+                }
+                if (inFlight != null) {
+                    slice.future.addListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            inFlight.release();
+                        }
+                    }, MoreExecutors.sameThreadExecutor());
+                }
+            }
+        }
+        return new PendingRead(counterName, cacheKeyPrefix, blockSize, slices, result,
+                useCache);
+    }
+
+    /**
+     * Waits for the queries of a submitted range read and aggregates data
+     * points into its series.
+     * 
+     * @param read
+     * @since 0.7.1
+     */
+    private void _completeRead(PendingRead read) {
+        for (DaySlice slice : read.slices) {
+            if (slice.future != null) {
+                slice.row = _decodeRow(slice.future.getUninterruptibly(), read.blockSize);
+                if (slice.isFullDay && read.useCache) {
+                    _putCachedRow(slice.cacheKey(read.cacheKeyPrefix), slice.row,
+                            slice.rowVersion);
+                }
+            }
+            slice.row.accumulateInto(slice.keyStart, slice.keyEnd, read.result);
+        }
+    }
+
+    /**
+     * Plans the reads of a series and submits their queries, without waiting
+     * for them (see {@link #planLongSeries(long, long, int, Type, LongSeries)}).
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param result
+     * @return
+     * @since 0.7.1
+     */
+    List<PendingRead> submitLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            Type type, LongSeries result) {
+        return submitLongSeries(timestampStartMs, timestampEndMs, steps, type, result, true,
+                null);
+    }
+
+    /**
+     * Plans the reads of a series and submits their queries, at most as many
+     * in flight at a time as {@code inFlight} has permits (see
+     * {@link #submitLongSeries(long, long, int, Type, LongSeries)}).
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param result
+     * @param inFlight
+     * @return
+     * @since 0.7.1
+     */
+    List<PendingRead> submitLongSeries(long timestampStartMs, long timestampEndMs, int steps,
+            Type type, LongSeries result, Semaphore inFlight) {
+        return submitLongSeries(timestampStartMs, timestampEndMs, steps, type, result, true,
+                inFlight);
+    }
+
+    private List<PendingRead> submitLongSeries(long timestampStartMs, long timestampEndMs,
+            int steps, Type type, LongSeries result, boolean useCache, Semaphore inFlight) {
+        List<PendingRead> reads = new ArrayList<>();
+        for (RangeRead read : planLongSeries(timestampStartMs, timestampEndMs, steps, type,
+                result)) {
+            reads.add(read.steps > 1 && Arrays.binarySearch(rollupTiers, read.steps) >= 0
+                    ? _submitRead(getName() + "@" + read.steps, read.steps + "@", read.keyStart,
+                            read.keyEnd, read.steps * (long) RESOLUTION_MS, result, useCache,
+                            inFlight)
+                    : _submitRead(getName(), "", read.keyStart, read.lastKey(), RESOLUTION_MS,
+                            result, useCache, inFlight));
+        }
+        return reads;
+    }
+
+    /**
+     * Submits the queries of a single data point read, as a one-point series
+     * (see {@link #submitLongSeries(long, long, int, Type, LongSeries)}).
+     * 
+     * @param timestampMs
+     * @param result
+     * @return
+     * @since 0.7.1
+     */
+    List<PendingRead> submitGet(long timestampMs, LongSeries result) {
+        long key = toTimeSeriesPoint(timestampMs);
+        return submitLongSeries(key, key + RESOLUTION_MS - 1, 1, Type.SUM, result);
+    }
+
+    /**
+     * Combined future of the queries of submitted reads: once done,
+     * {@link #completeLongSeries(List)} does not wait for queries (it may
+     * still fetch further result pages).
+     * 
+     * @param reads
+     * @return
+     * @since 0.7.1
+     */
+    static ListenableFuture<List<ResultSet>> futureOf(List<PendingRead> reads) {
+        List<ListenableFuture<ResultSet>> futures = new ArrayList<>();
+        for (PendingRead read : reads) {
+            for (DaySlice slice : read.slices) {
+                if (slice.future != null) {
+                    futures.add(slice.future);
+                }
+            }
+        }
+        return Futures.allAsList(futures);
+    }
+
+    /**
+     * Completes reads returned by
+     * {@link #submitLongSeries(long, long, int, Type, LongSeries)}.
+     * 
+     * @param reads
+     * @since 0.7.1
+     */
+    void completeLongSeries(List<PendingRead> reads) {
+        for (PendingRead read : reads) {
+            _completeRead(read);
+        }
+    }
+
+    /**
+     * Gets a cached day row, from the external cache if configured, from the
+     * factory's row cache otherwise.
+     * 
+     * @param cacheKey
+     * @return
+     * @since 0.7.1
+     */
+    private DayRow _getCachedRow(String cacheKey) {
+        ICache cache = getCache();
+        DayRow result;
+        if (cache != null) {
+            Object temp = cache.get(cacheKey);
+            result = temp instanceof DayRow ? (DayRow) temp : null;
+        } else {
+            DayRowCache rowCache = getCounterFactory().getRowCache();
+            if (rowCache == null) {
+                return null;
+            }
+            result = rowCache.get(DayRowCache.key(getName(), cacheKey));
+        }
+        getMetrics().recordCacheAccess(ICounterMetrics.CACHE_CASSANDRA_ROW, result != null);
+        return result;
+    }
+
+    /**
+     * Version of a day row in the factory's row cache, to be taken before
+     * loading the row (see {@link DayRowCache#version(String)}).
+     * 
+     * @param cacheKey
+     * @return
+     * @since 0.7.1
+     */
+    private long _getCachedRowVersion(String cacheKey) {
+        DayRowCache rowCache = getCounterFactory().getRowCache();
+        return rowCache != null ? rowCache.version(DayRowCache.key(getName(), cacheKey)) : 0;
+    }
+
+    /**
+     * Puts a loaded day row to the cache.
+     * 
+     * @param cacheKey
+     * @param row
+     * @param version
+     *            see {@link #_getCachedRowVersion(String)}: the row is not put
+     *            to the row cache if written since
+     * @since 0.7.1
+     */
+    private void _putCachedRow(String cacheKey, DayRow row, long version) {
+        ICache cache = getCache();
+        if (cache != null) {
+            cache.set(cacheKey, row);
+            return;
+        }
+        DayRowCache rowCache = getCounterFactory().getRowCache();
+        if (rowCache != null) {
+            rowCache.put(DayRowCache.key(getName(), cacheKey), row, version);
         }
     }
 
     /**
      * Gets all data points of a day specified by the timestamp, cache
-     * supported.
+     * supported: the external cache if configured, the factory's row cache
+     * otherwise.
      * 
+     * @param counterName
+     * @param cacheKeyPrefix
+     *            (since 0.7.1) prefix of the cache entry's key
      * @param timestampMs
+     * @param blockSize
+     *            (since 0.7.1) time span of a data point
      * @return
      */
-    @SuppressWarnings("unchecked")
-    private Map<Long, DataPoint> _getRowWithCache(long timestampMs) {
+    private DayRow _getRowWithCache(String counterName, String cacheKeyPrefix, long timestampMs,
+            long blockSize) {
         int[] yyyymm_dd = toYYYYMM_DD(timestampMs);
-        int yyyymmdd = yyyymm_dd[0] * 100 + yyyymm_dd[1];
-        ICache cache = getCache();
-        String cacheKey = String.valueOf(yyyymmdd);
-        Object temp = cache != null ? cache.get(cacheKey) : null;
-        Map<Long, DataPoint> result = (Map<Long, DataPoint>) (temp instanceof Map ? temp : null);
+        String cacheKey = cacheKeyPrefix + (yyyymm_dd[0] * 100 + yyyymm_dd[1]);
+        DayRow result = _getCachedRow(cacheKey);
         if (result == null) {
-            result = _getRow(getName(), yyyymm_dd[0], yyyymm_dd[1]);
-            if (cache != null) {
-                cache.set(cacheKey, result);
-            }
+            long version = _getCachedRowVersion(cacheKey);
+            result = _getRow(counterName, yyyymm_dd[0], yyyymm_dd[1], blockSize);
+            _putCachedRow(cacheKey, result, version);
         }
         return result;
     }
@@ -272,20 +1189,35 @@ public class CassandraCounter extends AbstractCounter {
      * @param counterName
      * @param yyyymm
      * @param dd
+     * @param blockSize
+     *            (since 0.7.1) time span of a data point
      * @return
      * @since 0.3.1.1
      */
-    private Map<Long, DataPoint> _getRow(String counterName, int yyyymm, int dd) {
-        Map<Long, DataPoint> result = new HashMap<Long, DataPoint>();
-
-        ResultSet rs = CqlUtils.execute(sessionHelper.getSession(), cqlGetRow,
+    private DayRow _getRow(String counterName, int yyyymm, int dd, long blockSize) {
+        ResultSet rs = sessionHelper.execute(metadata.isLogWrites() ? cqlGetLogRow : cqlGetRow,
                 getConsistencyLevelForRead(), counterName, yyyymm, dd);
+        return _decodeRow(rs, blockSize);
+    }
+
+    /**
+     * Decodes data points of a day (or a slice of it).
+     * 
+     * @param rs
+     * @param blockSize
+     * @return
+     * @since 0.7.1
+     */
+    private DayRow _decodeRow(ResultSet rs, long blockSize) {
+        if (metadata.isLogWrites()) {
+            return _foldLogRow(rs, blockSize);
+        }
+        DayRow result = new DayRow(blockSize, rs.getAvailableWithoutFetching());
         for (Iterator<Row> it = rs.iterator(); it.hasNext();) {
             Row row = it.next();
             long key = row.getLong(CqlTemplate.COL_COUNTER_TIMESTAMP);
             long value = row.getLong(CqlTemplate.COL_COUNTER_VALUE);
-            DataPoint dp = new DataPoint(Type.SUM, key, value, RESOLUTION_MS);
-            result.put(key, dp);
+            result.set(key, value);
         }
 
         return result;
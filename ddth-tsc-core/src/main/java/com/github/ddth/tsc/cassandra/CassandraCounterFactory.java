@@ -1,17 +1,48 @@
 package com.github.ddth.tsc.cassandra;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
 import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.github.ddth.cacheadapter.ICacheFactory;
 import com.github.ddth.cql.SessionManager;
 import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.IAsyncCounter;
 import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.IDistributionCounter;
+import com.github.ddth.tsc.IUniqueCounter;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.cassandra.internal.CounterBatchWriter;
 import com.github.ddth.tsc.cassandra.internal.CounterMetadata;
+import com.github.ddth.tsc.cassandra.internal.DayRowCache;
 import com.github.ddth.tsc.cassandra.internal.MetadataManager;
 import com.github.ddth.tsc.cassandra.internal.SessionHelper;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * This factory creates {@link CassandraCounter} instances.
@@ -21,6 +52,21 @@ import com.github.ddth.tsc.cassandra.internal.SessionHelper;
  */
 public class CassandraCounterFactory extends AbstractCounterFactory {
 
+    /**
+     * @since 0.7.1
+     */
+    public final static long DEFAULT_LOG_COMPACTION_GRACE_MS = 3600000;
+
+    /**
+     * @since 0.7.1
+     */
+    public final static long DEFAULT_LOG_COMPACTION_INTERVAL_MS = 600000;
+
+    /**
+     * @since 0.7.1
+     */
+    public final static int DEFAULT_READ_MAX_IN_FLIGHT = 64;
+
     private final Logger LOGGER = LoggerFactory.getLogger(CassandraCounterFactory.class);
 
     /*
@@ -38,6 +84,23 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
     private ICacheFactory cacheFactory;
     private SessionHelper helper;
 
+    private boolean batchWrites = false;
+    private long batchMaxDelayMs = CounterBatchWriter.DEFAULT_MAX_DELAY_MS;
+    private int batchMaxSize = CounterBatchWriter.DEFAULT_MAX_BATCH_SIZE;
+    private int batchMaxInFlight = CounterBatchWriter.DEFAULT_MAX_IN_FLIGHT;
+    private CounterBatchWriter batchWriter;
+
+    private long logCompactionGraceMs = DEFAULT_LOG_COMPACTION_GRACE_MS;
+    private long logCompactionIntervalMs = DEFAULT_LOG_COMPACTION_INTERVAL_MS;
+    private ScheduledExecutorService logCompactionExecutor;
+    /* counters in log write mode, whose logs are compacted by the scheduled job */
+    private final ConcurrentMap<String, CassandraCounter> logCounters = new ConcurrentHashMap<>();
+    private int readMaxInFlight = DEFAULT_READ_MAX_IN_FLIGHT;
+
+    private long rowCacheMaxDataPoints = DayRowCache.DEFAULT_MAX_DATA_POINTS;
+    private long rowCacheExpireMs = DayRowCache.DEFAULT_EXPIRE_AFTER_WRITE_MS;
+    private DayRowCache rowCache;
+
     /**
      * Hosts & Ports to connect to Cassandra cluster.
      * 
@@ -227,6 +290,336 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
         return this;
     }
 
+    /**
+     * Is write batching enabled?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isBatchWrites() {
+        return batchWrites;
+    }
+
+    /**
+     * Enables/Disables write batching (default: disabled).
+     * 
+     * <p>
+     * When enabled, {@code add()}s to counter-column tables are coalesced in
+     * memory per data point and written periodically as batches grouped by
+     * partition, with a bounded number of batches in flight (see
+     * {@link CounterBatchWriter}). Written data points become visible after at
+     * most {@link #getBatchMaxDelayMs()}. Must be set before {@link #init()}.
+     * </p>
+     * 
+     * @param batchWrites
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setBatchWrites(boolean batchWrites) {
+        this.batchWrites = batchWrites;
+        return this;
+    }
+
+    /**
+     * Max time (in milliseconds) an increment is buffered before being written,
+     * used in write batching mode only.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getBatchMaxDelayMs() {
+        return batchMaxDelayMs;
+    }
+
+    /**
+     * Sets max time (in milliseconds) an increment is buffered before being
+     * written (default {@link CounterBatchWriter#DEFAULT_MAX_DELAY_MS}), used in
+     * write batching mode only.
+     * 
+     * @param batchMaxDelayMs
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setBatchMaxDelayMs(long batchMaxDelayMs) {
+        this.batchMaxDelayMs = batchMaxDelayMs;
+        return this;
+    }
+
+    /**
+     * Max number of statements per batch, used in write batching mode only.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    /**
+     * Sets max number of statements per batch (default
+     * {@link CounterBatchWriter#DEFAULT_MAX_BATCH_SIZE}), used in write batching
+     * mode only.
+     * 
+     * @param batchMaxSize
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+        return this;
+    }
+
+    /**
+     * Max number of batches being executed at the same time, used in write
+     * batching mode only.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getBatchMaxInFlight() {
+        return batchMaxInFlight;
+    }
+
+    /**
+     * Sets max number of batches being executed at the same time (default
+     * {@link CounterBatchWriter#DEFAULT_MAX_IN_FLIGHT}), used in write batching
+     * mode only.
+     * 
+     * @param batchMaxInFlight
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setBatchMaxInFlight(int batchMaxInFlight) {
+        this.batchMaxInFlight = batchMaxInFlight;
+        return this;
+    }
+
+    /**
+     * Min age (in milliseconds) of accumulation log entries to be compacted,
+     * used by counters in {@link CounterMetadata#WRITE_MODE_LOG} write mode
+     * only.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getLogCompactionGraceMs() {
+        return logCompactionGraceMs;
+    }
+
+    /**
+     * Sets min age (in milliseconds) of accumulation log entries to be
+     * compacted (default {@link #DEFAULT_LOG_COMPACTION_GRACE_MS}).
+     * 
+     * <p>
+     * Log compaction (see {@link CassandraCounter#compactLog(long)}) replaces
+     * each data point's log entries older than this grace period by a single
+     * entry. Entries are ordered by their client-generated time-based ids: the
+     * grace period must be well beyond the clock skew between clients plus
+     * the time an append may take to reach all replicas, otherwise a late
+     * entry could be overridden by the compacted one.
+     * </p>
+     * 
+     * @param logCompactionGraceMs
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setLogCompactionGraceMs(long logCompactionGraceMs) {
+        this.logCompactionGraceMs = logCompactionGraceMs;
+        return this;
+    }
+
+    /**
+     * Interval (in milliseconds) of the scheduled log compaction job,
+     * {@code 0} if disabled.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getLogCompactionIntervalMs() {
+        return logCompactionIntervalMs;
+    }
+
+    /**
+     * Sets interval (in milliseconds) of the scheduled log compaction job
+     * (default {@link #DEFAULT_LOG_COMPACTION_INTERVAL_MS}), {@code 0}
+     * disables it. Must be set before {@link #init()}.
+     * 
+     * <p>
+     * The job runs in a background thread and compacts the logs of the days
+     * in range {@code [now - grace - interval, now - grace]} (see
+     * {@link #setLogCompactionGraceMs(long)}) of all counters of this factory
+     * in {@link CounterMetadata#WRITE_MODE_LOG} write mode (see
+     * {@link #compactLogs(long)}). Counters evicted from the factory are not
+     * compacted until used again.
+     * </p>
+     * 
+     * @param logCompactionIntervalMs
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setLogCompactionIntervalMs(long logCompactionIntervalMs) {
+        this.logCompactionIntervalMs = logCompactionIntervalMs;
+        return this;
+    }
+
+    /**
+     * Compacts the logs of a day of all counters of this factory in
+     * {@link CounterMetadata#WRITE_MODE_LOG} write mode (see
+     * {@link CassandraCounter#compactLog(long)}). Failures are logged.
+     * 
+     * @param timestampMs
+     *            any timestamp of the day to compact
+     * @return number of data points whose log was compacted
+     * @since 0.7.1
+     */
+    public int compactLogs(long timestampMs) {
+        int result = 0;
+        for (CassandraCounter counter : logCounters.values()) {
+            try {
+                result += counter.compactLog(timestampMs);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot compact log of counter [" + counter.getName() + "]: "
+                        + e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    private void compactRecentLogs() {
+        long to = System.currentTimeMillis() - logCompactionGraceMs;
+        long from = to - logCompactionIntervalMs;
+        int[] dayFrom = CassandraCounter.toYYYYMM_DD(from);
+        int[] dayTo = CassandraCounter.toYYYYMM_DD(to);
+        if (dayFrom[0] != dayTo[0] || dayFrom[1] != dayTo[1]) {
+            compactLogs(from);
+        }
+        compactLogs(to);
+    }
+
+    /**
+     * Max number of queries in flight at the same time for one read of many
+     * counters.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getReadMaxInFlight() {
+        return readMaxInFlight;
+    }
+
+    /**
+     * Sets max number of queries in flight at the same time for one read of
+     * many counters (default {@link #DEFAULT_READ_MAX_IN_FLIGHT}): such a read
+     * issues one query per counter and day partition, further queries are
+     * submitted as earlier ones complete.
+     * 
+     * @param readMaxInFlight
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setReadMaxInFlight(int readMaxInFlight) {
+        this.readMaxInFlight = readMaxInFlight;
+        return this;
+    }
+
+    /**
+     * Max total number of data points of day rows held by the row cache.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getRowCacheMaxDataPoints() {
+        return rowCacheMaxDataPoints;
+    }
+
+    /**
+     * Sets max total number of data points of day rows held by the row cache
+     * (default {@link DayRowCache#DEFAULT_MAX_DATA_POINTS}), {@code 0} disables
+     * the row cache. A data point takes about 16 bytes; a day row of 1-second
+     * data points holds up to 86400 of them.
+     * 
+     * <p>
+     * The row cache is an in-process cache shared by all counters of this
+     * factory, used when no {@link #setCacheFactory(ICacheFactory)} is
+     * configured. Writes invalidate the cached rows they go to. Must be set
+     * before {@link #init()}.
+     * </p>
+     * 
+     * @param rowCacheMaxDataPoints
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setRowCacheMaxDataPoints(long rowCacheMaxDataPoints) {
+        this.rowCacheMaxDataPoints = rowCacheMaxDataPoints;
+        return this;
+    }
+
+    /**
+     * Time (in milliseconds) after which a cached day row is reloaded.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getRowCacheExpireMs() {
+        return rowCacheExpireMs;
+    }
+
+    /**
+     * Sets time (in milliseconds) after which a cached day row is reloaded
+     * (default {@link DayRowCache#DEFAULT_EXPIRE_AFTER_WRITE_MS}), which bounds
+     * how long writes from other processes stay invisible. Must be set before
+     * {@link #init()}.
+     * 
+     * @param rowCacheExpireMs
+     * @return
+     * @since 0.7.1
+     */
+    public CassandraCounterFactory setRowCacheExpireMs(long rowCacheExpireMs) {
+        this.rowCacheExpireMs = rowCacheExpireMs;
+        return this;
+    }
+
+    /**
+     * The shared row cache, {@code null} if disabled.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    DayRowCache getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * The batching writer, {@code null} if write batching is disabled.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    CounterBatchWriter getBatchWriter() {
+        return batchWriter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * CQL statements are recorded as backend commands (by their first keyword,
+     * {@code BATCH} for batches), lookups of the row cache and of the metadata
+     * cache as {@link ICounterMetrics#CACHE_CASSANDRA_ROW} and
+     * {@link ICounterMetrics#CACHE_CASSANDRA_METADATA}.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public CassandraCounterFactory setMetrics(ICounterMetrics metrics) {
+        super.setMetrics(metrics);
+        if (helper != null) {
+            helper.setMetrics(getMetrics());
+        }
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -235,9 +628,42 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
         this.helper = new SessionHelper(sessionManager, hostsAndPorts, username, password,
                 keyspace);
         helper.setCacheFactory(cacheFactory);
+        helper.setMetrics(getMetrics());
 
         this.metadataManager = new MetadataManager(helper).init();
 
+        if (rowCacheMaxDataPoints > 0) {
+            rowCache = new DayRowCache(rowCacheMaxDataPoints, rowCacheExpireMs);
+        }
+
+        if (batchWrites) {
+            batchWriter = new CounterBatchWriter(helper).setRowCache(rowCache)
+                    .setConsistencyLevel(consistencyLevelForWrite).setMaxDelayMs(batchMaxDelayMs)
+                    .setMaxBatchSize(batchMaxSize).setMaxInFlight(batchMaxInFlight).init();
+        }
+
+        if (logCompactionIntervalMs > 0) {
+            logCompactionExecutor = Executors
+                    .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "CassandraCounterFactory-logcompaction");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            logCompactionExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compactRecentLogs();
+                    } catch (Exception e) {
+                        LOGGER.warn(e.getMessage(), e);
+                    }
+                }
+            }, logCompactionIntervalMs, logCompactionIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
         return (CassandraCounterFactory) super.init();
     }
 
@@ -246,6 +672,35 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
      */
     @Override
     public void destroy() {
+        // counters (and their pending values) first, while the batch writer
+        // and the session are still alive
+        try {
+            super.destroy();
+        } catch (Exception e) {
+            LOGGER.warn(e.getMessage(), e);
+        }
+
+        if (logCompactionExecutor != null) {
+            try {
+                logCompactionExecutor.shutdownNow();
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                logCompactionExecutor = null;
+            }
+        }
+        logCounters.clear();
+
+        if (batchWriter != null) {
+            try {
+                batchWriter.destroy();
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                batchWriter = null;
+            }
+        }
+
         if (metadataManager != null) {
             try {
                 metadataManager.destroy();
@@ -255,6 +710,11 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
                 metadataManager = null;
             }
         }
+
+        if (rowCache != null) {
+            rowCache.invalidateAll();
+            rowCache = null;
+        }
     }
 
     /**
@@ -278,6 +738,185 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
         return metadataManager.getCounterMetadata(name);
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Writes of all counters are grouped by partition and sent as
+     * single-partition batches of at most {@link #getBatchMaxSize()}
+     * statements, executed in parallel: counter batches for counter-column
+     * updates, unlogged batches for the others. This method returns once all
+     * batches complete, and throws the first failure. Increments to
+     * counter-column tables go to the batching writer instead if write
+     * batching is enabled; "add" to a {@code bigint} table still reads the
+     * current value first.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public void addAll(Map<String, Long> values, long timestampMs) {
+        ICounterMetrics metrics = getMetrics();
+        long startNs = metrics.isEnabled() ? System.nanoTime() : 0;
+        List<Statement> counterUpdates = new ArrayList<>(), updates = new ArrayList<>();
+        List<CassandraCounter> counters = new ArrayList<>(values.size());
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            CassandraCounter counter = (CassandraCounter) getCounter(entry.getKey());
+            counter.add(timestampMs, entry.getValue().longValue(),
+                    counter.isCounterUpdate() ? counterUpdates : updates);
+            counters.add(counter);
+        }
+        List<ListenableFuture<ResultSet>> futures = new ArrayList<>();
+        RuntimeException error = null;
+        try {
+            executeBatches(BatchStatement.Type.COUNTER, counterUpdates, futures);
+            executeBatches(BatchStatement.Type.UNLOGGED, updates, futures);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        // wait for all submitted batches, even if one could not be submitted
+        for (ListenableFuture<ResultSet> future : futures) {
+            try {
+                Uninterruptibles.getUninterruptibly(future);
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                }
+            }
+        }
+        for (CassandraCounter counter : counters) {
+            counter.invalidateCachedRows(timestampMs);
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordLatency(Operation.MULTI_ADD, System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * Executes statements as batches of at most {@link #getBatchMaxSize()}
+     * statements of the same partition: a multi-partition batch is
+     * coordinated across the replicas of all its partitions.
+     * 
+     * @param type
+     * @param statements
+     * @param futures
+     *            futures of submitted batches are added to this list
+     * @since 0.7.1
+     */
+    private void executeBatches(BatchStatement.Type type, List<Statement> statements,
+            List<ListenableFuture<ResultSet>> futures) {
+        Cluster cluster = helper.getSession().getCluster();
+        ProtocolVersion protocolVersion = cluster.getConfiguration().getProtocolOptions()
+                .getProtocolVersion();
+        CodecRegistry codecRegistry = cluster.getConfiguration().getCodecRegistry();
+        Map<Object, List<Statement>> partitions = new LinkedHashMap<>();
+        for (Statement stm : statements) {
+            ByteBuffer routingKey = stm.getRoutingKey(protocolVersion, codecRegistry);
+            // a statement without routing key is batched alone
+            Object partition = routingKey != null ? routingKey : stm;
+            List<Statement> partitionStatements = partitions.get(partition);
+            if (partitionStatements == null) {
+                partitionStatements = new ArrayList<>();
+                partitions.put(partition, partitionStatements);
+            }
+            partitionStatements.add(stm);
+        }
+        for (List<Statement> partitionStatements : partitions.values()) {
+            for (int i = 0, n = partitionStatements.size(); i < n; i += batchMaxSize) {
+                List<Statement> chunk = partitionStatements.subList(i,
+                        Math.min(i + batchMaxSize, n));
+                Statement stm;
+                if (chunk.size() == 1) {
+                    stm = chunk.get(0);
+                } else {
+                    BatchStatement batch = new BatchStatement(type);
+                    batch.addAll(chunk);
+                    stm = batch;
+                }
+                stm.setConsistencyLevel(consistencyLevelForWrite);
+                futures.add(helper.executeAsync(stm));
+                getMetrics().recordBatch(chunk.size());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Queries of all counters are submitted asynchronously first, then
+     * waited for: they are executed concurrently, at most
+     * {@link #getReadMaxInFlight()} at a time.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readLongSeries(List<ICounter> counters, long timestampStartMs,
+            long timestampEndMs, int steps, Type type, List<LongSeries> results) {
+        List<List<CassandraCounter.PendingRead>> reads = new ArrayList<>(counters.size());
+        Semaphore inFlight = new Semaphore(Math.max(readMaxInFlight, 1));
+        for (int i = 0, n = counters.size(); i < n; i++) {
+            reads.add(((CassandraCounter) counters.get(i)).submitLongSeries(timestampStartMs,
+                    timestampEndMs, steps, type, results.get(i), inFlight));
+        }
+        for (int i = 0, n = counters.size(); i < n; i++) {
+            ((CassandraCounter) counters.get(i)).completeLongSeries(reads.get(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The counter's metadata must point to a blob table (see
+     * {@code SCHEMA.md}).
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IDistributionCounter createDistributionCounter(String name) {
+        CounterMetadata metadata = getCounterMetadata(name);
+        if (metadata == null) {
+            throw new IllegalStateException("No metadata found for counter [" + name + "]!");
+        }
+        CassandraDistributionCounter counter = new CassandraDistributionCounter(helper, name,
+                metadata);
+        counter.setRelativeAccuracy(getSketchRelativeAccuracy())
+                .setMaxNumBins(getSketchMaxNumBins())
+                .setFlushIntervalMs(getSketchFlushIntervalMs());
+        counter.setCounterFactory(this).init();
+        return counter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The counter's metadata must point to a blob table (see
+     * {@code SCHEMA.md}).
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IUniqueCounter createUniqueCounter(String name) {
+        CounterMetadata metadata = getCounterMetadata(name);
+        if (metadata == null) {
+            throw new IllegalStateException("No metadata found for counter [" + name + "]!");
+        }
+        CassandraUniqueCounter counter = new CassandraUniqueCounter(helper, name, metadata);
+        counter.setPrecision(getHllPrecision());
+        counter.setCounterFactory(this).init();
+        return counter;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -288,9 +927,40 @@ public class CassandraCounterFactory extends AbstractCounterFactory {
             throw new IllegalStateException("No metadata found for counter [" + name + "]!");
         }
         CassandraCounter counter = new CassandraCounter(helper, name, metadata);
+        counter.setRollupSteps(getRollupSteps());
         counter.setCounterFactory(this);
         counter.init();
+        if (metadata.isLogWrites()) {
+            logCounters.put(name, counter);
+        }
         return counter;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void destroyCounter(ICounter counter) {
+        logCounters.remove(counter.getName(), counter);
+        super.destroyCounter(counter);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Reads and "add"s to counter-column or accumulation-log tables are
+     * executed with the driver's asynchronous API (see
+     * {@link CassandraAsyncCounter}).
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IAsyncCounter createAsyncCounter(String name) {
+        return new CassandraAsyncCounter(this, name);
+    }
+
 }
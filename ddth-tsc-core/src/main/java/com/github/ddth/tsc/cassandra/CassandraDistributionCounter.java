@@ -0,0 +1,122 @@
+package com.github.ddth.tsc.cassandra;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractDistributionCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DistributionSketch;
+import com.github.ddth.tsc.cassandra.internal.CounterMetadata;
+import com.github.ddth.tsc.cassandra.internal.SessionHelper;
+
+/**
+ * Cassandra-backed distribution counter.
+ * 
+ * <p>
+ * Sketches are stored encoded (see {@link DistributionSketch#toBytes()}) in a
+ * {@code blob} column {@code v} of a table with the same primary key as the
+ * counter table (see {@code SCHEMA.md}). A merge reads the current sketch and
+ * writes the merged one with a lightweight transaction
+ * ({@code IF NOT EXISTS}/{@code IF v=?}), retried if another writer got in
+ * between.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraDistributionCounter extends AbstractDistributionCounter {
+
+    private CounterMetadata metadata;
+    private SessionHelper sessionHelper;
+
+    private BlobCells blobCells;
+
+    public CassandraDistributionCounter() {
+    }
+
+    public CassandraDistributionCounter(SessionHelper sessionHelper, String name,
+            CounterMetadata metadata) {
+        super(name);
+        setMetadata(metadata);
+        setSessionHelper(sessionHelper);
+    }
+
+    public CounterMetadata getMetadata() {
+        return metadata;
+    }
+
+    public CassandraDistributionCounter setMetadata(CounterMetadata metadata) {
+        this.metadata = metadata;
+        return this;
+    }
+
+    public SessionHelper getSessionHelper() {
+        return sessionHelper;
+    }
+
+    public CassandraDistributionCounter setSessionHelper(SessionHelper sessionHelper) {
+        this.sessionHelper = sessionHelper;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CassandraCounterFactory getCounterFactory() {
+        return (CassandraCounterFactory) super.getCounterFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CassandraDistributionCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof CassandraCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException(
+                    "Argument must be an instance of " + CassandraCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        super.init();
+        blobCells = new BlobCells(sessionHelper, metadata.getTable()).prepare();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(long key, final DistributionSketch values) {
+        CassandraCounterFactory factory = getCounterFactory();
+        blobCells.merge(getName(), key, new BlobCells.Merger() {
+            @Override
+            public byte[] merge(byte[] current) {
+                return current != null
+                        ? DistributionSketch.fromBytes(current).merge(values).toBytes()
+                        : values.toBytes();
+            }
+        }, factory.getConsistencyLevelForReadForUpdate(), factory.getConsistencyLevelForWrite());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, final DataPoint[] result) {
+        blobCells.readRange(getName(), keyStart, keyEnd,
+                getCounterFactory().getConsistencyLevelForRead(), new BlobCells.Visitor() {
+                    @Override
+                    public void visit(long key, byte[] value) {
+                        merge(result, key, DistributionSketch.fromBytes(value));
+                    }
+                });
+    }
+}
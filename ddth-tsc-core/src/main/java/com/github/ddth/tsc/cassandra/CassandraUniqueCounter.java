@@ -0,0 +1,131 @@
+package com.github.ddth.tsc.cassandra;
+
+import java.util.Collection;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractUniqueCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.HyperLogLog;
+import com.github.ddth.tsc.cassandra.internal.CounterMetadata;
+import com.github.ddth.tsc.cassandra.internal.SessionHelper;
+
+/**
+ * Cassandra-backed unique counter.
+ * 
+ * <p>
+ * Register sets are stored encoded (see {@link HyperLogLog#toBytes()}) in the
+ * same kind of {@code blob} table as {@link CassandraDistributionCounter}'s,
+ * and united the same way (lightweight transaction per write). Items are
+ * hashed locally, {@link #addAll(long, Collection)} writes many items with one
+ * transaction.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraUniqueCounter extends AbstractUniqueCounter {
+
+    private CounterMetadata metadata;
+    private SessionHelper sessionHelper;
+
+    private BlobCells blobCells;
+
+    public CassandraUniqueCounter() {
+    }
+
+    public CassandraUniqueCounter(SessionHelper sessionHelper, String name,
+            CounterMetadata metadata) {
+        super(name);
+        setMetadata(metadata);
+        setSessionHelper(sessionHelper);
+    }
+
+    public CounterMetadata getMetadata() {
+        return metadata;
+    }
+
+    public CassandraUniqueCounter setMetadata(CounterMetadata metadata) {
+        this.metadata = metadata;
+        return this;
+    }
+
+    public SessionHelper getSessionHelper() {
+        return sessionHelper;
+    }
+
+    public CassandraUniqueCounter setSessionHelper(SessionHelper sessionHelper) {
+        this.sessionHelper = sessionHelper;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CassandraCounterFactory getCounterFactory() {
+        return (CassandraCounterFactory) super.getCounterFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CassandraUniqueCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof CassandraCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException(
+                    "Argument must be an instance of " + CassandraCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        super.init();
+        blobCells = new BlobCells(sessionHelper, metadata.getTable()).prepare();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAll(long timestampMs, Collection<String> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        final HyperLogLog values = newHyperLogLog();
+        for (String item : items) {
+            values.add(item);
+        }
+        CassandraCounterFactory factory = getCounterFactory();
+        blobCells.merge(getName(), toTimeSeriesPoint(timestampMs), new BlobCells.Merger() {
+            @Override
+            public byte[] merge(byte[] current) {
+                return current != null ? HyperLogLog.fromBytes(current).merge(values).toBytes()
+                        : values.toBytes();
+            }
+        }, factory.getConsistencyLevelForReadForUpdate(), factory.getConsistencyLevelForWrite());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, final DataPoint[] result) {
+        final HyperLogLog[] unions = new HyperLogLog[result.length];
+        blobCells.readRange(getName(), keyStart, keyEnd,
+                getCounterFactory().getConsistencyLevelForRead(), new BlobCells.Visitor() {
+                    @Override
+                    public void visit(long key, byte[] value) {
+                        merge(result, unions, key, HyperLogLog.fromBytes(value));
+                    }
+                });
+        setCardinalities(result, unions);
+    }
+}
@@ -0,0 +1,546 @@
+package com.github.ddth.tsc.cassandra.internal;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.exceptions.BootstrappingException;
+import com.datastax.driver.core.exceptions.BusyPoolException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.github.ddth.cacheadapter.ICache;
+import com.github.ddth.tsc.internal.WriteBuffer;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Batching writer for counter-column tables.
+ *
+ * <p>
+ * Increments are coalesced in memory per cell {@code (c, ym, d, t)} and flushed
+ * periodically as batches grouped by partition key {@code (c, ym, d)}, so that
+ * each batch is applied by the replicas of a single partition. At most
+ * {@code maxInFlight} batches are executed at the same time; the flush blocks
+ * until a slot is available.
+ * </p>
+ *
+ * <p>
+ * Cassandra does not accept counter updates in {@code UNLOGGED} batches: batches
+ * are of type {@link BatchStatement.Type#COUNTER}, which are not logged either.
+ * </p>
+ *
+ * <p>
+ * Batch completions are handled by a small pool of callback threads, off the
+ * driver's I/O threads: they delete cached entries of external caches, which
+ * may block.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CounterBatchWriter {
+
+    public final static long DEFAULT_MAX_DELAY_MS = 1000;
+    public final static int DEFAULT_MAX_BATCH_SIZE = 100;
+    public final static int DEFAULT_MAX_IN_FLIGHT = 32;
+    public final static int DEFAULT_MAX_PENDING_WRITES = 10000;
+    public final static int DEFAULT_NUM_CALLBACK_THREADS = 4;
+
+    private final static long DEFAULT_TIMEOUT_MS = 10000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(CounterBatchWriter.class);
+
+    /**
+     * Identifies a counter cell in the write buffer.
+     */
+    private final static class Cell {
+        private final String table, counterName;
+        private final int yyyymm, dd;
+        private final long timestamp;
+        /* cache entry (of the owning counter) holding the cell's row */
+        private final String cacheName, cacheKey;
+
+        Cell(String table, String counterName, int yyyymm, int dd, long timestamp,
+                String cacheName, String cacheKey) {
+            this.table = table;
+            this.counterName = counterName;
+            this.yyyymm = yyyymm;
+            this.dd = dd;
+            this.timestamp = timestamp;
+            this.cacheName = cacheName;
+            this.cacheKey = cacheKey;
+        }
+
+        String partition() {
+            return table + "/" + counterName + "/" + yyyymm + "/" + dd;
+        }
+
+        @Override
+        public int hashCode() {
+            return (counterName.hashCode() * 31 + (int) (timestamp ^ (timestamp >>> 32))) * 31
+                    + table.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Cell)) {
+                return false;
+            }
+            Cell other = (Cell) obj;
+            return timestamp == other.timestamp && yyyymm == other.yyyymm && dd == other.dd
+                    && counterName.equals(other.counterName) && table.equals(other.table);
+        }
+    }
+
+    private SessionHelper sessionHelper;
+    private DayRowCache rowCache;
+    private ConsistencyLevel consistencyLevel = ConsistencyLevel.LOCAL_ONE;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+
+    private WriteBuffer<Cell> writeBuffer;
+    private Semaphore inFlight;
+    private ScheduledExecutorService executor;
+    /*
+     * not the scheduler: a flush running there blocks until completions
+     * release in-flight slots
+     */
+    private ExecutorService callbackExecutor;
+    /* per cell: completes when all batches of the cell in flight have completed */
+    private final ConcurrentMap<Cell, ListenableFuture<?>> cellBatches = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    /* not a monitor: flushes block, a virtual thread must not pin its carrier */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public CounterBatchWriter() {
+    }
+
+    public CounterBatchWriter(SessionHelper sessionHelper) {
+        this.sessionHelper = sessionHelper;
+    }
+
+    public SessionHelper getSessionHelper() {
+        return sessionHelper;
+    }
+
+    public CounterBatchWriter setSessionHelper(SessionHelper sessionHelper) {
+        this.sessionHelper = sessionHelper;
+        return this;
+    }
+
+    public DayRowCache getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * Row cache whose rows are invalidated when batches complete, as reads
+     * that loaded a row while its increments were in flight may have missed
+     * them (see {@link DayRowCache}).
+     *
+     * @param rowCache
+     * @return
+     */
+    public CounterBatchWriter setRowCache(DayRowCache rowCache) {
+        this.rowCache = rowCache;
+        return this;
+    }
+
+    public ConsistencyLevel getConsistencyLevel() {
+        return consistencyLevel;
+    }
+
+    public CounterBatchWriter setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    /**
+     * Max time (in milliseconds) an increment stays in the buffer.
+     *
+     * @return
+     */
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    public CounterBatchWriter setMaxDelayMs(long maxDelayMs) {
+        this.maxDelayMs = maxDelayMs;
+        return this;
+    }
+
+    /**
+     * Max number of statements per batch.
+     *
+     * @return
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public CounterBatchWriter setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Max number of batches being executed at the same time.
+     *
+     * @return
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public CounterBatchWriter setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Number of buffered cells that triggers an early flush.
+     *
+     * @return
+     */
+    public int getMaxPendingWrites() {
+        return maxPendingWrites;
+    }
+
+    public CounterBatchWriter setMaxPendingWrites(int maxPendingWrites) {
+        this.maxPendingWrites = maxPendingWrites;
+        return this;
+    }
+
+    public CounterBatchWriter init() {
+        if (maxBatchSize < 1 || maxInFlight < 1) {
+            throw new IllegalStateException("Invalid max batch size [" + maxBatchSize
+                    + "] or max in-flight batches [" + maxInFlight + "]!");
+        }
+        writeBuffer = new WriteBuffer<Cell>();
+        inFlight = new Semaphore(maxInFlight);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, CounterBatchWriter.class.getSimpleName());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush(false);
+            }
+        }, maxDelayMs, maxDelayMs, TimeUnit.MILLISECONDS);
+        callbackExecutor = Executors.newFixedThreadPool(
+                Math.min(maxInFlight, DEFAULT_NUM_CALLBACK_THREADS), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r,
+                                CounterBatchWriter.class.getSimpleName() + "-callback");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        return this;
+    }
+
+    /**
+     * Stops the writer, flushing all buffered increments.
+     */
+    public void destroy() {
+        if (executor != null) {
+            try {
+                executor.shutdown();
+                executor.awaitTermination(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                executor = null;
+            }
+        }
+        if (writeBuffer != null) {
+            flush(true);
+        }
+        if (callbackExecutor != null) {
+            try {
+                callbackExecutor.shutdown();
+                callbackExecutor.awaitTermination(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                callbackExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Buffers an increment.
+     *
+     * @param table
+     * @param counterName
+     * @param yyyymm
+     * @param dd
+     * @param timestamp
+     * @param cacheName
+     *            name of the cache holding the cell's row, invalidated once the
+     *            increment has been written
+     * @param cacheKey
+     * @param delta
+     */
+    public void add(String table, String counterName, int yyyymm, int dd, long timestamp,
+            String cacheName, String cacheKey, long delta) {
+        writeBuffer.add(new Cell(table, counterName, yyyymm, dd, timestamp, cacheName, cacheKey),
+                delta);
+        if (writeBuffer.size() >= maxPendingWrites && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(false);
+                    }
+                });
+            } catch (Exception e) {
+                // executor is being shut down, destroy() will flush
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffered increment of one cell, then waits until it and all
+     * in-flight batches updating the cell have completed: reads of the cell
+     * then see all increments submitted so far. Other cells stay buffered.
+     *
+     * @param table
+     * @param counterName
+     * @param yyyymm
+     * @param dd
+     * @param timestamp
+     * @param cacheName
+     * @param cacheKey
+     */
+    public void flush(String table, String counterName, int yyyymm, int dd, long timestamp,
+            String cacheName, String cacheKey) {
+        Cell cell = new Cell(table, counterName, yyyymm, dd, timestamp, cacheName, cacheKey);
+        WriteBuffer.Write<Cell> write = writeBuffer.take(cell);
+        if (write != null) {
+            List<WriteBuffer.Write<Cell>> writes = new ArrayList<>();
+            writes.add(write);
+            executeBatch(writes);
+        }
+        ListenableFuture<?> inFlightBatches = cellBatches.get(cell);
+        if (inFlightBatches != null) {
+            try {
+                inFlightBatches.get(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // reported by the batch's callback
+            } catch (TimeoutException e) {
+                LOGGER.warn("Timeout waiting for in-flight batches to complete.");
+            }
+            if (inFlightBatches.isDone()) {
+                cellBatches.remove(cell, inFlightBatches);
+            }
+        }
+    }
+
+    /**
+     * Flushes all buffered increments.
+     *
+     * @param waitForCompletion
+     *            if {@code true}, also waits until all in-flight batches
+     *            (including ones from previous flushes) have completed
+     */
+    public void flush(boolean waitForCompletion) {
+        flushLock.lock();
+        try {
+            flushScheduled.set(false);
+            Map<String, List<WriteBuffer.Write<Cell>>> partitions = new LinkedHashMap<>();
+            for (WriteBuffer.Write<Cell> write : writeBuffer.drain()) {
+                String partition = write.key().partition();
+                List<WriteBuffer.Write<Cell>> writes = partitions.get(partition);
+                if (writes == null) {
+                    writes = new ArrayList<>();
+                    partitions.put(partition, writes);
+                }
+                writes.add(write);
+            }
+            for (List<WriteBuffer.Write<Cell>> writes : partitions.values()) {
+                for (int i = 0; i < writes.size(); i += maxBatchSize) {
+                    executeBatch(writes.subList(i, Math.min(i + maxBatchSize, writes.size())));
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        if (waitForCompletion) {
+            try {
+                if (inFlight.tryAcquire(maxInFlight, DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    inFlight.release(maxInFlight);
+                } else {
+                    LOGGER.warn("Timeout waiting for in-flight batches to complete.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void executeBatch(final List<WriteBuffer.Write<Cell>> writes) {
+        final List<WriteBuffer.Write<Cell>> batchWrites = new ArrayList<>(writes);
+        BatchStatement batch = new BatchStatement(BatchStatement.Type.COUNTER);
+        for (WriteBuffer.Write<Cell> write : batchWrites) {
+            Cell cell = write.key();
+            String cql = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_ADD_COUNTER, cell.table);
+            batch.add(SessionHelper.bind(sessionHelper.prepare(cql), null, write.value(),
+                    cell.counterName, cell.yyyymm, cell.dd, cell.timestamp));
+        }
+        batch.setConsistencyLevel(consistencyLevel);
+
+        inFlight.acquireUninterruptibly();
+        sessionHelper.getMetrics().recordBatch(batchWrites.size());
+        ResultSetFuture future;
+        try {
+            future = sessionHelper.executeAsync(batch);
+        } catch (RuntimeException e) {
+            // not sent
+            inFlight.release();
+            onFailure(batchWrites, e, true);
+            return;
+        }
+        for (WriteBuffer.Write<Cell> write : batchWrites) {
+            trackInFlight(write.key(), future);
+        }
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                inFlight.release();
+                untrackInFlight(batchWrites);
+                for (WriteBuffer.Write<Cell> write : batchWrites) {
+                    Cell cell = write.key();
+                    ICache cache = sessionHelper.getCache(cell.cacheName);
+                    if (cache != null) {
+                        cache.delete(cell.cacheKey);
+                    }
+                }
+                invalidateRows(batchWrites);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                inFlight.release();
+                untrackInFlight(batchWrites);
+                // a failed batch may have been applied
+                invalidateRows(batchWrites);
+                CounterBatchWriter.this.onFailure(batchWrites, t, isNotApplied(t));
+            }
+        }, callbackExecutor);
+    }
+
+    private void trackInFlight(Cell cell, ListenableFuture<?> future) {
+        for (;;) {
+            ListenableFuture<?> current = cellBatches.get(cell);
+            if (current == null) {
+                if (cellBatches.putIfAbsent(cell, future) == null) {
+                    return;
+                }
+            } else if (cellBatches.replace(cell, current,
+                    current.isDone() ? future : Futures.successfulAsList(current, future))) {
+                return;
+            }
+        }
+    }
+
+    private void untrackInFlight(List<WriteBuffer.Write<Cell>> writes) {
+        for (WriteBuffer.Write<Cell> write : writes) {
+            ListenableFuture<?> current = cellBatches.get(write.key());
+            if (current != null && current.isDone()) {
+                cellBatches.remove(write.key(), current);
+            }
+        }
+    }
+
+    private void invalidateRows(List<WriteBuffer.Write<Cell>> writes) {
+        if (rowCache != null) {
+            for (WriteBuffer.Write<Cell> write : writes) {
+                Cell cell = write.key();
+                rowCache.invalidate(DayRowCache.key(cell.cacheName, cell.cacheKey));
+            }
+        }
+    }
+
+    /**
+     * Does an error prove that a batch has not been applied: rejected by the
+     * coordinator before being executed, or never sent (e.g. no connection
+     * available)?
+     *
+     * @param t
+     * @return
+     */
+    private static boolean isNotApplied(Throwable t) {
+        if (t instanceof UnavailableException || t instanceof OverloadedException
+                || t instanceof BootstrappingException || t instanceof BusyPoolException) {
+            return true;
+        }
+        if (t instanceof NoHostAvailableException) {
+            // not applied by any of the hosts tried (none if no error)
+            for (Throwable error : ((NoHostAvailableException) t).getErrors().values()) {
+                if (!isNotApplied(error)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Failed increments are put back to the buffer and retried with the next
+     * flush only if the batch has certainly not been applied: counter updates
+     * are not idempotent, a batch that timed out or whose connection dropped
+     * may have been applied. Other batches are dropped.
+     */
+    private void onFailure(List<WriteBuffer.Write<Cell>> writes, Throwable t,
+            boolean notApplied) {
+        if (!notApplied) {
+            LOGGER.warn("Cannot write batch of [" + writes.size()
+                    + "] increment(s), batch may or may not have been applied, dropped: "
+                    + t.getMessage(), t);
+            return;
+        }
+        LOGGER.warn("Cannot write batch of [" + writes.size() + "] increment(s), will retry: "
+                + t.getMessage(), t);
+        for (WriteBuffer.Write<Cell> write : writes) {
+            writeBuffer.requeue(write);
+        }
+    }
+}
@@ -16,10 +16,28 @@ public class CounterMetadata {
 
     private final static String KEY_TABLE = "table";
     private final static String KEY_COUNTER_COLUMN = "counter_column";
+    private final static String KEY_WRITE_MODE = "write_mode";
+
+    /**
+     * Data points are stored in column {@code v} of the counter table, either a
+     * {@code counter} or a {@code bigint} column (default).
+     * 
+     * @since 0.7.1
+     */
+    public final static String WRITE_MODE_DIRECT = "direct";
+
+    /**
+     * {@code add()}s and {@code set()}s are appended to an accumulation log
+     * table and folded on read, neither of them reads before writing.
+     * 
+     * @since 0.7.1
+     */
+    public final static String WRITE_MODE_LOG = "log";
 
     private String name;
     private String table = CqlTemplate.TABLE_COUNTER;
     private boolean isCounterColumn = true;
+    private String writeMode = WRITE_MODE_DIRECT;
 
     public String getName() {
         return name;
@@ -45,6 +63,34 @@ public class CounterMetadata {
         this.isCounterColumn = isCounterColumn;
     }
 
+    /**
+     * Write mode, either {@link #WRITE_MODE_DIRECT} or {@link #WRITE_MODE_LOG}.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public String getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * @param writeMode
+     * @since 0.7.1
+     */
+    public void setWriteMode(String writeMode) {
+        this.writeMode = writeMode;
+    }
+
+    /**
+     * Is the counter stored in an accumulation log table?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isLogWrites() {
+        return WRITE_MODE_LOG.equalsIgnoreCase(writeMode);
+    }
+
     /**
      * @return
      * @since 0.7.0
@@ -78,6 +124,7 @@ public class CounterMetadata {
             {
                 put(KEY_TABLE, table);
                 put(KEY_COUNTER_COLUMN, isCounterColumn);
+                put(KEY_WRITE_MODE, writeMode);
             }
         };
     }
@@ -96,6 +143,8 @@ public class CounterMetadata {
         Boolean boolValue = DPathUtils.getValue(data, KEY_COUNTER_COLUMN, Boolean.class);
         metadata.isCounterColumn = boolValue != null ? boolValue.booleanValue() : false;
         metadata.table = DPathUtils.getValue(data, KEY_TABLE, String.class);
+        String writeMode = DPathUtils.getValue(data, KEY_WRITE_MODE, String.class);
+        metadata.writeMode = writeMode != null ? writeMode : WRITE_MODE_DIRECT;
         return metadata;
     }
 }
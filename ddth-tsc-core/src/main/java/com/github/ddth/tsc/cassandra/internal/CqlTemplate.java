@@ -21,6 +21,28 @@ public class CqlTemplate {
     public final static String CQL_TEMPLATE_SET_COUNTER = "UPDATE {0} SET v=? WHERE c=? AND ym=? AND d=? AND t=?";
     public final static String CQL_TEMPLATE_GET_COUNTER = "SELECT c,ym,d,t,v FROM {0} WHERE c=? AND ym=? AND d=? AND t=?";
     public final static String CQL_TEMPLATE_GET_COUNTER_ROW = "SELECT c,ym,d,t,v FROM {0} WHERE c=? AND ym=? AND d=?";
+    public final static String CQL_TEMPLATE_GET_COUNTER_RANGE = "SELECT c,ym,d,t,v FROM {0} WHERE c=? AND ym=? AND d=? AND t>=? AND t<?";
+
+    /*
+     * Accumulation log table (since 0.7.1): (c, ym, d) is the partition key,
+     * entries of a data point t are ordered by timeuuid id; s tells a "set"
+     * entry from an "add" one.
+     */
+    public final static String COL_LOG_ID = "id";
+    public final static String COL_LOG_IS_SET = "s";
+
+    public final static String CQL_TEMPLATE_APPEND_LOG = "INSERT INTO {0} (c,ym,d,t,id,s,v) VALUES (?,?,?,?,?,?,?)";
+    public final static String CQL_TEMPLATE_GET_LOG = "SELECT t,id,s,v FROM {0} WHERE c=? AND ym=? AND d=? AND t=?";
+    public final static String CQL_TEMPLATE_GET_LOG_ROW = "SELECT t,id,s,v FROM {0} WHERE c=? AND ym=? AND d=?";
+    public final static String CQL_TEMPLATE_GET_LOG_RANGE = "SELECT t,id,s,v FROM {0} WHERE c=? AND ym=? AND d=? AND t>=? AND t<?";
+    public final static String CQL_TEMPLATE_TRIM_LOG = "DELETE FROM {0} WHERE c=? AND ym=? AND d=? AND t=? AND id<?";
+
+    /*
+     * Blob tables (since 0.7.1): same layout as the counter table, v is a blob
+     * holding an encoded sketch or register set, updated with compare-and-set.
+     */
+    public final static String CQL_TEMPLATE_INSERT_BLOB = "INSERT INTO {0} (c,ym,d,t,v) VALUES (?,?,?,?,?) IF NOT EXISTS";
+    public final static String CQL_TEMPLATE_CAS_BLOB = "UPDATE {0} SET v=? WHERE c=? AND ym=? AND d=? AND t=? IF v=?";
 
     public final static String COL_METADATA_COUNTER = "c";
     public final static String COL_METADATA_METADATA = "o";
@@ -0,0 +1,129 @@
+package com.github.ddth.tsc.cassandra.internal;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.LongSeries;
+
+/**
+ * Data points of a counter's day row, held as two parallel timestamp-ordered
+ * {@code long} arrays (timestamps and values).
+ * 
+ * <p>
+ * Rows are loaded in clustering order, so that loading appends; writes update
+ * a data point in place, a new data point is inserted at its position (which
+ * is an append for the latest data point).
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class DayRow implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long blockSize;
+    private long[] keys, values;
+    private int size;
+
+    /**
+     * @param blockSize
+     *            time span of a data point
+     * @param capacity
+     *            initial capacity
+     */
+    public DayRow(long blockSize, int capacity) {
+        this.blockSize = blockSize;
+        this.keys = new long[Math.max(capacity, 4)];
+        this.values = new long[keys.length];
+    }
+
+    /**
+     * Number of data points.
+     * 
+     * @return
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private int indexOf(long key) {
+        if (size > 0 && keys[size - 1] < key) {
+            return -(size + 1);
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, long key, long value) {
+        if (size == keys.length) {
+            int capacity = size + (size >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        if (index < size) {
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Adds a value to a data point.
+     * 
+     * @param key
+     * @param delta
+     */
+    public synchronized void add(long key, long delta) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] += delta;
+        } else {
+            insert(-(index + 1), key, delta);
+        }
+    }
+
+    /**
+     * Sets a data point's value.
+     * 
+     * @param key
+     * @param value
+     */
+    public synchronized void set(long key, long value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            insert(-(index + 1), key, value);
+        }
+    }
+
+    /**
+     * Aggregates data points in range [{@code keyStart}, {@code keyEnd}] into
+     * a series.
+     * 
+     * @param keyStart
+     * @param keyEnd
+     * @param result
+     */
+    public synchronized void accumulateInto(long keyStart, long keyEnd, LongSeries result) {
+        int index = indexOf(keyStart);
+        for (int i = index >= 0 ? index : -(index + 1); i < size && keys[i] <= keyEnd; i++) {
+            result.accumulate(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Gets a data point.
+     * 
+     * @param key
+     * @return the data point, {@code null} if not found
+     */
+    public synchronized DataPoint get(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? new DataPoint(Type.SUM, key, values[index], blockSize) : null;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.ddth.tsc.cassandra.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Size-bounded, in-process cache of {@link DayRow}s, shared by all counters of
+ * a factory.
+ * 
+ * <p>
+ * The cache is bounded by the total number of data points of cached rows (a
+ * data point takes two {@code long}s), not by the number of rows: a full day
+ * row of 1-second data points holds 86400 of them.
+ * </p>
+ * 
+ * <p>
+ * Cached rows are never updated: a write invalidates the row it goes to, when
+ * it is submitted and again when it completes. A row loaded concurrently with
+ * a write may miss it, so every invalidation also bumps a version of the row
+ * (see {@link #version(String)}): a loaded row is only cached if no write
+ * happened since the load started (see {@link #put(String, DayRow, long)}).
+ * Writes of other processes become visible once a row expires.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class DayRowCache {
+
+    public final static long DEFAULT_MAX_DATA_POINTS = 1000000;
+    public final static long DEFAULT_EXPIRE_AFTER_WRITE_MS = 60000;
+
+    private final static int NUM_VERSION_STRIPES = 1024;
+
+    private final Cache<String, DayRow> cache;
+    /* versions of rows, striped by key: a write to any row of a stripe bumps its version */
+    private final AtomicLongArray versions = new AtomicLongArray(NUM_VERSION_STRIPES);
+
+    public DayRowCache() {
+        this(DEFAULT_MAX_DATA_POINTS, DEFAULT_EXPIRE_AFTER_WRITE_MS);
+    }
+
+    /**
+     * @param maxDataPoints
+     *            max total number of data points of cached rows
+     * @param expireAfterWriteMs
+     *            a row is reloaded at most this long (in milliseconds) after
+     *            being loaded
+     */
+    public DayRowCache(long maxDataPoints, long expireAfterWriteMs) {
+        int numProcessors = Runtime.getRuntime().availableProcessors();
+        cache = CacheBuilder.newBuilder().concurrencyLevel(Math.max(numProcessors, 8))
+                .maximumWeight(maxDataPoints).weigher(new Weigher<String, DayRow>() {
+                    @Override
+                    public int weigh(String key, DayRow row) {
+                        return Math.max(row.size(), 1);
+                    }
+                }).expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * Builds a cache key.
+     * 
+     * @param counterName
+     * @param rowKey
+     *            identifies the row within the counter (e.g. {@code yyyymmdd})
+     * @return
+     */
+    public static String key(String counterName, String rowKey) {
+        return counterName + "/" + rowKey;
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (NUM_VERSION_STRIPES - 1);
+    }
+
+    /**
+     * Gets a cached row.
+     * 
+     * @param key
+     * @return the row, {@code null} if not cached
+     */
+    public DayRow get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Current version of a row, to be taken before loading it.
+     * 
+     * @param key
+     * @return
+     */
+    public long version(String key) {
+        return versions.get(stripe(key));
+    }
+
+    /**
+     * Caches a loaded row, unless it has been written since the load started.
+     * 
+     * @param key
+     * @param row
+     * @param version
+     *            version of the row (see {@link #version(String)}) taken before
+     *            the load started
+     * @return {@code true} if the row was cached
+     */
+    public boolean put(String key, DayRow row, long version) {
+        int stripe = stripe(key);
+        if (versions.get(stripe) != version) {
+            return false;
+        }
+        cache.put(key, row);
+        if (versions.get(stripe) != version) {
+            // a write raced with the put: its invalidation may have run first
+            cache.invalidate(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Invalidates a row that has been written (or is being written).
+     * 
+     * @param key
+     */
+    public void invalidate(String key) {
+        versions.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < NUM_VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+}
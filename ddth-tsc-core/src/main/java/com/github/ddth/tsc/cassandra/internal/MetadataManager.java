@@ -10,10 +10,9 @@ import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Row;
 import com.github.ddth.commons.utils.DPathUtils;
 import com.github.ddth.commons.utils.SerializationUtils;
-import com.github.ddth.cql.CqlUtils;
+import com.github.ddth.tsc.internal.NonPinningLoadingCache;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
 /**
  * Counter metadata manager.
@@ -72,13 +71,14 @@ public class MetadataManager {
 
     public MetadataManager init() {
         int numProcessors = Runtime.getRuntime().availableProcessors();
-        cache = CacheBuilder.newBuilder().concurrencyLevel(numProcessors)
-                .expireAfterWrite(5, TimeUnit.MINUTES).build(new CacheLoader<String, String>() {
-                    @Override
-                    public String load(String key) throws Exception {
-                        return _read(key);
-                    }
-                });
+        cache = new NonPinningLoadingCache<String>(CacheBuilder.newBuilder()
+                .concurrencyLevel(numProcessors).expireAfterWrite(5, TimeUnit.MINUTES)
+                .<String, String> build()) {
+            @Override
+            protected String load(String key) throws Exception {
+                return _read(key);
+            }
+        };
         cqlGetMetadata = MessageFormat.format(CqlTemplate.CQL_TEMPLATE_GET_METADATA, tableMetadata);
 
         return this;
@@ -90,7 +90,7 @@ public class MetadataManager {
 
     /*----------------------------------------------------------------------*/
 
-    private LoadingCache<String, String> cache;
+    private NonPinningLoadingCache<String> cache;
 
     /**
      * Reads a row data from storage (no cache).
@@ -100,8 +100,7 @@ public class MetadataManager {
      * @throws RowNotFoundException
      */
     private String _read(String rowKey) throws RowNotFoundException {
-        Row row = CqlUtils.executeOne(sessionHelper.getSession(), cqlGetMetadata,
-                ConsistencyLevel.LOCAL_ONE, rowKey);
+        Row row = sessionHelper.executeOne(cqlGetMetadata, ConsistencyLevel.LOCAL_ONE, rowKey);
         String jsonString = row != null ? row.getString(CqlTemplate.COL_METADATA_METADATA) : null;
         if (jsonString != null) {
             return jsonString;
@@ -116,6 +115,14 @@ public class MetadataManager {
      * @return
      */
     private String getRow(String rowKey) {
+        ICounterMetrics metrics = sessionHelper.getMetrics();
+        if (metrics.isEnabled()) {
+            String cached = cache.getCache().getIfPresent(rowKey);
+            metrics.recordCacheAccess(ICounterMetrics.CACHE_CASSANDRA_METADATA, cached != null);
+            if (cached != null) {
+                return cached;
+            }
+        }
         try {
             return cache.get(rowKey);
         } catch (Exception e) {
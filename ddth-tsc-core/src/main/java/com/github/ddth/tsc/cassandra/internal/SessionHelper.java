@@ -1,9 +1,23 @@
 package com.github.ddth.tsc.cassandra.internal;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.github.ddth.cacheadapter.ICache;
 import com.github.ddth.cacheadapter.ICacheFactory;
 import com.github.ddth.cql.SessionManager;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
@@ -18,12 +32,21 @@ public class SessionHelper {
     private String keyspace;
     private SessionManager sessionManager;
     private ICacheFactory cacheFactory;
+    private volatile ICounterMetrics metrics = ICounterMetrics.NOOP;
+    /* number of asynchronous statements in flight, tracked while metrics are enabled */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /* prepared statements, keyed by CQL, valid for session preparedFor */
+    private final ConcurrentMap<String, PreparedStatement> preparedStatements;
+    private volatile Session preparedFor;
 
     public SessionHelper() {
+        preparedStatements = new ConcurrentHashMap<String, PreparedStatement>();
     }
 
     public SessionHelper(SessionManager sessionManager, String hostsAndPorts, String username,
             String password, String keyspace) {
+        this();
         this.sessionManager = sessionManager;
         this.hostsAndPorts = hostsAndPorts;
         this.username = username;
@@ -137,6 +160,29 @@ public class SessionHelper {
         return this;
     }
 
+    /**
+     * Metrics hook executed statements are recorded to.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public ICounterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Metrics hook executed statements are recorded to (default
+     * {@link ICounterMetrics#NOOP}).
+     * 
+     * @param metrics
+     * @return
+     * @since 0.7.1
+     */
+    public SessionHelper setMetrics(ICounterMetrics metrics) {
+        this.metrics = metrics != null ? metrics : ICounterMetrics.NOOP;
+        return this;
+    }
+
     /*----------------------------------------------------------------------*/
 
     public ICache getCache(String name) {
@@ -146,4 +192,166 @@ public class SessionHelper {
     public Session getSession() {
         return sessionManager.getSession(hostsAndPorts, username, password, keyspace);
     }
+
+    /**
+     * Gets a prepared statement for a CQL, preparing it on first use.
+     * 
+     * <p>
+     * Statements are prepared once per session and reused. Statements whose
+     * partition key columns are all bound variables carry a routing key, so
+     * token-aware load balancing sends them directly to replicas.
+     * </p>
+     * 
+     * @param cql
+     * @return
+     * @since 0.7.1
+     */
+    public PreparedStatement prepare(String cql) {
+        Session session = getSession();
+        if (session != preparedFor) {
+            // new session (e.g. reconnected): statements must be prepared again
+            synchronized (preparedStatements) {
+                if (session != preparedFor) {
+                    preparedStatements.clear();
+                    preparedFor = session;
+                }
+            }
+        }
+        PreparedStatement stm = preparedStatements.get(cql);
+        if (stm == null) {
+            stm = session.prepare(cql);
+            PreparedStatement existing = preparedStatements.putIfAbsent(cql, stm);
+            if (existing != null) {
+                stm = existing;
+            }
+        }
+        return stm;
+    }
+
+    /**
+     * Has a CQL been prepared for the current session (i.e.
+     * {@link #prepare(String)} would not block)?
+     * 
+     * @param cql
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isPrepared(String cql) {
+        return preparedFor == getSession() && preparedStatements.containsKey(cql);
+    }
+
+    /**
+     * Binds values to a prepared statement.
+     * 
+     * @param stm
+     * @param consistencyLevel
+     * @param values
+     * @return
+     * @since 0.7.1
+     */
+    public static BoundStatement bind(PreparedStatement stm, ConsistencyLevel consistencyLevel,
+            Object... values) {
+        BoundStatement bstm = stm.bind(values);
+        if (consistencyLevel != null) {
+            bstm.setConsistencyLevel(consistencyLevel);
+        }
+        return bstm;
+    }
+
+    /**
+     * Executes a CQL as a prepared statement.
+     * 
+     * @param cql
+     * @param consistencyLevel
+     * @param values
+     * @return
+     * @since 0.7.1
+     */
+    public ResultSet execute(String cql, ConsistencyLevel consistencyLevel, Object... values) {
+        recordStatement(cql);
+        return getSession().execute(bind(prepare(cql), consistencyLevel, values));
+    }
+
+    /**
+     * Executes a CQL as a prepared statement and returns the first row.
+     * 
+     * @param cql
+     * @param consistencyLevel
+     * @param values
+     * @return
+     * @since 0.7.1
+     */
+    public Row executeOne(String cql, ConsistencyLevel consistencyLevel, Object... values) {
+        return execute(cql, consistencyLevel, values).one();
+    }
+
+    /**
+     * Executes a CQL as a prepared statement, asynchronously.
+     * 
+     * @param cql
+     * @param consistencyLevel
+     * @param values
+     * @return
+     * @since 0.7.1
+     */
+    public ResultSetFuture executeAsync(String cql, ConsistencyLevel consistencyLevel,
+            Object... values) {
+        recordStatement(cql);
+        return trackInFlight(
+                getSession().executeAsync(bind(prepare(cql), consistencyLevel, values)));
+    }
+
+    /**
+     * Executes a statement (e.g. a batch of bound statements), asynchronously.
+     * 
+     * @param stm
+     * @return
+     * @since 0.7.1
+     */
+    public ResultSetFuture executeAsync(Statement stm) {
+        ICounterMetrics metrics = this.metrics;
+        if (metrics.isEnabled()) {
+            metrics.recordBackendCommand(stm instanceof BatchStatement ? "BATCH" : "STATEMENT", 1);
+        }
+        return trackInFlight(getSession().executeAsync(stm));
+    }
+
+    /**
+     * Records number of asynchronous statements in flight, if metrics are
+     * enabled.
+     * 
+     * @param future
+     * @return
+     * @since 0.7.1
+     */
+    private ResultSetFuture trackInFlight(ResultSetFuture future) {
+        ICounterMetrics metrics = this.metrics;
+        if (metrics.isEnabled()) {
+            metrics.recordInFlight(inFlight.incrementAndGet());
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    inFlight.decrementAndGet();
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return future;
+    }
+
+    /**
+     * Records execution of a CQL statement, as its first keyword
+     * ({@code SELECT}, {@code UPDATE}...).
+     * 
+     * @param cql
+     * @since 0.7.1
+     */
+    private void recordStatement(String cql) {
+        ICounterMetrics metrics = this.metrics;
+        if (metrics.isEnabled()) {
+            String command = cql.trim();
+            int i = command.indexOf(' ');
+            metrics.recordBackendCommand((i > 0 ? command.substring(0, i) : command).toUpperCase(),
+                    1);
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package com.github.ddth.tsc.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Loads values into a Guava {@link Cache} without holding a monitor while
+ * loading.
+ * 
+ * <p>
+ * {@link com.google.common.cache.LoadingCache#get(Object)} runs the loader
+ * inside a {@code synchronized} block on the cache entry: a virtual thread
+ * loading from a backend there pins its carrier thread for the whole round
+ * trip, and so does every virtual thread waiting for the same key. This class
+ * de-duplicates concurrent loads of a key with a future instead: the first
+ * caller loads, concurrent callers park on the future until it completes.
+ * </p>
+ * 
+ * <p>
+ * Exceptions are reported the same way as {@code LoadingCache}: checked
+ * exceptions wrapped in {@link ExecutionException}, unchecked ones in
+ * {@link UncheckedExecutionException}, errors in {@link ExecutionError}.
+ * </p>
+ * 
+ * <p>
+ * Invalidating a key does not cancel its in-flight load, but its value (which
+ * may be stale) is not handed out: it is removed from the cache (see the
+ * cache's removal listener, if any) and loaded again for the callers waiting
+ * for it.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class NonPinningLoadingCache<V> {
+
+    private final Cache<String, V> cache;
+    private final ConcurrentMap<String, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * @param cache
+     *            the cache to load values into
+     */
+    public NonPinningLoadingCache(Cache<String, V> cache) {
+        this.cache = cache;
+    }
+
+    public Cache<String, V> getCache() {
+        return cache;
+    }
+
+    /**
+     * Loads the value of a key (not cached yet).
+     * 
+     * @param key
+     * @return
+     * @throws Exception
+     */
+    protected abstract V load(String key) throws Exception;
+
+    /**
+     * Releases a loaded value that has never been cached nor handed out: a
+     * concurrent load of the same key (started after an invalidation) has
+     * cached its value first. Sub-classes override it to release values the
+     * same way as the cache's removal listener. This method does nothing.
+     * 
+     * @param value
+     */
+    protected void discard(V value) {
+    }
+
+    /**
+     * Gets a cached value, loading it if not cached.
+     * 
+     * @param key
+     * @return
+     * @throws ExecutionException
+     */
+    public V get(String key) throws ExecutionException {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> existing = loads.putIfAbsent(key, load);
+        if (existing != null) {
+            try {
+                return Uninterruptibles.getUninterruptibly(existing);
+            } catch (ExecutionException e) {
+                throw wrap(e.getCause());
+            }
+        }
+        try {
+            value = loadAndCache(key, load);
+            load.complete(value);
+            return value;
+        } catch (Throwable t) {
+            load.completeExceptionally(t);
+            throw wrap(t);
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Loads a value and caches it, for the callers of {@code load}.
+     * 
+     * @param key
+     * @param load
+     * @return the value cached for the key
+     * @throws Exception
+     */
+    private V loadAndCache(String key, CompletableFuture<V> load) throws Exception {
+        for (;;) {
+            // may have been loaded since the first lookup
+            V value = cache.getIfPresent(key);
+            if (value != null) {
+                return value;
+            }
+            value = load(key);
+            if (value == null) {
+                throw new InvalidCacheLoadException("Loader returned null for key " + key);
+            }
+            V cached = cache.asMap().putIfAbsent(key, value);
+            if (cached != null) {
+                // cached by a newer load, started after an invalidation
+                discard(value);
+                return cached;
+            }
+            if (loads.get(key) == load) {
+                return value;
+            }
+            // invalidated while loading: the value may be stale, nobody got it yet
+            cache.asMap().remove(key, value);
+            CompletableFuture<V> existing = loads.putIfAbsent(key, load);
+            if (existing != null) {
+                // a newer load is in progress
+                try {
+                    return Uninterruptibles.getUninterruptibly(existing);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (Exception) cause;
+                }
+            }
+        }
+    }
+
+    /* throws the unchecked wrappers, returns the checked one */
+    private static ExecutionException wrap(Throwable t) {
+        if (t instanceof Error) {
+            throw new ExecutionError((Error) t);
+        }
+        if (t instanceof RuntimeException) {
+            throw new UncheckedExecutionException(t);
+        }
+        return new ExecutionException(t);
+    }
+
+    /**
+     * Discards the cached value of a key. A load of the key in progress does
+     * not hand out its value, the key is loaded again.
+     * 
+     * @param key
+     */
+    public void invalidate(String key) {
+        // in-flight load first: it checks loads after caching its value
+        loads.remove(key);
+        cache.invalidate(key);
+    }
+
+    /**
+     * Discards all cached values. Loads in progress do not hand out their
+     * values, keys are loaded again.
+     */
+    public void invalidateAll() {
+        loads.clear();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.ddth.tsc.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local pre-aggregation buffer for write-behind counters.
+ *
+ * <p>
+ * Writes to the same key are merged in memory: {@code add()}s are summed,
+ * a {@code set()} replaces whatever has been buffered for the key so far (and
+ * subsequent {@code add()}s are summed on top of it). {@link #drain()} hands the
+ * merged writes over to the caller, which is responsible for persisting them.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class WriteBuffer<K> {
+
+    /**
+     * A merged write.
+     */
+    public static class Write<K> {
+        private final K key;
+        private final long value;
+        private final boolean isSet;
+
+        public Write(K key, long value, boolean isSet) {
+            this.key = key;
+            this.value = value;
+            this.isSet = isSet;
+        }
+
+        public K key() {
+            return key;
+        }
+
+        /**
+         * The value to set if {@link #isSet()}, the delta to add otherwise.
+         *
+         * @return
+         */
+        public long value() {
+            return value;
+        }
+
+        public boolean isSet() {
+            return isSet;
+        }
+    }
+
+    private final static class Entry {
+        private long value;
+        private boolean isSet, dirty, retired;
+
+        synchronized boolean add(long delta) {
+            if (retired) {
+                return false;
+            }
+            value += delta;
+            dirty = true;
+            return true;
+        }
+
+        synchronized boolean set(long newValue) {
+            if (retired) {
+                return false;
+            }
+            value = newValue;
+            isSet = true;
+            dirty = true;
+            return true;
+        }
+
+        /**
+         * Merges back a write that happened before the currently buffered ones.
+         */
+        synchronized boolean mergeOlder(long olderValue, boolean olderIsSet) {
+            if (retired) {
+                return false;
+            }
+            if (!isSet) {
+                value += olderValue;
+                isSet = olderIsSet;
+            }
+            dirty = true;
+            return true;
+        }
+    }
+
+    private final ConcurrentMap<K, Entry> entries = new ConcurrentHashMap<K, Entry>();
+
+    private Entry entry(K key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Buffers an "add" write.
+     *
+     * @param key
+     * @param delta
+     */
+    public void add(K key, long delta) {
+        for (;;) {
+            Entry entry = entry(key);
+            if (entry.add(delta)) {
+                return;
+            }
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Buffers a "set" write.
+     *
+     * @param key
+     * @param value
+     */
+    public void set(K key, long value) {
+        for (;;) {
+            Entry entry = entry(key);
+            if (entry.set(value)) {
+                return;
+            }
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Puts back a write previously returned by {@link #drain()} (e.g. because
+     * persisting it failed), merging it under writes buffered since.
+     *
+     * @param write
+     */
+    public void requeue(Write<K> write) {
+        for (;;) {
+            Entry entry = entry(write.key);
+            if (entry.mergeOlder(write.value, write.isSet)) {
+                return;
+            }
+            entries.remove(write.key, entry);
+        }
+    }
+
+    /**
+     * Takes the merged write of one key out of the buffer.
+     *
+     * @param key
+     * @return {@code null} if nothing has been buffered for the key
+     */
+    public Write<K> take(K key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            Write<K> result = entry.dirty ? new Write<K>(key, entry.value, entry.isSet) : null;
+            entry.value = 0;
+            entry.isSet = false;
+            entry.dirty = false;
+            entry.retired = true;
+            entries.remove(key, entry);
+            return result;
+        }
+    }
+
+    /**
+     * Approximate number of buffered keys.
+     *
+     * @return
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Takes all merged writes out of the buffer.
+     *
+     * <p>
+     * Keys that have not been written since the previous drain are removed from
+     * the buffer.
+     * </p>
+     *
+     * @return
+     */
+    public List<Write<K>> drain() {
+        List<Write<K>> result = new ArrayList<Write<K>>();
+        for (Iterator<Map.Entry<K, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<K, Entry> e = it.next();
+            Entry entry = e.getValue();
+            synchronized (entry) {
+                if (!entry.dirty) {
+                    entry.retired = true;
+                    entries.remove(e.getKey(), entry);
+                    continue;
+                }
+                result.add(new Write<K>(e.getKey(), entry.value, entry.isSet));
+                entry.value = 0;
+                entry.isSet = false;
+                entry.dirty = false;
+            }
+        }
+        return result;
+    }
+}
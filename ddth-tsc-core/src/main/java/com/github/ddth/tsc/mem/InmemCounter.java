@@ -2,13 +2,13 @@ package com.github.ddth.tsc.mem;
 
 import java.util.Arrays;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 import com.github.ddth.tsc.AbstractCounter;
 import com.github.ddth.tsc.AbstractCounterFactory;
 import com.github.ddth.tsc.DataPoint;
 import com.github.ddth.tsc.DataPoint.Type;
-import com.google.common.util.concurrent.AtomicLongMap;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.mem.internal.LongRingBuffer;
+import com.github.ddth.tsc.mem.internal.StripedLongRingBuffer;
 
 /**
  * In-memory time series counter.
@@ -17,6 +17,17 @@ import com.google.common.util.concurrent.AtomicLongMap;
  * <li>Support both {@code add()} and {@code get()} operators.</li>
  * <li>No persistent.</li>
  * <li>Store historical data for about 1 day (~86400 data points)</li>
+ * <li>Since v0.7.1: data points are stored in a fixed-size ring of
+ * {@code long} slots (see {@link LongRingBuffer}); {@code add()} and
+ * {@code set()} allocate only on the first write to a data point, and the
+ * oldest data points are evicted as the ring wraps around.</li>
+ * <li>Since v0.7.1: optional striped write mode (see
+ * {@link #setStripedWrites(boolean)}) for counters updated by many threads at
+ * the same time.</li>
+ * <li>Since v0.7.1: number of data points to keep is configurable (see
+ * {@link #setMaxNumBlocks(int)}).</li>
+ * <li>Since v0.7.1: optional rollup tiers (see
+ * {@link #setRollupSteps(int...)}), each tier is a ring of its own.</li>
  * </ul>
  * 
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
@@ -24,12 +35,15 @@ import com.google.common.util.concurrent.AtomicLongMap;
  */
 public class InmemCounter extends AbstractCounter {
 
-    private final static int DEFAULT_MAX_NUM_BLOCKS = 86400;
-    private final static int DEFAULT_BUFFER_NUM_BLOCKS = 20;
+    public final static int DEFAULT_MAX_NUM_BLOCKS = 86400;
+    public final static int DEFAULT_HOT_WINDOW_SIZE = StripedLongRingBuffer.DEFAULT_HOT_WINDOW_SIZE;
 
-    private int BUFFER_NUM_BLOCKS = DEFAULT_BUFFER_NUM_BLOCKS;
     private int maxNumBlocks = DEFAULT_MAX_NUM_BLOCKS;
-    private AtomicLongMap<Long> counter = AtomicLongMap.create();
+    private int hotWindowSize = DEFAULT_HOT_WINDOW_SIZE;
+    private boolean stripedWrites = false;
+    private volatile LongRingBuffer counter;
+    private LongRingBuffer[] rollups;
+    private int[] rollupTiers;
 
     public InmemCounter() {
     }
@@ -38,13 +52,127 @@ public class InmemCounter extends AbstractCounter {
         super(name);
     }
 
+    /**
+     * Max number of data points (1 data point = 1 second) to keep.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getMaxNumBlocks() {
+        return maxNumBlocks;
+    }
+
+    /**
+     * Sets max number of data points (1 data point = 1 second) to keep (default
+     * {@link #DEFAULT_MAX_NUM_BLOCKS}). Older data points are evicted. Must be set
+     * before {@link #init()}.
+     * 
+     * @param maxNumBlocks
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounter setMaxNumBlocks(int maxNumBlocks) {
+        this.maxNumBlocks = maxNumBlocks;
+        return this;
+    }
+
+    /**
+     * Number of most recent data points buffered in striped cells, used in
+     * striped write mode only.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getHotWindowSize() {
+        return hotWindowSize;
+    }
+
+    /**
+     * Sets number of most recent data points buffered in striped cells (default
+     * {@link #DEFAULT_HOT_WINDOW_SIZE}), used in striped write mode only. Must be
+     * set before {@link #init()}.
+     * 
+     * @param hotWindowSize
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounter setHotWindowSize(int hotWindowSize) {
+        this.hotWindowSize = hotWindowSize;
+        return this;
+    }
+
+    /**
+     * Is striped write mode enabled?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isStripedWrites() {
+        return stripedWrites;
+    }
+
+    /**
+     * Enables/Disables striped write mode.
+     * 
+     * <p>
+     * When enabled, writes to the current and recent data points are spread
+     * over per-thread cells which are summed on read, so that threads updating
+     * the counter at the same time do not contend with each other. Costs some
+     * extra memory per recent data point. Must be set before {@link #init()}.
+     * </p>
+     * 
+     * @param stripedWrites
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounter setStripedWrites(boolean stripedWrites) {
+        this.stripedWrites = stripedWrites;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void init() {
         super.init();
-        BUFFER_NUM_BLOCKS = Math.max(DEFAULT_MAX_NUM_BLOCKS / 10, DEFAULT_BUFFER_NUM_BLOCKS);
+        if (maxNumBlocks < 1) {
+            throw new IllegalStateException("Invalid max number of blocks: " + maxNumBlocks);
+        }
+        counter = newRingBuffer(maxNumBlocks);
+        rollupTiers = getRollupSteps();
+        if (rollupTiers.length > 0) {
+            // each tier covers (at least) the same time window as the counter
+            rollups = new LongRingBuffer[rollupTiers.length];
+            for (int i = 0; i < rollupTiers.length; i++) {
+                rollups[i] = newRingBuffer(maxNumBlocks / rollupTiers[i] + 2);
+            }
+        }
+    }
+
+    private LongRingBuffer newRingBuffer(int capacity) {
+        return stripedWrites ? new StripedLongRingBuffer(capacity, hotWindowSize)
+                : new LongRingBuffer(capacity);
+    }
+
+    /**
+     * The ring of data points, created on first use if {@link #init()} has not
+     * been called (counters used to work without it).
+     * 
+     * @return
+     */
+    private LongRingBuffer ring() {
+        LongRingBuffer ring = counter;
+        if (ring == null) {
+            synchronized (this) {
+                ring = counter;
+                if (ring == null) {
+                    ring = newRingBuffer(Math.max(maxNumBlocks, 1));
+                    counter = ring;
+                }
+            }
+        }
+        return ring;
     }
 
     /**
@@ -75,23 +203,38 @@ public class InmemCounter extends AbstractCounter {
 
     /*----------------------------------------------------------------------*/
 
-    private void reduce() {
-        Long[] keys = counter.asMap().keySet().toArray(ArrayUtils.EMPTY_LONG_OBJECT_ARRAY);
-        Arrays.sort(keys);
-        for (int i = 0, n = keys.length - maxNumBlocks + BUFFER_NUM_BLOCKS; i < n; i++) {
-            counter.remove(keys[i]);
-        }
+    /**
+     * Converts a timestamp to ring slot id.
+     * 
+     * @param timestampMs
+     * @return
+     * @since 0.7.1
+     */
+    private static long toSlot(long timestampMs) {
+        return Math.floorDiv(timestampMs, RESOLUTION_MS);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void add(long timestampMs, long value) {
-        long key = toTimeSeriesPoint(timestampMs);
-        counter.addAndGet(key, value);
-        if (counter.size() > maxNumBlocks) {
-            reduce();
+    protected void addValue(long timestampMs, long value) {
+        long slot = toSlot(timestampMs);
+        if (ring().add(slot, value) && rollups != null) {
+            addRollups(slot, value);
+        }
+    }
+
+    /**
+     * Adds a delta to rollup data points that cover a data point.
+     * 
+     * @param slot
+     * @param delta
+     * @since 0.7.1
+     */
+    private void addRollups(long slot, long delta) {
+        for (int i = 0; i < rollups.length; i++) {
+            rollups[i].add(Math.floorDiv(slot, rollupTiers[i]), delta);
         }
     }
 
@@ -99,11 +242,18 @@ public class InmemCounter extends AbstractCounter {
      * {@inheritDoc}
      */
     @Override
-    public void set(long timestampMs, long value) {
-        long key = toTimeSeriesPoint(timestampMs);
-        counter.put(key, value);
-        if (counter.size() > maxNumBlocks) {
-            reduce();
+    protected void setValue(long timestampMs, long value) {
+        long slot = toSlot(timestampMs);
+        LongRingBuffer counter = ring();
+        if (rollups == null) {
+            counter.set(slot, value);
+        } else {
+            // rollups are updated with the delta; concurrent add() to the same
+            // data point between get and set is not accounted for
+            long oldValue = counter.get(slot);
+            if (counter.set(slot, value)) {
+                addRollups(slot, value - oldValue);
+            }
         }
     }
 
@@ -111,14 +261,13 @@ public class InmemCounter extends AbstractCounter {
      * {@inheritDoc}
      */
     @Override
-    public DataPoint get(long timestampMs) {
+    protected DataPoint readDataPoint(long timestampMs) {
         long key = toTimeSeriesPoint(timestampMs);
-        if (counter.containsKey(key)) {
-            long value = counter.get(key);
-            return new DataPoint(Type.SUM, key, value, RESOLUTION_MS);
-        } else {
-            return new DataPoint(Type.NONE, key, 0, RESOLUTION_MS);
-        }
+        long slot = toSlot(key);
+        LongRingBuffer counter = ring();
+        return counter.contains(slot)
+                ? new DataPoint(Type.SUM, key, counter.get(slot), RESOLUTION_MS)
+                : new DataPoint(Type.NONE, key, 0, RESOLUTION_MS);
     }
 
     /**
@@ -127,17 +276,59 @@ public class InmemCounter extends AbstractCounter {
     @Override
     public DataPoint get(long timestampMs, DataPoint.Type type, int steps) {
         int blockSize = steps * RESOLUTION_MS;
-        Long key = toTimeSeriesPoint(timestampMs, steps);
-        DataPoint result = new DataPoint().type(type).blockSize(blockSize)
-                .timestamp(key.longValue());
-        long _key = key.longValue();
-        for (int i = 0; i < steps; i++) {
-            if (counter.containsKey(_key)) {
-                long value = counter.get(_key);
+        long key = toTimeSeriesPoint(timestampMs, steps);
+        DataPoint result = new DataPoint().type(type).blockSize(blockSize).timestamp(key);
+        long slot = toSlot(key);
+        LongRingBuffer counter = ring();
+        for (int i = 0; i < steps; i++, slot++) {
+            if (counter.contains(slot)) {
+                long value = counter.get(slot);
                 result.add(value);
             }
-            _key += RESOLUTION_MS;
         }
         return result;
     }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Data points are read with a plain scan over the ring, in timestamp order.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, LongSeries result) {
+        long slot = toSlot(keyStart);
+        LongRingBuffer counter = ring();
+        for (long key = keyStart; key <= keyEnd; key += RESOLUTION_MS, slot++) {
+            if (counter.contains(slot)) {
+                result.accumulate(key, counter.get(slot));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected boolean readRollupsInRange(int steps, long keyStart, long keyEnd,
+            LongSeries result) {
+        int tier = rollups != null ? Arrays.binarySearch(rollupTiers, steps) : -1;
+        if (tier < 0) {
+            return false;
+        }
+        LongRingBuffer rollup = rollups[tier];
+        long blockSize = steps * (long) RESOLUTION_MS;
+        long slot = Math.floorDiv(keyStart, blockSize);
+        for (long key = keyStart; key <= keyEnd; key += blockSize, slot++) {
+            if (rollup.contains(slot)) {
+                result.accumulate(key, rollup.get(slot));
+            }
+        }
+        return true;
+    }
 }
@@ -1,7 +1,12 @@
 package com.github.ddth.tsc.mem;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.github.ddth.tsc.AbstractCounterFactory;
 import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.IDistributionCounter;
+import com.github.ddth.tsc.IUniqueCounter;
 
 /**
  * This factory creates {@link InmemCounter} instances.
@@ -11,12 +16,174 @@ import com.github.ddth.tsc.ICounter;
  */
 public class InmemCounterFactory extends AbstractCounterFactory {
 
+    private boolean stripedWrites = false;
+    private int maxNumBlocks = InmemCounter.DEFAULT_MAX_NUM_BLOCKS;
+    private int distributionMaxNumBlocks = InmemDistributionCounter.DEFAULT_MAX_NUM_BLOCKS;
+    private int hotWindowSize = InmemCounter.DEFAULT_HOT_WINDOW_SIZE;
+    private Map<String, Integer> maxNumBlocksPerCounter = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Default max number of data points each counter keeps.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getMaxNumBlocks() {
+        return maxNumBlocks;
+    }
+
+    /**
+     * Sets default max number of data points each counter keeps (default
+     * {@link InmemCounter#DEFAULT_MAX_NUM_BLOCKS}). See
+     * {@link InmemCounter#setMaxNumBlocks(int)}.
+     * 
+     * @param maxNumBlocks
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounterFactory setMaxNumBlocks(int maxNumBlocks) {
+        this.maxNumBlocks = maxNumBlocks;
+        return this;
+    }
+
+    /**
+     * Max number of data points a specific counter keeps.
+     * 
+     * @param counterName
+     * @return
+     * @since 0.7.1
+     */
+    public int getMaxNumBlocks(String counterName) {
+        Integer value = maxNumBlocksPerCounter.get(counterName);
+        return value != null ? value.intValue() : maxNumBlocks;
+    }
+
+    /**
+     * Overrides max number of data points for a specific counter. Takes effect
+     * for counter instances created afterward.
+     * 
+     * @param counterName
+     * @param maxNumBlocks
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounterFactory setMaxNumBlocks(String counterName, int maxNumBlocks) {
+        maxNumBlocksPerCounter.put(counterName, maxNumBlocks);
+        return this;
+    }
+
+    /**
+     * Default max number of data points each distribution counter keeps.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getDistributionMaxNumBlocks() {
+        return distributionMaxNumBlocks;
+    }
+
+    /**
+     * Sets default max number of data points each distribution counter keeps
+     * (default {@link InmemDistributionCounter#DEFAULT_MAX_NUM_BLOCKS}), which
+     * bounds its memory. Overridden for a specific counter by
+     * {@link #setMaxNumBlocks(String, int)}.
+     * 
+     * @param distributionMaxNumBlocks
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounterFactory setDistributionMaxNumBlocks(int distributionMaxNumBlocks) {
+        this.distributionMaxNumBlocks = distributionMaxNumBlocks;
+        return this;
+    }
+
+    /**
+     * Number of most recent data points buffered in striped cells.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getHotWindowSize() {
+        return hotWindowSize;
+    }
+
+    /**
+     * Sets number of most recent data points buffered in striped cells (default
+     * {@link InmemCounter#DEFAULT_HOT_WINDOW_SIZE}). See
+     * {@link InmemCounter#setHotWindowSize(int)}.
+     * 
+     * @param hotWindowSize
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounterFactory setHotWindowSize(int hotWindowSize) {
+        this.hotWindowSize = hotWindowSize;
+        return this;
+    }
+
+    /**
+     * Are counters created in striped write mode?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isStripedWrites() {
+        return stripedWrites;
+    }
+
+    /**
+     * Creates counters in striped write mode (default {@code false}). See
+     * {@link InmemCounter#setStripedWrites(boolean)}.
+     * 
+     * @param stripedWrites
+     * @return
+     * @since 0.7.1
+     */
+    public InmemCounterFactory setStripedWrites(boolean stripedWrites) {
+        this.stripedWrites = stripedWrites;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IDistributionCounter createDistributionCounter(String name) {
+        InmemDistributionCounter counter = new InmemDistributionCounter(name);
+        Integer maxNumBlocks = maxNumBlocksPerCounter.get(name);
+        counter.setMaxNumBlocks(
+                maxNumBlocks != null ? maxNumBlocks.intValue() : distributionMaxNumBlocks);
+        counter.setRelativeAccuracy(getSketchRelativeAccuracy())
+                .setMaxNumBins(getSketchMaxNumBins());
+        counter.setCounterFactory(this).init();
+        return counter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IUniqueCounter createUniqueCounter(String name) {
+        InmemUniqueCounter counter = new InmemUniqueCounter(name);
+        counter.setMaxNumBlocks(getMaxNumBlocks(name));
+        counter.setPrecision(getHllPrecision());
+        counter.setCounterFactory(this).init();
+        return counter;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected ICounter createCounter(String name) {
         InmemCounter counter = new InmemCounter(name);
+        counter.setStripedWrites(stripedWrites).setHotWindowSize(hotWindowSize)
+                .setMaxNumBlocks(getMaxNumBlocks(name));
+        counter.setRollupSteps(getRollupSteps());
         counter.setCounterFactory(this).init();
         return counter;
     }
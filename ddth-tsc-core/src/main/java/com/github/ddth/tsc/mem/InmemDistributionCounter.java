@@ -0,0 +1,159 @@
+package com.github.ddth.tsc.mem;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractDistributionCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DistributionSketch;
+
+/**
+ * In-memory distribution counter.
+ * 
+ * <p>
+ * Sketches of data points are kept in a fixed-size ring of
+ * {@link #getMaxNumBlocks()} slots, the oldest data points are evicted as the
+ * ring wraps around. Memory is bounded by {@code maxNumBlocks} sketches of at
+ * most {@link #getMaxNumBins()} bins ({@code 8} bytes each) each: a sketch is
+ * much larger than a {@code long}, so fewer data points are kept by default
+ * than by {@link InmemCounter} ({@value #DEFAULT_MAX_NUM_BLOCKS}, i.e. at most
+ * ~{@code 59MB} with the default {@code 2048} bins per sketch).
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class InmemDistributionCounter extends AbstractDistributionCounter {
+
+    /**
+     * Default max number of data points to keep (1 hour).
+     */
+    public final static int DEFAULT_MAX_NUM_BLOCKS = 3600;
+
+    private final static int NUM_LOCKS = 64;
+
+    private int maxNumBlocks = DEFAULT_MAX_NUM_BLOCKS;
+    private DistributionSketch[] sketches;
+    private long[] slots;
+    private final Object[] locks = new Object[NUM_LOCKS];
+
+    public InmemDistributionCounter() {
+    }
+
+    public InmemDistributionCounter(String name) {
+        super(name);
+    }
+
+    /**
+     * Max number of data points (1 data point = 1 second) to keep.
+     * 
+     * @return
+     */
+    public int getMaxNumBlocks() {
+        return maxNumBlocks;
+    }
+
+    /**
+     * Sets max number of data points to keep (default
+     * {@link #DEFAULT_MAX_NUM_BLOCKS}). Must be set before {@link #init()}.
+     * 
+     * @param maxNumBlocks
+     * @return
+     */
+    public InmemDistributionCounter setMaxNumBlocks(int maxNumBlocks) {
+        this.maxNumBlocks = maxNumBlocks;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InmemDistributionCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof InmemCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException(
+                    "Argument must be an instance of " + InmemCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        super.init();
+        if (maxNumBlocks < 1) {
+            throw new IllegalStateException("Invalid max number of blocks: " + maxNumBlocks);
+        }
+        sketches = new DistributionSketch[maxNumBlocks];
+        slots = new long[maxNumBlocks];
+        for (int i = 0; i < NUM_LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        sketches = null;
+        slots = null;
+        super.destroy();
+    }
+
+    /**
+     * Gets the sketch of a data point, resetting the slot if it holds an
+     * evicted data point. Must be called while holding the slot's lock.
+     */
+    private DistributionSketch sketchForWrite(int index, long slot) {
+        DistributionSketch sketch = sketches[index];
+        if (sketch == null || slots[index] != slot) {
+            sketch = newSketch();
+            sketches[index] = sketch;
+            slots[index] = slot;
+        }
+        return sketch;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(long timestampMs, long value) {
+        long slot = toTimeSeriesPoint(timestampMs) / RESOLUTION_MS;
+        int index = (int) Math.floorMod(slot, (long) maxNumBlocks);
+        synchronized (locks[index % NUM_LOCKS]) {
+            sketchForWrite(index, slot).add(value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(long key, DistributionSketch values) {
+        long slot = key / RESOLUTION_MS;
+        int index = (int) Math.floorMod(slot, (long) maxNumBlocks);
+        synchronized (locks[index % NUM_LOCKS]) {
+            sketchForWrite(index, slot).merge(values);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, DataPoint[] result) {
+        for (long key = keyStart; key <= keyEnd; key += RESOLUTION_MS) {
+            long slot = key / RESOLUTION_MS;
+            int index = (int) Math.floorMod(slot, (long) maxNumBlocks);
+            synchronized (locks[index % NUM_LOCKS]) {
+                if (sketches[index] != null && slots[index] == slot) {
+                    merge(result, key, sketches[index]);
+                }
+            }
+        }
+    }
+}
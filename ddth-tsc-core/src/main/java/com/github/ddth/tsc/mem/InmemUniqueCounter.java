@@ -0,0 +1,148 @@
+package com.github.ddth.tsc.mem;
+
+import java.util.Collection;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractUniqueCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.HyperLogLog;
+
+/**
+ * In-memory unique counter.
+ * 
+ * <p>
+ * Register sets of data points are kept in a fixed-size ring of
+ * {@link #getMaxNumBlocks()} slots, the oldest data points are evicted as the
+ * ring wraps around. A register set is allocated on the first item of its data
+ * point; memory is bounded by {@code maxNumBlocks} register sets of
+ * {@code 2^}{@link #getPrecision()} bytes each.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class InmemUniqueCounter extends AbstractUniqueCounter {
+
+    private final static int NUM_LOCKS = 64;
+
+    private int maxNumBlocks = InmemCounter.DEFAULT_MAX_NUM_BLOCKS;
+    private HyperLogLog[] registers;
+    private long[] slots;
+    private final Object[] locks = new Object[NUM_LOCKS];
+
+    public InmemUniqueCounter() {
+    }
+
+    public InmemUniqueCounter(String name) {
+        super(name);
+    }
+
+    /**
+     * Max number of data points (1 data point = 1 second) to keep.
+     * 
+     * @return
+     */
+    public int getMaxNumBlocks() {
+        return maxNumBlocks;
+    }
+
+    /**
+     * Sets max number of data points to keep. Must be set before
+     * {@link #init()}.
+     * 
+     * @param maxNumBlocks
+     * @return
+     */
+    public InmemUniqueCounter setMaxNumBlocks(int maxNumBlocks) {
+        this.maxNumBlocks = maxNumBlocks;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InmemUniqueCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof InmemCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException(
+                    "Argument must be an instance of " + InmemCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        super.init();
+        if (maxNumBlocks < 1) {
+            throw new IllegalStateException("Invalid max number of blocks: " + maxNumBlocks);
+        }
+        registers = new HyperLogLog[maxNumBlocks];
+        slots = new long[maxNumBlocks];
+        for (int i = 0; i < NUM_LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        registers = null;
+        slots = null;
+        super.destroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAll(long timestampMs, Collection<String> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        long slot = toTimeSeriesPoint(timestampMs) / RESOLUTION_MS;
+        int index = (int) Math.floorMod(slot, (long) maxNumBlocks);
+        // hash outside of the lock
+        long[] hashes = new long[items.size()];
+        int i = 0;
+        for (String item : items) {
+            hashes[i++] = HyperLogLog.hash(item);
+        }
+        synchronized (locks[index % NUM_LOCKS]) {
+            HyperLogLog hll = registers[index];
+            if (hll == null || slots[index] != slot) {
+                // empty or evicted data point
+                hll = newHyperLogLog();
+                registers[index] = hll;
+                slots[index] = slot;
+            }
+            for (long hash : hashes) {
+                hll.addHash(hash);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, DataPoint[] result) {
+        HyperLogLog[] unions = new HyperLogLog[result.length];
+        for (long key = keyStart; key <= keyEnd; key += RESOLUTION_MS) {
+            long slot = key / RESOLUTION_MS;
+            int index = (int) Math.floorMod(slot, (long) maxNumBlocks);
+            synchronized (locks[index % NUM_LOCKS]) {
+                if (registers[index] != null && slots[index] == slot) {
+                    merge(result, unions, key, registers[index]);
+                }
+            }
+        }
+        setCardinalities(result, unions);
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.ddth.tsc.mem.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of {@code long} slots.
+ *
+ * <p>
+ * A slot id (e.g. {@code timestamp / RESOLUTION_MS}) is mapped to ring entry
+ * {@code slot % capacity}. Each ring entry holds a cell bound to the slot id it
+ * currently stores: when the ring wraps around, a stale entry is detected by
+ * its cell's slot id and replaced (compare-and-set) on the next write, so
+ * eviction is O(1) and happens as part of the write itself.
+ * </p>
+ *
+ * <ul>
+ * <li>A cell is allocated once per slot; other writes do not allocate.</li>
+ * <li>A cell's value and slot id cannot be separated: a writer that raced
+ * with the eviction of its slot updates the evicted cell, its delta never leaks
+ * into the newer slot.</li>
+ * <li>Writes to a slot that has already been overwritten by a newer generation
+ * are dropped.</li>
+ * <li>Reads over a range are plain array scans.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class LongRingBuffer {
+
+    /**
+     * A slot's value, bound to the slot id.
+     */
+    @SuppressWarnings("serial")
+    private final static class Cell extends AtomicLong {
+        final long slot;
+
+        Cell(long slot) {
+            this.slot = slot;
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Cell> cells;
+
+    public LongRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0!");
+        }
+        this.capacity = capacity;
+        this.cells = new AtomicReferenceArray<Cell>(capacity);
+    }
+
+    /**
+     * Number of slots the ring can hold.
+     *
+     * @return
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    private int indexOf(long slot) {
+        return (int) Math.floorMod(slot, (long) capacity);
+    }
+
+    /**
+     * Gets the cell of a slot, replacing the ring entry's cell if it holds an
+     * older generation.
+     *
+     * @param slot
+     * @return {@code null} if the entry already holds a newer generation (i.e.
+     *         {@code slot} has been evicted)
+     */
+    private Cell claim(long slot) {
+        int index = indexOf(slot);
+        for (;;) {
+            Cell cell = cells.get(index);
+            if (cell != null && cell.slot >= slot) {
+                return cell.slot == slot ? cell : null;
+            }
+            Cell newCell = new Cell(slot);
+            if (cells.compareAndSet(index, cell, newCell)) {
+                return newCell;
+            }
+        }
+    }
+
+    /**
+     * Adds a value to a slot.
+     *
+     * @param slot
+     * @param delta
+     * @return {@code false} if the slot is too old and has been evicted
+     */
+    public boolean add(long slot, long delta) {
+        Cell cell = claim(slot);
+        if (cell == null) {
+            return false;
+        }
+        cell.addAndGet(delta);
+        return true;
+    }
+
+    /**
+     * Sets a slot's value.
+     *
+     * @param slot
+     * @param value
+     * @return {@code false} if the slot is too old and has been evicted
+     */
+    public boolean set(long slot, long value) {
+        Cell cell = claim(slot);
+        if (cell == null) {
+            return false;
+        }
+        cell.set(value);
+        return true;
+    }
+
+    /**
+     * Checks if a slot currently holds a value.
+     *
+     * @param slot
+     * @return
+     */
+    public boolean contains(long slot) {
+        Cell cell = cells.get(indexOf(slot));
+        return cell != null && cell.slot == slot;
+    }
+
+    /**
+     * Gets a slot's value.
+     *
+     * @param slot
+     * @return the slot's value, or {@code 0} if the slot holds no value
+     */
+    public long get(long slot) {
+        Cell cell = cells.get(indexOf(slot));
+        return cell != null && cell.slot == slot ? cell.get() : 0;
+    }
+}
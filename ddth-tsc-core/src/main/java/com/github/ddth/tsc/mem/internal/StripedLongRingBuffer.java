@@ -0,0 +1,196 @@
+package com.github.ddth.tsc.mem.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link LongRingBuffer} with a striped, contention-free write path for the
+ * most recent slots.
+ *
+ * <p>
+ * The latest {@code hotWindowSize} slots are kept in "hot" slots, each made of
+ * several cache-line padded cells (LongAdder-style). A writer only updates the
+ * cell picked by its thread, so threads hammering the same slot do not contend
+ * on a single memory location. Reads sum the cells. When a newer slot claims a
+ * hot position, the previous hot slot is retired and its total is folded into
+ * the underlying ring; writes to slots older than the hot window go straight to
+ * the ring. A hot slot is also claimed in the ring when created, so it evicts
+ * older slots exactly as {@link LongRingBuffer} does.
+ * </p>
+ *
+ * <p>
+ * Note: a read that races with the retirement of a hot slot may transiently
+ * miss that slot's hot cells. No value is ever lost or double counted.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class StripedLongRingBuffer extends LongRingBuffer {
+
+    public final static int DEFAULT_HOT_WINDOW_SIZE = 4;
+
+    /**
+     * Number of {@code long}s per cell, so that each cell occupies its own
+     * cache line.
+     */
+    private final static int CELL_PADDING = 8;
+
+    private final static class HotSlot {
+        final long slot;
+        final AtomicLongArray cells;
+
+        HotSlot(long slot, int numStripes) {
+            this.slot = slot;
+            this.cells = new AtomicLongArray(numStripes * CELL_PADDING);
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0, n = cells.length(); i < n; i += CELL_PADDING) {
+                sum += cells.get(i);
+            }
+            return sum;
+        }
+
+        long drain() {
+            long sum = 0;
+            for (int i = 0, n = cells.length(); i < n; i += CELL_PADDING) {
+                sum += cells.getAndSet(i, 0);
+            }
+            return sum;
+        }
+    }
+
+    private static int defaultNumStripes() {
+        int numProcessors = Runtime.getRuntime().availableProcessors();
+        int numStripes = 1;
+        while (numStripes < numProcessors && numStripes < 64) {
+            numStripes <<= 1;
+        }
+        return numStripes;
+    }
+
+    private final int numStripes, stripeMask;
+    private final AtomicReferenceArray<HotSlot> hotSlots;
+
+    public StripedLongRingBuffer(int capacity) {
+        this(capacity, DEFAULT_HOT_WINDOW_SIZE, defaultNumStripes());
+    }
+
+    public StripedLongRingBuffer(int capacity, int hotWindowSize) {
+        this(capacity, hotWindowSize, defaultNumStripes());
+    }
+
+    /**
+     * @param capacity
+     * @param hotWindowSize
+     *            number of most recent slots that use striped cells
+     * @param numStripes
+     *            number of cells per hot slot, rounded up to a power of 2
+     */
+    public StripedLongRingBuffer(int capacity, int hotWindowSize, int numStripes) {
+        super(capacity);
+        if (hotWindowSize < 1) {
+            throw new IllegalArgumentException("Hot window size must be greater than 0!");
+        }
+        int n = 1;
+        while (n < numStripes) {
+            n <<= 1;
+        }
+        this.numStripes = n;
+        this.stripeMask = n - 1;
+        this.hotSlots = new AtomicReferenceArray<HotSlot>(hotWindowSize);
+    }
+
+    private int stripe() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & stripeMask;
+    }
+
+    private int hotIndexOf(long slot) {
+        return (int) Math.floorMod(slot, (long) hotSlots.length());
+    }
+
+    /**
+     * Folds a retired hot slot into the ring.
+     *
+     * <p>
+     * May be called more than once for the same hot slot (by the retiring thread
+     * and by late writers), each call only moves what has not been moved yet.
+     * </p>
+     */
+    private void retire(HotSlot hot) {
+        super.add(hot.slot, hot.drain());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(long slot, long delta) {
+        int index = hotIndexOf(slot);
+        HotSlot hot;
+        for (;;) {
+            hot = hotSlots.get(index);
+            if (hot != null && hot.slot == slot) {
+                break;
+            }
+            if (hot != null && hot.slot > slot) {
+                // slot has left the hot window
+                return super.add(slot, delta);
+            }
+            if (!super.add(slot, 0)) {
+                // claim the slot in the ring first, so that it evicts older ones
+                return false;
+            }
+            HotSlot newHot = new HotSlot(slot, numStripes);
+            if (hotSlots.compareAndSet(index, hot, newHot)) {
+                if (hot != null) {
+                    retire(hot);
+                }
+                hot = newHot;
+                break;
+            }
+        }
+        hot.cells.getAndAdd(stripe() * CELL_PADDING, delta);
+        if (hotSlots.get(index) != hot) {
+            // retired while we were writing, our delta may have missed the fold
+            retire(hot);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean set(long slot, long value) {
+        int index = hotIndexOf(slot);
+        HotSlot hot = hotSlots.get(index);
+        if (hot != null && hot.slot == slot && hotSlots.compareAndSet(index, hot, null)) {
+            retire(hot);
+        }
+        return super.set(slot, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(long slot) {
+        // hot slots are claimed in the ring too
+        return super.contains(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long get(long slot) {
+        long value = super.get(slot);
+        HotSlot hot = hotSlots.get(hotIndexOf(slot));
+        return hot != null && hot.slot == slot && super.contains(slot) ? value + hot.sum()
+                : value;
+    }
+}
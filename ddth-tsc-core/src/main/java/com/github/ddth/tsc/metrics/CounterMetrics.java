@@ -0,0 +1,368 @@
+package com.github.ddth.tsc.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.ddth.tsc.DistributionSketch;
+
+/**
+ * {@link ICounterMetrics} that records metrics in memory, exposed as
+ * {@link CounterMetricsSnapshot}s and as a JMX MXBean.
+ * 
+ * <p>
+ * Latencies are recorded into {@link DistributionSketch}es (1% relative
+ * accuracy), striped per thread so that concurrent operations rarely contend;
+ * counts are {@link LongAdder}s.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CounterMetrics implements ICounterMetrics, CounterMetricsMXBean {
+
+    public final static String JMX_DOMAIN = "com.github.ddth.tsc";
+
+    private final static int NUM_STRIPES = 16;
+    private final static Operation[] OPERATIONS = Operation.values();
+
+    private static class LatencyStripe {
+        private DistributionSketch sketch = new DistributionSketch();
+    }
+
+    private final LatencyStripe[][] latencies = new LatencyStripe[OPERATIONS.length][NUM_STRIPES];
+    private final LatencyStripe[] connectionWaits = new LatencyStripe[NUM_STRIPES];
+    private final ConcurrentMap<String, LongAdder> backendCommands = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> cacheHits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> cacheMisses = new ConcurrentHashMap<>();
+    private final LongAdder pointsScanned = new LongAdder(), pointsReturned = new LongAdder();
+    private final LongAdder counterEvictions = new LongAdder();
+    private final LongAdder batches = new LongAdder(), batchedWrites = new LongAdder();
+    private final AtomicLong maxInFlight = new AtomicLong();
+    private ObjectName objectName;
+
+    public CounterMetrics() {
+        for (LatencyStripe[] stripes : latencies) {
+            for (int i = 0; i < NUM_STRIPES; i++) {
+                stripes[i] = new LatencyStripe();
+            }
+        }
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            connectionWaits[i] = new LatencyStripe();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordLatency(Operation operation, long durationNs) {
+        record(latencies[operation.ordinal()], durationNs);
+    }
+
+    private static void record(LatencyStripe[] stripes, long durationNs) {
+        LatencyStripe stripe = stripes[(int) Thread.currentThread().getId() & (NUM_STRIPES - 1)];
+        synchronized (stripe) {
+            stripe.sketch.add(durationNs);
+        }
+    }
+
+    private static DistributionSketch merge(LatencyStripe[] stripes) {
+        DistributionSketch merged = new DistributionSketch();
+        for (LatencyStripe stripe : stripes) {
+            synchronized (stripe) {
+                merged.merge(stripe.sketch);
+            }
+        }
+        return merged;
+    }
+
+    private static void reset(LatencyStripe[] stripes) {
+        for (LatencyStripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.sketch = new DistributionSketch();
+            }
+        }
+    }
+
+    private static void increment(ConcurrentMap<String, LongAdder> counts, String key, int n) {
+        if (n == 0) {
+            return;
+        }
+        LongAdder count = counts.get(key);
+        if (count == null) {
+            LongAdder newCount = new LongAdder();
+            count = counts.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.add(n);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordBackendCommand(String command, int count) {
+        increment(backendCommands, command, count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordCacheAccess(String cache, boolean hit) {
+        increment(hit ? cacheHits : cacheMisses, cache, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordPointsRead(long scanned, long returned) {
+        pointsScanned.add(scanned);
+        pointsReturned.add(returned);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordCounterEviction(String counterName) {
+        counterEvictions.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordBatch(int numWrites) {
+        batches.increment();
+        batchedWrites.add(numWrites);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordConnectionWait(long durationNs) {
+        record(connectionWaits, durationNs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordInFlight(int inFlight) {
+        long max = maxInFlight.get();
+        while (inFlight > max && !maxInFlight.compareAndSet(max, inFlight)) {
+            max = maxInFlight.get();
+        }
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    private static Map<String, Long> toMap(ConcurrentMap<String, LongAdder> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * Takes a snapshot of recorded metrics.
+     * 
+     * <p>
+     * Metrics recorded while the snapshot is taken may or may not be included.
+     * </p>
+     * 
+     * @return
+     */
+    public CounterMetricsSnapshot snapshot() {
+        EnumMap<Operation, DistributionSketch> latencyMap = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            DistributionSketch merged = merge(latencies[operation.ordinal()]);
+            if (!merged.isEmpty()) {
+                latencyMap.put(operation, merged);
+            }
+        }
+        return new CounterMetricsSnapshot(System.currentTimeMillis(), latencyMap,
+                toMap(backendCommands), toMap(cacheHits), toMap(cacheMisses),
+                pointsScanned.sum(), pointsReturned.sum(), counterEvictions.sum(), batches.sum(),
+                batchedWrites.sum(), merge(connectionWaits), maxInFlight.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        for (LatencyStripe[] stripes : latencies) {
+            reset(stripes);
+        }
+        reset(connectionWaits);
+        backendCommands.clear();
+        cacheHits.clear();
+        cacheMisses.clear();
+        pointsScanned.reset();
+        pointsReturned.reset();
+        counterEvictions.reset();
+        batches.reset();
+        batchedWrites.reset();
+        maxInFlight.set(0);
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, CounterMetricsSnapshot.Latency> getLatencies() {
+        Map<String, CounterMetricsSnapshot.Latency> result = new LinkedHashMap<>();
+        for (Map.Entry<Operation, CounterMetricsSnapshot.Latency> entry : snapshot()
+                .getLatencies().entrySet()) {
+            result.put(entry.getKey().name(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getBackendCommands() {
+        return toMap(backendCommands);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getCacheHits() {
+        return toMap(cacheHits);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getCacheMisses() {
+        return toMap(cacheMisses);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPointsScanned() {
+        return pointsScanned.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPointsReturned() {
+        return pointsReturned.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCounterEvictions() {
+        return counterEvictions.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBatchedWrites() {
+        return batchedWrites.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CounterMetricsSnapshot.Latency getConnectionWait() {
+        return new CounterMetricsSnapshot.Latency(merge(connectionWaits));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * Registers this object to the platform MBean server, as
+     * {@code com.github.ddth.tsc:type=CounterMetrics,name=<name>}.
+     * 
+     * @param name
+     *            e.g. name of the application's counter factory
+     * @return
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName(
+                    JMX_DOMAIN + ":type=CounterMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Unregisters this object from the platform MBean server, if registered by
+     * {@link #registerMBean(String)}.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+                if (mbeanServer.isRegistered(objectName)) {
+                    mbeanServer.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                throw new RuntimeException(e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+}
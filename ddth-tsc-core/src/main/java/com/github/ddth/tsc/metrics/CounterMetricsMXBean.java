@@ -0,0 +1,80 @@
+package com.github.ddth.tsc.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CounterMetrics} (see
+ * {@link CounterMetrics#registerMBean(String)}).
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public interface CounterMetricsMXBean {
+
+    /**
+     * Latency summaries, keyed by operation name.
+     * 
+     * @return
+     */
+    public Map<String, CounterMetricsSnapshot.Latency> getLatencies();
+
+    /**
+     * Numbers of backend commands, keyed by command.
+     * 
+     * @return
+     */
+    public Map<String, Long> getBackendCommands();
+
+    /**
+     * Numbers of cache hits, keyed by cache name.
+     * 
+     * @return
+     */
+    public Map<String, Long> getCacheHits();
+
+    /**
+     * Numbers of cache misses, keyed by cache name.
+     * 
+     * @return
+     */
+    public Map<String, Long> getCacheMisses();
+
+    public long getPointsScanned();
+
+    public long getPointsReturned();
+
+    public long getCounterEvictions();
+
+    /**
+     * Number of write batches (Redis pipelines, Cassandra batches).
+     * 
+     * @return
+     */
+    public long getBatches();
+
+    /**
+     * Number of data points written by batches.
+     * 
+     * @return
+     */
+    public long getBatchedWrites();
+
+    /**
+     * Time spent waiting for backend connections.
+     * 
+     * @return
+     */
+    public CounterMetricsSnapshot.Latency getConnectionWait();
+
+    /**
+     * Max number of asynchronous backend requests in flight.
+     * 
+     * @return
+     */
+    public long getMaxInFlight();
+
+    /**
+     * Clears all recorded metrics.
+     */
+    public void reset();
+}
@@ -0,0 +1,241 @@
+package com.github.ddth.tsc.metrics;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.github.ddth.tsc.DistributionSketch;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
+
+/**
+ * Point-in-time copy of metrics recorded by a {@link CounterMetrics}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CounterMetricsSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Latency histogram of an operation.
+     */
+    public static class Latency implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DistributionSketch sketch;
+
+        Latency(DistributionSketch sketch) {
+            this.sketch = sketch;
+        }
+
+        /**
+         * The histogram (durations in nanoseconds).
+         * 
+         * @return
+         */
+        public DistributionSketch sketch() {
+            return sketch;
+        }
+
+        /**
+         * Estimates the {@code q}-quantile of durations, in nanoseconds.
+         * 
+         * @param q
+         * @return
+         */
+        public long quantileNs(double q) {
+            return sketch.quantile(q);
+        }
+
+        /**
+         * Number of timed operations.
+         * 
+         * @return
+         */
+        public long getCount() {
+            return sketch.count();
+        }
+
+        public long getMeanNs() {
+            return sketch.count() > 0 ? sketch.sum() / sketch.count() : 0;
+        }
+
+        public long getP50Ns() {
+            return sketch.quantile(0.5);
+        }
+
+        public long getP90Ns() {
+            return sketch.quantile(0.9);
+        }
+
+        public long getP99Ns() {
+            return sketch.quantile(0.99);
+        }
+
+        public long getP999Ns() {
+            return sketch.quantile(0.999);
+        }
+
+        public long getMaxNs() {
+            return sketch.max();
+        }
+    }
+
+    private final long timestamp;
+    private final Map<Operation, Latency> latencies;
+    private final Map<String, Long> backendCommands, cacheHits, cacheMisses;
+    private final long pointsScanned, pointsReturned, counterEvictions;
+    private final long batches, batchedWrites, maxInFlight;
+    private final Latency connectionWait;
+
+    CounterMetricsSnapshot(long timestamp, EnumMap<Operation, DistributionSketch> latencies,
+            Map<String, Long> backendCommands, Map<String, Long> cacheHits,
+            Map<String, Long> cacheMisses, long pointsScanned, long pointsReturned,
+            long counterEvictions, long batches, long batchedWrites,
+            DistributionSketch connectionWait, long maxInFlight) {
+        this.timestamp = timestamp;
+        EnumMap<Operation, Latency> latencyMap = new EnumMap<>(Operation.class);
+        for (Map.Entry<Operation, DistributionSketch> entry : latencies.entrySet()) {
+            latencyMap.put(entry.getKey(), new Latency(entry.getValue()));
+        }
+        this.latencies = Collections.unmodifiableMap(latencyMap);
+        this.backendCommands = Collections.unmodifiableMap(backendCommands);
+        this.cacheHits = Collections.unmodifiableMap(cacheHits);
+        this.cacheMisses = Collections.unmodifiableMap(cacheMisses);
+        this.pointsScanned = pointsScanned;
+        this.pointsReturned = pointsReturned;
+        this.counterEvictions = counterEvictions;
+        this.batches = batches;
+        this.batchedWrites = batchedWrites;
+        this.connectionWait = new Latency(connectionWait);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * When the snapshot was taken (UNIX timestamp in millisec).
+     * 
+     * @return
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Latency histograms of operations that have been timed.
+     * 
+     * @return
+     */
+    public Map<Operation, Latency> getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Latency histogram of an operation.
+     * 
+     * @param operation
+     * @return {@code null} if the operation has not been timed
+     */
+    public Latency getLatency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * Numbers of backend commands, keyed by command (see
+     * {@link ICounterMetrics#recordBackendCommand(String, int)}).
+     * 
+     * @return
+     */
+    public Map<String, Long> getBackendCommands() {
+        return backendCommands;
+    }
+
+    /**
+     * Number of backend commands of a kind.
+     * 
+     * @param command
+     * @return
+     */
+    public long getBackendCommands(String command) {
+        Long value = backendCommands.get(command);
+        return value != null ? value.longValue() : 0;
+    }
+
+    public Map<String, Long> getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheHits(String cache) {
+        Long value = cacheHits.get(cache);
+        return value != null ? value.longValue() : 0;
+    }
+
+    public Map<String, Long> getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getCacheMisses(String cache) {
+        Long value = cacheMisses.get(cache);
+        return value != null ? value.longValue() : 0;
+    }
+
+    /**
+     * Number of stored data points aggregated by range reads.
+     * 
+     * @return
+     */
+    public long getPointsScanned() {
+        return pointsScanned;
+    }
+
+    /**
+     * Number of data points returned by range reads.
+     * 
+     * @return
+     */
+    public long getPointsReturned() {
+        return pointsReturned;
+    }
+
+    public long getCounterEvictions() {
+        return counterEvictions;
+    }
+
+    /**
+     * Number of write batches (Redis pipelines, Cassandra batches).
+     * 
+     * @return
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Number of data points written by batches.
+     * 
+     * @return
+     */
+    public long getBatchedWrites() {
+        return batchedWrites;
+    }
+
+    /**
+     * Time spent waiting for backend connections.
+     * 
+     * @return
+     */
+    public Latency getConnectionWait() {
+        return connectionWait;
+    }
+
+    /**
+     * Max number of asynchronous backend requests in flight.
+     * 
+     * @return
+     */
+    public long getMaxInFlight() {
+        return maxInFlight;
+    }
+}
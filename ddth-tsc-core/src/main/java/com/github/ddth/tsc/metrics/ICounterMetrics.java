@@ -0,0 +1,169 @@
+package com.github.ddth.tsc.metrics;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+
+/**
+ * Hook to observe counter operations of a counter factory (see
+ * {@link AbstractCounterFactory#setMetrics(ICounterMetrics)}).
+ * 
+ * <p>
+ * Methods are called on hot paths, from many threads: implementations must be
+ * thread-safe and cheap. Callers skip timing (and any other work to build
+ * arguments) when {@link #isEnabled()} returns {@code false}, so that the
+ * default {@link #NOOP} hook costs a field read per operation.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public interface ICounterMetrics {
+
+    /**
+     * Timed counter operations.
+     * 
+     * <ul>
+     * <li>{@code ADD}, {@code SET}, {@code GET}: single data point
+     * operations.</li>
+     * <li>{@code RANGE}: range read of one counter ({@code getSeries},
+     * {@code getLastN}, {@code getLongSeries}...).</li>
+     * <li>{@code MULTI_ADD}, {@code MULTI_RANGE}: multi-counter writes/reads of
+     * a factory ({@code addAll}, {@code getSeries(names, ...)}...).</li>
+     * </ul>
+     */
+    public static enum Operation {
+        ADD, SET, GET, RANGE, MULTI_ADD, MULTI_RANGE
+    }
+
+    /**
+     * Name of {@code CassandraCounterFactory}'s day row cache.
+     */
+    public final static String CACHE_CASSANDRA_ROW = "cassandra.row";
+
+    /**
+     * Name of {@code CassandraCounterFactory}'s counter metadata cache.
+     */
+    public final static String CACHE_CASSANDRA_METADATA = "cassandra.metadata";
+
+    /**
+     * Hook that records nothing (default).
+     */
+    public final static ICounterMetrics NOOP = new ICounterMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordLatency(Operation operation, long durationNs) {
+        }
+
+        @Override
+        public void recordBackendCommand(String command, int count) {
+        }
+
+        @Override
+        public void recordCacheAccess(String cache, boolean hit) {
+        }
+
+        @Override
+        public void recordPointsRead(long scanned, long returned) {
+        }
+
+        @Override
+        public void recordCounterEviction(String counterName) {
+        }
+
+        @Override
+        public void recordBatch(int numWrites) {
+        }
+
+        @Override
+        public void recordConnectionWait(long durationNs) {
+        }
+
+        @Override
+        public void recordInFlight(int inFlight) {
+        }
+    };
+
+    /**
+     * Does this hook record anything?
+     * 
+     * @return
+     */
+    public boolean isEnabled();
+
+    /**
+     * Records duration of an operation.
+     * 
+     * @param operation
+     * @param durationNs
+     *            in nanoseconds
+     */
+    public void recordLatency(Operation operation, long durationNs);
+
+    /**
+     * Records commands sent to the backend storage: Redis commands (e.g.
+     * {@code EVALSHA}, {@code HGET}, {@code HMGET}, {@code HINCRBY},
+     * {@code EXPIRE}) or CQL statements ({@code SELECT}, {@code UPDATE},
+     * {@code INSERT}, {@code DELETE}, {@code BATCH}).
+     * 
+     * @param command
+     * @param count
+     *            number of commands
+     */
+    public void recordBackendCommand(String command, int count);
+
+    /**
+     * Records a cache lookup (e.g. {@link #CACHE_CASSANDRA_ROW}).
+     * 
+     * @param cache
+     *            cache name
+     * @param hit
+     */
+    public void recordCacheAccess(String cache, boolean hit);
+
+    /**
+     * Records a range read: number of stored data points aggregated into the
+     * series (1-second or rollup data points), and number of data points
+     * returned.
+     * 
+     * @param scanned
+     * @param returned
+     */
+    public void recordPointsRead(long scanned, long returned);
+
+    /**
+     * Records eviction of a counter from the factory's counter cache (the
+     * counter is destroyed and re-created on next use).
+     * 
+     * @param counterName
+     */
+    public void recordCounterEviction(String counterName);
+
+    /**
+     * Records a batch of writes sent to the backend storage at once (a Redis
+     * pipeline or a Cassandra batch statement).
+     * 
+     * @param numWrites
+     *            number of data points written by the batch
+     */
+    public void recordBatch(int numWrites);
+
+    /**
+     * Records time spent waiting for a backend connection (e.g. borrowing a
+     * connection from the Redis pool).
+     * 
+     * @param durationNs
+     *            in nanoseconds
+     */
+    public void recordConnectionWait(long durationNs);
+
+    /**
+     * Records number of asynchronous backend requests in flight, sampled when
+     * a request is submitted.
+     * 
+     * @param inFlight
+     */
+    public void recordInFlight(int inFlight);
+}
@@ -0,0 +1,343 @@
+package com.github.ddth.tsc.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.mem.InmemCounterFactory;
+
+/**
+ * {@link ICounterMetrics} that records metrics as time series, into
+ * {@link com.github.ddth.tsc.mem.InmemCounter}s: the library's own
+ * operational metrics can be read with the usual {@link ICounter} API
+ * ({@code getLastN}, {@code getSeries}...).
+ * 
+ * <p>
+ * Usage:
+ * </p>
+ * 
+ * <pre>
+ * InmemCounterMetrics metrics = new InmemCounterMetrics().init();
+ * counterFactory.setMetrics(metrics);
+ * ...
+ * // number of add operations per minute, last hour
+ * DataPoint[] adds = metrics.getCounter(InmemCounterMetrics.opsCounterName(Operation.ADD))
+ *         .getLastN(60, 60);
+ * </pre>
+ * 
+ * <p>
+ * Counters (names are prefixed with {@link #getCounterNamePrefix()}):
+ * </p>
+ * <ul>
+ * <li>{@code ops.<OPERATION>}: number of operations (e.g. {@code ops.ADD}:
+ * writes per second).</li>
+ * <li>{@code latency.<OPERATION>}: total duration of operations, in
+ * microseconds (divide by {@code ops.<OPERATION>} for the average).</li>
+ * <li>{@code commands.<COMMAND>}: number of backend commands (e.g.
+ * {@code commands.HGET}).</li>
+ * <li>{@code cache.<cache>.hits}, {@code cache.<cache>.misses}: cache
+ * lookups.</li>
+ * <li>{@code points.scanned}, {@code points.returned}: data points read by
+ * range reads.</li>
+ * <li>{@code evictions}: counters evicted from the factory's cache.</li>
+ * <li>{@code batches}, {@code batch.writes}: write batches and number of data
+ * points they wrote (divide for the average batch size).</li>
+ * <li>{@code connection.waits}, {@code connection.wait}: number of connection
+ * borrows and total time spent waiting, in microseconds.</li>
+ * <li>{@code inflight}: number of asynchronous backend requests in flight
+ * (last sample of each second).</li>
+ * </ul>
+ * 
+ * <p>
+ * Counters keep {@link #DEFAULT_MAX_NUM_BLOCKS} seconds of data by default.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class InmemCounterMetrics implements ICounterMetrics {
+
+    public final static String DEFAULT_COUNTER_NAME_PREFIX = "tsc.";
+    public final static int DEFAULT_MAX_NUM_BLOCKS = 3600;
+
+    public final static String COUNTER_POINTS_SCANNED = "points.scanned";
+    public final static String COUNTER_POINTS_RETURNED = "points.returned";
+    public final static String COUNTER_EVICTIONS = "evictions";
+    public final static String COUNTER_BATCHES = "batches";
+    public final static String COUNTER_BATCH_WRITES = "batch.writes";
+    public final static String COUNTER_CONNECTION_WAITS = "connection.waits";
+    public final static String COUNTER_CONNECTION_WAIT = "connection.wait";
+    public final static String COUNTER_IN_FLIGHT = "inflight";
+
+    private final static Operation[] OPERATIONS = Operation.values();
+
+    /**
+     * Name of the counter of number of operations.
+     * 
+     * @param operation
+     * @return
+     */
+    public static String opsCounterName(Operation operation) {
+        return "ops." + operation.name();
+    }
+
+    /**
+     * Name of the counter of total duration of operations (microseconds).
+     * 
+     * @param operation
+     * @return
+     */
+    public static String latencyCounterName(Operation operation) {
+        return "latency." + operation.name();
+    }
+
+    /**
+     * Name of the counter of number of backend commands.
+     * 
+     * @param command
+     * @return
+     */
+    public static String commandsCounterName(String command) {
+        return "commands." + command;
+    }
+
+    /**
+     * Name of the counter of cache hits/misses.
+     * 
+     * @param cache
+     * @param hit
+     * @return
+     */
+    public static String cacheCounterName(String cache, boolean hit) {
+        return "cache." + cache + (hit ? ".hits" : ".misses");
+    }
+
+    private String counterNamePrefix = DEFAULT_COUNTER_NAME_PREFIX;
+    private int maxNumBlocks = DEFAULT_MAX_NUM_BLOCKS;
+    private InmemCounterFactory counterFactory;
+    private boolean myOwnCounterFactory = false;
+
+    /* full counter names, resolved once */
+    private String[] opsCounterNames, latencyCounterNames;
+    private String pointsScannedCounterName, pointsReturnedCounterName, evictionsCounterName;
+    private String batchesCounterName, batchWritesCounterName;
+    private String connectionWaitsCounterName, connectionWaitCounterName, inFlightCounterName;
+    private final ConcurrentMap<String, String> commandsCounterNames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> cacheHitsCounterNames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> cacheMissesCounterNames = new ConcurrentHashMap<>();
+
+    public String getCounterNamePrefix() {
+        return counterNamePrefix;
+    }
+
+    /**
+     * Prefix of counter names (default {@link #DEFAULT_COUNTER_NAME_PREFIX}),
+     * useful when sharing a counter factory.
+     * 
+     * @param counterNamePrefix
+     * @return
+     */
+    public InmemCounterMetrics setCounterNamePrefix(String counterNamePrefix) {
+        this.counterNamePrefix = counterNamePrefix != null ? counterNamePrefix : "";
+        return this;
+    }
+
+    public int getMaxNumBlocks() {
+        return maxNumBlocks;
+    }
+
+    /**
+     * Number of seconds of data each counter keeps (default
+     * {@link #DEFAULT_MAX_NUM_BLOCKS}), if the counter factory is created by
+     * this object.
+     * 
+     * @param maxNumBlocks
+     * @return
+     */
+    public InmemCounterMetrics setMaxNumBlocks(int maxNumBlocks) {
+        this.maxNumBlocks = maxNumBlocks;
+        return this;
+    }
+
+    public InmemCounterFactory getCounterFactory() {
+        return counterFactory;
+    }
+
+    /**
+     * Factory of the counters (created by {@link #init()} if not set). The
+     * factory's own metrics hook must not be this object.
+     * 
+     * @param counterFactory
+     * @return
+     */
+    public InmemCounterMetrics setCounterFactory(InmemCounterFactory counterFactory) {
+        this.counterFactory = counterFactory;
+        myOwnCounterFactory = false;
+        return this;
+    }
+
+    /**
+     * Initializing method.
+     * 
+     * @return
+     */
+    public InmemCounterMetrics init() {
+        if (counterFactory == null) {
+            InmemCounterFactory counterFactory = new InmemCounterFactory();
+            counterFactory.setMaxNumBlocks(maxNumBlocks).init();
+            this.counterFactory = counterFactory;
+            myOwnCounterFactory = true;
+        }
+        opsCounterNames = new String[OPERATIONS.length];
+        latencyCounterNames = new String[OPERATIONS.length];
+        for (Operation operation : OPERATIONS) {
+            opsCounterNames[operation.ordinal()] = counterNamePrefix + opsCounterName(operation);
+            latencyCounterNames[operation.ordinal()] = counterNamePrefix
+                    + latencyCounterName(operation);
+        }
+        pointsScannedCounterName = counterNamePrefix + COUNTER_POINTS_SCANNED;
+        pointsReturnedCounterName = counterNamePrefix + COUNTER_POINTS_RETURNED;
+        evictionsCounterName = counterNamePrefix + COUNTER_EVICTIONS;
+        batchesCounterName = counterNamePrefix + COUNTER_BATCHES;
+        batchWritesCounterName = counterNamePrefix + COUNTER_BATCH_WRITES;
+        connectionWaitsCounterName = counterNamePrefix + COUNTER_CONNECTION_WAITS;
+        connectionWaitCounterName = counterNamePrefix + COUNTER_CONNECTION_WAIT;
+        inFlightCounterName = counterNamePrefix + COUNTER_IN_FLIGHT;
+        return this;
+    }
+
+    /**
+     * Destroying method.
+     */
+    public void destroy() {
+        if (counterFactory != null && myOwnCounterFactory) {
+            try {
+                counterFactory.destroy();
+            } finally {
+                counterFactory = null;
+            }
+        }
+    }
+
+    /**
+     * Gets a metrics counter.
+     * 
+     * @param name
+     *            counter name, without prefix (e.g.
+     *            {@link #COUNTER_POINTS_SCANNED} or
+     *            {@link #opsCounterName(Operation)})
+     * @return
+     */
+    public ICounter getCounter(String name) {
+        return counterFactory.getCounter(counterNamePrefix + name);
+    }
+
+    private void add(String fullName, long value) {
+        counterFactory.getCounter(fullName).add(System.currentTimeMillis(), value);
+    }
+
+    private String commandsFullName(String command) {
+        String fullName = commandsCounterNames.get(command);
+        if (fullName == null) {
+            // built once per command
+            fullName = counterNamePrefix + commandsCounterName(command);
+            commandsCounterNames.putIfAbsent(command, fullName);
+        }
+        return fullName;
+    }
+
+    private String cacheFullName(String cache, boolean hit) {
+        ConcurrentMap<String, String> fullNames = hit ? cacheHitsCounterNames
+                : cacheMissesCounterNames;
+        String fullName = fullNames.get(cache);
+        if (fullName == null) {
+            // built once per cache
+            fullName = counterNamePrefix + cacheCounterName(cache, hit);
+            fullNames.putIfAbsent(cache, fullName);
+        }
+        return fullName;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordLatency(Operation operation, long durationNs) {
+        long now = System.currentTimeMillis();
+        counterFactory.getCounter(opsCounterNames[operation.ordinal()]).add(now, 1);
+        counterFactory.getCounter(latencyCounterNames[operation.ordinal()]).add(now,
+                TimeUnit.NANOSECONDS.toMicros(durationNs));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordBackendCommand(String command, int count) {
+        if (count != 0) {
+            add(commandsFullName(command), count);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordCacheAccess(String cache, boolean hit) {
+        add(cacheFullName(cache, hit), 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordPointsRead(long scanned, long returned) {
+        add(pointsScannedCounterName, scanned);
+        add(pointsReturnedCounterName, returned);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordCounterEviction(String counterName) {
+        add(evictionsCounterName, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordBatch(int numWrites) {
+        add(batchesCounterName, 1);
+        add(batchWritesCounterName, numWrites);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordConnectionWait(long durationNs) {
+        add(connectionWaitsCounterName, 1);
+        add(connectionWaitCounterName, TimeUnit.NANOSECONDS.toMicros(durationNs));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordInFlight(int inFlight) {
+        counterFactory.getCounter(inFlightCounterName).set(System.currentTimeMillis(), inFlight);
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+
+import redis.clients.jedis.Response;
+
+/**
+ * Plans and decodes a range read over bucketed Redis hashes.
+ *
+ * <p>
+ * Data points of a range are grouped by bucket (hash) key, so that a range read
+ * issues one {@code HMGET} per bucket, or one {@code HGETALL} if the whole bucket
+ * is within the range, instead of one {@code HGET} per data point. Replies are
+ * decoded straight into a {@link LongSeries}.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class BucketRangeRead {
+
+    /**
+     * The part of a range read that falls in one bucket.
+     */
+    static class Bucket {
+        final String redisKey;
+        final long firstTimestamp, resolutionMs;
+        final int numPoints;
+        final boolean isFull;
+        Response<?> response;
+
+        Bucket(String redisKey, long firstTimestamp, long resolutionMs, int numPoints,
+                boolean isFull) {
+            this.redisKey = redisKey;
+            this.firstTimestamp = firstTimestamp;
+            this.resolutionMs = resolutionMs;
+            this.numPoints = numPoints;
+            this.isFull = isFull;
+        }
+
+        String[] fields() {
+            String[] fields = new String[numPoints];
+            for (int i = 0; i < numPoints; i++) {
+                fields[i] = String.valueOf(firstTimestamp + i * resolutionMs);
+            }
+            return fields;
+        }
+    }
+
+    final long keyStart, resolutionMs;
+    final int numPoints;
+    final List<Bucket> buckets;
+
+    /**
+     * @param counterName
+     * @param keyStart
+     *            timestamp of the first data point (aligned)
+     * @param keyEnd
+     *            timestamp of the last data point (aligned, inclusive)
+     * @param bucketSize
+     *            number of data points per bucket
+     */
+    BucketRangeRead(String counterName, long keyStart, long keyEnd, long bucketSize) {
+        this(counterName, keyStart, keyEnd, bucketSize, ICounter.RESOLUTION_MS);
+    }
+
+    /**
+     * @param keyPrefix
+     *            bucket keys are {@code keyPrefix:bucketId}
+     * @param keyStart
+     *            timestamp of the first data point (aligned)
+     * @param keyEnd
+     *            timestamp of the last data point (aligned, inclusive)
+     * @param bucketSize
+     *            number of data points per bucket
+     * @param resolutionMs
+     *            time span of a data point
+     * @since 0.7.1
+     */
+    BucketRangeRead(String keyPrefix, long keyStart, long keyEnd, long bucketSize,
+            long resolutionMs) {
+        this.keyStart = keyStart;
+        this.resolutionMs = resolutionMs;
+        this.numPoints = keyEnd < keyStart ? 0 : (int) ((keyEnd - keyStart) / resolutionMs) + 1;
+        this.buckets = new ArrayList<Bucket>();
+
+        long bucketSizeMs = bucketSize * resolutionMs;
+        int index = 0;
+        while (index < numPoints) {
+            long timestamp = keyStart + index * resolutionMs;
+            long bucketId = timestamp - timestamp % bucketSizeMs;
+            int n = (int) Math.min((bucketId + bucketSizeMs - timestamp) / resolutionMs,
+                    numPoints - index);
+            buckets.add(new Bucket(keyPrefix + ":" + bucketId, timestamp, resolutionMs, n,
+                    n == bucketSize));
+            index += n;
+        }
+    }
+
+    private static void accumulate(LongSeries result, long timestamp, String value) {
+        if (value != null) {
+            try {
+                result.accumulate(timestamp, Long.parseLong(value));
+            } catch (NumberFormatException e) {
+            }
+        }
+    }
+
+    /**
+     * Decodes bucket replies (after the pipeline has been synced) and
+     * aggregates data points that have a value into a series.
+     *
+     * @param result
+     * @since 0.7.1
+     */
+    @SuppressWarnings("unchecked")
+    void accumulateInto(LongSeries result) {
+        for (Bucket bucket : buckets) {
+            Object reply = bucket.response != null ? bucket.response.get() : null;
+            if (reply instanceof Map) {
+                Map<String, String> hash = (Map<String, String>) reply;
+                long timestamp = bucket.firstTimestamp;
+                for (int i = 0; i < bucket.numPoints; i++, timestamp += resolutionMs) {
+                    accumulate(result, timestamp, hash.get(String.valueOf(timestamp)));
+                }
+            } else if (reply instanceof List) {
+                List<String> values = (List<String>) reply;
+                long timestamp = bucket.firstTimestamp;
+                for (int i = 0; i < bucket.numPoints; i++, timestamp += resolutionMs) {
+                    accumulate(result, timestamp, values.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the commands issued to read buckets.
+     *
+     * @param metrics
+     * @param numFullBuckets
+     *            number of buckets read with {@code HGETALL}
+     * @param numBuckets
+     *            total number of buckets read
+     */
+    static void recordCommands(ICounterMetrics metrics, int numFullBuckets, int numBuckets) {
+        if (metrics.isEnabled()) {
+            metrics.recordBackendCommand("HGETALL", numFullBuckets);
+            metrics.recordBackendCommand("HMGET", numBuckets - numFullBuckets);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.ddth.tsc.redis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.ICounter;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * Reads and writes native Redis HyperLogLogs of unique counters, one key per
+ * data point ({@code name:timestamp}), plus one key per minute, hour and day
+ * ({@code name@steps:timestamp}, see {@link RollupKeys}).
+ *
+ * <p>
+ * Items are added with {@code PFADD} to the keys of the data point and of the
+ * tiers covering it; a block of a series is counted with one {@code PFCOUNT}
+ * over the coarsest keys covering it (e.g. the block [10:00:30, 12:00:00) is
+ * counted over 30 1-second keys, 59 1-minute keys and 1 1-hour key instead of
+ * 7,170 1-second keys), which returns the cardinality of their union without
+ * writing a merged key ({@code PFMERGE}).
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class HllKeys {
+
+    private final static int RESOLUTION_MS = ICounter.RESOLUTION_MS;
+
+    /**
+     * Steps of the tiers, coarsest first.
+     */
+    final static int[] TIERS = { 86400, 3600, 60 };
+
+    static String redisKey(String name, long key) {
+        return name + ":" + key;
+    }
+
+    static String redisKey(String name, int steps, long key) {
+        return RollupKeys.keyPrefix(name, steps) + ":" + key;
+    }
+
+    /**
+     * Keys of the coarsest data points (1-second or tiers) covering range
+     * [{@code first}, {@code last}].
+     *
+     * @param name
+     * @param first
+     *            timestamp of the first data point (aligned)
+     * @param last
+     *            timestamp of the last data point (aligned, inclusive)
+     * @return
+     */
+    static String[] keys(String name, long first, long last) {
+        List<String> keys = new ArrayList<String>();
+        for (long key = first; key <= last;) {
+            int steps = 1;
+            for (int tier : TIERS) {
+                long blockSizeMs = tier * (long) RESOLUTION_MS;
+                if (key % blockSizeMs == 0 && key + blockSizeMs - RESOLUTION_MS <= last) {
+                    steps = tier;
+                    break;
+                }
+            }
+            keys.add(steps > 1 ? redisKey(name, steps, key) : redisKey(name, key));
+            key += steps * (long) RESOLUTION_MS;
+        }
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * Adds items to a data point and to the tiers covering it.
+     *
+     * @param jedis
+     *            connection to the node holding the counter's keys
+     * @param name
+     * @param key
+     *            timestamp of the data point (aligned)
+     * @param items
+     * @param ttlSeconds
+     *            see {@link RollupKeys#ttlSeconds(int, int, int)}
+     * @param rollupTtlSeconds
+     *            TTL of tier keys, see {@link RollupKeys#ttlSeconds(int, int, int)}
+     */
+    static void add(Jedis jedis, String name, long key, Collection<String> items,
+            int ttlSeconds, int rollupTtlSeconds) {
+        if (items.isEmpty()) {
+            return;
+        }
+        String[] elements = items.toArray(new String[items.size()]);
+        try (Pipeline p = jedis.pipelined()) {
+            add(p, redisKey(name, key), elements, ttlSeconds);
+            for (int steps : TIERS) {
+                long blockSizeMs = steps * (long) RESOLUTION_MS;
+                add(p, redisKey(name, steps, key - key % blockSizeMs), elements,
+                        RollupKeys.ttlSeconds(ttlSeconds, rollupTtlSeconds, steps));
+            }
+            p.sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void add(Pipeline p, String redisKey, String[] elements, int ttlSeconds) {
+        p.pfadd(redisKey, elements);
+        if (ttlSeconds > 0) {
+            p.expire(redisKey, ttlSeconds);
+        }
+    }
+
+    /**
+     * Counts distinct items of data points in range [{@code keyStart},
+     * {@code keyEnd}] per block of a series, one {@code PFCOUNT} per block
+     * (over the keys of {@link #keys(String, long, long)}), all in one
+     * pipeline.
+     *
+     * @param jedis
+     *            connection to the node holding the counter's keys
+     * @param name
+     * @param keyStart
+     * @param keyEnd
+     * @param result
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static void count(Jedis jedis, String name, long keyStart, long keyEnd, DataPoint[] result) {
+        Response<Long>[] responses = new Response[result.length];
+        try (Pipeline p = jedis.pipelined()) {
+            for (int i = 0; i < result.length; i++) {
+                long first = Math.max(keyStart, result[i].timestamp());
+                long last = Math.min(keyEnd, result[i].timestamp() + result[i].blockSize() - 1);
+                if (last < first) {
+                    continue;
+                }
+                responses[i] = p.pfcount(keys(name, first, last));
+            }
+            p.sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (int i = 0; i < result.length; i++) {
+            Long count = responses[i] != null ? responses[i].get() : null;
+            if (count != null && count.longValue() > 0) {
+                result[i].type(Type.SUM).set(count.longValue());
+            }
+        }
+    }
+}
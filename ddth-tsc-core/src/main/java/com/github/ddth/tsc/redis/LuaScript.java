@@ -0,0 +1,170 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Server-side Lua script, invoked via {@code EVALSHA}.
+ *
+ * <p>
+ * The script's SHA1 digest is computed locally; the script is registered with
+ * {@code SCRIPT LOAD} the first time a server answers {@code NOSCRIPT} (first
+ * call, server restart, script cache flushed, new shard...).
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class LuaScript {
+
+    /* ARGV[1 + i]: field of KEYS[i]; ARGV[1 + n + i], ARGV[1 + 2n + i]: its expiry */
+    private final static String EXPIRE_KEYS = "local n = #KEYS\n" + "for i = 1, n do\n"
+            + "  local ttl = tonumber(ARGV[1 + n + i])\n"
+            + "  if ttl > 0 and redis.call('TTL', KEYS[i]) < tonumber(ARGV[1 + 2 * n + i]) then\n"
+            + "    redis.call('EXPIRE', KEYS[i], ttl)\n" + "  end\n" + "end\n";
+
+    /**
+     * {@code KEYS}: bucket key of the data point, followed by bucket keys of
+     * its rollups; {@code ARGV}: delta, followed by one field, one ttl and one
+     * ttl refresh threshold per key (see {@link ScriptKeys#args(long)}).
+     * Returns the data point's new value.
+     */
+    final static LuaScript ADD_AND_EXPIRE = new LuaScript(
+            "local v = redis.call('HINCRBY', KEYS[1], ARGV[2], ARGV[1])\n"
+                    + "for i = 2, #KEYS do\n"
+                    + "  redis.call('HINCRBY', KEYS[i], ARGV[1 + i], ARGV[1])\n" + "end\n"
+                    + EXPIRE_KEYS + "return v");
+
+    /**
+     * {@code KEYS}: bucket key of the data point, followed by bucket keys of
+     * its rollups; {@code ARGV}: value, followed by one field, one ttl and one
+     * ttl refresh threshold per key (see {@link ScriptKeys#args(long)}).
+     * Rollups are updated by the difference between the new and the old value.
+     * Returns the old value (a string, see {@link #oldValue(Object)}).
+     *
+     * <p>
+     * Lua numbers are doubles: the difference is not computed by the script,
+     * the old value is subtracted from rollups with {@code HINCRBY} instead,
+     * so that values above 2^53 stay exact.
+     * </p>
+     */
+    final static LuaScript SET_AND_EXPIRE = new LuaScript(
+            "local old = redis.call('HGET', KEYS[1], ARGV[2]) or '0'\n"
+                    + "redis.call('HSET', KEYS[1], ARGV[2], ARGV[1])\n" + "local neg = nil\n"
+                    + "if old ~= '0' then\n" + "  if string.sub(old, 1, 1) == '-' then\n"
+                    + "    neg = string.sub(old, 2)\n" + "  else\n" + "    neg = '-' .. old\n"
+                    + "  end\n" + "end\n" + "for i = 2, #KEYS do\n" + "  if neg then\n"
+                    + "    redis.call('HINCRBY', KEYS[i], ARGV[1 + i], neg)\n" + "  end\n"
+                    + "  redis.call('HINCRBY', KEYS[i], ARGV[1 + i], ARGV[1])\n" + "end\n"
+                    + EXPIRE_KEYS + "return old");
+
+    /**
+     * Parses the old value returned by {@link #SET_AND_EXPIRE}.
+     *
+     * @param result
+     * @return
+     */
+    static long oldValue(Object result) {
+        if (result instanceof byte[]) {
+            result = SafeEncoder.encode((byte[]) result);
+        }
+        return result != null ? Long.parseLong(result.toString()) : 0;
+    }
+
+    private final String script, sha1;
+
+    LuaScript(String script) {
+        this.script = script;
+        this.sha1 = Hashing.sha1().hashString(script, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Executes the script, loading it first if the server does not know it
+     * yet.
+     *
+     * @param jedis
+     * @param keys
+     * @param value
+     * @return
+     */
+    Object eval(Jedis jedis, ScriptKeys keys, long value) {
+        return eval(jedis, keys.keys(), keys.args(value));
+    }
+
+    private Object eval(Jedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            jedis.scriptLoad(script);
+            return jedis.evalsha(sha1, keys, args);
+        }
+    }
+
+    /**
+     * Is the error a {@code NOSCRIPT} reply (script not known by the server)?
+     *
+     * @param e
+     * @return
+     */
+    static boolean isNoScript(JedisDataException e) {
+        String msg = e.getMessage();
+        return msg != null && msg.startsWith("NOSCRIPT");
+    }
+
+    /**
+     * Queues the script into a pipeline. If the server does not know the
+     * script, its reply is a {@code NOSCRIPT} error (see
+     * {@link #isNoScript(JedisDataException)}): the caller runs it again with
+     * {@link #eval(Jedis, ScriptKeys, long)}, which loads it.
+     *
+     * @param p
+     * @param keys
+     * @param value
+     * @return
+     */
+    Response<?> evalsha(Pipeline p, ScriptKeys keys, long value) {
+        // binary version: the String one expects a bulk string reply, not a number
+        return p.evalsha(SafeEncoder.encode(sha1), encode(keys.keys()), encode(keys.args(value)));
+    }
+
+    private static List<byte[]> encode(List<String> values) {
+        List<byte[]> result = new ArrayList<byte[]>(values.size());
+        for (String value : values) {
+            result.add(SafeEncoder.encode(value));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the "ttl refresh threshold" to pass to scripts: {@code EXPIRE}
+     * is only re-issued when the key's remaining TTL falls below the
+     * threshold.
+     *
+     * @param ttlSeconds
+     * @param ttlRefreshThresholdSeconds
+     *            configured threshold, a negative value means "auto"
+     * @param bucketSizeSeconds
+     * @return
+     */
+    static int ttlRefreshThreshold(int ttlSeconds, int ttlRefreshThresholdSeconds,
+            long bucketSizeSeconds) {
+        if (ttlRefreshThresholdSeconds >= 0) {
+            return Math.min(ttlRefreshThresholdSeconds, ttlSeconds);
+        }
+        // auto: a bucket is written for about bucketSize seconds, refresh at most
+        // about once per bucket lifetime
+        return (int) Math.max(ttlSeconds - bucketSizeSeconds, ttlSeconds / 2);
+    }
+}
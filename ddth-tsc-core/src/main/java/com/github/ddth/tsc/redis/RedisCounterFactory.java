@@ -1,15 +1,39 @@
 package com.github.ddth.tsc.redis;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AsyncCounter;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.IAsyncCounter;
 import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.IDistributionCounter;
+import com.github.ddth.tsc.IUniqueCounter;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.internal.WriteBuffer;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 /**
  * This factory creates {@link RedisCounter} instances.
@@ -22,6 +46,17 @@ public class RedisCounterFactory extends AbstractCounterFactory {
     public final static int DEFAULT_TTL_SECONDS = 24 * 3600; // 1 day
     private final static long DEFAULT_TIMEOUT_MS = 10000; // 10 seconds
 
+    public final static long DEFAULT_WRITE_BEHIND_MAX_STALENESS_MS = 1000; // 1 second
+    public final static int DEFAULT_WRITE_BEHIND_MAX_PENDING_WRITES = 10000;
+
+    /**
+     * Default max number of connections of the pool created in virtual-thread
+     * mode (see {@link #setVirtualThreads(boolean)}).
+     * 
+     * @since 0.7.1
+     */
+    public final static int DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS = 128;
+
     private final Logger LOGGER = LoggerFactory.getLogger(RedisCounterFactory.class);
 
     /**
@@ -76,7 +111,25 @@ public class RedisCounterFactory extends AbstractCounterFactory {
      */
     public static JedisPool newJedisPool(String hostAndPort, String password, int db,
             long timeoutMs) {
-        final int maxTotal = Runtime.getRuntime().availableProcessors();
+        return newJedisPool(hostAndPort, password, db, timeoutMs,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@link JedisPool}.
+     * 
+     * @param hostAndPort
+     * @param password
+     * @param db
+     * @param timeoutMs
+     *            max time to wait for a connection when all are in use
+     * @param maxTotal
+     *            max number of connections
+     * @return
+     * @since 0.7.1
+     */
+    public static JedisPool newJedisPool(String hostAndPort, String password, int db,
+            long timeoutMs, int maxTotal) {
         final int maxIdle = maxTotal / 2;
 
         JedisPoolConfig poolConfig = new JedisPoolConfig();
@@ -99,7 +152,18 @@ public class RedisCounterFactory extends AbstractCounterFactory {
     private boolean myOwnJedisPool = true;
     private String redisHostAndPort = Protocol.DEFAULT_HOST + ":" + Protocol.DEFAULT_PORT;
     private String redisPassword;
+    private int maxConnections = -1;
+    private long connectionMaxWaitMs = DEFAULT_TIMEOUT_MS;
     private int ttlSeconds = DEFAULT_TTL_SECONDS;
+    private int ttlRefreshThreshold = -1;
+    private int rollupTtlSeconds = -1;
+
+    private boolean writeBehind = false;
+    private long writeBehindMaxStalenessMs = DEFAULT_WRITE_BEHIND_MAX_STALENESS_MS;
+    private int writeBehindMaxPendingWrites = DEFAULT_WRITE_BEHIND_MAX_PENDING_WRITES;
+    private volatile WriteBuffer<BufferedField> writeBuffer;
+    private ScheduledExecutorService writeBehindExecutor;
+    private final AtomicBoolean writeBehindFlushScheduled = new AtomicBoolean(false);
 
     /**
      * Redis' host and port scheme (format {@code host:port}).
@@ -145,6 +209,64 @@ public class RedisCounterFactory extends AbstractCounterFactory {
         return this;
     }
 
+    /**
+     * Max number of connections of the pool created by {@link #init()}.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets max number of connections of the pool created by {@link #init()}
+     * (ignored if a pool is set with {@code setJedisPool()}). A non-positive
+     * value (default) means "auto": number of processors, or
+     * {@link #DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS} in virtual-thread mode
+     * (see {@link #setVirtualThreads(boolean)}).
+     * 
+     * @param maxConnections
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Max time (in milliseconds) to wait for a connection of the pool created
+     * by {@link #init()} when all are in use.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getConnectionMaxWaitMs() {
+        return connectionMaxWaitMs;
+    }
+
+    /**
+     * Sets max time (in milliseconds) to wait for a connection of the pool
+     * created by {@link #init()} when all are in use (default 10 seconds).
+     * 
+     * @param connectionMaxWaitMs
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setConnectionMaxWaitMs(long connectionMaxWaitMs) {
+        this.connectionMaxWaitMs = connectionMaxWaitMs;
+        return this;
+    }
+
+    private int poolMaxTotal() {
+        if (maxConnections > 0) {
+            return maxConnections;
+        }
+        return isVirtualThreads() ? DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS
+                : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * @return
      * @since 0.7.0
@@ -173,15 +295,155 @@ public class RedisCounterFactory extends AbstractCounterFactory {
         return this;
     }
 
+    /**
+     * Threshold (in seconds) below which a bucket's remaining TTL is refreshed.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getTtlRefreshThreshold() {
+        return ttlRefreshThreshold;
+    }
+
+    /**
+     * Sets threshold (in seconds) below which a bucket's remaining TTL is
+     * refreshed by {@code add()}/{@code set()}. A negative value (default) means
+     * "auto". See {@link RedisCounter#setTtlRefreshThreshold(int)}.
+     * 
+     * @param ttlRefreshThreshold
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setTtlRefreshThreshold(int ttlRefreshThreshold) {
+        this.ttlRefreshThreshold = ttlRefreshThreshold;
+        return this;
+    }
+
+    /**
+     * TTL (in seconds) of rollup buckets.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getRollupTtl() {
+        return rollupTtlSeconds;
+    }
+
+    /**
+     * Sets TTL (in seconds) of rollup buckets. A negative value (default) means
+     * {@link #getTtl()} scaled by each tier's steps. See
+     * {@link RedisCounter#setRollupTtl(int)}.
+     * 
+     * @param rollupTtlSeconds
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setRollupTtl(int rollupTtlSeconds) {
+        this.rollupTtlSeconds = rollupTtlSeconds;
+        return this;
+    }
+
+    /**
+     * Is write-behind mode enabled?
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Enables/Disables write-behind mode (default {@code false}).
+     * 
+     * <p>
+     * In write-behind mode, {@code add()}s and {@code set()}s are merged locally
+     * per data point and flushed to Redis in one pipeline, with one
+     * {@code EXPIRE} per touched bucket, every
+     * {@link #getWriteBehindMaxStalenessMs()} or as soon as
+     * {@link #getWriteBehindMaxPendingWrites()} data points are pending,
+     * whichever comes first. Pending writes are flushed by {@link #destroy()}.
+     * </p>
+     * 
+     * <p>
+     * If a flush fails after its pipeline has been sent, pending {@code add()}s
+     * are dropped (and logged) rather than retried, as retrying could count
+     * them twice; {@code set()}s are retried with the next flush.
+     * </p>
+     * 
+     * <p>
+     * Reads do not see pending writes: data read from Redis is up to
+     * {@link #getWriteBehindMaxStalenessMs()} behind.
+     * </p>
+     * 
+     * @param writeBehind
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+        return this;
+    }
+
+    /**
+     * Max time pending writes are buffered locally in write-behind mode.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getWriteBehindMaxStalenessMs() {
+        return writeBehindMaxStalenessMs;
+    }
+
+    /**
+     * Sets max time pending writes are buffered locally in write-behind mode
+     * (default {@link #DEFAULT_WRITE_BEHIND_MAX_STALENESS_MS}).
+     * 
+     * @param writeBehindMaxStalenessMs
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setWriteBehindMaxStalenessMs(long writeBehindMaxStalenessMs) {
+        this.writeBehindMaxStalenessMs = writeBehindMaxStalenessMs;
+        return this;
+    }
+
+    /**
+     * Number of pending data points that triggers a flush in write-behind mode.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getWriteBehindMaxPendingWrites() {
+        return writeBehindMaxPendingWrites;
+    }
+
+    /**
+     * Sets number of pending data points that triggers a flush in write-behind
+     * mode (default {@link #DEFAULT_WRITE_BEHIND_MAX_PENDING_WRITES}).
+     * 
+     * @param writeBehindMaxPendingWrites
+     * @return
+     * @since 0.7.1
+     */
+    public RedisCounterFactory setWriteBehindMaxPendingWrites(int writeBehindMaxPendingWrites) {
+        this.writeBehindMaxPendingWrites = writeBehindMaxPendingWrites;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public RedisCounterFactory init() {
         if (jedisPool == null) {
-            jedisPool = newJedisPool(redisHostAndPort, redisPassword);
+            jedisPool = newJedisPool(redisHostAndPort, redisPassword, Protocol.DEFAULT_DATABASE,
+                    connectionMaxWaitMs, poolMaxTotal());
             myOwnJedisPool = true;
         }
+        if (writeBehind) {
+            initWriteBehind();
+        }
         super.init();
         return this;
     }
@@ -197,6 +459,16 @@ public class RedisCounterFactory extends AbstractCounterFactory {
             LOGGER.warn(e.getMessage(), e);
         }
 
+        if (writeBehindExecutor != null) {
+            try {
+                destroyWriteBehind();
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                writeBehindExecutor = null;
+            }
+        }
+
         if (jedisPool != null && myOwnJedisPool) {
             try {
                 jedisPool.destroy();
@@ -209,11 +481,441 @@ public class RedisCounterFactory extends AbstractCounterFactory {
     }
 
     /**
+     * Borrows a connection from the pool (time spent waiting is recorded as
+     * {@link ICounterMetrics#recordConnectionWait(long)}).
+     * 
      * @return
      * @since 0.7.0
      */
     public Jedis getJedis() {
-        return jedisPool.getResource();
+        JedisPool jedisPool = this.jedisPool;
+        if (jedisPool == null) {
+            throw new IllegalStateException("Counter factory is not initialized or destroyed!");
+        }
+        ICounterMetrics metrics = getMetrics();
+        if (!metrics.isEnabled()) {
+            return jedisPool.getResource();
+        }
+        long startNs = System.nanoTime();
+        Jedis jedis = jedisPool.getResource();
+        metrics.recordConnectionWait(System.nanoTime() - startNs);
+        return jedis;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Writes of all counters are sent in one pipeline (buffered instead if
+     * write-behind mode is active).
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public void addAll(Map<String, Long> values, long timestampMs) {
+        ICounterMetrics metrics = getMetrics();
+        long startNs = metrics.isEnabled() ? System.nanoTime() : 0;
+        WriteBuffer<BufferedField> buffer = writeBuffer;
+        List<WriteBuffer.Write<BufferedField>> writes = new ArrayList<>(values.size());
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            RedisCounter counter = (RedisCounter) getCounter(entry.getKey());
+            BufferedField field = new BufferedField(counter.scriptKeys(timestampMs));
+            if (buffer != null) {
+                buffer.add(field, entry.getValue().longValue());
+            } else {
+                writes.add(new WriteBuffer.Write<BufferedField>(field,
+                        entry.getValue().longValue(), false));
+            }
+        }
+        if (buffer != null) {
+            checkWriteBehindThreshold(buffer);
+        } else if (!writes.isEmpty()) {
+            try (Jedis jedis = getJedis()) {
+                List<JedisDataException> errors = write(jedis, writes);
+                if (!errors.isEmpty()) {
+                    throw errors.get(0);
+                }
+            }
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordLatency(Operation.MULTI_ADD, System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * Reads all buckets of range reads in one pipeline.
+     * 
+     * @param reads
+     * @since 0.7.1
+     */
+    void readBuckets(List<BucketRangeRead> reads) {
+        int numFullBuckets = 0, numBuckets = 0;
+        try (Jedis jedis = getJedis()) {
+            try (Pipeline p = jedis.pipelined()) {
+                for (BucketRangeRead read : reads) {
+                    for (BucketRangeRead.Bucket bucket : read.buckets) {
+                        bucket.response = bucket.isFull ? p.hgetAll(bucket.redisKey)
+                                : p.hmget(bucket.redisKey, bucket.fields());
+                        numFullBuckets += bucket.isFull ? 1 : 0;
+                        numBuckets++;
+                    }
+                }
+                p.sync();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        BucketRangeRead.recordCommands(getMetrics(), numFullBuckets, numBuckets);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Buckets of all counters are read in one pipeline.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readLongSeries(List<ICounter> counters, long timestampStartMs,
+            long timestampEndMs, int steps, Type type, List<LongSeries> results) {
+        List<BucketRangeRead> reads = new ArrayList<>();
+        List<LongSeries> targets = new ArrayList<>();
+        for (int i = 0, n = counters.size(); i < n; i++) {
+            for (BucketRangeRead read : ((RedisCounter) counters.get(i)).planBucketReads(
+                    timestampStartMs, timestampEndMs, steps, type, results.get(i))) {
+                reads.add(read);
+                targets.add(results.get(i));
+            }
+        }
+        readBuckets(reads);
+        for (int i = 0, n = reads.size(); i < n; i++) {
+            reads.get(i).accumulateInto(targets.get(i));
+        }
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Identifies a data point (a field of a bucket hash) in the write-behind
+     * buffer.
+     * 
+     * @since 0.7.1
+     */
+    private final static class BufferedField {
+        private final String redisKey, redisField;
+        private final int ttlSeconds;
+        /* bucket keys of the data point, followed by its rollups' */
+        private final ScriptKeys keys;
+
+        BufferedField(ScriptKeys keys) {
+            this.redisKey = keys.key(0);
+            this.redisField = keys.field(0);
+            this.ttlSeconds = keys.ttlSeconds(0);
+            this.keys = keys;
+        }
+
+        boolean hasRollups() {
+            return keys.size() > 1;
+        }
+
+        @Override
+        public int hashCode() {
+            return redisKey.hashCode() * 31 + redisField.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BufferedField)) {
+                return false;
+            }
+            BufferedField other = (BufferedField) obj;
+            return redisKey.equals(other.redisKey) && redisField.equals(other.redisField);
+        }
+    }
+
+    private void initWriteBehind() {
+        writeBuffer = new WriteBuffer<BufferedField>();
+        writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, RedisCounterFactory.class.getSimpleName() + "-writebehind");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        writeBehindExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushWriteBehind();
+            }
+        }, writeBehindMaxStalenessMs, writeBehindMaxStalenessMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void destroyWriteBehind() throws InterruptedException {
+        WriteBuffer<BufferedField> buffer = writeBuffer;
+        // from now on, writes go straight to Redis
+        writeBuffer = null;
+        writeBehindExecutor.shutdown();
+        writeBehindExecutor.awaitTermination(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // flush whatever is left
+        flush(buffer);
+    }
+
+    /**
+     * Flushes all pending writes to Redis in one pipeline.
+     * 
+     * <p>
+     * Always runs on the write-behind thread, except the final flush made by
+     * {@link #destroy()}.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    protected void flushWriteBehind() {
+        writeBehindFlushScheduled.set(false);
+        WriteBuffer<BufferedField> buffer = writeBuffer;
+        if (buffer != null) {
+            flush(buffer);
+        }
+    }
+
+    /**
+     * Flushes a write-behind buffer.
+     * 
+     * <p>
+     * If the writes could not be sent, they are put back to the buffer and
+     * retried with the next flush. Once the pipeline has been sent, its outcome
+     * is unknown if the connection fails: only "set" writes are put back
+     * (retrying them is harmless), "add" writes are dropped rather than
+     * risking to count them twice. Writes rejected by the server are dropped
+     * too.
+     * </p>
+     * 
+     * @param buffer
+     * @since 0.7.1
+     */
+    private void flush(WriteBuffer<BufferedField> buffer) {
+        List<WriteBuffer.Write<BufferedField>> writes = buffer.drain();
+        if (writes.isEmpty()) {
+            return;
+        }
+        boolean sent = false;
+        try (Jedis jedis = getJedis()) {
+            sent = true;
+            List<JedisDataException> errors = write(jedis, writes);
+            if (!errors.isEmpty()) {
+                LOGGER.error("[" + errors.size() + "] write(s) rejected by Redis, dropped: "
+                        + errors.get(0).getMessage(), errors.get(0));
+            }
+        } catch (Exception e) {
+            if (!sent) {
+                LOGGER.warn("Cannot flush [" + writes.size() + "] write(s) to Redis, will retry: "
+                        + e.getMessage(), e);
+                for (WriteBuffer.Write<BufferedField> write : writes) {
+                    buffer.requeue(write);
+                }
+                return;
+            }
+            int numDropped = 0;
+            for (WriteBuffer.Write<BufferedField> write : writes) {
+                if (write.isSet()) {
+                    buffer.requeue(write);
+                } else {
+                    numDropped++;
+                }
+            }
+            LOGGER.error("Failed to flush [" + writes.size() + "] write(s) to Redis, ["
+                    + numDropped + "] add(s) may have been lost, set(s) will be retried: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static LuaScript script(WriteBuffer.Write<BufferedField> write) {
+        return write.isSet() ? LuaScript.SET_AND_EXPIRE : LuaScript.ADD_AND_EXPIRE;
+    }
+
+    /**
+     * Writes to Redis in one pipeline: scripts for data points with rollups,
+     * {@code HINCRBY}/{@code HSET} followed by one {@code EXPIRE} per touched
+     * bucket for the others.
+     * 
+     * <p>
+     * The reply of each write is checked: a script the server does not know
+     * any more ({@code NOSCRIPT}) is run again with {@link LuaScript#eval}, other
+     * errors are returned.
+     * </p>
+     * 
+     * @param jedis
+     * @param writes
+     * @return errors of writes rejected by the server
+     * @since 0.7.1
+     */
+    private List<JedisDataException> write(Jedis jedis,
+            List<WriteBuffer.Write<BufferedField>> writes) {
+        Map<String, Integer> touchedKeys = new HashMap<String, Integer>();
+        List<Response<?>> responses = new ArrayList<Response<?>>(writes.size());
+        int numScripts = 0, numSets = 0;
+        try (Pipeline p = jedis.pipelined()) {
+            for (WriteBuffer.Write<BufferedField> write : writes) {
+                BufferedField field = write.key();
+                if (field.hasRollups()) {
+                    responses.add(script(write).evalsha(p, field.keys, write.value()));
+                    numScripts++;
+                    continue;
+                }
+                numSets += write.isSet() ? 1 : 0;
+                if (write.isSet()) {
+                    responses.add(p.hset(field.redisKey, field.redisField,
+                            String.valueOf(write.value())));
+                } else {
+                    responses.add(p.hincrBy(field.redisKey, field.redisField, write.value()));
+                }
+                if (field.ttlSeconds > 0) {
+                    touchedKeys.put(field.redisKey, field.ttlSeconds);
+                }
+            }
+            for (Map.Entry<String, Integer> entry : touchedKeys.entrySet()) {
+                p.expire(entry.getKey(), entry.getValue().intValue());
+            }
+            p.sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        List<JedisDataException> errors = new ArrayList<JedisDataException>();
+        for (int i = 0, n = writes.size(); i < n; i++) {
+            try {
+                responses.get(i).get();
+            } catch (JedisDataException e) {
+                WriteBuffer.Write<BufferedField> write = writes.get(i);
+                if (!write.key().hasRollups() || !LuaScript.isNoScript(e)) {
+                    errors.add(e);
+                    continue;
+                }
+                try {
+                    script(write).eval(jedis, write.key().keys, write.value());
+                } catch (JedisDataException ex) {
+                    errors.add(ex);
+                }
+            }
+        }
+
+        ICounterMetrics metrics = getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordBackendCommand("EVALSHA", numScripts);
+            metrics.recordBackendCommand("HSET", numSets);
+            metrics.recordBackendCommand("HINCRBY", writes.size() - numScripts - numSets);
+            metrics.recordBackendCommand("EXPIRE", touchedKeys.size());
+            metrics.recordBatch(writes.size());
+        }
+        return errors;
+    }
+
+    private void checkWriteBehindThreshold(WriteBuffer<BufferedField> buffer) {
+        ScheduledExecutorService executor = writeBehindExecutor;
+        if (executor != null && buffer.size() >= writeBehindMaxPendingWrites
+                && writeBehindFlushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushWriteBehind();
+                    }
+                });
+            } catch (Exception e) {
+                // executor is being shut down, destroy() will flush
+                writeBehindFlushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes a buffer taken over by {@link #destroy()} after the caller's
+     * write, which may have missed the final flush; checks the flush threshold
+     * otherwise.
+     */
+    private void checkWriteBehindBuffer(WriteBuffer<BufferedField> buffer) {
+        if (writeBuffer != buffer) {
+            flush(buffer);
+        } else {
+            checkWriteBehindThreshold(buffer);
+        }
+    }
+
+    /**
+     * Buffers an "add" write if write-behind mode is active.
+     * 
+     * @param keys
+     *            bucket key of the data point, followed by bucket keys of its
+     *            rollups
+     * @param value
+     * @return {@code false} if write-behind mode is not active, the caller must
+     *         write to Redis directly
+     * @since 0.7.1
+     */
+    boolean writeBehindAdd(ScriptKeys keys, long value) {
+        WriteBuffer<BufferedField> buffer = writeBuffer;
+        if (buffer == null) {
+            return false;
+        }
+        buffer.add(new BufferedField(keys), value);
+        checkWriteBehindBuffer(buffer);
+        return true;
+    }
+
+    /**
+     * Buffers a "set" write if write-behind mode is active.
+     * 
+     * @param keys
+     *            bucket key of the data point, followed by bucket keys of its
+     *            rollups
+     * @param value
+     * @return {@code false} if write-behind mode is not active, the caller must
+     *         write to Redis directly
+     * @since 0.7.1
+     */
+    boolean writeBehindSet(ScriptKeys keys, long value) {
+        WriteBuffer<BufferedField> buffer = writeBuffer;
+        if (buffer == null) {
+            return false;
+        }
+        buffer.set(new BufferedField(keys), value);
+        checkWriteBehindBuffer(buffer);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IDistributionCounter createDistributionCounter(String name) {
+        RedisDistributionCounter counter = new RedisDistributionCounter(name, ttlSeconds);
+        counter.setRelativeAccuracy(getSketchRelativeAccuracy())
+                .setMaxNumBins(getSketchMaxNumBins())
+                .setFlushIntervalMs(getSketchFlushIntervalMs());
+        counter.setCounterFactory(this).init();
+        return counter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IUniqueCounter createUniqueCounter(String name) {
+        RedisUniqueCounter counter = new RedisUniqueCounter(name, ttlSeconds);
+        counter.setRollupTtl(rollupTtlSeconds);
+        counter.setCounterFactory(this).init();
+        return counter;
     }
 
     /**
@@ -222,7 +924,56 @@ public class RedisCounterFactory extends AbstractCounterFactory {
     @Override
     protected ICounter createCounter(String name) {
         RedisCounter counter = new RedisCounter(name, ttlSeconds);
+        counter.setTtlRefreshThreshold(ttlRefreshThreshold).setRollupTtl(rollupTtlSeconds);
+        counter.setRollupSteps(getRollupSteps());
         counter.setCounterFactory(this).init();
         return counter;
     }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Jedis connections are blocking: operations run on
+     * {@link #getAsyncExecutor()}, except {@code add()}s and {@code set()}s in
+     * write-behind mode, which are only buffered locally and complete in the
+     * calling thread.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IAsyncCounter createAsyncCounter(String name) {
+        return new AsyncCounter(this, name) {
+            @Override
+            public CompletableFuture<Void> add(long timestampMs, long value) {
+                if (!isWriteBehind()) {
+                    return super.add(timestampMs, value);
+                }
+                CompletableFuture<Void> result = new CompletableFuture<>();
+                try {
+                    getCounter().add(timestampMs, value);
+                    result.complete(null);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+                return result;
+            }
+
+            @Override
+            public CompletableFuture<Void> set(long timestampMs, long value) {
+                if (!isWriteBehind()) {
+                    return super.set(timestampMs, value);
+                }
+                CompletableFuture<Void> result = new CompletableFuture<>();
+                try {
+                    getCounter().set(timestampMs, value);
+                    result.complete(null);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+                return result;
+            }
+        };
+    }
 }
@@ -0,0 +1,104 @@
+package com.github.ddth.tsc.redis;
+
+import java.io.IOException;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractDistributionCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DistributionSketch;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Redis-backed distribution counter.
+ * 
+ * <p>
+ * Same layout as {@link RedisCounter} (hash {@code name:bucketId}, one field
+ * per data point), field values are encoded sketches (see
+ * {@link DistributionSketch#toBytes()}). Distribution counters and counters
+ * share the key space: do not give them the same name.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisDistributionCounter extends AbstractDistributionCounter {
+
+    private int ttlSeconds = RedisCounterFactory.DEFAULT_TTL_SECONDS;
+    private long BUCKET_SIZE = 60;
+
+    public RedisDistributionCounter() {
+    }
+
+    public RedisDistributionCounter(String name, int ttlSeconds) {
+        super(name);
+        setTtl(ttlSeconds);
+    }
+
+    public int getTtl() {
+        return ttlSeconds;
+    }
+
+    public RedisDistributionCounter setTtl(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RedisCounterFactory getCounterFactory() {
+        return (RedisCounterFactory) super.getCounterFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RedisDistributionCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof RedisCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException(
+                    "Argument must be an instance of " + RedisCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    static void mergeSketch(DataPoint[] result, long key, DistributionSketch sketch) {
+        merge(result, key, sketch);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(long key, DistributionSketch values) {
+        long bucketId = key - key % (RESOLUTION_MS * BUCKET_SIZE);
+        try (Jedis jedis = getCounterFactory().getJedis()) {
+            SketchBuckets.merge(jedis, getName() + ":" + bucketId, String.valueOf(key), values,
+                    ttlSeconds);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, DataPoint[] result) {
+        BucketRangeRead read = new BucketRangeRead(getName(), keyStart, keyEnd, BUCKET_SIZE);
+        try (Jedis jedis = getCounterFactory().getJedis()) {
+            try (Pipeline p = jedis.pipelined()) {
+                for (BucketRangeRead.Bucket bucket : read.buckets) {
+                    SketchBuckets.request(p, bucket);
+                }
+                p.sync();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        SketchBuckets.mergeInto(read, result);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.Collection;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractUniqueCounter;
+import com.github.ddth.tsc.DataPoint;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * Redis-backed unique counter.
+ * 
+ * <p>
+ * Each data point is a native Redis HyperLogLog ({@code PFADD}/{@code PFCOUNT},
+ * 12 KB at most), key {@code name:timestamp}. Items are also added to minute,
+ * hour and day HyperLogLogs ({@code name@steps:timestamp}), so that wide
+ * blocks are counted over few keys (see {@link HllKeys}). Unique counters and
+ * counters share the key space: do not give them the same name.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisUniqueCounter extends AbstractUniqueCounter {
+
+    private int ttlSeconds = RedisCounterFactory.DEFAULT_TTL_SECONDS;
+    private int rollupTtlSeconds = -1;
+
+    public RedisUniqueCounter() {
+    }
+
+    public RedisUniqueCounter(String name, int ttlSeconds) {
+        super(name);
+        setTtl(ttlSeconds);
+    }
+
+    public int getTtl() {
+        return ttlSeconds;
+    }
+
+    public RedisUniqueCounter setTtl(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        return this;
+    }
+
+    /**
+     * TTL of minute, hour and day keys (in seconds). A negative value means
+     * the TTL of 1-second keys scaled by the tier's steps.
+     * 
+     * @return
+     */
+    public int getRollupTtl() {
+        return rollupTtlSeconds;
+    }
+
+    /**
+     * Sets TTL of minute, hour and day keys (in seconds), see
+     * {@link RedisCounter#setRollupTtl(int)}.
+     * 
+     * @param rollupTtlSeconds
+     * @return
+     */
+    public RedisUniqueCounter setRollupTtl(int rollupTtlSeconds) {
+        this.rollupTtlSeconds = rollupTtlSeconds;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RedisCounterFactory getCounterFactory() {
+        return (RedisCounterFactory) super.getCounterFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RedisUniqueCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof RedisCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException(
+                    "Argument must be an instance of " + RedisCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAll(long timestampMs, Collection<String> items) {
+        try (Jedis jedis = getCounterFactory().getJedis()) {
+            HllKeys.add(jedis, getName(), toTimeSeriesPoint(timestampMs), items, ttlSeconds,
+                    rollupTtlSeconds);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, DataPoint[] result) {
+        try (Jedis jedis = getCounterFactory().getJedis()) {
+            HllKeys.count(jedis, getName(), keyStart, keyEnd, result);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.ddth.tsc.redis;
+
+import com.github.ddth.tsc.ICounter;
+
+/**
+ * Naming of rollup buckets.
+ *
+ * <p>
+ * Rollup data points of tier {@code steps} are stored the same way as 1-second
+ * data points: fields (block timestamp) of bucket hashes
+ * {@code counterName@steps:bucketId}, {@code bucketSize} blocks per bucket.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class RollupKeys {
+
+    /**
+     * Prefix of bucket keys of a rollup tier.
+     *
+     * @param counterName
+     * @param steps
+     * @return
+     */
+    static String keyPrefix(String counterName, int steps) {
+        return counterName + "@" + steps;
+    }
+
+    /**
+     * TTL of rollup buckets of a tier.
+     *
+     * @param ttlSeconds
+     *            TTL of 1-second buckets, {@code 0} means "no expiry"
+     * @param rollupTtlSeconds
+     *            configured TTL of rollup buckets, a negative value means
+     *            {@code ttlSeconds} scaled by {@code steps}: each tier keeps as
+     *            many data points as 1-second buckets do
+     * @param steps
+     * @return
+     */
+    static int ttlSeconds(int ttlSeconds, int rollupTtlSeconds, int steps) {
+        if (rollupTtlSeconds >= 0) {
+            return rollupTtlSeconds;
+        }
+        return (int) Math.min((long) ttlSeconds * steps, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Appends bucket keys, fields and expiries of the rollup data points
+     * covering a data point.
+     *
+     * @param counterName
+     * @param rollupSteps
+     * @param key
+     *            timestamp of the data point (aligned)
+     * @param bucketSize
+     * @param ttlSeconds
+     *            see {@link #ttlSeconds(int, int, int)}
+     * @param rollupTtlSeconds
+     *            see {@link #ttlSeconds(int, int, int)}
+     * @param ttlRefreshThreshold
+     *            configured threshold, see
+     *            {@link LuaScript#ttlRefreshThreshold(int, int, long)}
+     * @param keys
+     */
+    static void append(String counterName, int[] rollupSteps, long key, long bucketSize,
+            int ttlSeconds, int rollupTtlSeconds, int ttlRefreshThreshold, ScriptKeys keys) {
+        for (int steps : rollupSteps) {
+            long blockSizeMs = steps * (long) ICounter.RESOLUTION_MS;
+            long block = key - key % blockSizeMs;
+            long bucketId = block - block % (blockSizeMs * bucketSize);
+            int ttl = ttlSeconds(ttlSeconds, rollupTtlSeconds, steps);
+            keys.add(keyPrefix(counterName, steps) + ":" + bucketId, String.valueOf(block), ttl,
+                    LuaScript.ttlRefreshThreshold(ttl, ttlRefreshThreshold, bucketSize * steps));
+        }
+    }
+}
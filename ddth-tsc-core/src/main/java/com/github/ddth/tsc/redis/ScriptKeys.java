@@ -0,0 +1,99 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keys written by an add/set script (see {@link LuaScript}): bucket key of a
+ * data point, followed by bucket keys of its rollups. Each key comes with its
+ * hash field, TTL and TTL refresh threshold: rollup tiers expire later than
+ * 1-second data points.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class ScriptKeys {
+
+    private final List<String> keys, fields;
+    private final List<Integer> ttls, ttlRefreshThresholds;
+
+    ScriptKeys(int capacity) {
+        keys = new ArrayList<String>(capacity);
+        fields = new ArrayList<String>(capacity);
+        ttls = new ArrayList<Integer>(capacity);
+        ttlRefreshThresholds = new ArrayList<Integer>(capacity);
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key
+     * @param field
+     * @param ttlSeconds
+     *            {@code 0} means "no expiry"
+     * @param ttlRefreshThreshold
+     *            see {@link LuaScript#ttlRefreshThreshold(int, int, long)}
+     * @return
+     */
+    ScriptKeys add(String key, String field, int ttlSeconds, int ttlRefreshThreshold) {
+        keys.add(key);
+        fields.add(field);
+        ttls.add(ttlSeconds);
+        ttlRefreshThresholds.add(ttlRefreshThreshold);
+        return this;
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    List<String> keys() {
+        return keys;
+    }
+
+    String key(int index) {
+        return keys.get(index);
+    }
+
+    String field(int index) {
+        return fields.get(index);
+    }
+
+    int ttlSeconds(int index) {
+        return ttls.get(index).intValue();
+    }
+
+    /**
+     * Keys at some indexes (e.g. the keys living on one shard).
+     *
+     * @param indexes
+     * @return
+     */
+    ScriptKeys subset(List<Integer> indexes) {
+        ScriptKeys result = new ScriptKeys(indexes.size());
+        for (int i : indexes) {
+            result.add(keys.get(i), fields.get(i), ttls.get(i), ttlRefreshThresholds.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Builds script arguments: the value, followed by one field, one TTL and
+     * one TTL refresh threshold per key.
+     *
+     * @param value
+     * @return
+     */
+    List<String> args(long value) {
+        List<String> args = new ArrayList<String>(keys.size() * 3 + 1);
+        args.add(String.valueOf(value));
+        args.addAll(fields);
+        for (Integer ttl : ttls) {
+            args.add(ttl.toString());
+        }
+        for (Integer ttlRefreshThreshold : ttlRefreshThresholds) {
+            args.add(ttlRefreshThreshold.toString());
+        }
+        return args;
+    }
+}
@@ -1,19 +1,21 @@
 package com.github.ddth.tsc.redis;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
 
 import com.github.ddth.tsc.AbstractCounter;
 import com.github.ddth.tsc.AbstractCounterFactory;
 import com.github.ddth.tsc.DataPoint;
 import com.github.ddth.tsc.DataPoint.Type;
-import com.google.common.primitives.Longs;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
 
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.ShardedJedis;
-import redis.clients.jedis.ShardedJedisPipeline;
 
 /**
  * ShardedRedis-backed counter.
@@ -24,7 +26,10 @@ import redis.clients.jedis.ShardedJedisPipeline;
 public class ShardedRedisCounter extends AbstractCounter {
 
     private int ttlSeconds = ShardedRedisCounterFactory.DEFAULT_TTL_SECONDS;
+    private int ttlRefreshThreshold = -1;
+    private int rollupTtlSeconds = -1;
     private long BUCKET_SIZE = 60;
+    private int[] rollupTiers;
 
     public ShardedRedisCounter() {
     }
@@ -43,12 +48,64 @@ public class ShardedRedisCounter extends AbstractCounter {
         return this;
     }
 
+    /**
+     * A bucket's {@code EXPIRE} is refreshed only when its remaining TTL falls
+     * below this threshold (in seconds). A negative value means "auto".
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getTtlRefreshThreshold() {
+        return ttlRefreshThreshold;
+    }
+
+    /**
+     * Sets threshold (in seconds) below which a bucket's remaining TTL is
+     * refreshed. A negative value (default) means "auto": refresh at most about
+     * once per bucket.
+     * 
+     * @param ttlRefreshThreshold
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounter setTtlRefreshThreshold(int ttlRefreshThreshold) {
+        this.ttlRefreshThreshold = ttlRefreshThreshold;
+        return this;
+    }
+
+    /**
+     * TTL of rollup buckets (in seconds). A negative value means the TTL of
+     * 1-second buckets scaled by the tier's steps.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getRollupTtl() {
+        return rollupTtlSeconds;
+    }
+
+    /**
+     * Sets TTL of rollup buckets (in seconds). A negative value (default) means
+     * {@link #getTtl()} scaled by each tier's steps, so that every tier keeps as
+     * many data points as 1-second buckets do (e.g. 1 day of 1-second data
+     * points, 60 days of 1-minute rollups); {@code 0} means "no expiry".
+     * 
+     * @param rollupTtlSeconds
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounter setRollupTtl(int rollupTtlSeconds) {
+        this.rollupTtlSeconds = rollupTtlSeconds;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void init() {
         super.init();
+        rollupTiers = getRollupSteps();
     }
 
     /**
@@ -95,33 +152,80 @@ public class ShardedRedisCounter extends AbstractCounter {
     }
 
     /**
-     * {@inheritDoc}
+     * Bucket keys written by {@link #add(long, long)} and
+     * {@link #set(long, long)}: the data point's, followed by its rollups'.
+     * 
+     * @param timestampMs
+     * @return
+     * @since 0.7.1
      */
-    @Override
-    public void add(long timestampMs, long value) {
+    ScriptKeys scriptKeys(long timestampMs) {
         long[] bucket = calcBucketOffset(timestampMs);
-        String redisKey = getName() + ":" + bucket[0];
-        String redisField = String.valueOf(bucket[1]);
-        try (ShardedJedis jedis = getJedis()) {
-            jedis.hincrBy(redisKey, redisField, value);
-            if (ttlSeconds > 0) {
-                jedis.expire(redisKey, ttlSeconds);
+        ScriptKeys keys = new ScriptKeys(rollupTiers.length + 1);
+        keys.add(getName() + ":" + bucket[0], String.valueOf(bucket[1]), ttlSeconds,
+                LuaScript.ttlRefreshThreshold(ttlSeconds, ttlRefreshThreshold, BUCKET_SIZE));
+        RollupKeys.append(getName(), rollupTiers, bucket[1], BUCKET_SIZE, ttlSeconds,
+                rollupTtlSeconds, ttlRefreshThreshold, keys);
+        return keys;
+    }
+
+    /**
+     * Groups script keys per shard, the shard of the first key (the data
+     * point's) first.
+     * 
+     * @param jedis
+     * @param keys
+     * @return
+     * @since 0.7.1
+     */
+    static Map<Jedis, ScriptKeys> keysPerShard(ShardedJedis jedis, ScriptKeys keys) {
+        Map<Jedis, List<Integer>> indexesPerShard = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Jedis shard = jedis.getShard(keys.key(i));
+            List<Integer> indexes = indexesPerShard.get(shard);
+            if (indexes == null) {
+                indexes = new ArrayList<>();
+                indexesPerShard.put(shard, indexes);
             }
+            indexes.add(i);
+        }
+        Map<Jedis, ScriptKeys> result = new LinkedHashMap<>();
+        for (Map.Entry<Jedis, List<Integer>> entry : indexesPerShard.entrySet()) {
+            result.put(entry.getKey(), keys.subset(entry.getValue()));
         }
+        return result;
     }
 
     /**
-     * {@inheritDoc}
+     * Runs an add/set script against the data point's bucket and the buckets of
+     * its rollups.
+     * 
+     * <p>
+     * Buckets are grouped per shard, one script call per shard. The data point's
+     * shard is written first: a "set" script returns the old value, the
+     * difference is then added to rollups living on other shards.
+     * </p>
+     * 
+     * @since 0.7.1
      */
-    @Override
-    public void set(long timestampMs, long value) {
-        long[] bucket = calcBucketOffset(timestampMs);
-        String redisKey = getName() + ":" + bucket[0];
-        String redisField = String.valueOf(bucket[1]);
+    private void write(long timestampMs, long value, boolean isSet) {
+        ScriptKeys keys = scriptKeys(timestampMs);
         try (ShardedJedis jedis = getJedis()) {
-            jedis.hset(redisKey, redisField, String.valueOf(value));
-            if (ttlSeconds > 0) {
-                jedis.expire(redisKey, ttlSeconds);
+            Map<Jedis, ScriptKeys> keysPerShard = keysPerShard(jedis, keys);
+            long delta = value;
+            boolean first = true;
+            for (Map.Entry<Jedis, ScriptKeys> entry : keysPerShard.entrySet()) {
+                LuaScript script = first && isSet ? LuaScript.SET_AND_EXPIRE
+                        : LuaScript.ADD_AND_EXPIRE;
+                Object result = script.eval(entry.getKey(), entry.getValue(), delta);
+                if (first && isSet) {
+                    delta = value - LuaScript.oldValue(result);
+                }
+                first = false;
+            }
+            ICounterMetrics metrics = getMetrics();
+            if (metrics.isEnabled()) {
+                metrics.recordBackendCommand("EVALSHA", keysPerShard.size());
             }
         }
     }
@@ -130,69 +234,86 @@ public class ShardedRedisCounter extends AbstractCounter {
      * {@inheritDoc}
      */
     @Override
-    protected DataPoint[] getAllInRange(long timestampStartMs, long timestampEndMs) {
-        SortedSet<DataPoint> result = new TreeSet<DataPoint>(new Comparator<DataPoint>() {
-            @Override
-            public int compare(DataPoint block1, DataPoint block2) {
-                return Longs.compare(block1.timestamp(), block2.timestamp());
-            }
-        });
-        long keyStart = toTimeSeriesPoint(timestampStartMs);
-        long keyEnd = toTimeSeriesPoint(timestampEndMs);
-        if (keyEnd == timestampStartMs) {
-            keyEnd = toTimeSeriesPoint(timestampEndMs - 1);
-        }
+    protected void addValue(long timestampMs, long value) {
+        write(timestampMs, value, false);
+    }
 
-        // build list of Redis map & field names
-        List<Long> keys = new ArrayList<Long>();
-        List<String> mapNames = new ArrayList<String>();
-        List<String> fieldNames = new ArrayList<String>();
-        String _name = getName();
-        for (long timestamp = keyStart, _end = keyEnd; timestamp <= _end; timestamp += RESOLUTION_MS) {
-            long bucketOffset = toTimeSeriesPoint(timestamp);
-            long delta = bucketOffset % (RESOLUTION_MS * BUCKET_SIZE);
-            long bucketId = bucketOffset - delta;
-            long[] bucket = { bucketId, bucketOffset };
-            keys.add(bucketOffset);
-            String redisKey = _name + ":" + bucket[0];
-            String redisField = String.valueOf(bucket[1]);
-            mapNames.add(redisKey);
-            fieldNames.add(redisField);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setValue(long timestampMs, long value) {
+        write(timestampMs, value, true);
+    }
 
-        // use pipeline to get all data points at once
-        try (ShardedJedis jedis = getJedis()) {
-            ShardedJedisPipeline p = jedis.pipelined();
-            for (int i = 0, n = mapNames.size(); i < n; i++) {
-                String mapName = mapNames.get(i);
-                String fieldName = fieldNames.get(i);
-                p.hget(mapName, fieldName);
-            }
-            List<?> _pointValues = p.syncAndReturnAll();
-            for (int i = 0, n = keys.size(); i < n; i++) {
-                Long _key = keys.get(i);
-                Long _value = null;
-                try {
-                    _value = Long.parseLong(_pointValues.get(i).toString());
-                } catch (Exception e) {
-                    _value = null;
-                }
-                DataPoint dp = _value != null
-                        ? new DataPoint(Type.SUM, _key.longValue(), _value.longValue(),
-                                RESOLUTION_MS)
-                        : new DataPoint(Type.NONE, _key.longValue(), 0, RESOLUTION_MS);
-                result.add(dp);
-            }
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, LongSeries result) {
+        // one HMGET (or HGETALL for a full bucket) per bucket, one pipeline per
+        // shard; shards are read in parallel
+        BucketRangeRead read = new BucketRangeRead(getName(), keyStart, keyEnd, BUCKET_SIZE);
+        getCounterFactory().readBuckets(Collections.singletonList(read));
+        read.accumulateInto(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected boolean readRollupsInRange(int steps, long keyStart, long keyEnd,
+            LongSeries result) {
+        if (Arrays.binarySearch(rollupTiers, steps) < 0) {
+            return false;
         }
+        BucketRangeRead read = new BucketRangeRead(RollupKeys.keyPrefix(getName(), steps),
+                keyStart, keyEnd, BUCKET_SIZE, steps * (long) RESOLUTION_MS);
+        getCounterFactory().readBuckets(Collections.singletonList(read));
+        read.accumulateInto(result);
+        return true;
+    }
 
-        return result.toArray(DataPoint.EMPTY_ARR);
+    /**
+     * Plans the bucket reads of a series, without reading them (see
+     * {@link #planLongSeries(long, long, int, Type, LongSeries)}).
+     * 
+     * @param timestampStartMs
+     * @param timestampEndMs
+     * @param steps
+     * @param type
+     * @param result
+     *            series to aggregate the reads into, once read
+     * @return
+     * @since 0.7.1
+     */
+    List<BucketRangeRead> planBucketReads(long timestampStartMs, long timestampEndMs, int steps,
+            Type type, LongSeries result) {
+        List<BucketRangeRead> reads = new ArrayList<>();
+        for (RangeRead read : planLongSeries(timestampStartMs, timestampEndMs, steps, type,
+                result)) {
+            reads.add(read.steps > 1 && Arrays.binarySearch(rollupTiers, read.steps) >= 0
+                    ? new BucketRangeRead(RollupKeys.keyPrefix(getName(), read.steps),
+                            read.keyStart, read.keyEnd, BUCKET_SIZE,
+                            read.steps * (long) RESOLUTION_MS)
+                    : new BucketRangeRead(getName(), read.keyStart, read.lastKey(), BUCKET_SIZE));
+        }
+        return reads;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public DataPoint get(long timestampMs) {
+    protected DataPoint readDataPoint(long timestampMs) {
+        ICounterMetrics metrics = getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordBackendCommand("HGET", 1);
+        }
         long[] bucket = calcBucketOffset(timestampMs);
         String redisKey = getName() + ":" + bucket[0];
         String redisField = String.valueOf(bucket[1]);
@@ -1,19 +1,38 @@
 package com.github.ddth.tsc.redis;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.DataPoint.Type;
 import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.IDistributionCounter;
+import com.github.ddth.tsc.IUniqueCounter;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
 
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 /**
  * This factory creates {@link ShardedRedisCounter} instances.
@@ -26,6 +45,14 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
     public final static int DEFAULT_TTL_SECONDS = 24 * 3600; // 1 day
     private final static long DEFAULT_TIMEOUT_MS = 10000; // 10 seconds
 
+    /**
+     * Default max number of connections of the pool created in virtual-thread
+     * mode (see {@link #setVirtualThreads(boolean)}).
+     * 
+     * @since 0.7.1
+     */
+    public final static int DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS = 128;
+
     private final Logger LOGGER = LoggerFactory.getLogger(ShardedRedisCounterFactory.class);
 
     /**
@@ -51,7 +78,26 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
      */
     public static ShardedJedisPool newJedisPool(String hostsAndPorts, String password,
             long timeoutMs) {
-        final int maxTotal = Runtime.getRuntime().availableProcessors();
+        return newJedisPool(hostsAndPorts, password, timeoutMs,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@link ShardedJedisPool}.
+     * 
+     * @param hostsAndPorts
+     *            format {@code host1:port1,host2:port2...}
+     * @param password
+     * @param timeoutMs
+     *            max time to wait for a connection when all are in use
+     * @param maxTotal
+     *            max number of connections (each holds one connection per
+     *            shard)
+     * @return
+     * @since 0.7.1
+     */
+    public static ShardedJedisPool newJedisPool(String hostsAndPorts, String password,
+            long timeoutMs, int maxTotal) {
         final int maxIdle = maxTotal / 2;
 
         JedisPoolConfig poolConfig = new JedisPoolConfig();
@@ -81,7 +127,13 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
     private boolean myOwnJedisPool = true;
     private String redisHostsAndPorts = Protocol.DEFAULT_HOST + ":" + Protocol.DEFAULT_PORT;
     private String redisPassword;
+    private int maxConnections = -1;
+    private long connectionMaxWaitMs = DEFAULT_TIMEOUT_MS;
     private int ttlSeconds = DEFAULT_TTL_SECONDS;
+    private int ttlRefreshThreshold = -1;
+    private int rollupTtlSeconds = -1;
+    private ExecutorService readExecutor;
+    private boolean myOwnReadExecutor = true;
 
     /**
      * Redis' hosts and ports scheme (format
@@ -125,6 +177,64 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
         return this;
     }
 
+    /**
+     * Max number of connections of the pool created by {@link #init()}.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets max number of connections of the pool created by {@link #init()}
+     * (ignored if a pool is set with {@code setJedisPool()}). A non-positive
+     * value (default) means "auto": number of processors, or
+     * {@link #DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS} in virtual-thread mode
+     * (see {@link #setVirtualThreads(boolean)}).
+     * 
+     * @param maxConnections
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounterFactory setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Max time (in milliseconds) to wait for a connection of the pool created
+     * by {@link #init()} when all are in use.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public long getConnectionMaxWaitMs() {
+        return connectionMaxWaitMs;
+    }
+
+    /**
+     * Sets max time (in milliseconds) to wait for a connection of the pool
+     * created by {@link #init()} when all are in use (default 10 seconds).
+     * 
+     * @param connectionMaxWaitMs
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounterFactory setConnectionMaxWaitMs(long connectionMaxWaitMs) {
+        this.connectionMaxWaitMs = connectionMaxWaitMs;
+        return this;
+    }
+
+    private int poolMaxTotal() {
+        if (maxConnections > 0) {
+            return maxConnections;
+        }
+        return isVirtualThreads() ? DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS
+                : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * @return
      */
@@ -151,15 +261,105 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
         return this;
     }
 
+    /**
+     * Threshold (in seconds) below which a bucket's remaining TTL is refreshed.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getTtlRefreshThreshold() {
+        return ttlRefreshThreshold;
+    }
+
+    /**
+     * Sets threshold (in seconds) below which a bucket's remaining TTL is
+     * refreshed by {@code add()}/{@code set()}. A negative value (default) means
+     * "auto". See {@link ShardedRedisCounter#setTtlRefreshThreshold(int)}.
+     * 
+     * @param ttlRefreshThreshold
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounterFactory setTtlRefreshThreshold(int ttlRefreshThreshold) {
+        this.ttlRefreshThreshold = ttlRefreshThreshold;
+        return this;
+    }
+
+    /**
+     * TTL (in seconds) of rollup buckets.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public int getRollupTtl() {
+        return rollupTtlSeconds;
+    }
+
+    /**
+     * Sets TTL (in seconds) of rollup buckets. A negative value (default) means
+     * {@link #getTtl()} scaled by each tier's steps. See
+     * {@link ShardedRedisCounter#setRollupTtl(int)}.
+     * 
+     * @param rollupTtlSeconds
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounterFactory setRollupTtl(int rollupTtlSeconds) {
+        this.rollupTtlSeconds = rollupTtlSeconds;
+        return this;
+    }
+
+    /**
+     * Executor that runs per-shard range reads in parallel.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    public ExecutorService getReadExecutor() {
+        return readExecutor;
+    }
+
+    /**
+     * Sets the executor that runs per-shard range reads in parallel. If not
+     * set, the factory creates (and shuts down) its own cached thread pool,
+     * or a virtual-thread-per-task executor in virtual-thread mode.
+     * 
+     * @param readExecutor
+     * @return
+     * @since 0.7.1
+     */
+    public ShardedRedisCounterFactory setReadExecutor(ExecutorService readExecutor) {
+        this.readExecutor = readExecutor;
+        myOwnReadExecutor = false;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public ShardedRedisCounterFactory init() {
         if (jedisPool == null) {
-            jedisPool = newJedisPool(redisHostsAndPorts, redisPassword);
+            jedisPool = newJedisPool(redisHostsAndPorts, redisPassword, connectionMaxWaitMs,
+                    poolMaxTotal());
             myOwnJedisPool = true;
         }
+        if (readExecutor == null && isVirtualThreads()) {
+            readExecutor = newVirtualThreadExecutor();
+            myOwnReadExecutor = true;
+        }
+        if (readExecutor == null) {
+            readExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r,
+                            ShardedRedisCounterFactory.class.getSimpleName() + "-read");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            myOwnReadExecutor = true;
+        }
         super.init();
         return this;
     }
@@ -175,6 +375,17 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
             LOGGER.warn(e.getMessage(), e);
         }
 
+        if (readExecutor != null && myOwnReadExecutor) {
+            try {
+                readExecutor.shutdown();
+                readExecutor.awaitTermination(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                readExecutor = null;
+            }
+        }
+
         if (jedisPool != null && myOwnJedisPool) {
             try {
                 jedisPool.destroy();
@@ -187,10 +398,257 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
     }
 
     /**
+     * Borrows a connection from the pool (time spent waiting is recorded as
+     * {@link ICounterMetrics#recordConnectionWait(long)}).
+     * 
      * @return
      */
     public ShardedJedis getJedis() {
-        return jedisPool.getResource();
+        ICounterMetrics metrics = getMetrics();
+        if (!metrics.isEnabled()) {
+            return jedisPool.getResource();
+        }
+        long startNs = System.nanoTime();
+        ShardedJedis jedis = jedisPool.getResource();
+        metrics.recordConnectionWait(System.nanoTime() - startNs);
+        return jedis;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Writes of all counters (including their rollups) are grouped per shard
+     * and sent in one pipeline per shard: the same add script as
+     * {@link ShardedRedisCounter#add(long, long)}, once per counter and
+     * shard. All pipelines are synced, even if one of them fails; the first
+     * error is then thrown.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    public void addAll(Map<String, Long> values, long timestampMs) {
+        ICounterMetrics metrics = getMetrics();
+        long startNs = metrics.isEnabled() ? System.nanoTime() : 0;
+        try (ShardedJedis jedis = getJedis()) {
+            Map<Jedis, Pipeline> pipelines = new LinkedHashMap<>();
+            List<Jedis> shards = new ArrayList<>();
+            List<ScriptKeys> scriptKeys = new ArrayList<>();
+            List<Long> scriptValues = new ArrayList<>();
+            List<Response<?>> responses = new ArrayList<>();
+            RuntimeException error = null;
+            try {
+                for (Map.Entry<String, Long> entry : values.entrySet()) {
+                    ShardedRedisCounter counter = (ShardedRedisCounter) getCounter(
+                            entry.getKey());
+                    for (Map.Entry<Jedis, ScriptKeys> shardKeys : ShardedRedisCounter
+                            .keysPerShard(jedis, counter.scriptKeys(timestampMs)).entrySet()) {
+                        Jedis shard = shardKeys.getKey();
+                        Pipeline p = pipelines.get(shard);
+                        if (p == null) {
+                            p = shard.pipelined();
+                            pipelines.put(shard, p);
+                        }
+                        shards.add(shard);
+                        scriptKeys.add(shardKeys.getValue());
+                        scriptValues.add(entry.getValue());
+                        responses.add(LuaScript.ADD_AND_EXPIRE.evalsha(p, shardKeys.getValue(),
+                                entry.getValue().longValue()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                for (Pipeline p : pipelines.values()) {
+                    try {
+                        p.sync();
+                    } catch (RuntimeException e) {
+                        if (error == null) {
+                            error = e;
+                        }
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+
+            for (int i = 0, n = responses.size(); i < n; i++) {
+                try {
+                    responses.get(i).get();
+                } catch (JedisDataException e) {
+                    if (!LuaScript.isNoScript(e)) {
+                        if (error == null) {
+                            error = e;
+                        }
+                        continue;
+                    }
+                    LuaScript.ADD_AND_EXPIRE.eval(shards.get(i), scriptKeys.get(i),
+                            scriptValues.get(i).longValue());
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            if (metrics.isEnabled()) {
+                metrics.recordBackendCommand("EVALSHA", responses.size());
+                metrics.recordBatch(responses.size());
+                metrics.recordLatency(Operation.MULTI_ADD, System.nanoTime() - startNs);
+            }
+        }
+    }
+
+    /**
+     * Reads all buckets of range reads, one pipeline per shard.
+     * 
+     * @param reads
+     * @since 0.7.1
+     */
+    void readBuckets(List<BucketRangeRead> reads) {
+        int numFullBuckets = 0, numBuckets = 0;
+        try (ShardedJedis jedis = getJedis()) {
+            Map<Jedis, List<BucketRangeRead.Bucket>> bucketsPerShard = new LinkedHashMap<>();
+            for (BucketRangeRead read : reads) {
+                for (BucketRangeRead.Bucket bucket : read.buckets) {
+                    numFullBuckets += bucket.isFull ? 1 : 0;
+                    numBuckets++;
+                    Jedis shard = jedis.getShard(bucket.redisKey);
+                    List<BucketRangeRead.Bucket> buckets = bucketsPerShard.get(shard);
+                    if (buckets == null) {
+                        buckets = new ArrayList<>();
+                        bucketsPerShard.put(shard, buckets);
+                    }
+                    buckets.add(bucket);
+                }
+            }
+            readShards(bucketsPerShard);
+        }
+        BucketRangeRead.recordCommands(getMetrics(), numFullBuckets, numBuckets);
+    }
+
+    private static void readShard(Jedis shard, List<BucketRangeRead.Bucket> buckets) {
+        Pipeline p = shard.pipelined();
+        for (BucketRangeRead.Bucket bucket : buckets) {
+            bucket.response = bucket.isFull ? p.hgetAll(bucket.redisKey)
+                    : p.hmget(bucket.redisKey, bucket.fields());
+        }
+        p.sync();
+    }
+
+    /**
+     * Reads buckets of each shard on the shard's own connection: the first
+     * shard is read by the calling thread, the others by the factory's read
+     * executor.
+     * 
+     * @param bucketsPerShard
+     * @since 0.7.1
+     */
+    private void readShards(Map<Jedis, List<BucketRangeRead.Bucket>> bucketsPerShard) {
+        List<Future<?>> futures = new ArrayList<>();
+        RuntimeException error = null;
+        try {
+            ExecutorService executor = getReadExecutor();
+            Iterator<Map.Entry<Jedis, List<BucketRangeRead.Bucket>>> it = bucketsPerShard
+                    .entrySet().iterator();
+            Map.Entry<Jedis, List<BucketRangeRead.Bucket>> local = it.hasNext() ? it.next()
+                    : null;
+            while (it.hasNext()) {
+                final Map.Entry<Jedis, List<BucketRangeRead.Bucket>> entry = it.next();
+                if (executor == null) {
+                    readShard(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        readShard(entry.getKey(), entry.getValue());
+                    }
+                }));
+            }
+            if (local != null) {
+                readShard(local.getKey(), local.getValue());
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        // wait for all shards, even on error: their connections must not be
+        // returned to the pool while still in use
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (error == null) {
+                    error = new RuntimeException(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Buckets of all counters are grouped per shard, one pipeline per shard;
+     * shards are read in parallel.
+     * </p>
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected void readLongSeries(List<ICounter> counters, long timestampStartMs,
+            long timestampEndMs, int steps, Type type, List<LongSeries> results) {
+        List<BucketRangeRead> reads = new ArrayList<>();
+        List<LongSeries> targets = new ArrayList<>();
+        for (int i = 0, n = counters.size(); i < n; i++) {
+            for (BucketRangeRead read : ((ShardedRedisCounter) counters.get(i)).planBucketReads(
+                    timestampStartMs, timestampEndMs, steps, type, results.get(i))) {
+                reads.add(read);
+                targets.add(results.get(i));
+            }
+        }
+        readBuckets(reads);
+        for (int i = 0, n = reads.size(); i < n; i++) {
+            reads.get(i).accumulateInto(targets.get(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IDistributionCounter createDistributionCounter(String name) {
+        ShardedRedisDistributionCounter counter = new ShardedRedisDistributionCounter(name, ttlSeconds);
+        counter.setRelativeAccuracy(getSketchRelativeAccuracy())
+                .setMaxNumBins(getSketchMaxNumBins())
+                .setFlushIntervalMs(getSketchFlushIntervalMs());
+        counter.setCounterFactory(this).init();
+        return counter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 0.7.1
+     */
+    @Override
+    protected IUniqueCounter createUniqueCounter(String name) {
+        ShardedRedisUniqueCounter counter = new ShardedRedisUniqueCounter(name, ttlSeconds);
+        counter.setRollupTtl(rollupTtlSeconds);
+        counter.setCounterFactory(this).init();
+        return counter;
     }
 
     /**
@@ -199,6 +657,8 @@ public class ShardedRedisCounterFactory extends AbstractCounterFactory {
     @Override
     protected ICounter createCounter(String name) {
         ShardedRedisCounter counter = new ShardedRedisCounter(name, ttlSeconds);
+        counter.setTtlRefreshThreshold(ttlRefreshThreshold).setRollupTtl(rollupTtlSeconds);
+        counter.setRollupSteps(getRollupSteps());
         counter.setCounterFactory(this).init();
         return counter;
     }
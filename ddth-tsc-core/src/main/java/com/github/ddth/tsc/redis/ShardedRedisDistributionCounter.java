@@ -0,0 +1,104 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractDistributionCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DistributionSketch;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ShardedJedis;
+
+/**
+ * ShardedRedis-backed distribution counter, see
+ * {@link RedisDistributionCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class ShardedRedisDistributionCounter extends AbstractDistributionCounter {
+
+    private int ttlSeconds = ShardedRedisCounterFactory.DEFAULT_TTL_SECONDS;
+    private long BUCKET_SIZE = 60;
+
+    public ShardedRedisDistributionCounter() {
+    }
+
+    public ShardedRedisDistributionCounter(String name, int ttlSeconds) {
+        super(name);
+        setTtl(ttlSeconds);
+    }
+
+    public int getTtl() {
+        return ttlSeconds;
+    }
+
+    public ShardedRedisDistributionCounter setTtl(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ShardedRedisCounterFactory getCounterFactory() {
+        return (ShardedRedisCounterFactory) super.getCounterFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ShardedRedisDistributionCounter setCounterFactory(
+            AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof ShardedRedisCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException("Argument must be an instance of "
+                    + ShardedRedisCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(long key, DistributionSketch values) {
+        long bucketId = key - key % (RESOLUTION_MS * BUCKET_SIZE);
+        String redisKey = getName() + ":" + bucketId;
+        try (ShardedJedis jedis = getCounterFactory().getJedis()) {
+            SketchBuckets.merge(jedis.getShard(redisKey), redisKey, String.valueOf(key), values,
+                    ttlSeconds);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, DataPoint[] result) {
+        BucketRangeRead read = new BucketRangeRead(getName(), keyStart, keyEnd, BUCKET_SIZE);
+        try (ShardedJedis jedis = getCounterFactory().getJedis()) {
+            // one pipeline per shard
+            Map<Jedis, Pipeline> pipelines = new LinkedHashMap<>();
+            for (BucketRangeRead.Bucket bucket : read.buckets) {
+                Jedis shard = jedis.getShard(bucket.redisKey);
+                Pipeline p = pipelines.get(shard);
+                if (p == null) {
+                    p = shard.pipelined();
+                    pipelines.put(shard, p);
+                }
+                SketchBuckets.request(p, bucket);
+            }
+            for (Pipeline p : pipelines.values()) {
+                p.sync();
+            }
+        }
+        SketchBuckets.mergeInto(read, result);
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.Collection;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.AbstractUniqueCounter;
+import com.github.ddth.tsc.DataPoint;
+
+import redis.clients.jedis.ShardedJedis;
+
+/**
+ * ShardedRedis-backed unique counter, see {@link RedisUniqueCounter}.
+ * 
+ * <p>
+ * All keys of a counter live on the shard of the counter's name, so that a
+ * block spanning many data points is counted with one {@code PFCOUNT}.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class ShardedRedisUniqueCounter extends AbstractUniqueCounter {
+
+    private int ttlSeconds = ShardedRedisCounterFactory.DEFAULT_TTL_SECONDS;
+    private int rollupTtlSeconds = -1;
+
+    public ShardedRedisUniqueCounter() {
+    }
+
+    public ShardedRedisUniqueCounter(String name, int ttlSeconds) {
+        super(name);
+        setTtl(ttlSeconds);
+    }
+
+    public int getTtl() {
+        return ttlSeconds;
+    }
+
+    public ShardedRedisUniqueCounter setTtl(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        return this;
+    }
+
+    /**
+     * TTL of minute, hour and day keys (in seconds). A negative value means
+     * the TTL of 1-second keys scaled by the tier's steps.
+     * 
+     * @return
+     */
+    public int getRollupTtl() {
+        return rollupTtlSeconds;
+    }
+
+    /**
+     * Sets TTL of minute, hour and day keys (in seconds), see
+     * {@link RedisCounter#setRollupTtl(int)}.
+     * 
+     * @param rollupTtlSeconds
+     * @return
+     */
+    public ShardedRedisUniqueCounter setRollupTtl(int rollupTtlSeconds) {
+        this.rollupTtlSeconds = rollupTtlSeconds;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ShardedRedisCounterFactory getCounterFactory() {
+        return (ShardedRedisCounterFactory) super.getCounterFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ShardedRedisUniqueCounter setCounterFactory(AbstractCounterFactory counterFactory) {
+        if (counterFactory instanceof ShardedRedisCounterFactory) {
+            super.setCounterFactory(counterFactory);
+        } else {
+            throw new IllegalArgumentException("Argument must be an instance of "
+                    + ShardedRedisCounterFactory.class.getName());
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAll(long timestampMs, Collection<String> items) {
+        try (ShardedJedis jedis = getCounterFactory().getJedis()) {
+            HllKeys.add(jedis.getShard(getName()), getName(), toTimeSeriesPoint(timestampMs),
+                    items, ttlSeconds, rollupTtlSeconds);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void readAllInRange(long keyStart, long keyEnd, DataPoint[] result) {
+        try (ShardedJedis jedis = getCounterFactory().getJedis()) {
+            HllKeys.count(jedis.getShard(getName()), getName(), keyStart, keyEnd, result);
+        }
+    }
+}
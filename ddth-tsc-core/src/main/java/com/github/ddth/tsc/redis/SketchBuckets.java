@@ -0,0 +1,104 @@
+package com.github.ddth.tsc.redis;
+
+import java.util.List;
+
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DistributionSketch;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Transaction;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Reads and writes encoded {@link DistributionSketch}es stored as binary fields
+ * of bucketed Redis hashes ({@code name:bucketId}, one field per data point).
+ *
+ * <p>
+ * Redis cannot merge sketches server-side: a write reads the field, merges and
+ * writes it back in a {@code WATCH}/{@code MULTI} transaction, retried if the
+ * bucket has been modified in the meantime.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+class SketchBuckets {
+
+    private final static int MAX_RETRIES = 32;
+
+    /**
+     * Merges values into a data point's sketch.
+     *
+     * @param jedis
+     *            connection to the node holding the bucket
+     * @param redisKey
+     * @param redisField
+     * @param values
+     * @param ttlSeconds
+     */
+    static void merge(Jedis jedis, String redisKey, String redisField, DistributionSketch values,
+            int ttlSeconds) {
+        byte[] key = SafeEncoder.encode(redisKey), field = SafeEncoder.encode(redisField);
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            jedis.watch(key);
+            byte[] current = jedis.hget(key, field);
+            DistributionSketch sketch = values.copy();
+            if (current != null) {
+                sketch.merge(DistributionSketch.fromBytes(current));
+            }
+            Transaction t = jedis.multi();
+            t.hset(key, field, sketch.toBytes());
+            if (ttlSeconds > 0) {
+                t.expire(key, ttlSeconds);
+            }
+            List<Object> result = t.exec();
+            if (result != null && !result.isEmpty()) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Cannot update [" + redisKey + "/" + redisField
+                + "] after " + MAX_RETRIES + " attempts, too much contention!");
+    }
+
+    /**
+     * Queues the read of a bucket's fields.
+     *
+     * @param p
+     * @param bucket
+     */
+    static void request(Pipeline p, BucketRangeRead.Bucket bucket) {
+        String[] fields = bucket.fields();
+        byte[][] binaryFields = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            binaryFields[i] = SafeEncoder.encode(fields[i]);
+        }
+        bucket.response = p.hmget(SafeEncoder.encode(bucket.redisKey), binaryFields);
+    }
+
+    /**
+     * Decodes bucket replies (after the pipeline has been synced) and merges
+     * sketches into a series.
+     *
+     * @param read
+     * @param result
+     */
+    @SuppressWarnings("unchecked")
+    static void mergeInto(BucketRangeRead read, DataPoint[] result) {
+        for (BucketRangeRead.Bucket bucket : read.buckets) {
+            Object reply = bucket.response != null ? bucket.response.get() : null;
+            if (!(reply instanceof List)) {
+                continue;
+            }
+            List<byte[]> values = (List<byte[]>) reply;
+            long timestamp = bucket.firstTimestamp;
+            for (int i = 0; i < bucket.numPoints; i++, timestamp += bucket.resolutionMs) {
+                byte[] value = values.get(i);
+                if (value != null) {
+                    RedisDistributionCounter.mergeSketch(result, timestamp,
+                            DistributionSketch.fromBytes(value));
+                }
+            }
+        }
+    }
+}
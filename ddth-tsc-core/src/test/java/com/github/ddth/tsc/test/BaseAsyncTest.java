@@ -0,0 +1,112 @@
+package com.github.ddth.tsc.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.IAsyncCounter;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseAsyncTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseAsyncTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseAsyncTest.class);
+    }
+
+    private static void assertSame(DataPoint[] expected, DataPoint[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].timestamp(), actual[i].timestamp());
+            assertEquals(expected[i].type(), actual[i].type());
+            assertEquals(expected[i].value(), actual[i].value());
+        }
+    }
+
+    @org.junit.Test
+    public void testWritesAndReads() throws Exception {
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_ADD);
+        assertEquals(COUNTER_NAME_ADD, asyncCounter.getName());
+
+        long timestampStart = System.currentTimeMillis() - 60 * AbstractCounter.RESOLUTION_MS;
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            long timestamp = timestampStart + i * AbstractCounter.RESOLUTION_MS;
+            writes.add(i % 3 == 0 ? asyncCounter.set(timestamp, i)
+                    : asyncCounter.add(timestamp, i));
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).get();
+
+        DataPoint dp = asyncCounter.get(timestampStart + AbstractCounter.RESOLUTION_MS).get();
+        assertEquals(1, dp.value());
+        assertEquals(counterAdd.get(timestampStart).value(),
+                asyncCounter.get(timestampStart).get().value());
+        assertEquals(Type.NONE, asyncCounter.get(timestampStart - 3600 * 1000L).get().type());
+
+        long timestampEnd = timestampStart + 60 * AbstractCounter.RESOLUTION_MS;
+        for (int steps : new int[] { 1, 10 }) {
+            assertSame(counterAdd.getSeries(timestampStart, timestampEnd, steps, Type.SUM),
+                    asyncCounter.getSeries(timestampStart, timestampEnd, steps, Type.SUM).get());
+        }
+        assertSame(counterAdd.getLastN(10, 1, Type.MAXIMUM),
+                asyncCounter.getLastN(10, 1, Type.MAXIMUM).get());
+    }
+
+    @org.junit.Test
+    public void testMaxInFlight() throws Exception {
+        final List<Runnable> pending = new ArrayList<>();
+        AbstractCounterFactory factory = (AbstractCounterFactory) counterFactory;
+        factory.setAsyncMaxInFlight(2).setAsyncExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pending.add(command);
+            }
+        });
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_SET);
+        long now = System.currentTimeMillis();
+        CompletableFuture<Void> first = asyncCounter.set(now, 1);
+        CompletableFuture<Void> second = asyncCounter.set(now, 2);
+        CompletableFuture<Void> third = asyncCounter.set(now, 3);
+        assertEquals(2, factory.getAsyncInFlight());
+        assertFalse(first.isDone());
+        assertTrue(third.isCompletedExceptionally());
+        try {
+            third.get();
+            fail("RejectedExecutionException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        for (Runnable command : pending) {
+            command.run();
+        }
+        first.get();
+        second.get();
+        assertEquals(0, factory.getAsyncInFlight());
+        assertEquals(2, counterSet.get(now).value());
+    }
+}
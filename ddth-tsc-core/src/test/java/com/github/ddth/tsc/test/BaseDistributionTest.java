@@ -0,0 +1,158 @@
+package com.github.ddth.tsc.test;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.DistributionSketch;
+import com.github.ddth.tsc.IDistributionCounter;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseDistributionTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseDistributionTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseDistributionTest.class);
+    }
+
+    protected final static String COUNTER_NAME_DIST = COUNTER_NAME_ADD + "_dist";
+
+    private static long alignedStart(int numPoints) {
+        long timestamp = System.currentTimeMillis() - numPoints * AbstractCounter.RESOLUTION_MS;
+        return timestamp - timestamp % (60 * AbstractCounter.RESOLUTION_MS);
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        assertTrue("Expected " + expected + ", got " + actual,
+                Math.abs(actual - expected) <= Math.ceil(expected * relativeError));
+    }
+
+    public void testSketch() {
+        DistributionSketch sketch = new DistributionSketch();
+        for (long v = 1; v <= 10000; v++) {
+            sketch.add(v);
+        }
+        assertEquals(10000, sketch.count());
+        assertEquals(1, sketch.min());
+        assertEquals(10000, sketch.max());
+        assertEquals(10000 * 10001 / 2, sketch.sum());
+        assertWithin(5000, sketch.quantile(0.5), 0.02);
+        assertWithin(9900, sketch.quantile(0.99), 0.02);
+
+        DistributionSketch decoded = DistributionSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.count(), decoded.count());
+        assertEquals(sketch.sum(), decoded.sum());
+        for (double q : new double[] { 0, 0.1, 0.5, 0.9, 0.99, 1 }) {
+            assertEquals(sketch.quantile(q), decoded.quantile(q));
+        }
+    }
+
+    public void testSketchMaxNumBins() {
+        DistributionSketch sketch = new DistributionSketch(0.01, 64);
+        for (long v = 1; v <= 1000000; v *= 2) {
+            sketch.add(v);
+        }
+        sketch.add(0);
+        // low values are collapsed, high quantiles keep their accuracy
+        assertEquals(21, sketch.count());
+        assertEquals(0, sketch.quantile(0));
+        assertWithin(262144, sketch.quantile(0.95), 0.02);
+        assertEquals(sketch.quantile(0.95),
+                DistributionSketch.fromBytes(sketch.toBytes()).quantile(0.95));
+    }
+
+    public void testEmpty() {
+        IDistributionCounter counter = counterFactory.getDistributionCounter(COUNTER_NAME_DIST);
+        DataPoint dp = counter.get(alignedStart(1));
+        assertEquals(Type.NONE, dp.type());
+        assertNull(dp.sketch());
+        assertEquals(0, dp.quantile(0.99));
+    }
+
+    public void testQuantiles() {
+        IDistributionCounter counter = counterFactory.getDistributionCounter(COUNTER_NAME_DIST);
+        long timestamp = alignedStart(1);
+        for (long v = 1; v <= 1000; v++) {
+            counter.add(timestamp, v);
+        }
+        DataPoint dp = counter.get(timestamp);
+        assertEquals(1000, dp.value());
+        assertEquals(1000, dp.sketch().count());
+        assertEquals(1, dp.quantile(0));
+        assertEquals(1000, dp.quantile(1));
+        assertWithin(500, dp.quantile(0.5), 0.02);
+        assertWithin(990, dp.quantile(0.99), 0.02);
+    }
+
+    public void testMerge() {
+        IDistributionCounter counter = counterFactory.getDistributionCounter(COUNTER_NAME_DIST);
+        long timestamp = alignedStart(1);
+        DistributionSketch sketch = new DistributionSketch();
+        for (long v = 100; v < 200; v++) {
+            sketch.add(v);
+        }
+        counter.merge(timestamp, sketch);
+        counter.merge(timestamp, sketch);
+        counter.add(timestamp, 1000);
+        DataPoint dp = counter.get(timestamp);
+        assertEquals(201, dp.sketch().count());
+        assertEquals(100, dp.sketch().min());
+        assertEquals(1000, dp.sketch().max());
+    }
+
+    public void testSeries() {
+        IDistributionCounter counter = counterFactory.getDistributionCounter(COUNTER_NAME_DIST);
+        final int NUM_POINTS = 180;
+        long timestampStart = alignedStart(NUM_POINTS);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            long timestamp = timestampStart + i * AbstractCounter.RESOLUTION_MS;
+            // block b holds values around (b + 1) * 1000
+            long base = (i / 60 + 1) * 1000;
+            for (int j = 0; j < 10; j++) {
+                counter.add(timestamp, base + j);
+            }
+        }
+
+        DataPoint[] series = counter.getSeries(timestampStart,
+                timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS, 60);
+        assertEquals(3, series.length);
+        for (int b = 0; b < 3; b++) {
+            DataPoint dp = series[b];
+            assertEquals(timestampStart + b * 60 * AbstractCounter.RESOLUTION_MS, dp.timestamp());
+            assertEquals(60 * AbstractCounter.RESOLUTION_MS, dp.blockSize());
+            assertEquals(600, dp.value());
+            assertEquals((b + 1) * 1000, dp.sketch().min());
+            assertEquals((b + 1) * 1000 + 9, dp.sketch().max());
+            assertWithin((b + 1) * 1000 + 5, dp.quantile(0.5), 0.02);
+        }
+
+        series = counter.getSeries(timestampStart,
+                timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS, NUM_POINTS);
+        assertEquals(1, series.length);
+        assertEquals(NUM_POINTS * 10, series[0].value());
+        assertWithin(3000, series[0].quantile(0.9), 0.02);
+
+        series = counter.getSeries(timestampStart, timestampStart + 10 * AbstractCounter.RESOLUTION_MS,
+                1);
+        assertEquals(10, series.length);
+        for (DataPoint dp : series) {
+            assertEquals(10, dp.value());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.ddth.tsc.test;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.LongSeries;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseLongSeriesTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseLongSeriesTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseLongSeriesTest.class);
+    }
+
+    private final static int NUM_POINTS = 300;
+
+    private long populate() {
+        long timestampStart = System.currentTimeMillis() - NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        timestampStart -= timestampStart % (60 * AbstractCounter.RESOLUTION_MS);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            if (i % 7 != 0) {
+                counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, i % 13);
+            }
+        }
+        return timestampStart;
+    }
+
+    private void verifySame(DataPoint[] dataPoints, LongSeries series) {
+        assertEquals(dataPoints.length, series.size());
+        for (int i = 0; i < dataPoints.length; i++) {
+            DataPoint dp = dataPoints[i];
+            assertEquals(dp.timestamp(), series.timestamp(i));
+            assertEquals(dp.blockSize(), series.blockSize());
+            assertEquals(dp.type() != Type.NONE, series.isPresent(i));
+            assertEquals(dp.value(), series.value(i));
+        }
+    }
+
+    @org.junit.Test
+    public void testSameAsDataPoints() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        for (Type type : new Type[] { Type.SUM, Type.MINIMUM, Type.MAXIMUM, Type.AVERAGE }) {
+            for (int steps : new int[] { 1, 5, 7, 60 }) {
+                verifySame(counterAdd.getSeries(timestampStart, timestampEnd, steps, type),
+                        counterAdd.getLongSeries(timestampStart, timestampEnd, steps, type));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testAllTypesFromOneRead() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        for (int steps : new int[] { 5, 7, 60 }) {
+            LongSeries series = counterAdd.getLongSeries(timestampStart, timestampEnd, steps,
+                    Type.AVERAGE);
+            for (Type type : new Type[] { Type.SUM, Type.MINIMUM, Type.MAXIMUM, Type.AVERAGE }) {
+                DataPoint[] expected = counterAdd.getSeries(timestampStart, timestampEnd, steps,
+                        type);
+                DataPoint[] actual = series.toDataPoints(type);
+                long[] values = series.values(type, null);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i].value(), series.value(i, type));
+                    assertEquals(expected[i].value(), actual[i].value());
+                    assertEquals(expected[i].value(), actual[i].value(type));
+                    assertEquals(expected[i].value(), values[i]);
+                }
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testWeightedAverage() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        // data points of 5-step blocks do not hold the same number of values
+        DataPoint[] blocks = counterAdd.getSeries(timestampStart, timestampEnd, 5, Type.AVERAGE);
+        DataPoint merged = new DataPoint(Type.NONE, timestampStart, 0, 0);
+        long sum = 0, count = 0;
+        for (DataPoint dp : blocks) {
+            merged.add(dp);
+            sum += dp.value(Type.SUM);
+            count += dp.count();
+        }
+        assertEquals(sum / count, merged.value());
+        assertEquals((double) sum / count, merged.average(), 1e-9);
+        DataPoint whole = counterAdd.getSeries(timestampStart, timestampEnd, NUM_POINTS,
+                Type.AVERAGE)[0];
+        assertEquals(whole.value(), merged.value());
+        assertEquals(whole.count(), merged.count());
+
+        DataPoint dp = new DataPoint().type(Type.MINIMUM);
+        assertEquals(0, dp.value());
+        dp.add(5).add(3).add(8);
+        assertEquals(3, dp.value());
+        assertEquals(8, dp.value(Type.MAXIMUM));
+        assertEquals(16, dp.value(Type.SUM));
+        assertEquals(5, dp.value(Type.AVERAGE));
+    }
+
+    @org.junit.Test
+    public void testReuseBuffers() {
+        long timestampStart = populate();
+        LongSeries series = new LongSeries(NUM_POINTS);
+        for (int steps : new int[] { 1, 10 }) {
+            long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+            LongSeries result = counterAdd.getLongSeries(timestampStart, timestampEnd, steps,
+                    Type.SUM, series);
+            assertSame(series, result);
+            verifySame(counterAdd.getSeries(timestampStart, timestampEnd, steps, Type.SUM),
+                    result);
+        }
+        // a smaller range after a larger one: no leftover from the previous read
+        LongSeries result = counterAdd.getLongSeries(timestampStart,
+                timestampStart + 10 * AbstractCounter.RESOLUTION_MS - 1, 1, Type.SUM, series);
+        assertEquals(10, result.size());
+        assertFalse(result.isPresent(0));
+        assertEquals(1, result.value(1));
+
+        long[] values = result.values(new long[NUM_POINTS]);
+        assertEquals(0, values[0]);
+        assertEquals(1, values[1]);
+    }
+}
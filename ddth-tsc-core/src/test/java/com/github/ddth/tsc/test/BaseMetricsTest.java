@@ -0,0 +1,205 @@
+package com.github.ddth.tsc.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.metrics.CounterMetrics;
+import com.github.ddth.tsc.metrics.CounterMetricsSnapshot;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+import com.github.ddth.tsc.metrics.InmemCounterMetrics;
+import com.github.ddth.tsc.metrics.ICounterMetrics.Operation;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseMetricsTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseMetricsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseMetricsTest.class);
+    }
+
+    protected CounterMetrics metrics;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        metrics = new CounterMetrics();
+        ((AbstractCounterFactory) counterFactory).setMetrics(metrics);
+    }
+
+    @Override
+    public void tearDown() {
+        if (metrics != null) {
+            metrics.unregisterMBean();
+            metrics = null;
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Asserts backend commands recorded by one {@code add}, one {@code set}
+     * and one {@code get}.
+     * 
+     * @param snapshot
+     */
+    protected abstract void assertBackendCommands(CounterMetricsSnapshot snapshot);
+
+    /**
+     * Asserts write batches recorded by one {@code addAll} of 2 counters.
+     * 
+     * @param snapshot
+     */
+    protected void assertBatches(CounterMetricsSnapshot snapshot) {
+        assertEquals(0, snapshot.getBatches());
+    }
+
+    private static long sum(DataPoint[] dataPoints) {
+        long result = 0;
+        for (DataPoint dp : dataPoints) {
+            result += dp.value();
+        }
+        return result;
+    }
+
+    @org.junit.Test
+    public void testNoopByDefault() {
+        AbstractCounterFactory factory = (AbstractCounterFactory) counterFactory;
+        factory.setMetrics(null);
+        assertSame(ICounterMetrics.NOOP, factory.getMetrics());
+        assertFalse(factory.getMetrics().isEnabled());
+
+        counterAdd.add(System.currentTimeMillis(), 1);
+        assertTrue(metrics.snapshot().getLatencies().isEmpty());
+    }
+
+    @org.junit.Test
+    public void testSingleDataPointOperations() {
+        long now = System.currentTimeMillis();
+        counterAdd.add(now, 1);
+        counterSet.set(now, 2);
+        assertEquals(1, counterAdd.get(now).value());
+
+        CounterMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getLatency(Operation.ADD).getCount());
+        assertEquals(1, snapshot.getLatency(Operation.SET).getCount());
+        assertEquals(1, snapshot.getLatency(Operation.GET).getCount());
+        assertTrue(snapshot.getLatency(Operation.GET).getMaxNs() > 0);
+        assertNull(snapshot.getLatency(Operation.RANGE));
+        assertBackendCommands(snapshot);
+
+        metrics.reset();
+        snapshot = metrics.snapshot();
+        assertTrue(snapshot.getLatencies().isEmpty());
+        assertTrue(snapshot.getBackendCommands().isEmpty());
+    }
+
+    @org.junit.Test
+    public void testRangeReads() {
+        long timestampStart = System.currentTimeMillis() - 120 * AbstractCounter.RESOLUTION_MS;
+        timestampStart -= timestampStart % (60 * AbstractCounter.RESOLUTION_MS);
+        for (int i = 0; i < 60; i++) {
+            counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, i);
+        }
+        metrics.reset();
+
+        long timestampEnd = timestampStart + 60 * AbstractCounter.RESOLUTION_MS - 1;
+        DataPoint[] dataPoints = counterAdd.getSeries(timestampStart, timestampEnd, 10,
+                Type.SUM);
+        assertEquals(6, dataPoints.length);
+        CounterMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getLatency(Operation.RANGE).getCount());
+        assertEquals(60, snapshot.getPointsScanned());
+        assertEquals(6, snapshot.getPointsReturned());
+
+        metrics.reset();
+        counterFactory.getSeries(Arrays.asList(COUNTER_NAME_ADD, COUNTER_NAME_SET),
+                timestampStart, timestampEnd, 1, Type.SUM);
+        snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getLatency(Operation.MULTI_RANGE).getCount());
+        assertNull(snapshot.getLatency(Operation.RANGE));
+        assertEquals(60, snapshot.getPointsScanned());
+        assertEquals(120, snapshot.getPointsReturned());
+    }
+
+    @org.junit.Test
+    public void testMultiAdd() {
+        Map<String, Long> values = new HashMap<>();
+        values.put(COUNTER_NAME_ADD, 1L);
+        values.put(COUNTER_NAME_ADD + "_2", 2L);
+        counterFactory.addAll(values, System.currentTimeMillis());
+        CounterMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getLatency(Operation.MULTI_ADD).getCount());
+        assertBatches(snapshot);
+    }
+
+    @org.junit.Test
+    public void testInmemCounterMetrics() {
+        InmemCounterMetrics inmemMetrics = new InmemCounterMetrics().init();
+        try {
+            ((AbstractCounterFactory) counterFactory).setMetrics(inmemMetrics);
+            long now = System.currentTimeMillis();
+            counterAdd.add(now, 1);
+            counterAdd.add(now, 2);
+            counterAdd.get(now);
+            counterAdd.getSeries(now - 60 * AbstractCounter.RESOLUTION_MS, now);
+
+            assertEquals(2, sum(inmemMetrics
+                    .getCounter(InmemCounterMetrics.opsCounterName(Operation.ADD)).getLastN(60)));
+            assertEquals(1, sum(inmemMetrics
+                    .getCounter(InmemCounterMetrics.opsCounterName(Operation.GET)).getLastN(60)));
+            assertEquals(0, sum(inmemMetrics
+                    .getCounter(InmemCounterMetrics.opsCounterName(Operation.SET)).getLastN(60)));
+            assertEquals(1, sum(inmemMetrics.getCounter(InmemCounterMetrics.COUNTER_POINTS_SCANNED)
+                    .getLastN(60)));
+            assertEquals(61, sum(inmemMetrics
+                    .getCounter(InmemCounterMetrics.COUNTER_POINTS_RETURNED).getLastN(60)));
+            assertEquals(InmemCounterMetrics.DEFAULT_COUNTER_NAME_PREFIX + "ops.ADD",
+                    inmemMetrics.getCounter(InmemCounterMetrics.opsCounterName(Operation.ADD))
+                            .getName());
+        } finally {
+            ((AbstractCounterFactory) counterFactory).setMetrics(null);
+            inmemMetrics.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void testMBean() throws Exception {
+        ObjectName objectName = metrics.registerMBean(getClass().getSimpleName());
+        counterAdd.add(System.currentTimeMillis(), 1);
+
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(mbeanServer.isRegistered(objectName));
+        assertEquals(0L, mbeanServer.getAttribute(objectName, "PointsScanned"));
+        assertNotNull(mbeanServer.getAttribute(objectName, "Latencies"));
+        mbeanServer.invoke(objectName, "reset", null, null);
+        assertTrue(metrics.snapshot().getLatencies().isEmpty());
+
+        metrics.unregisterMBean();
+        assertFalse(mbeanServer.isRegistered(objectName));
+    }
+}
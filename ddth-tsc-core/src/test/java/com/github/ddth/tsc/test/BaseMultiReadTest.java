@@ -0,0 +1,116 @@
+package com.github.ddth.tsc.test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.LongSeries;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseMultiReadTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseMultiReadTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseMultiReadTest.class);
+    }
+
+    private final static int NUM_POINTS = 300;
+
+    private long populate() {
+        long timestampStart = System.currentTimeMillis() - NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        timestampStart -= timestampStart % (60 * AbstractCounter.RESOLUTION_MS);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            long timestamp = timestampStart + i * AbstractCounter.RESOLUTION_MS;
+            if (i % 7 != 0) {
+                counterAdd.add(timestamp, i % 13);
+            }
+            if (i % 5 == 0) {
+                counterSet.set(timestamp, i);
+            }
+        }
+        return timestampStart;
+    }
+
+    private static void assertSame(DataPoint[] expected, DataPoint[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].timestamp(), actual[i].timestamp());
+            assertEquals(expected[i].blockSize(), actual[i].blockSize());
+            assertEquals(expected[i].type(), actual[i].type());
+            assertEquals(expected[i].value(), actual[i].value());
+        }
+    }
+
+    @org.junit.Test
+    public void testSameAsSingleReads() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS - 1;
+        List<String> names = Arrays.asList(COUNTER_NAME_SET, COUNTER_NAME_ADD);
+        for (Type type : new Type[] { Type.SUM, Type.MAXIMUM, Type.AVERAGE }) {
+            for (int steps : new int[] { 1, 7, 60 }) {
+                Map<String, DataPoint[]> result = counterFactory.getSeries(names, timestampStart,
+                        timestampEnd, steps, type);
+                Iterator<String> it = result.keySet().iterator();
+                assertEquals(COUNTER_NAME_SET, it.next());
+                assertEquals(COUNTER_NAME_ADD, it.next());
+                assertFalse(it.hasNext());
+                assertSame(counterSet.getSeries(timestampStart, timestampEnd, steps, type),
+                        result.get(COUNTER_NAME_SET));
+                assertSame(counterAdd.getSeries(timestampStart, timestampEnd, steps, type),
+                        result.get(COUNTER_NAME_ADD));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testDuplicateAndEmptyCounters() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS - 1;
+        String emptyName = COUNTER_NAME_ADD + "_empty";
+        Map<String, LongSeries> result = counterFactory.getLongSeries(
+                Arrays.asList(COUNTER_NAME_ADD, emptyName, COUNTER_NAME_ADD), timestampStart,
+                timestampEnd, 1, Type.SUM);
+        assertEquals(2, result.size());
+        LongSeries empty = result.get(emptyName);
+        assertEquals(NUM_POINTS, empty.size());
+        for (int i = 0; i < empty.size(); i++) {
+            assertFalse(empty.isPresent(i));
+        }
+        assertEquals(1, result.get(COUNTER_NAME_ADD).value(1));
+    }
+
+    @org.junit.Test
+    public void testLastN() {
+        ICounter counter = counterAdd;
+        long now = System.currentTimeMillis();
+        counter.add(now, 3);
+        Map<String, DataPoint[]> result = counterFactory
+                .getLastN(Arrays.asList(COUNTER_NAME_ADD, COUNTER_NAME_SET), 10, 1, Type.SUM);
+        DataPoint[] dataPoints = result.get(COUNTER_NAME_ADD);
+        assertEquals(10, dataPoints.length);
+        assertEquals(10, result.get(COUNTER_NAME_SET).length);
+        assertEquals(3, dataPoints[dataPoints.length - 1].value());
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.ddth.tsc.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseMultiWriteTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseMultiWriteTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseMultiWriteTest.class);
+    }
+
+    @org.junit.Test
+    public void testAddAll() {
+        long timestamp = System.currentTimeMillis();
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put(COUNTER_NAME_ADD, 3L);
+        values.put(COUNTER_NAME_SET, 5L);
+        counterFactory.addAll(values, timestamp);
+        values.put(COUNTER_NAME_ADD, 4L);
+        counterFactory.addAll(values, timestamp);
+
+        DataPoint dp = counterAdd.get(timestamp);
+        assertEquals(Type.SUM, dp.type());
+        assertEquals(7, dp.value());
+        assertEquals(10, counterSet.get(timestamp).value());
+        assertEquals(Type.NONE, counterAdd.get(timestamp + AbstractCounter.RESOLUTION_MS).type());
+    }
+
+    @org.junit.Test
+    public void testAddAllSameAsAdd() {
+        long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 2);
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put(COUNTER_NAME_ADD, 3L);
+        counterFactory.addAll(values, timestamp);
+        counterAdd.add(timestamp, 5);
+        assertEquals(10, counterAdd.get(timestamp).value());
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.ddth.tsc.test;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseRangeReadTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseRangeReadTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseRangeReadTest.class);
+    }
+
+    private final static int NUM_POINTS = 500;
+
+    private long populate() {
+        long timestampStart = System.currentTimeMillis() - NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        timestampStart -= timestampStart % AbstractCounter.RESOLUTION_MS;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            if (i % 3 != 0) {
+                counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, i);
+            }
+        }
+        return timestampStart;
+    }
+
+    private void verifyRange(long timestampStart, int from, int to) {
+        DataPoint[] dataPoints = counterAdd.getSeries(
+                timestampStart + from * AbstractCounter.RESOLUTION_MS,
+                timestampStart + to * AbstractCounter.RESOLUTION_MS - 1);
+        assertEquals(to - from, dataPoints.length);
+        for (int i = from; i < to; i++) {
+            DataPoint dp = dataPoints[i - from];
+            assertEquals(timestampStart + i * AbstractCounter.RESOLUTION_MS, dp.timestamp());
+            if (i % 3 != 0) {
+                assertEquals(i, dp.value());
+            } else {
+                assertEquals(Type.NONE, dp.type());
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testRangeRead() {
+        long timestampStart = populate();
+        verifyRange(timestampStart, 0, NUM_POINTS);
+        verifyRange(timestampStart, 1, 2);
+        verifyRange(timestampStart, 7, 61);
+        verifyRange(timestampStart, 59, 301);
+        verifyRange(timestampStart, 120, 180);
+    }
+}
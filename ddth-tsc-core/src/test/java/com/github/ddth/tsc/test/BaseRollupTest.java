@@ -0,0 +1,159 @@
+package com.github.ddth.tsc.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for rollup tiers: sub-classes create counter factories with
+ * {@link AbstractCounter#DEFAULT_ROLLUP_STEPS} rollups enabled.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseRollupTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseRollupTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseRollupTest.class);
+    }
+
+    private final static int NUM_SECONDS = 3 * 3600;
+    private final static int STEP = 7;
+
+    private long timestampStart;
+    private long[] values;
+
+    private void populate() {
+        long now = System.currentTimeMillis();
+        timestampStart = now - now % (3600 * AbstractCounter.RESOLUTION_MS)
+                - NUM_SECONDS * AbstractCounter.RESOLUTION_MS;
+        values = new long[NUM_SECONDS];
+        for (int i = 0; i < NUM_SECONDS; i += STEP) {
+            long value = i % 100 + 1;
+            counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, value);
+            values[i] += value;
+        }
+    }
+
+    private void verifySeries(int from, int to, int steps) {
+        DataPoint[] dataPoints = counterAdd.getSeries(
+                timestampStart + from * AbstractCounter.RESOLUTION_MS,
+                timestampStart + to * AbstractCounter.RESOLUTION_MS - 1, steps);
+        int n = (to - from + steps - 1) / steps;
+        assertEquals(n, dataPoints.length);
+        for (int block = 0; block < n; block++) {
+            long expected = 0;
+            boolean hasValue = false;
+            for (int i = from + block * steps; i < Math.min(from + (block + 1) * steps, to); i++) {
+                expected += values[i];
+                hasValue |= i % STEP == 0;
+            }
+            DataPoint dp = dataPoints[block];
+            assertEquals(timestampStart + (from + block * steps) * AbstractCounter.RESOLUTION_MS,
+                    dp.timestamp());
+            assertEquals(steps * AbstractCounter.RESOLUTION_MS, dp.blockSize());
+            assertEquals(hasValue ? Type.SUM : Type.NONE, dp.type());
+            assertEquals(expected, dp.value());
+        }
+    }
+
+    @org.junit.Test
+    public void testRollupMinutes() {
+        populate();
+        verifySeries(0, NUM_SECONDS, 60);
+        verifySeries(600, 1234, 60);
+        verifySeries(3600, 2 * 3600, 300);
+    }
+
+    @org.junit.Test
+    public void testRollupHours() {
+        populate();
+        verifySeries(0, NUM_SECONDS, 3600);
+        // partial last block: covered by minute rollups and 1-second data points
+        verifySeries(0, 2 * 3600 + 61, 3600);
+        verifySeries(3600, NUM_SECONDS - 1, 7200);
+    }
+
+    @org.junit.Test
+    public void testRollupSet() {
+        populate();
+        long timestamp = timestampStart + 70 * STEP * AbstractCounter.RESOLUTION_MS;
+        counterAdd.set(timestamp, 1000);
+        values[70 * STEP] = 1000;
+        counterAdd.set(timestamp + 1, 1);
+        values[70 * STEP] = 1;
+        verifySeries(0, NUM_SECONDS, 60);
+        verifySeries(0, NUM_SECONDS, 3600);
+    }
+
+    @org.junit.Test
+    public void testRollupSetLargeValues() {
+        populate();
+        // not representable as doubles
+        final long VALUE = (1L << 60) + 1;
+        long timestamp = timestampStart + 70 * STEP * AbstractCounter.RESOLUTION_MS;
+        counterAdd.set(timestamp, VALUE);
+        counterAdd.set(timestamp, VALUE + 2);
+        values[70 * STEP] = VALUE + 2;
+        verifySeries(0, NUM_SECONDS, 60);
+        verifySeries(0, NUM_SECONDS, 3600);
+    }
+
+    @org.junit.Test
+    public void testMultiCounterRead() {
+        populate();
+        long timestampEnd = timestampStart + NUM_SECONDS * AbstractCounter.RESOLUTION_MS - 1;
+        for (int steps : new int[] { 60, 3600 }) {
+            Map<String, DataPoint[]> result = counterFactory.getSeries(
+                    Arrays.asList(COUNTER_NAME_ADD, COUNTER_NAME_SET), timestampStart,
+                    timestampEnd, steps, Type.SUM);
+            DataPoint[] expected = counterAdd.getSeries(timestampStart, timestampEnd, steps);
+            DataPoint[] dataPoints = result.get(COUNTER_NAME_ADD);
+            assertEquals(expected.length, dataPoints.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].timestamp(), dataPoints[i].timestamp());
+                assertEquals(expected[i].type(), dataPoints[i].type());
+                assertEquals(expected[i].value(), dataPoints[i].value());
+            }
+            assertEquals(expected.length, result.get(COUNTER_NAME_SET).length);
+        }
+    }
+
+    @org.junit.Test
+    public void testMultiCounterWrite() {
+        populate();
+        long timestamp = timestampStart + 123 * AbstractCounter.RESOLUTION_MS;
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put(COUNTER_NAME_ADD, 50L);
+        counterFactory.addAll(deltas, timestamp);
+        values[123] += 50;
+        verifySeries(0, NUM_SECONDS, 60);
+        verifySeries(0, NUM_SECONDS, 3600);
+    }
+
+    @org.junit.Test
+    public void testUnalignedRange() {
+        populate();
+        // range start is not aligned to any tier: 1-second data points are used
+        verifySeries(13, 3600 + 13, 60);
+    }
+}
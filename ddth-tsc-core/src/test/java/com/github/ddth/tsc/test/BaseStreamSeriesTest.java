@@ -0,0 +1,101 @@
+package com.github.ddth.tsc.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.ISeriesConsumer;
+import com.github.ddth.tsc.LongSeries;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseStreamSeriesTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseStreamSeriesTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseStreamSeriesTest.class);
+    }
+
+    private final static int NUM_POINTS = 300;
+    private final static int CHUNK_SIZE = 45;
+
+    private long populate() {
+        long timestampStart = System.currentTimeMillis() - NUM_POINTS * AbstractCounter.RESOLUTION_MS;
+        timestampStart -= timestampStart % (60 * AbstractCounter.RESOLUTION_MS);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            if (i % 7 != 0) {
+                counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, i % 13);
+            }
+        }
+        ((AbstractCounter) counterAdd).setStreamChunkSize(CHUNK_SIZE);
+        return timestampStart;
+    }
+
+    private static class Collector implements ISeriesConsumer {
+        private final List<DataPoint> dataPoints = new ArrayList<>();
+        private int numChunks = 0, maxChunks = Integer.MAX_VALUE, maxChunkSize = 0;
+
+        @Override
+        public boolean consume(LongSeries chunk) {
+            numChunks++;
+            maxChunkSize = Math.max(maxChunkSize, chunk.size());
+            for (DataPoint dp : chunk.toDataPoints()) {
+                dataPoints.add(dp);
+            }
+            return numChunks < maxChunks;
+        }
+    }
+
+    @org.junit.Test
+    public void testSameAsSeries() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS - 1;
+        for (Type type : new Type[] { Type.SUM, Type.MINIMUM, Type.MAXIMUM, Type.AVERAGE }) {
+            for (int steps : new int[] { 1, 7, 60 }) {
+                DataPoint[] expected = counterAdd.getSeries(timestampStart, timestampEnd, steps,
+                        type);
+                Collector collector = new Collector();
+                counterAdd.streamSeries(timestampStart, timestampEnd, steps, type, collector);
+                assertEquals(expected.length, collector.dataPoints.size());
+                assertTrue(collector.maxChunkSize <= Math.max(1, CHUNK_SIZE / steps));
+                for (int i = 0; i < expected.length; i++) {
+                    DataPoint dp = collector.dataPoints.get(i);
+                    assertEquals(expected[i].timestamp(), dp.timestamp());
+                    assertEquals(expected[i].blockSize(), dp.blockSize());
+                    assertEquals(expected[i].type(), dp.type());
+                    assertEquals(expected[i].value(), dp.value());
+                }
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testStop() {
+        long timestampStart = populate();
+        long timestampEnd = timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS - 1;
+        Collector collector = new Collector();
+        collector.maxChunks = 2;
+        counterAdd.streamSeries(timestampStart, timestampEnd, 1, Type.SUM, collector);
+        assertEquals(2, collector.numChunks);
+        assertEquals(2 * CHUNK_SIZE, collector.dataPoints.size());
+        assertEquals(timestampStart, collector.dataPoints.get(0).timestamp());
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.ddth.tsc.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.HyperLogLog;
+import com.github.ddth.tsc.IUniqueCounter;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseUniqueTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseUniqueTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseUniqueTest.class);
+    }
+
+    protected final static String COUNTER_NAME_UNIQUE = COUNTER_NAME_ADD + "_unique";
+
+    private static long alignedStart(int numPoints) {
+        long timestamp = System.currentTimeMillis() - numPoints * AbstractCounter.RESOLUTION_MS;
+        return timestamp - timestamp % (60 * AbstractCounter.RESOLUTION_MS);
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        assertTrue("Expected " + expected + ", got " + actual,
+                Math.abs(actual - expected) <= Math.ceil(expected * relativeError));
+    }
+
+    public void testHyperLogLog() {
+        HyperLogLog hll = new HyperLogLog();
+        assertTrue(hll.isEmpty());
+        assertEquals(0, hll.cardinality());
+        for (int i = 0; i < 100000; i++) {
+            hll.add("item-" + i);
+        }
+        long cardinality = hll.cardinality();
+        assertWithin(100000, cardinality, 0.05);
+        for (int i = 0; i < 100000; i += 3) {
+            hll.add("item-" + i);
+        }
+        assertEquals(cardinality, hll.cardinality());
+
+        HyperLogLog decoded = HyperLogLog.fromBytes(hll.toBytes());
+        assertEquals(cardinality, decoded.cardinality());
+
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            small.add("other-" + i);
+        }
+        byte[] data = small.toBytes();
+        assertTrue(data.length < 1 << HyperLogLog.DEFAULT_PRECISION);
+        assertEquals(small.cardinality(), HyperLogLog.fromBytes(data).cardinality());
+        assertWithin(100, small.cardinality(), 0.03);
+
+        assertWithin(100100, hll.copy().merge(small).cardinality(), 0.05);
+    }
+
+    public void testEmpty() {
+        IUniqueCounter counter = counterFactory.getUniqueCounter(COUNTER_NAME_UNIQUE);
+        DataPoint dp = counter.get(alignedStart(1));
+        assertEquals(Type.NONE, dp.type());
+        assertEquals(0, dp.value());
+    }
+
+    public void testUnique() {
+        IUniqueCounter counter = counterFactory.getUniqueCounter(COUNTER_NAME_UNIQUE);
+        long timestamp = alignedStart(1);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                counter.add(timestamp, "user-" + i);
+            }
+        }
+        assertWithin(100, counter.get(timestamp).value(), 0.03);
+    }
+
+    public void testSeries() {
+        IUniqueCounter counter = counterFactory.getUniqueCounter(COUNTER_NAME_UNIQUE);
+        final int NUM_POINTS = 180;
+        long timestampStart = alignedStart(NUM_POINTS);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            long timestamp = timestampStart + i * AbstractCounter.RESOLUTION_MS;
+            // each block sees 300 distinct users, each of them twice
+            List<String> items = new ArrayList<>();
+            for (int k = 0; k < 10; k++) {
+                items.add("block-" + (i / 60) + "-user-" + ((i * 10 + k) % 300));
+            }
+            counter.addAll(timestamp, items);
+        }
+
+        DataPoint[] series = counter.getSeries(timestampStart,
+                timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS, 1);
+        assertEquals(NUM_POINTS, series.length);
+        for (DataPoint dp : series) {
+            assertEquals(Type.SUM, dp.type());
+            assertWithin(10, dp.value(), 0.1);
+        }
+
+        series = counter.getSeries(timestampStart,
+                timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS, 60);
+        assertEquals(3, series.length);
+        for (int b = 0; b < 3; b++) {
+            assertEquals(timestampStart + b * 60 * AbstractCounter.RESOLUTION_MS,
+                    series[b].timestamp());
+            assertWithin(300, series[b].value(), 0.05);
+        }
+
+        series = counter.getSeries(timestampStart,
+                timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS, NUM_POINTS);
+        assertEquals(1, series.length);
+        assertWithin(900, series[0].value(), 0.05);
+    }
+}
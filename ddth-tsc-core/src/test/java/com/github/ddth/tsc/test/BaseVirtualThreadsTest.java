@@ -0,0 +1,172 @@
+package com.github.ddth.tsc.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.IAsyncCounter;
+import com.github.ddth.tsc.ICounter;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Counter factories in virtual-thread mode.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public abstract class BaseVirtualThreadsTest extends BaseCounterTest {
+    static {
+        /*
+         * Java 21+: a virtual thread parking while pinned to its carrier
+         * prints its stack trace. Read once, when the first virtual thread is
+         * created: effective as each test class runs in its own JVM.
+         */
+        if (System.getProperty("jdk.tracePinnedThreads") == null) {
+            System.setProperty("jdk.tracePinnedThreads", "short");
+        }
+    }
+
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public BaseVirtualThreadsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(BaseVirtualThreadsTest.class);
+    }
+
+    @org.junit.Test
+    public void testConcurrentCounterCreation() throws Exception {
+        final int numThreads = 16, numAdds = 100;
+        final String counterName = COUNTER_NAME_ADD + "_concurrent";
+        final long timestamp = System.currentTimeMillis();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReferenceArray<ICounter> counters = new AtomicReferenceArray<>(numThreads);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            final int index = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    ICounter counter = counterFactory.getCounter(counterName);
+                    counters.set(index, counter);
+                    for (int j = 0; j < numAdds; j++) {
+                        counter.add(timestamp, 1);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        ICounter counter = counterFactory.getCounter(counterName);
+        for (int i = 0; i < numThreads; i++) {
+            assertSame(counter, counters.get(i));
+        }
+        assertEquals(numThreads * numAdds, counter.get(timestamp).value());
+    }
+
+    /**
+     * Writers on virtual threads (Java 21+, skipped on older JVMs) creating
+     * and adding to the same counter: none of them must park while pinned
+     * (see {@code jdk.tracePinnedThreads}).
+     */
+    @org.junit.Test
+    public void testVirtualThreadWriters() throws Exception {
+        final Method startVirtualThread;
+        try {
+            startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            // no virtual threads on this JVM
+            return;
+        }
+        final int numWriters = 1000, numAdds = 10;
+        final String counterName = COUNTER_NAME_ADD + "_virtual";
+        final long timestamp = System.currentTimeMillis();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(numWriters);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable writer = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    ICounter counter = counterFactory.getCounter(counterName);
+                    for (int i = 0; i < numAdds; i++) {
+                        counter.add(timestamp, 1);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(trace, true));
+        try {
+            for (int i = 0; i < numWriters; i++) {
+                startVirtualThread.invoke(null, writer);
+            }
+            start.countDown();
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+        } finally {
+            System.setOut(out);
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+        String pinned = trace.toString();
+        assertFalse("Pinned virtual threads:\n" + pinned, pinned.contains("<== monitors"));
+        assertEquals(numWriters * numAdds, counterFactory.getCounter(counterName).get(timestamp)
+                .value());
+    }
+
+    @org.junit.Test
+    public void testAsyncExecutor() throws Exception {
+        AbstractCounterFactory factory = (AbstractCounterFactory) counterFactory;
+        assertTrue(factory.isVirtualThreads());
+        ExecutorService virtualThreadExecutor = AbstractCounterFactory.newVirtualThreadExecutor();
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+            assertFalse(factory.getAsyncExecutor() instanceof ThreadPoolExecutor);
+        } else {
+            // no virtual threads on this JVM
+            assertTrue(factory.getAsyncExecutor() instanceof ThreadPoolExecutor);
+        }
+
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_SET);
+        long timestamp = System.currentTimeMillis();
+        asyncCounter.set(timestamp, 3).get();
+        assertEquals(3, asyncCounter.get(timestamp).get().value());
+        assertEquals(3, counterSet.get(timestamp).value());
+    }
+}
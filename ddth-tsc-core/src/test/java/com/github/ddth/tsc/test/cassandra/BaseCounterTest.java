@@ -31,11 +31,23 @@ public abstract class BaseCounterTest extends TestCase {
 
     protected final static String COUNTER_NAME_ADD = CqlTemplate.TABLE_COUNTER + "_add";
     protected final static String COUNTER_NAME_SET = CqlTemplate.TABLE_COUNTER + "_set";
+    protected final static String COUNTER_NAME_LOG = CqlTemplate.TABLE_COUNTER + "_log";
 
     public BaseCounterTest(String testName) {
         super(testName);
     }
 
+    /**
+     * Creates the (not yet initialized) counter factory, sub-classes may
+     * override to customize it.
+     * 
+     * @return
+     * @since 0.7.1
+     */
+    protected CassandraCounterFactory newCounterFactory() {
+        return new CassandraCounterFactory();
+    }
+
     protected ICounterFactory createCounterFactory() throws Exception {
         try {
             EmbeddedCassandraServerHelper.startEmbeddedCassandra(30000);
@@ -59,9 +71,16 @@ public abstract class BaseCounterTest extends TestCase {
             session.execute("CREATE TABLE tsc." + table2
                     + " (c varchar, ym int, d int, t bigint, v bigint, PRIMARY KEY ((c, ym, d), t) ) WITH COMPACT STORAGE");
 
+            // counter 3: accumulation log (since 0.7.1)
+            String table3 = COUNTER_NAME_LOG;
+            session.execute("UPDATE tsc." + CqlTemplate.TABLE_METADATA + " SET o='{\"table\":\""
+                    + table3 + "\", \"write_mode\":\"log\"}' WHERE c='" + table3 + "'");
+            session.execute("CREATE TABLE tsc." + table3
+                    + " (c varchar, ym int, d int, t bigint, id timeuuid, s boolean, v bigint, PRIMARY KEY ((c, ym, d), t, id) )");
+
             sessionManager = new SessionManager();
             sessionManager.init();
-            return new CassandraCounterFactory().setSessionManager(sessionManager)
+            return newCounterFactory().setSessionManager(sessionManager)
                     .setHostsAndPorts("127.0.0.1:9142").setKeyspace("tsc").init();
         } catch (Exception e) {
             tearDown();
@@ -0,0 +1,97 @@
+package com.github.ddth.tsc.test.cassandra;
+
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.IAsyncCounter;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for async counters of {@link CassandraCounterFactory}, counter
+ * column, bigint and accumulation log tables.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraAsyncCounterTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public CassandraAsyncCounterTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CassandraAsyncCounterTest.class);
+    }
+
+    @Override
+    protected CassandraCounterFactory newCounterFactory() {
+        return new CassandraCounterFactory().setLogCompactionGraceMs(0)
+                .setLogCompactionIntervalMs(0);
+    }
+
+    @org.junit.Test
+    public void testCounterColumn() throws Exception {
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_ADD);
+        assertEquals("CassandraAsyncCounter", asyncCounter.getClass().getSimpleName());
+        final long timestamp = System.currentTimeMillis();
+        asyncCounter.add(timestamp, 5).get();
+        asyncCounter.add(timestamp, 6).get();
+        assertEquals(11, asyncCounter.get(timestamp).get().value());
+        assertEquals(11, counterAdd.get(timestamp).value());
+
+        asyncCounter.add(timestamp + 2000, 3).get();
+        DataPoint[] dataPoints = asyncCounter.getSeries(timestamp, timestamp + 3000, 1,
+                DataPoint.Type.SUM).get();
+        long sum = 0;
+        for (DataPoint dp : dataPoints) {
+            sum += dp.value();
+        }
+        assertEquals(14, sum);
+    }
+
+    @org.junit.Test
+    public void testLogTable() throws Exception {
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_LOG);
+        final long timestamp = System.currentTimeMillis();
+        asyncCounter.add(timestamp, 5).get();
+        asyncCounter.add(timestamp, 6).get();
+        assertEquals(11, asyncCounter.get(timestamp).get().value());
+
+        asyncCounter.set(timestamp, 3).get();
+        asyncCounter.add(timestamp, 2).get();
+        assertEquals(5, asyncCounter.get(timestamp).get().value());
+        assertEquals(5, counterFactory.getCounter(COUNTER_NAME_LOG).get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testBigintTable() throws Exception {
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_SET);
+        final long timestamp = System.currentTimeMillis();
+        asyncCounter.set(timestamp, 3).get();
+        asyncCounter.add(timestamp, 4).get();
+        assertEquals(7, asyncCounter.get(timestamp).get().value());
+        assertEquals(7, counterSet.get(timestamp).value());
+    }
+
+    /**
+     * The counter of the first add is created (and its statements prepared)
+     * on the async executor.
+     */
+    @org.junit.Test
+    public void testFirstUse() throws Exception {
+        final long timestamp = System.currentTimeMillis();
+        counterFactory.getAsyncCounter(COUNTER_NAME_LOG).add(timestamp, 7).get();
+        assertEquals(7, counterFactory.getAsyncCounter(COUNTER_NAME_LOG).get(timestamp).get()
+                .value());
+        assertEquals(7, counterFactory.getCounter(COUNTER_NAME_LOG).get(timestamp).value());
+    }
+}
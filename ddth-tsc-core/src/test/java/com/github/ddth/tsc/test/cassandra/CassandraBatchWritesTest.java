@@ -0,0 +1,91 @@
+package com.github.ddth.tsc.test.cassandra;
+
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link CassandraCounterFactory}, write batching mode.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraBatchWritesTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public CassandraBatchWritesTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CassandraBatchWritesTest.class);
+    }
+
+    private final static long MAX_DELAY_MS = 100;
+
+    @Override
+    protected CassandraCounterFactory newCounterFactory() {
+        return new CassandraCounterFactory().setBatchWrites(true)
+                .setBatchMaxDelayMs(MAX_DELAY_MS).setBatchMaxSize(10).setBatchMaxInFlight(2);
+    }
+
+    @org.junit.Test
+    public void testBatchAdd() throws InterruptedException {
+        final long VALUE = 7;
+        final int NUM_LOOP = 1000;
+        final int NUM_THREAD = 4;
+        final long timestampStart = System.currentTimeMillis();
+
+        Thread[] threads = new Thread[NUM_THREAD];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < NUM_LOOP; i++) {
+                        // spread over 50 data points
+                        counterAdd.add(timestampStart + (i % 50) * 1000, VALUE);
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Thread.sleep(MAX_DELAY_MS * 10);
+
+        DataPoint[] dataPoints = counterAdd.getSeries(timestampStart,
+                timestampStart + 50 * 1000 - 1);
+        assertEquals(50, dataPoints.length);
+        long value = 0;
+        for (DataPoint dp : dataPoints) {
+            if (dp.type() != Type.NONE) {
+                value += dp.value();
+            }
+        }
+        assertEquals(VALUE * NUM_LOOP * NUM_THREAD, value);
+    }
+
+    @org.junit.Test
+    public void testBatchAddThenSet() throws InterruptedException {
+        final long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 5);
+        counterAdd.add(timestamp, 6);
+        // set() accounts for increments still in the buffer
+        counterAdd.set(timestamp, 3);
+        Thread.sleep(MAX_DELAY_MS * 10);
+
+        assertEquals(3, counterAdd.get(timestamp).value());
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.ddth.tsc.test.cassandra;
+
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.cassandra.CassandraCounter;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link CassandraCounterFactory}, accumulation log write mode.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraLogWritesTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public CassandraLogWritesTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CassandraLogWritesTest.class);
+    }
+
+    private final static long GRACE_MS = 100;
+
+    private ICounter counterLog;
+
+    @Override
+    protected CassandraCounterFactory newCounterFactory() {
+        // logs are compacted explicitly by tests
+        return new CassandraCounterFactory().setLogCompactionGraceMs(GRACE_MS)
+                .setLogCompactionIntervalMs(0);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        counterLog = counterFactory.getCounter(COUNTER_NAME_LOG);
+    }
+
+    @org.junit.Test
+    public void testAddAndSet() throws InterruptedException {
+        final long timestamp = System.currentTimeMillis();
+        counterLog.add(timestamp, 5);
+        counterLog.add(timestamp, 6);
+        Thread.sleep(GRACE_MS);
+        assertEquals(11, counterLog.get(timestamp).value());
+
+        counterLog.set(timestamp, 3);
+        counterLog.add(timestamp, 2);
+        Thread.sleep(GRACE_MS);
+        assertEquals(5, counterLog.get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testCompaction() throws InterruptedException {
+        final long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            counterLog.add(timestamp, 1);
+        }
+        Thread.sleep(GRACE_MS * 2);
+        // reads do not compact
+        assertEquals(10, counterLog.get(timestamp).value());
+        assertEquals(1, ((CassandraCounter) counterLog).compactLog(timestamp));
+        assertEquals(0, ((CassandraCounter) counterLog).compactLog(timestamp));
+        assertEquals(10, counterLog.get(timestamp).value());
+
+        counterLog.add(timestamp, 1);
+        counterLog.add(timestamp, 2);
+        Thread.sleep(GRACE_MS * 2);
+        assertEquals(13, counterLog.get(timestamp).value());
+        CassandraCounterFactory factory = (CassandraCounterFactory) counterFactory;
+        assertEquals(1, factory.compactLogs(timestamp));
+        assertEquals(13, counterLog.get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testCompactionSkipsRecentEntries() throws InterruptedException {
+        final long timestamp = System.currentTimeMillis();
+        counterLog.add(timestamp, 1);
+        counterLog.add(timestamp, 1);
+        Thread.sleep(GRACE_MS * 2);
+        counterLog.add(timestamp, 5);
+        // only the 2 entries older than the grace period are compacted
+        assertEquals(1, ((CassandraCounter) counterLog).compactLog(timestamp));
+        assertEquals(7, counterLog.get(timestamp).value());
+        Thread.sleep(GRACE_MS * 2);
+        assertEquals(1, ((CassandraCounter) counterLog).compactLog(timestamp));
+        assertEquals(7, counterLog.get(timestamp).value());
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.ddth.tsc.test.cassandra;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Map;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.cassandra.CassandraCounter;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link CassandraCounter}, range reads spanning day
+ * partitions.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraRangeReadTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public CassandraRangeReadTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CassandraRangeReadTest.class);
+    }
+
+    private final static int NUM_POINTS = 300;
+
+    @Override
+    protected CassandraCounterFactory newCounterFactory() {
+        // one query at a time for reads of many counters
+        return new CassandraCounterFactory().setReadMaxInFlight(1);
+    }
+
+    /**
+     * Populates data points around the last midnight.
+     */
+    private long populate() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        long timestampStart = cal.getTimeInMillis()
+                - NUM_POINTS / 2 * AbstractCounter.RESOLUTION_MS;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            if (i % 3 != 0) {
+                counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, i);
+            }
+        }
+        return timestampStart;
+    }
+
+    private void verifyRange(long timestampStart, int from, int to) {
+        DataPoint[] dataPoints = counterAdd.getSeries(
+                timestampStart + from * AbstractCounter.RESOLUTION_MS,
+                timestampStart + to * AbstractCounter.RESOLUTION_MS - 1);
+        assertEquals(to - from, dataPoints.length);
+        for (int i = from; i < to; i++) {
+            DataPoint dp = dataPoints[i - from];
+            assertEquals(timestampStart + i * AbstractCounter.RESOLUTION_MS, dp.timestamp());
+            if (i % 3 != 0) {
+                assertEquals(i, dp.value());
+            } else {
+                assertEquals(Type.NONE, dp.type());
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testRangeReadAcrossDays() {
+        long timestampStart = populate();
+        verifyRange(timestampStart, 0, NUM_POINTS);
+        verifyRange(timestampStart, 140, 160);
+        verifyRange(timestampStart, 10, 20);
+        verifyRange(timestampStart, 200, 290);
+        verifyRange(timestampStart, 149, 151);
+    }
+
+    @org.junit.Test
+    public void testMultiCounterReadAcrossDays() {
+        long timestampStart = populate();
+        for (int i = 0; i < NUM_POINTS; i++) {
+            counterSet.set(timestampStart + i * AbstractCounter.RESOLUTION_MS, i + 1);
+        }
+        Map<String, DataPoint[]> series = counterFactory.getSeries(
+                Arrays.asList(COUNTER_NAME_ADD, COUNTER_NAME_SET), timestampStart,
+                timestampStart + NUM_POINTS * AbstractCounter.RESOLUTION_MS - 1, 1, Type.SUM);
+        DataPoint[] added = series.get(COUNTER_NAME_ADD), set = series.get(COUNTER_NAME_SET);
+        assertEquals(NUM_POINTS, added.length);
+        assertEquals(NUM_POINTS, set.length);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            assertEquals(i % 3 != 0 ? i : 0, added[i].value());
+            assertEquals(i + 1, set[i].value());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.ddth.tsc.test.cassandra;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link CassandraCounterFactory}, rollup tiers.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraRollupTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public CassandraRollupTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CassandraRollupTest.class);
+    }
+
+    private ICounter counterLog;
+
+    @Override
+    protected CassandraCounterFactory newCounterFactory() {
+        CassandraCounterFactory counterFactory = new CassandraCounterFactory();
+        counterFactory.setRollupSteps(AbstractCounter.DEFAULT_ROLLUP_STEPS);
+        return counterFactory;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        counterLog = counterFactory.getCounter(COUNTER_NAME_LOG);
+    }
+
+    private static long timestampStart() {
+        long now = System.currentTimeMillis();
+        return now - now % (60 * AbstractCounter.RESOLUTION_MS)
+                - 120 * AbstractCounter.RESOLUTION_MS;
+    }
+
+    private static void verifyMinutes(ICounter counter, long timestampStart, long... expected) {
+        DataPoint[] dataPoints = counter.getSeries(timestampStart,
+                timestampStart + expected.length * 60 * AbstractCounter.RESOLUTION_MS - 1, 60);
+        assertEquals(expected.length, dataPoints.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], dataPoints[i].value());
+        }
+    }
+
+    @org.junit.Test
+    public void testBigintTableWithoutRollups() {
+        // rollups are disabled on the bigint table, the counter still works
+        assertEquals(0, ((AbstractCounter) counterSet).getRollupSteps().length);
+        assertEquals(AbstractCounter.DEFAULT_ROLLUP_STEPS.length,
+                ((AbstractCounter) counterAdd).getRollupSteps().length);
+        final long timestampStart = timestampStart();
+        counterSet.set(timestampStart, 5);
+        counterSet.add(timestampStart + AbstractCounter.RESOLUTION_MS, 2);
+        verifyMinutes(counterSet, timestampStart, 7);
+    }
+
+    @org.junit.Test
+    public void testRollupCounterColumn() throws InterruptedException {
+        final long VALUE = 3;
+        final int NUM_THREAD = 4;
+        final long timestampStart = timestampStart();
+        Thread[] threads = new Thread[NUM_THREAD];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 120; i++) {
+                        counterAdd.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, VALUE);
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Thread.sleep(500);
+        verifyMinutes(counterAdd, timestampStart, 60 * VALUE * NUM_THREAD,
+                60 * VALUE * NUM_THREAD);
+    }
+
+    @org.junit.Test
+    public void testRollupLog() throws InterruptedException {
+        final long timestampStart = timestampStart();
+        for (int i = 0; i < 120; i++) {
+            counterLog.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, 2);
+        }
+        counterLog.set(timestampStart, 10);
+        counterLog.add(timestampStart, 1);
+        Thread.sleep(500);
+        verifyMinutes(counterLog, timestampStart, 59 * 2 + 11, 60 * 2);
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.ddth.tsc.test.cassandra;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.ddth.tsc.AbstractCounterFactory;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.IAsyncCounter;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.ISeriesConsumer;
+import com.github.ddth.tsc.LongSeries;
+import com.github.ddth.tsc.cassandra.CassandraCounterFactory;
+import com.github.ddth.tsc.metrics.CounterMetrics;
+import com.github.ddth.tsc.metrics.CounterMetricsSnapshot;
+import com.github.ddth.tsc.metrics.ICounterMetrics;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link CassandraCounterFactory}, shared row cache.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class CassandraRowCacheTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public CassandraRowCacheTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CassandraRowCacheTest.class);
+    }
+
+    private final static long EXPIRE_MS = 500;
+
+    @Override
+    protected CassandraCounterFactory newCounterFactory() {
+        return new CassandraCounterFactory().setRowCacheMaxDataPoints(86400 * 10)
+                .setRowCacheExpireMs(EXPIRE_MS);
+    }
+
+    @org.junit.Test
+    public void testWritesInvalidateCachedRow() {
+        final long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 5);
+        // loads the row into the cache
+        assertEquals(5, counterAdd.get(timestamp).value());
+
+        counterAdd.add(timestamp, 6);
+        counterAdd.add(timestamp + 1000, 1);
+        assertEquals(11, counterAdd.get(timestamp).value());
+        assertEquals(1, counterAdd.get(timestamp + 1000).value());
+
+        counterSet.set(timestamp, 5);
+        assertEquals(5, counterSet.get(timestamp).value());
+        counterSet.set(timestamp, 3);
+        assertEquals(3, counterSet.get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testRangeReadAfterWrites() throws InterruptedException {
+        final long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            counterAdd.add(timestamp + i * 1000, i);
+        }
+        DataPoint[] dataPoints = counterAdd.getSeries(timestamp, timestamp + 10 * 1000 - 1);
+        counterAdd.add(timestamp + 5000, 10);
+        dataPoints = counterAdd.getSeries(timestamp, timestamp + 10 * 1000 - 1);
+        assertEquals(15, dataPoints[5].value());
+
+        // the row is reloaded once expired
+        Thread.sleep(EXPIRE_MS * 2);
+        dataPoints = counterAdd.getSeries(timestamp, timestamp + 10 * 1000 - 1);
+        assertEquals(15, dataPoints[5].value());
+    }
+
+    @org.junit.Test
+    public void testStreamBypassesRowCache() {
+        CounterMetrics metrics = new CounterMetrics();
+        ((AbstractCounterFactory) counterFactory).setMetrics(metrics);
+        try {
+            final long timestamp = System.currentTimeMillis();
+            counterAdd.add(timestamp, 5);
+            final long[] sum = { 0 };
+            counterAdd.streamSeries(timestamp - 2 * 86400000L, timestamp + 86400000L, 1,
+                    DataPoint.Type.SUM, new ISeriesConsumer() {
+                        @Override
+                        public boolean consume(LongSeries chunk) {
+                            for (int i = 0, n = chunk.size(); i < n; i++) {
+                                sum[0] += chunk.value(i);
+                            }
+                            return true;
+                        }
+                    });
+            assertEquals(5, sum[0]);
+            CounterMetricsSnapshot snapshot = metrics.snapshot();
+            assertEquals(0, snapshot.getCacheHits(ICounterMetrics.CACHE_CASSANDRA_ROW));
+            assertEquals(0, snapshot.getCacheMisses(ICounterMetrics.CACHE_CASSANDRA_ROW));
+
+            // regular reads still load the row into the cache
+            counterAdd.getSeries(timestamp - 86400000L, timestamp + 86400000L);
+            counterAdd.getSeries(timestamp - 86400000L, timestamp + 86400000L);
+            snapshot = metrics.snapshot();
+            assertTrue(snapshot.getCacheHits(ICounterMetrics.CACHE_CASSANDRA_ROW) > 0);
+        } finally {
+            metrics.unregisterMBean();
+        }
+    }
+
+    /**
+     * Readers load the day row while writers add to it: a row loaded while an
+     * add is in flight must not stay cached once the add completes.
+     */
+    private void concurrentAddsAndReads(String counterName) throws Exception {
+        final int numWriters = 4, numReaders = 4, numAdds = 200;
+        final IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(counterName);
+        final ICounter counter = counterFactory.getCounter(counterName);
+        final long timestamp = System.currentTimeMillis();
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(timestamp);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        final long dayStart = cal.getTimeInMillis();
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        final long dayEnd = cal.getTimeInMillis() - 1;
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>(), readers = new ArrayList<>();
+        for (int i = 0; i < numWriters; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < numAdds; j++) {
+                            asyncCounter.add(timestamp, 1).get();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            t.start();
+            writers.add(t);
+        }
+        for (int i = 0; i < numReaders; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            // full day reads go through the row cache
+                            counter.getSeries(dayStart, dayEnd);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            t.start();
+            readers.add(t);
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+
+        // completion callbacks of the last writes run on driver threads
+        Thread.sleep(100);
+        long expected = numWriters * numAdds;
+        assertEquals(expected, counter.get(timestamp).value());
+        long sum = 0;
+        for (DataPoint dp : counter.getSeries(dayStart, dayEnd)) {
+            sum += dp.value();
+        }
+        assertEquals(expected, sum);
+    }
+
+    @org.junit.Test
+    public void testConcurrentAddsAndReadsCounterColumn() throws Exception {
+        concurrentAddsAndReads(COUNTER_NAME_ADD);
+    }
+
+    @org.junit.Test
+    public void testConcurrentAddsAndReadsLog() throws Exception {
+        concurrentAddsAndReads(COUNTER_NAME_LOG);
+    }
+}
@@ -0,0 +1,298 @@
+package com.github.ddth.tsc.test.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.github.ddth.tsc.internal.NonPinningLoadingCache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link NonPinningLoadingCache}.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class NonPinningLoadingCacheTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName
+     *            name of the test case
+     */
+    public NonPinningLoadingCacheTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(NonPinningLoadingCacheTest.class);
+    }
+
+    /**
+     * Loads {@code "<key>#<n>"} ({@code n}: number of loads so far), once
+     * {@link #release} is opened. Keys {@code "error"}, {@code "unchecked"},
+     * {@code "checked"} and {@code "null"} fail. Values removed from the
+     * cache or discarded are recorded in {@link #released}.
+     */
+    private static class TestCache extends NonPinningLoadingCache<String> {
+        final AtomicInteger numLoads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        volatile CountDownLatch release = new CountDownLatch(0);
+        final Queue<String> released;
+
+        TestCache() {
+            this(new ConcurrentLinkedQueue<String>());
+        }
+
+        private TestCache(final Queue<String> released) {
+            super(CacheBuilder.newBuilder().removalListener(new RemovalListener<String, String>() {
+                @Override
+                public void onRemoval(RemovalNotification<String, String> notification) {
+                    released.add(notification.getValue());
+                }
+            }).<String, String> build());
+            this.released = released;
+        }
+
+        @Override
+        protected void discard(String value) {
+            released.add(value);
+        }
+
+        @Override
+        protected String load(String key) throws Exception {
+            int n = numLoads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            if ("error".equals(key)) {
+                throw new AssertionError(key);
+            }
+            if ("unchecked".equals(key)) {
+                throw new IllegalStateException(key);
+            }
+            if ("checked".equals(key)) {
+                throw new IOException(key);
+            }
+            return "null".equals(key) ? null : key + "#" + n;
+        }
+    }
+
+    /**
+     * Calls {@link NonPinningLoadingCache#get(String)} in a new thread.
+     */
+    private static Thread startGet(final TestCache cache, final String key,
+            final AtomicReference<Object> result) {
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result.set(cache.get(key));
+                } catch (Throwable e) {
+                    result.set(e);
+                }
+            }
+        };
+        t.start();
+        return t;
+    }
+
+    @org.junit.Test
+    public void testGet() throws Exception {
+        TestCache cache = new TestCache();
+        assertEquals("a#1", cache.get("a"));
+        assertEquals("a#1", cache.get("a"));
+        assertEquals("a#1", cache.getCache().getIfPresent("a"));
+        assertEquals("b#2", cache.get("b"));
+        assertEquals(2, cache.numLoads.get());
+    }
+
+    @org.junit.Test
+    public void testConcurrentLoadsDeduplicated() throws Exception {
+        final int numThreads = 16;
+        final TestCache cache = new TestCache();
+        cache.release = new CountDownLatch(1);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(numThreads);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            final int index = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        results.set(index, cache.get("a"));
+                    } catch (Throwable e) {
+                        results.set(index, e);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        assertTrue(cache.loading.await(10, TimeUnit.SECONDS));
+        // let the other threads reach the in-flight load
+        Thread.sleep(100);
+        cache.release.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, cache.numLoads.get());
+        for (int i = 0; i < numThreads; i++) {
+            assertEquals("a#1", results.get(i));
+        }
+    }
+
+    @org.junit.Test
+    public void testExceptionWrapping() throws Exception {
+        TestCache cache = new TestCache();
+        try {
+            cache.get("error");
+            fail("ExecutionError expected");
+        } catch (ExecutionError e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        try {
+            cache.get("unchecked");
+            fail("UncheckedExecutionException expected");
+        } catch (UncheckedExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            cache.get("checked");
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            cache.get("null");
+            fail("UncheckedExecutionException expected");
+        } catch (UncheckedExecutionException e) {
+            assertTrue(e.getCause() instanceof InvalidCacheLoadException);
+        }
+
+        // failures are not cached
+        assertEquals(4, cache.numLoads.get());
+        try {
+            cache.get("checked");
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+        }
+        assertEquals(5, cache.numLoads.get());
+    }
+
+    /**
+     * Callers waiting for an in-flight load get its exception, wrapped the
+     * same way.
+     */
+    @org.junit.Test
+    public void testExceptionWrappingConcurrentCallers() throws Exception {
+        String[] keys = { "error", "unchecked", "checked" };
+        Class<?>[] wrappers = { ExecutionError.class, UncheckedExecutionException.class,
+                ExecutionException.class };
+        for (int i = 0; i < keys.length; i++) {
+            TestCache cache = new TestCache();
+            cache.release = new CountDownLatch(1);
+            AtomicReference<Object> result1 = new AtomicReference<>();
+            AtomicReference<Object> result2 = new AtomicReference<>();
+            Thread t1 = startGet(cache, keys[i], result1);
+            assertTrue(cache.loading.await(10, TimeUnit.SECONDS));
+            Thread t2 = startGet(cache, keys[i], result2);
+            Thread.sleep(100);
+            cache.release.countDown();
+            t1.join();
+            t2.join();
+            assertEquals(1, cache.numLoads.get());
+            assertTrue(keys[i], wrappers[i].isInstance(result1.get()));
+            assertTrue(keys[i], wrappers[i].isInstance(result2.get()));
+        }
+    }
+
+    @org.junit.Test
+    public void testInvalidateDuringLoad() throws Exception {
+        TestCache cache = new TestCache();
+        cache.release = new CountDownLatch(1);
+        AtomicReference<Object> result = new AtomicReference<>();
+        Thread t = startGet(cache, "a", result);
+        assertTrue(cache.loading.await(10, TimeUnit.SECONDS));
+        cache.invalidate("a");
+        cache.release.countDown();
+        t.join();
+
+        // the stale value is released, the caller gets a reloaded one
+        assertEquals("a#2", result.get());
+        assertEquals("a#2", cache.getCache().getIfPresent("a"));
+        assertEquals("[a#1]", cache.released.toString());
+        assertEquals("a#2", cache.get("a"));
+
+        cache.invalidate("a");
+        assertNull(cache.getCache().getIfPresent("a"));
+        assertEquals("[a#1, a#2]", cache.released.toString());
+        assertEquals("a#3", cache.get("a"));
+    }
+
+    @org.junit.Test
+    public void testInvalidateAllDuringLoad() throws Exception {
+        TestCache cache = new TestCache();
+        cache.getCache().put("b", "b#0");
+        cache.release = new CountDownLatch(1);
+        AtomicReference<Object> result = new AtomicReference<>();
+        Thread t = startGet(cache, "a", result);
+        assertTrue(cache.loading.await(10, TimeUnit.SECONDS));
+        cache.invalidateAll();
+        cache.release.countDown();
+        t.join();
+
+        assertEquals("a#2", result.get());
+        assertEquals("a#2", cache.getCache().getIfPresent("a"));
+        assertNull(cache.getCache().getIfPresent("b"));
+        assertTrue(cache.released.contains("a#1"));
+        assertFalse(cache.released.contains("a#2"));
+    }
+
+    /**
+     * A load started after an invalidation is not affected by it, and is not
+     * de-duplicated with the invalidated one. The invalidated load hands out
+     * the newer value and discards its own.
+     */
+    @org.junit.Test
+    public void testLoadAfterInvalidate() throws Exception {
+        final TestCache cache = new TestCache();
+        cache.release = new CountDownLatch(1);
+        AtomicReference<Object> result1 = new AtomicReference<>();
+        Thread t1 = startGet(cache, "a", result1);
+        assertTrue(cache.loading.await(10, TimeUnit.SECONDS));
+        cache.invalidate("a");
+        CountDownLatch release1 = cache.release;
+        cache.release = new CountDownLatch(0);
+
+        // not blocked by the in-flight (invalidated) load
+        assertEquals("a#2", cache.get("a"));
+        release1.countDown();
+        t1.join();
+        assertEquals("a#2", result1.get());
+        assertEquals("a#2", cache.get("a"));
+        assertEquals("[a#1]", cache.released.toString());
+    }
+}
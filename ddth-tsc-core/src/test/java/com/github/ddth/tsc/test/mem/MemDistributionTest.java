@@ -0,0 +1,55 @@
+package com.github.ddth.tsc.test.mem;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.IDistributionCounter;
+import com.github.ddth.tsc.mem.InmemCounterFactory;
+import com.github.ddth.tsc.mem.InmemDistributionCounter;
+import com.github.ddth.tsc.test.BaseDistributionTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link InmemDistributionCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class MemDistributionTest extends BaseDistributionTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public MemDistributionTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(MemDistributionTest.class);
+    }
+
+    @Override
+    protected ICounterFactory createCounterFactory() {
+        return new InmemCounterFactory().init();
+    }
+
+    @org.junit.Test
+    public void testMaxNumBlocks() {
+        InmemDistributionCounter counter = (InmemDistributionCounter) counterFactory
+                .getDistributionCounter(COUNTER_NAME_DIST);
+        assertEquals(InmemDistributionCounter.DEFAULT_MAX_NUM_BLOCKS, counter.getMaxNumBlocks());
+
+        IDistributionCounter evicting = counterFactory.getDistributionCounter("evicting");
+        long timestamp = System.currentTimeMillis();
+        evicting.add(timestamp, 1);
+        evicting.add(timestamp + InmemDistributionCounter.DEFAULT_MAX_NUM_BLOCKS
+                * (long) AbstractCounter.RESOLUTION_MS, 1);
+        assertEquals(0, evicting.get(timestamp).value());
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.ddth.tsc.test.mem;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.mem.InmemCounter;
+import com.github.ddth.tsc.mem.InmemCounterFactory;
+import com.github.ddth.tsc.test.BaseCounterTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link InmemCounter}, old data points are evicted.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class MemMaxNumBlocksTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     *
+     * @param testName
+     *            name of the test case
+     */
+    public MemMaxNumBlocksTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(MemMaxNumBlocksTest.class);
+    }
+
+    private final static int MAX_NUM_BLOCKS = 60;
+
+    @Override
+    protected ICounterFactory createCounterFactory() {
+        return new InmemCounterFactory().setMaxNumBlocks(MAX_NUM_BLOCKS)
+                .setMaxNumBlocks(COUNTER_NAME_SET, 2 * MAX_NUM_BLOCKS).init();
+    }
+
+    private void verifyEviction(ICounter counter, int maxNumBlocks) {
+        final long VALUE = 3;
+        final int NUM_BLOCKS = 3 * maxNumBlocks;
+
+        long timestampStart = System.currentTimeMillis();
+        timestampStart -= timestampStart % AbstractCounter.RESOLUTION_MS;
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            counter.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, VALUE);
+        }
+
+        DataPoint[] dataPoints = counter.getSeries(timestampStart,
+                timestampStart + NUM_BLOCKS * AbstractCounter.RESOLUTION_MS - 1);
+        assertEquals(NUM_BLOCKS, dataPoints.length);
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            if (i < NUM_BLOCKS - maxNumBlocks) {
+                // evicted
+                assertEquals(Type.NONE, dataPoints[i].type());
+            } else {
+                assertEquals(VALUE, dataPoints[i].value());
+            }
+        }
+
+        // data point that has been evicted can not be written to
+        counter.add(timestampStart, VALUE);
+        assertEquals(Type.NONE, counter.get(timestampStart).type());
+    }
+
+    @org.junit.Test
+    public void testMaxNumBlocks() {
+        verifyEviction(counterAdd, MAX_NUM_BLOCKS);
+    }
+
+    @org.junit.Test
+    public void testMaxNumBlocksPerCounter() {
+        verifyEviction(counterSet, 2 * MAX_NUM_BLOCKS);
+    }
+
+    @org.junit.Test
+    public void testWithoutInit() {
+        InmemCounter counter = new InmemCounter("standalone").setMaxNumBlocks(MAX_NUM_BLOCKS);
+        long timestamp = System.currentTimeMillis();
+        counter.add(timestamp, 2);
+        counter.add(timestamp, 3);
+        assertEquals(5, counter.get(timestamp).value());
+        verifyEviction(counter, MAX_NUM_BLOCKS);
+    }
+}
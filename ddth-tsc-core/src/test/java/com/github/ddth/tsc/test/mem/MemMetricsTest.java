@@ -0,0 +1,46 @@
+package com.github.ddth.tsc.test.mem;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.metrics.CounterMetricsSnapshot;
+import com.github.ddth.tsc.mem.InmemCounter;
+import com.github.ddth.tsc.mem.InmemCounterFactory;
+import com.github.ddth.tsc.test.BaseMetricsTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link InmemCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class MemMetricsTest extends BaseMetricsTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public MemMetricsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(MemMetricsTest.class);
+    }
+
+    @Override
+    protected ICounterFactory createCounterFactory() {
+        return new InmemCounterFactory().init();
+    }
+
+    @Override
+    protected void assertBackendCommands(CounterMetricsSnapshot snapshot) {
+        assertTrue(snapshot.getBackendCommands().isEmpty());
+        assertEquals(0, snapshot.getConnectionWait().getCount());
+    }
+}
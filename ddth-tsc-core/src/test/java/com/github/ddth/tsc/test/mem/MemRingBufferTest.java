@@ -0,0 +1,159 @@
+package com.github.ddth.tsc.test.mem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.ddth.tsc.mem.internal.LongRingBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link LongRingBuffer}, concurrent writers.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class MemRingBufferTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName
+     *            name of the test case
+     */
+    public MemRingBufferTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(MemRingBufferTest.class);
+    }
+
+    protected final static int CAPACITY = 4;
+    protected final static int NUM_THREADS = 8;
+    protected final static int NUM_PHASES = 500;
+    protected final static int NUM_ADDS = 50;
+
+    protected LongRingBuffer newRingBuffer(int capacity) {
+        return new LongRingBuffer(capacity);
+    }
+
+    /**
+     * Writes of a phase, run by {@link #NUM_THREADS} threads at the same time.
+     */
+    protected static interface Phase {
+        void write(int p);
+
+        /**
+         * Checks the result of phase {@code p}, after all threads are done.
+         *
+         * @param p
+         * @return error message, {@code null} if OK
+         */
+        String check(int p);
+    }
+
+    protected void runPhases(final Phase phase) throws Exception {
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final int[] p = { 0 };
+        final CyclicBarrier barrier = new CyclicBarrier(NUM_THREADS, new Runnable() {
+            @Override
+            public void run() {
+                String error = phase.check(p[0]);
+                if (error != null) {
+                    failure.compareAndSet(null, "Phase " + p[0] + ": " + error);
+                }
+                p[0]++;
+            }
+        });
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < NUM_PHASES; i++) {
+                            phase.write(i);
+                            barrier.await();
+                        }
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e.toString());
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get(), failure.get());
+        assertEquals(NUM_PHASES, p[0]);
+    }
+
+    /**
+     * Expected value of slot {@code p} after phase {@code p}: it is written
+     * in phases {@code p-1} and {@code p}.
+     *
+     * @param p
+     * @return
+     */
+    protected static long expectedSum(int p) {
+        return (p == 0 ? 1 : 2) * (long) NUM_THREADS * NUM_ADDS;
+    }
+
+    /**
+     * In phase {@code p}, each thread adds to slots {@code p} and {@code p+1}
+     * (claiming a new generation of its ring entry), and to the slot
+     * {@code p+1} evicts. When a phase ends, slot {@code p} must hold exactly
+     * the adds of phases {@code p-1} and {@code p}: late writes to an evicted
+     * slot never leak into the newer one.
+     */
+    @org.junit.Test
+    public void testConcurrentAddsWrapAround() throws Exception {
+        final LongRingBuffer ring = newRingBuffer(CAPACITY);
+        runPhases(new Phase() {
+            @Override
+            public void write(int p) {
+                for (int i = 0; i < NUM_ADDS; i++) {
+                    ring.add(p, 1);
+                    ring.add(p + 1, 1);
+                    ring.add(p + 1 - CAPACITY, 1000);
+                }
+            }
+
+            @Override
+            public String check(int p) {
+                if (ring.get(p) != expectedSum(p)) {
+                    return "slot " + p + ": expected " + expectedSum(p) + ", got " + ring.get(p);
+                }
+                return ring.contains(p - CAPACITY) ? "slot " + (p - CAPACITY) + " not evicted"
+                        : null;
+            }
+        });
+    }
+
+    @org.junit.Test
+    public void testEvictedSlotIsReset() {
+        LongRingBuffer ring = newRingBuffer(CAPACITY);
+        ring.add(1, 5);
+        ring.set(2, 7);
+        assertTrue(ring.add(1 + CAPACITY, 1));
+        assertFalse(ring.contains(1));
+        assertEquals(0, ring.get(1));
+        assertEquals(1, ring.get(1 + CAPACITY));
+        assertFalse(ring.add(1, 1));
+        assertFalse(ring.set(1, 1));
+        assertEquals(1, ring.get(1 + CAPACITY));
+
+        assertTrue(ring.set(2 + CAPACITY, 3));
+        assertEquals(3, ring.get(2 + CAPACITY));
+        assertEquals(0, ring.get(2));
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.ddth.tsc.test.mem;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.mem.InmemCounterFactory;
+import com.github.ddth.tsc.mem.internal.LongRingBuffer;
+import com.github.ddth.tsc.mem.internal.StripedLongRingBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link StripedLongRingBuffer} and striped
+ * {@link com.github.ddth.tsc.mem.InmemCounter}s, concurrent writers to the
+ * same and adjacent slots, while hot slots retire and the ring wraps around.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class MemStripedRingBufferTest extends MemRingBufferTest {
+    /**
+     * Create the test case
+     *
+     * @param testName
+     *            name of the test case
+     */
+    public MemStripedRingBufferTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(MemStripedRingBufferTest.class);
+    }
+
+    private final static int HOT_WINDOW_SIZE = 2;
+
+    @Override
+    protected LongRingBuffer newRingBuffer(int capacity) {
+        return new StripedLongRingBuffer(capacity, HOT_WINDOW_SIZE, NUM_THREADS);
+    }
+
+    @org.junit.Test
+    public void testStripedCounterConcurrentAdds() throws Exception {
+        InmemCounterFactory counterFactory = new InmemCounterFactory();
+        counterFactory.setStripedWrites(true).setHotWindowSize(HOT_WINDOW_SIZE)
+                .setMaxNumBlocks(CAPACITY).init();
+        try {
+            final ICounter counter = counterFactory.getCounter("striped");
+            long now = System.currentTimeMillis();
+            final long timestampStart = now - now % AbstractCounter.RESOLUTION_MS;
+            runPhases(new Phase() {
+                private long timestamp(int p) {
+                    return timestampStart + p * (long) AbstractCounter.RESOLUTION_MS;
+                }
+
+                @Override
+                public void write(int p) {
+                    for (int i = 0; i < NUM_ADDS; i++) {
+                        counter.add(timestamp(p), 1);
+                        counter.add(timestamp(p + 1), 1);
+                    }
+                }
+
+                @Override
+                public String check(int p) {
+                    long value = counter.get(timestamp(p)).value();
+                    if (value != expectedSum(p)) {
+                        return "data point " + p + ": expected " + expectedSum(p) + ", got "
+                                + value;
+                    }
+                    if (p >= CAPACITY
+                            && counter.get(timestamp(p - CAPACITY)).type() != Type.NONE) {
+                        return "data point " + (p - CAPACITY) + " not evicted";
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            counterFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.ddth.tsc.test.redis;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.RedisCounter;
+import com.github.ddth.tsc.test.BaseAsyncTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link RedisCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisAsyncTest extends BaseAsyncTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public RedisAsyncTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(RedisAsyncTest.class);
+    }
+
+    private final RedisFixture redis = new RedisFixture();
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+        redis.stop();
+    }
+}
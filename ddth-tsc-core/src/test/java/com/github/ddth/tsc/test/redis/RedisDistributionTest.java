@@ -0,0 +1,87 @@
+package com.github.ddth.tsc.test.redis;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.AbstractDistributionCounter;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.IDistributionCounter;
+import com.github.ddth.tsc.redis.RedisCounterFactory;
+import com.github.ddth.tsc.redis.RedisDistributionCounter;
+import com.github.ddth.tsc.test.BaseDistributionTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link RedisDistributionCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisDistributionTest extends BaseDistributionTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public RedisDistributionTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(RedisDistributionTest.class);
+    }
+
+    private final RedisFixture redis = new RedisFixture();
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            RedisCounterFactory factory = redis.start();
+            // pending values are flushed explicitly by tests
+            factory.setSketchFlushIntervalMs(3600000);
+            return factory.init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @org.junit.Test
+    public void testLocalAccumulation() {
+        IDistributionCounter counter = counterFactory.getDistributionCounter(COUNTER_NAME_DIST);
+        long timestamp = System.currentTimeMillis();
+        for (long v = 1; v <= 100; v++) {
+            counter.add(timestamp, v);
+        }
+        // pending values are visible locally only
+        assertEquals(100, counter.get(timestamp).value());
+        RedisCounterFactory other = new RedisCounterFactory()
+                .setRedisHostAndPort(RedisFixture.REDIS_HOST_AND_PORT);
+        other.setSketchFlushIntervalMs(0).init();
+        try {
+            IDistributionCounter otherCounter = other.getDistributionCounter(COUNTER_NAME_DIST);
+            assertEquals(0, otherCounter.get(timestamp).value());
+            ((AbstractDistributionCounter) counter).flush();
+            assertEquals(100, otherCounter.get(timestamp).value());
+            assertEquals(100, counter.get(timestamp).value());
+
+            otherCounter.add(timestamp, 1000);
+            assertEquals(101, counter.get(timestamp).value());
+            assertEquals(1000, counter.get(timestamp).sketch().max());
+        } finally {
+            other.destroy();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        // destroys the counter factory, flushing pending values, while Redis is up
+        super.tearDown();
+        redis.stop();
+    }
+}
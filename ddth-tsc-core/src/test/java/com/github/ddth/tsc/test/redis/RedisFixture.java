@@ -0,0 +1,54 @@
+package com.github.ddth.tsc.test.redis;
+
+import java.io.IOException;
+
+import com.github.ddth.tsc.redis.RedisCounterFactory;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Embedded Redis server for test cases.
+ * 
+ * <p>
+ * Usage: {@link #start()} in {@code createCounterFactory()}, {@link #stop()}
+ * in {@code tearDown()} <i>after</i> destroying the counter factory, so that
+ * it flushes its pending values while Redis is still up.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisFixture {
+    public final static String REDIS_HOST = "127.0.0.1";
+    public final static int REDIS_PORT = 16379;
+    public final static String REDIS_HOST_AND_PORT = REDIS_HOST + ":" + REDIS_PORT;
+
+    private RedisServer redisServer;
+
+    /**
+     * Starts the Redis server.
+     * 
+     * @return a counter factory connecting to the server, to be customized
+     *         then initialized by the caller
+     * @throws IOException
+     */
+    public RedisCounterFactory start() throws IOException {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        return new RedisCounterFactory().setRedisHostAndPort(REDIS_HOST_AND_PORT);
+    }
+
+    /**
+     * Stops the Redis server, if started.
+     */
+    public void stop() {
+        if (redisServer != null) {
+            try {
+                redisServer.stop();
+            } catch (Exception e) {
+            } finally {
+                redisServer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.ddth.tsc.test.redis;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.metrics.CounterMetricsSnapshot;
+import com.github.ddth.tsc.redis.RedisCounter;
+import com.github.ddth.tsc.test.BaseMetricsTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link RedisCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisMetricsTest extends BaseMetricsTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public RedisMetricsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(RedisMetricsTest.class);
+    }
+
+    private final RedisFixture redis = new RedisFixture();
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+        redis.stop();
+    }
+
+    @Override
+    protected void assertBackendCommands(CounterMetricsSnapshot snapshot) {
+        assertEquals(2, snapshot.getBackendCommands("EVALSHA"));
+        assertEquals(1, snapshot.getBackendCommands("HGET"));
+        assertEquals(3, snapshot.getConnectionWait().getCount());
+    }
+
+    @Override
+    protected void assertBatches(CounterMetricsSnapshot snapshot) {
+        assertEquals(1, snapshot.getBatches());
+        assertEquals(2, snapshot.getBatchedWrites());
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.ddth.tsc.test.redis;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.RedisCounter;
+import com.github.ddth.tsc.redis.RedisCounterFactory;
+import com.github.ddth.tsc.test.BaseCounterTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import redis.clients.jedis.Jedis;
+
+/**
+ * Test cases for {@link RedisCounter}, buckets expire.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisTtlTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     *
+     * @param testName
+     *            name of the test case
+     */
+    public RedisTtlTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(RedisTtlTest.class);
+    }
+
+    private final RedisFixture redis = new RedisFixture();
+    private final static int TTL_SECONDS = 3600;
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().setTtl(TTL_SECONDS).init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+        redis.stop();
+    }
+
+    private long ttlOfBucket(long timestamp) {
+        long bucketId = timestamp - timestamp % (60 * AbstractCounter.RESOLUTION_MS);
+        try (Jedis jedis = new Jedis(RedisFixture.REDIS_HOST, RedisFixture.REDIS_PORT)) {
+            return jedis.ttl(COUNTER_NAME_ADD + ":" + bucketId);
+        }
+    }
+
+    @org.junit.Test
+    public void testExpire() {
+        long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 1);
+        long ttl = ttlOfBucket(timestamp);
+        assertTrue(ttl > 0 && ttl <= TTL_SECONDS);
+
+        counterAdd.set(timestamp, 2);
+        ttl = ttlOfBucket(timestamp);
+        assertTrue(ttl > 0 && ttl <= TTL_SECONDS);
+        assertEquals(2, counterAdd.get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testScriptReloaded() {
+        long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 1);
+        try (Jedis jedis = new Jedis(RedisFixture.REDIS_HOST, RedisFixture.REDIS_PORT)) {
+            jedis.scriptFlush();
+        }
+        counterAdd.add(timestamp, 1);
+        assertEquals(2, counterAdd.get(timestamp).value());
+        assertTrue(ttlOfBucket(timestamp) > 0);
+    }
+
+    private long ttlOfRollupBucket(Jedis jedis, String counterName, int steps, long timestamp) {
+        long blockSizeMs = steps * (long) AbstractCounter.RESOLUTION_MS;
+        long block = timestamp - timestamp % blockSizeMs;
+        long bucketId = block - block % (60 * blockSizeMs);
+        return jedis.ttl(counterName + "@" + steps + ":" + bucketId);
+    }
+
+    @org.junit.Test
+    public void testRollupExpire() {
+        final long ROLLUP_TTL_SECONDS = 2 * TTL_SECONDS;
+        long timestamp = System.currentTimeMillis();
+        RedisCounterFactory rollupFactory = new RedisCounterFactory();
+        rollupFactory.setRedisHostAndPort(RedisFixture.REDIS_HOST_AND_PORT).setTtl(TTL_SECONDS)
+                .setRollupSteps(60, 3600).init();
+        RedisCounterFactory fixedTtlFactory = new RedisCounterFactory();
+        fixedTtlFactory.setRedisHostAndPort(RedisFixture.REDIS_HOST_AND_PORT).setTtl(TTL_SECONDS)
+                .setRollupTtl((int) ROLLUP_TTL_SECONDS).setRollupSteps(60, 3600).init();
+        try (Jedis jedis = new Jedis(RedisFixture.REDIS_HOST, RedisFixture.REDIS_PORT)) {
+            // default: scaled by steps
+            rollupFactory.getCounter("scaled").add(timestamp, 1);
+            long ttl = ttlOfRollupBucket(jedis, "scaled", 60, timestamp);
+            assertTrue(ttl > TTL_SECONDS * 59L && ttl <= TTL_SECONDS * 60L);
+            ttl = ttlOfRollupBucket(jedis, "scaled", 3600, timestamp);
+            assertTrue(ttl > TTL_SECONDS * 3599L && ttl <= TTL_SECONDS * 3600L);
+
+            fixedTtlFactory.getCounter("fixed").set(timestamp, 1);
+            for (int steps : new int[] { 60, 3600 }) {
+                ttl = ttlOfRollupBucket(jedis, "fixed", steps, timestamp);
+                assertTrue(ttl > TTL_SECONDS && ttl <= ROLLUP_TTL_SECONDS);
+            }
+        } finally {
+            rollupFactory.destroy();
+            fixedTtlFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.ddth.tsc.test.redis;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.IUniqueCounter;
+import com.github.ddth.tsc.redis.RedisCounterFactory;
+import com.github.ddth.tsc.redis.RedisUniqueCounter;
+import com.github.ddth.tsc.test.BaseUniqueTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import redis.clients.jedis.Jedis;
+
+/**
+ * Test cases for {@link RedisUniqueCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisUniqueTest extends BaseUniqueTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public RedisUniqueTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(RedisUniqueTest.class);
+    }
+
+    private final RedisFixture redis = new RedisFixture();
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    /**
+     * Full hours are counted over the hour keys: the count survives the loss
+     * of the 1-second keys.
+     */
+    @org.junit.Test
+    public void testTierKeys() {
+        IUniqueCounter counter = counterFactory.getUniqueCounter(COUNTER_NAME_UNIQUE);
+        long hourMs = 3600 * AbstractCounter.RESOLUTION_MS;
+        long hourStart = System.currentTimeMillis() / hourMs * hourMs - 2 * hourMs;
+        for (int i = 0; i < 200; i++) {
+            counter.add(hourStart + i * 17 * AbstractCounter.RESOLUTION_MS, "user-" + i);
+        }
+        counter.add(hourStart + hourMs, "user-next-hour");
+
+        DataPoint[] series = counter.getSeries(hourStart, hourStart + 2 * hourMs, 3600);
+        assertEquals(2, series.length);
+        assertEquals(200, series[0].value(), 200 * 0.03);
+        assertEquals(1, series[1].value());
+
+        try (Jedis jedis = ((RedisCounterFactory) counterFactory).getJedis()) {
+            for (String key : jedis.keys(COUNTER_NAME_UNIQUE + ":*")) {
+                jedis.del(key);
+            }
+            assertTrue(jedis.ttl(COUNTER_NAME_UNIQUE + "@3600:" + hourStart) > 0);
+        }
+        series = counter.getSeries(hourStart, hourStart + 2 * hourMs, 3600);
+        assertEquals(200, series[0].value(), 200 * 0.03);
+        assertEquals(1, series[1].value());
+        // a partial hour needs the 1-second keys
+        assertEquals(0, counter.get(hourStart).value());
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+        redis.stop();
+    }
+}
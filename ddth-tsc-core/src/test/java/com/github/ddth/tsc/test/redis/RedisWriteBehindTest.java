@@ -0,0 +1,219 @@
+package com.github.ddth.tsc.test.redis;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.AbstractCounter;
+import com.github.ddth.tsc.DataPoint;
+import com.github.ddth.tsc.DataPoint.Type;
+import com.github.ddth.tsc.IAsyncCounter;
+import com.github.ddth.tsc.ICounter;
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.RedisCounter;
+import com.github.ddth.tsc.redis.RedisCounterFactory;
+import com.github.ddth.tsc.test.BaseCounterTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import redis.clients.jedis.Jedis;
+
+/**
+ * Test cases for {@link RedisCounter}, write-behind mode.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class RedisWriteBehindTest extends BaseCounterTest {
+    /**
+     * Create the test case
+     *
+     * @param testName
+     *            name of the test case
+     */
+    public RedisWriteBehindTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(RedisWriteBehindTest.class);
+    }
+
+    private final RedisFixture redis = new RedisFixture();
+    private final static long MAX_STALENESS_MS = 100;
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().setWriteBehind(true)
+                    .setWriteBehindMaxStalenessMs(MAX_STALENESS_MS).init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+        redis.stop();
+    }
+
+    @org.junit.Test
+    public void testWriteBehindAdd() throws InterruptedException {
+        final long VALUE = 5;
+        final int NUM_LOOP = 1000;
+        final int NUM_THREAD = 4;
+        final long timestamp = System.currentTimeMillis();
+
+        Thread[] threads = new Thread[NUM_THREAD];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < NUM_LOOP; i++) {
+                        counterAdd.add(timestamp, VALUE);
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Thread.sleep(MAX_STALENESS_MS * 5);
+
+        long delta = timestamp % AbstractCounter.RESOLUTION_MS;
+        long key = timestamp - delta;
+        DataPoint dataPoint = counterAdd.get(timestamp);
+        assertEquals(VALUE * NUM_LOOP * NUM_THREAD, dataPoint.value());
+        assertEquals(key, dataPoint.timestamp());
+    }
+
+    @org.junit.Test
+    public void testWriteBehindSet() throws InterruptedException {
+        final long VALUE = 7;
+        final long timestamp = System.currentTimeMillis();
+
+        counterSet.add(timestamp, 100);
+        counterSet.set(timestamp, VALUE);
+        counterSet.add(timestamp, 1);
+        Thread.sleep(MAX_STALENESS_MS * 5);
+
+        assertEquals(VALUE + 1, counterSet.get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testAsyncWritesCompleteInline() throws Exception {
+        ((RedisCounterFactory) counterFactory).setAsyncExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("writes must not use the executor");
+            }
+        });
+        IAsyncCounter asyncCounter = counterFactory.getAsyncCounter(COUNTER_NAME_ADD);
+        long timestamp = System.currentTimeMillis();
+        CompletableFuture<Void> add = asyncCounter.add(timestamp, 3);
+        CompletableFuture<Void> set = asyncCounter.set(timestamp + 1000, 7);
+        assertTrue(add.isDone() && !add.isCompletedExceptionally());
+        assertTrue(set.isDone() && !set.isCompletedExceptionally());
+
+        Thread.sleep(MAX_STALENESS_MS * 5);
+        assertEquals(3, counterAdd.get(timestamp).value());
+        assertEquals(7, counterAdd.get(timestamp + 1000).value());
+    }
+
+    @org.junit.Test
+    public void testFlushOnDestroy() throws Exception {
+        final long VALUE = 3;
+        final long timestamp = System.currentTimeMillis();
+
+        RedisCounterFactory slowFactory = new RedisCounterFactory()
+                .setRedisHostAndPort(RedisFixture.REDIS_HOST_AND_PORT).setWriteBehind(true)
+                .setWriteBehindMaxStalenessMs(3600000).init();
+        try {
+            slowFactory.getCounter(COUNTER_NAME_ADD).add(timestamp, VALUE);
+            assertEquals(Type.NONE, counterAdd.get(timestamp).type());
+        } finally {
+            slowFactory.destroy();
+        }
+        assertEquals(VALUE, counterAdd.get(timestamp).value());
+    }
+
+    @org.junit.Test
+    public void testWriteBehindRollups() throws Exception {
+        long now = System.currentTimeMillis();
+        final long timestampStart = now - now % (60 * AbstractCounter.RESOLUTION_MS)
+                - 120 * AbstractCounter.RESOLUTION_MS;
+
+        RedisCounterFactory rollupFactory = new RedisCounterFactory();
+        rollupFactory.setRedisHostAndPort(RedisFixture.REDIS_HOST_AND_PORT).setWriteBehind(true)
+                .setWriteBehindMaxStalenessMs(MAX_STALENESS_MS)
+                .setRollupSteps(AbstractCounter.DEFAULT_ROLLUP_STEPS).init();
+        try {
+            ICounter counter = rollupFactory.getCounter("rollups");
+            for (int i = 0; i < 120; i++) {
+                counter.add(timestampStart + i * AbstractCounter.RESOLUTION_MS, 2);
+            }
+            counter.set(timestampStart, 10);
+            counter.add(timestampStart, 1);
+            Thread.sleep(MAX_STALENESS_MS * 5);
+
+            DataPoint[] dataPoints = counter.getSeries(timestampStart,
+                    timestampStart + 120 * AbstractCounter.RESOLUTION_MS - 1, 60);
+            assertEquals(2, dataPoints.length);
+            assertEquals(59 * 2 + 11, dataPoints[0].value());
+            assertEquals(60 * 2, dataPoints[1].value());
+        } finally {
+            rollupFactory.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void testRejectedWriteIsDropped() throws Exception {
+        final long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 1);
+        Thread.sleep(MAX_STALENESS_MS * 5);
+
+        RedisCounterFactory factory = (RedisCounterFactory) counterFactory;
+        String bucketKey;
+        try (Jedis jedis = factory.getJedis()) {
+            Set<String> keys = jedis.keys(COUNTER_NAME_ADD + ":*");
+            assertEquals(1, keys.size());
+            bucketKey = keys.iterator().next();
+            // HINCRBY on a string fails with WRONGTYPE
+            jedis.del(bucketKey);
+            jedis.set(bucketKey, "not a hash");
+        }
+        counterAdd.add(timestamp, 5);
+        counterSet.add(timestamp, 3);
+        Thread.sleep(MAX_STALENESS_MS * 5);
+        assertEquals(3, counterSet.get(timestamp).value());
+
+        try (Jedis jedis = factory.getJedis()) {
+            jedis.del(bucketKey);
+        }
+        Thread.sleep(MAX_STALENESS_MS * 5);
+        assertEquals(Type.NONE, counterAdd.get(timestamp).type());
+    }
+
+    @org.junit.Test
+    public void testWritesAfterDestroy() throws Exception {
+        RedisCounterFactory factory = new RedisCounterFactory()
+                .setRedisHostAndPort(RedisFixture.REDIS_HOST_AND_PORT).setWriteBehind(true).init();
+        ICounter counter = factory.getCounter(COUNTER_NAME_ADD);
+        factory.destroy();
+        try {
+            counter.add(System.currentTimeMillis(), 1);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+        }
+    }
+}
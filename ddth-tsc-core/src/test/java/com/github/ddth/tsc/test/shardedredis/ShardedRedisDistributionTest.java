@@ -0,0 +1,54 @@
+package com.github.ddth.tsc.test.shardedredis;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.ShardedRedisDistributionCounter;
+import com.github.ddth.tsc.test.BaseDistributionTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Test cases for {@link ShardedRedisDistributionCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class ShardedRedisDistributionTest extends BaseDistributionTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public ShardedRedisDistributionTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(ShardedRedisDistributionTest.class);
+    }
+
+    private final ShardedRedisFixture redis = new ShardedRedisFixture();
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        // destroys the counter factory, flushing pending values, while Redis is up
+        super.tearDown();
+        redis.stop();
+    }
+}
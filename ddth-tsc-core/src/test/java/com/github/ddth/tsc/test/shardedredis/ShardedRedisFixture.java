@@ -0,0 +1,62 @@
+package com.github.ddth.tsc.test.shardedredis;
+
+import java.io.IOException;
+
+import com.github.ddth.tsc.redis.ShardedRedisCounterFactory;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Embedded Redis servers (2 shards) for test cases.
+ * 
+ * <p>
+ * Usage: {@link #start()} in {@code createCounterFactory()}, {@link #stop()}
+ * in {@code tearDown()} <i>after</i> destroying the counter factory, so that
+ * it flushes its pending values while Redis is still up.
+ * </p>
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class ShardedRedisFixture {
+    public final static String REDIS_HOST = "127.0.0.1";
+    public final static int REDIS_PORT1 = 16379;
+    public final static int REDIS_PORT2 = 16380;
+    public final static String REDIS_HOSTS_AND_PORTS = REDIS_HOST + ":" + REDIS_PORT1 + ","
+            + REDIS_HOST + ":" + REDIS_PORT2;
+
+    private RedisServer redisServer1, redisServer2;
+
+    /**
+     * Starts the Redis servers.
+     * 
+     * @return a counter factory connecting to the servers, to be customized
+     *         then initialized by the caller
+     * @throws IOException
+     */
+    public ShardedRedisCounterFactory start() throws IOException {
+        redisServer1 = new RedisServer(REDIS_PORT1);
+        redisServer1.start();
+        redisServer2 = new RedisServer(REDIS_PORT2);
+        redisServer2.start();
+        return new ShardedRedisCounterFactory().setRedisHostsAndPorts(REDIS_HOSTS_AND_PORTS);
+    }
+
+    /**
+     * Stops the Redis servers, if started.
+     */
+    public void stop() {
+        redisServer1 = stop(redisServer1);
+        redisServer2 = stop(redisServer2);
+    }
+
+    private static RedisServer stop(RedisServer redisServer) {
+        if (redisServer != null) {
+            try {
+                redisServer.stop();
+            } catch (Exception e) {
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.ddth.tsc.test.shardedredis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+
+import com.github.ddth.tsc.ICounterFactory;
+import com.github.ddth.tsc.redis.ShardedRedisCounter;
+import com.github.ddth.tsc.redis.ShardedRedisCounterFactory;
+import com.github.ddth.tsc.test.BaseMultiWriteTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Test cases for {@link ShardedRedisCounter}.
+ * 
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 0.7.1
+ */
+public class ShardedRedisMultiWriteTest extends BaseMultiWriteTest {
+    /**
+     * Create the test case
+     * 
+     * @param testName
+     *            name of the test case
+     */
+    public ShardedRedisMultiWriteTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(ShardedRedisMultiWriteTest.class);
+    }
+
+    private final ShardedRedisFixture redis = new ShardedRedisFixture();
+
+    @Override
+    protected ICounterFactory createCounterFactory() throws Exception {
+        try {
+            return redis.start().init();
+        } catch (Exception e) {
+            tearDown();
+            throw e;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+        redis.stop();
+    }
+
+    @org.junit.Test
+    public void testAddAllRejectedWrite() {
+        long timestamp = System.currentTimeMillis();
+        counterAdd.add(timestamp, 1);
+        ShardedRedisCounterFactory factory = (ShardedRedisCounterFactory) counterFactory;
+        try (ShardedJedis jedis = factory.getJedis()) {
+            for (Jedis shard : jedis.getAllShards()) {
+                for (String key : shard.keys(COUNTER_NAME_ADD + ":*")) {
+                    // scripts fail with WRONGTYPE on a string
+                    shard.del(key);
+                    shard.set(key, "not a hash");
+                }
+            }
+        }
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put(COUNTER_NAME_ADD, 3L);
+        values.put(COUNTER_NAME_SET, 5L);
+        try {
+            counterFactory.addAll(values, timestamp);
+            fail("JedisDataException expected");
+        } catch (JedisDataException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("WRONGTYPE"));
+        }
+        // writes to the other counter are applied anyway
+        assertEquals(5, counterSet.get(timestamp).value());
+    }
+}